@@ -0,0 +1,69 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.cache.Cache;
+import com.epimorphics.lda.cache.PermaCache;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+    Selection lookups and stores on a single LimitedCacheBase (PermaCache)
+    shared by many request threads, as it is when one source serves a
+    busy endpoint. Mostly hits, with a proportion of misses that store.
+*/
+@BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class CacheContentionBenchmark {
+
+	static final int KEYS = 4096;
+
+	Cache cache;
+	String [] queries;
+	List<List<Resource>> results;
+
+	@Setup public void setup() {
+		cache = new PermaCache( "benchmark" );
+		List<Resource> roots = Fixtures.roots( Fixtures.items( 0 ), 50 );
+		queries = new String[KEYS];
+		results = new ArrayList<List<Resource>>();
+		for (int i = 0; i < KEYS; i += 1) {
+			queries[i] = "SELECT ?item WHERE { ?item a <" + Fixtures.DEF + "BathingWater> } OFFSET " + i * 50 + " LIMIT 50";
+			results.add( roots );
+			if (i % 8 != 0) cache.cacheSelection( queries[i], roots );
+		}
+	}
+
+	@State(Scope.Thread) public static class Cursor {
+		final Random r = new Random();
+	}
+
+	@Benchmark @Threads(1) public List<Resource> oneThread( Cursor c ) {
+		return lookupOrStore( c );
+	}
+
+	@Benchmark @Threads(8) public List<Resource> eightThreads( Cursor c ) {
+		return lookupOrStore( c );
+	}
+
+	@Benchmark @Threads(32) public List<Resource> thirtyTwoThreads( Cursor c ) {
+		return lookupOrStore( c );
+	}
+
+	private List<Resource> lookupOrStore( Cursor c ) {
+		int i = c.r.nextInt( KEYS );
+		List<Resource> already = cache.getCachedResources( queries[i] );
+		if (already != null) return already;
+		cache.cacheSelection( queries[i], results.get( i ) );
+		return results.get( i );
+	}
+}
@@ -0,0 +1,41 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.jsonrdf.Context;
+import com.epimorphics.lda.shortnames.CompleteContext;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+    CompleteContext.Do over the merged result model, in each shortname mode.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class CompleteContextBenchmark {
+
+	@Param({"100", "1000"}) public int items;
+
+	@Param({"RoundTrip", "PreferPrefixes", "PreferLocalnames"}) public String mode;
+
+	Model model;
+	Context context;
+
+	@Setup public void setup() {
+		model = Fixtures.page( Fixtures.items( items ), items ).getMergedModel();
+		context = Fixtures.spec().getShortnameService().asContext();
+	}
+
+	@Benchmark public Map<String, String> Do() {
+		return new CompleteContext( CompleteContext.Mode.valueOf( mode ), context, model ).include( model ).Do();
+	}
+}
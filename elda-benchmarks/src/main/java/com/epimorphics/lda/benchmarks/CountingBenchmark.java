@@ -0,0 +1,100 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.cache.PermaCache;
+import com.epimorphics.lda.core.APIEndpoint;
+import com.epimorphics.lda.core.APIEndpointImpl;
+import com.epimorphics.lda.specs.APIEndpointSpec;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.Controls;
+import com.epimorphics.lda.support.EldaFileManager;
+import com.epimorphics.lda.support.MultiMap;
+import com.epimorphics.lda.support.Times;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.util.URIUtils;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    A client walking the first <code>PAGES</code> pages of the fixture
+    list endpoint over <code>items</code> bathing waters, with the total
+    and district facet counts of the selection computed for every page
+    (<code>perPage</code>, as a front end issuing its own COUNT query
+    does), computed once and shared through the count cache
+    (<code>cached</code>, the cache starting each walk empty), or not
+    at all (<code>none</code>). Each walk waits for the counts it
+    started, so their whole cost is measured.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3) @Measurement(iterations = 5) @Fork(1)
+@State(Scope.Benchmark) public class CountingBenchmark {
+
+	static final int PAGES = 50;
+
+	static final int PAGE = 10;
+
+	@Param({"10000", "100000"}) public int items;
+
+	@Param({"none", "perPage", "cached"}) public String mode;
+
+	File data;
+	PermaCache cache;
+	APIEndpoint list;
+
+	@Setup public void setup() throws IOException {
+		data = File.createTempFile( "counting-benchmark", ".nt" );
+		OutputStream os = new BufferedOutputStream( new FileOutputStream( data ) );
+		try {
+			Fixtures.items( items ).write( os, "N-TRIPLE" );
+		} finally {
+			os.close();
+		}
+		Model m = Fixtures.specModel( "local:" + data.getAbsolutePath() );
+		Resource root = m.createResource( m.expandPrefix( ":root" ) );
+		root.addProperty( EXTRAS.enableCounting, "optional" );
+		root.addProperty( EXTRAS.facetProperty, Fixtures.district );
+		APISpec spec = new APISpec( EldaFileManager.get(), root, Fixtures.loadsNothing );
+		cache = new PermaCache( "benchmark" );
+		for (APIEndpointSpec eps: spec.getEndpoints()) {
+			if (eps.getURITemplate().equals( "/bathing-water" )) list = new APIEndpointImpl( eps, cache );
+		}
+	}
+
+	@TearDown public void tearDown() {
+		data.delete();
+	}
+
+	@Benchmark public long walk() throws InterruptedException {
+		boolean counting = !mode.equals( "none" ), perPage = mode.equals( "perPage" );
+		cache.getCountCache().clear();
+		long seen = 0;
+		for (int page = 0; page < PAGES; page += 1) {
+			if (perPage) cache.getCountCache().clear();
+			MultiMap<String, String> params = new MultiMap<String, String>();
+			params.add( "_page", "" + page );
+			params.add( "_pageSize", "" + PAGE );
+			if (counting) params.add( "_count", "yes" );
+			seen += list.call( request( params ) ).a.getResultList().size();
+			if (perPage) cache.getCountCache().await( TimeUnit.MINUTES.toMillis( 10 ) );
+		}
+		cache.getCountCache().await( TimeUnit.MINUTES.toMillis( 10 ) );
+		return seen;
+	}
+
+	static APIEndpoint.Request request( MultiMap<String, String> params ) {
+		Bindings b = Bindings.createContext( new Bindings(), params );
+		Controls c = new Controls( false, new Times() );
+		return new APIEndpoint.Request( c, URIUtils.newURI( "http://localhost/bathing-water" ), b );
+	}
+}
@@ -0,0 +1,37 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.support.CycleFinder;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    CycleFinder.findCyclics over result models whose districts and
+    regions refer to each other.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class CycleFinderBenchmark {
+
+	@Param({"100", "1000", "10000"}) public int items;
+
+	Model model;
+
+	@Setup public void setup() {
+		model = Fixtures.items( items );
+	}
+
+	@Benchmark public Set<Resource> findCyclics() {
+		return CycleFinder.findCyclics( model );
+	}
+}
@@ -0,0 +1,70 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.jsonrdf.Context;
+import com.epimorphics.jsonrdf.Encoder;
+import com.epimorphics.jsonrdf.ReadContext;
+import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.shortnames.*;
+import com.epimorphics.lda.specs.APISpec;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Encoder.encodeRecursive of a list page, as done by JSONRenderer, and
+    the same encoding isolated from the shared Context by cloning it, as
+    renderers once did. Run with <code>-prof gc</code> to compare the
+    allocation per render.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class EncoderBenchmark {
+
+	@Param({"10", "100", "1000"}) public int items;
+
+	Model model;
+	List<Resource> roots;
+	ReadContext context;
+	Context shared;
+
+	@Setup public void setup() {
+		APISpec spec = Fixtures.spec();
+		MergedModels mm = Fixtures.page( Fixtures.items( items ), items );
+		model = mm.getMergedModel();
+		ShortnameService sns = spec.getShortnameService();
+		Map<String, String> termBindings =
+			new CompleteContext( CompleteContext.Mode.PreferLocalnames, sns.asContext(), model )
+			.include( model )
+			.Do()
+			;
+		shared = sns.asContext();
+		context = CompleteReadContext.create( shared, termBindings );
+		roots = new ArrayList<Resource>();
+		roots.add( model.createResource( Fixtures.pageURI() ) );
+	}
+
+	@Benchmark public int encodeRecursive() {
+		StringWriter w = new StringWriter();
+		Encoder.getForOneResult( context ).encodeRecursive( model, roots, w, true );
+		return w.getBuffer().length();
+	}
+
+	@Benchmark public int encodeRecursiveWithClonedContext() {
+		StringWriter w = new StringWriter();
+		Context c = shared.clone();
+		c.setSorted( true );
+		Encoder.getForOneResult( c ).encodeRecursive( model, roots, w, true );
+		return w.getBuffer().length();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.core.*;
+import com.epimorphics.lda.export.ExportFormat;
+import com.epimorphics.lda.specs.*;
+import com.epimorphics.lda.support.*;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.util.Triad;
+import com.epimorphics.util.URIUtils;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Getting every item of the fixture list endpoint, over a LocalSource of
+    <code>items</code> bathing waters, as N-Triples: by one bulk export
+    (<code>export</code>), or as a client does without one by asking for
+    page after page of the largest size the spec allows and writing each
+    page's descriptions (<code>paging</code>). Both write to a stream that
+    counts and discards the bytes.
+*/
+@BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2) @Measurement(iterations = 5) @Fork(1)
+@State(Scope.Benchmark) public class ExportBenchmark {
+
+	@Param({"10000", "100000"}) public int items;
+
+	@Param({"export", "paging"}) public String mode;
+
+	File data;
+	APIEndpoint list;
+	int pageSize;
+
+	@Setup public void setup() throws IOException {
+		data = File.createTempFile( "export-benchmark", ".nt" );
+		OutputStream os = new BufferedOutputStream( new FileOutputStream( data ) );
+		try {
+			Fixtures.items( items ).write( os, "N-TRIPLE" );
+		} finally {
+			os.close();
+		}
+		Model m = Fixtures.specModel( "local:" + data.getAbsolutePath() );
+		Resource root = m.createResource( m.expandPrefix( ":root" ) );
+		root.addLiteral( EXTRAS.exportEnabled, true );
+		APISpec spec = new APISpec( EldaFileManager.get(), root, Fixtures.loadsNothing );
+		for (APIEndpointSpec eps: spec.getEndpoints()) {
+			if (eps.getURITemplate().equals( "/bathing-water" )) {
+				list = new APIEndpointImpl( eps );
+				pageSize = eps.getMaxPageSize();
+			}
+		}
+	}
+
+	@TearDown public void tearDown() {
+		data.delete();
+	}
+
+	@Benchmark public long everything() {
+		CountingStream os = new CountingStream();
+		if (mode.equals( "export" )) {
+			list.export( request( new MultiMap<String, String>() ), ExportFormat.NTriples ).writeAll( new Times(), os );
+		} else {
+			for (int page = 0;; page += 1) {
+				MultiMap<String, String> params = new MultiMap<String, String>();
+				params.add( "_page", "" + page );
+				params.add( "_pageSize", "" + pageSize );
+				Triad<APIResultSet, ?, ?> result = list.call( request( params ) );
+				result.a.getMergedModel().write( os, "N-TRIPLE" );
+				if (result.a.getResultList().size() < pageSize) break;
+			}
+		}
+		return os.count;
+	}
+
+	static APIEndpoint.Request request( MultiMap<String, String> params ) {
+		Bindings b = Bindings.createContext( new Bindings(), params );
+		Controls c = new Controls( false, new Times() );
+		return new APIEndpoint.Request( c, URIUtils.newURI( "http://localhost/bathing-water" ), b );
+	}
+
+	static class CountingStream extends OutputStream {
+
+		long count = 0;
+
+		@Override public void write( int b ) {
+			count += 1;
+		}
+
+		@Override public void write( byte[] b, int off, int len ) {
+			count += len;
+		}
+	}
+}
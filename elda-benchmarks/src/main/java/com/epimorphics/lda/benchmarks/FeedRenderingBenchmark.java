@@ -0,0 +1,95 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.renderers.FeedRenderer;
+import com.epimorphics.lda.renderers.FeedRenderer.FeedResults;
+import com.epimorphics.lda.renderers.FeedRendererFactory;
+import com.epimorphics.lda.shortnames.*;
+import com.epimorphics.lda.support.Times;
+import com.epimorphics.util.DOMUtils;
+import com.epimorphics.util.StreamUtils;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.shared.PrefixMapping;
+
+/**
+    Rendering a feed of <code>entries</code> items to a discarding
+    stream, either built as a DOM and serialised by the identity
+    transform (<code>dom</code>, as FeedRenderer used to) or written
+    by the streaming FeedRenderer as Atom or RSS. Run with
+    <code>-prof gc</code> for the allocation per feed.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class FeedRenderingBenchmark {
+
+	@Param({"20", "200", "2000"}) public int entries;
+
+	@Param({"dom", "atom", "rss"}) public String writer;
+
+	FeedRenderer renderer;
+	FeedResults results;
+	Map<String, String> termBindings;
+
+	static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	@Setup public void setup() {
+		ShortnameService sns = Fixtures.spec().getShortnameService();
+		Model m = Fixtures.items( entries );
+		MergedModels mm = new MergedModels( m );
+		Resource config = ModelFactory.createDefaultModel().createResource();
+		results = new FeedResults( m.createResource( Fixtures.pageURI() ), Fixtures.roots( m, entries ), mm );
+		renderer = new FeedRenderer( writer.equals( "rss" ) ? FeedRendererFactory.rss : FeedRendererFactory.atom, config, sns );
+		termBindings =
+			new CompleteContext( CompleteContext.Mode.PreferPrefixes, sns.asContext(), m )
+			.Do( m, m )
+			;
+	}
+
+	@Benchmark public long render() throws Exception {
+		CountingStream os = new CountingStream();
+		Writer w = new BufferedWriter( StreamUtils.asUTF8( os ) );
+		if (writer.equals( "dom" )) {
+			Document d = DOMUtils.newDocument();
+			renderer.renderFeedIntoDocument( d, termBindings, results );
+			Transformer tr = DOMUtils.setPropertiesAndParams( new Times(), new Bindings(), PrefixMapping.Factory.create(), null );
+			tr.transform( new DOMSource( d ), new StreamResult( w ) );
+		} else {
+			renderer.writeFeed( outputFactory.createXMLStreamWriter( w ), termBindings, results );
+		}
+		w.flush();
+		return os.count;
+	}
+
+	static class CountingStream extends OutputStream {
+
+		long count = 0;
+
+		@Override public void write( int b ) {
+			count += 1;
+		}
+
+		@Override public void write( byte[] b, int off, int len ) {
+			count += len;
+		}
+	}
+}
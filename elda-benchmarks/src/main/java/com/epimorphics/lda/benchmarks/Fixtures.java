@@ -0,0 +1,194 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.core.ModelLoader;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.EldaFileManager;
+import com.epimorphics.lda.vocabularies.API;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    Generated fixture data for the benchmarks, shaped like a typical Elda
+    deployment (bathing waters): each item has multilingual labels, typed
+    literals, a blank-node sampling point, a latest sample, and a district
+    which belongs to a region; regions list their districts, so the data
+    contains cycles. A fixture of a given size is deterministic.
+*/
+public class Fixtures {
+
+	public static final String DEF = "http://example.com/def/bathing-water/";
+
+	public static final String ID = "http://example.com/id/";
+
+	static final int DISTRICTS = 20;
+
+	static final int REGIONS = 4;
+
+	static Property p( String localName ) {
+		return ResourceFactory.createProperty( DEF + localName );
+	}
+
+	static final Property eubwid = p( "eubwid" );
+	static final Property sampleYear = p( "sampleYear" );
+	static final Property district = p( "district" );
+	static final Property region = p( "region" );
+	static final Property hasDistrict = p( "hasDistrict" );
+	static final Property samplingPoint = p( "samplingPoint" );
+	static final Property latestSample = p( "latestSample" );
+	static final Property sampleDate = p( "sampleDate" );
+	static final Property result = p( "result" );
+	static final Property lat = p( "lat" );
+	static final Property lon = p( "long" );
+
+	static final Resource BathingWater = ResourceFactory.createResource( DEF + "BathingWater" );
+
+	/**
+	    Answer a model containing <code>n</code> bathing waters and their
+	    districts, regions and samples.
+	*/
+	public static Model items( int n ) {
+		Model m = ModelFactory.createDefaultModel();
+		m.setNsPrefix( "def", DEF );
+		m.setNsPrefix( "rdfs", RDFS.getURI() );
+		Resource [] results = {
+			label( m.createResource( ID + "result/excellent" ), "excellent", "rhagorol" ),
+			label( m.createResource( ID + "result/good" ), "good", "da" ),
+			label( m.createResource( ID + "result/poor" ), "poor", "gwael" )
+		};
+		Resource [] regions = new Resource[REGIONS];
+		for (int i = 0; i < REGIONS; i += 1) {
+			regions[i] = label( m.createResource( ID + "region/" + i ), "Region " + i, "Rhanbarth " + i );
+		}
+		Resource [] districts = new Resource[DISTRICTS];
+		for (int i = 0; i < DISTRICTS; i += 1) {
+			Resource r = regions[i % REGIONS];
+			districts[i] = label( m.createResource( ID + "district/" + i ), "District " + i, "Ardal " + i );
+			districts[i].addProperty( region, r );
+			r.addProperty( hasDistrict, districts[i] );
+		}
+		for (int i = 0; i < n; i += 1) {
+			Resource item = m.createResource( ID + "bathing-water/" + i );
+			item.addProperty( RDF.type, BathingWater );
+			label( item, "Beach " + i, "Traeth " + i );
+			item.addProperty( RDFS.label, m.createLiteral( "Plage " + i, "fr" ) );
+			item.addProperty( eubwid, "ukc" + (1000 + i) );
+			item.addLiteral( sampleYear, m.createTypedLiteral( 2000 + i % 14, XSDDatatype.XSDinteger ) );
+			item.addProperty( district, districts[i % DISTRICTS] );
+			Resource point = m.createResource();
+			point.addLiteral( lat, m.createTypedLiteral( 50.0 + (i % 500) / 100.0, XSDDatatype.XSDdecimal ) );
+			point.addLiteral( lon, m.createTypedLiteral( -5.0 + (i % 700) / 100.0, XSDDatatype.XSDdecimal ) );
+			item.addProperty( samplingPoint, point );
+			Resource sample = m.createResource( ID + "sample/" + i );
+			sample.addProperty( sampleDate, m.createTypedLiteral( "2012-0" + (1 + i % 9) + "-1" + (i % 10), XSDDatatype.XSDdate ) );
+			sample.addProperty( result, results[i % results.length] );
+			item.addProperty( latestSample, sample );
+		}
+		return m;
+	}
+
+	private static Resource label( Resource r, String en, String cy ) {
+		Model m = r.getModel();
+		r.addProperty( RDFS.label, m.createLiteral( en, "en" ) );
+		r.addProperty( RDFS.label, m.createLiteral( cy, "cy" ) );
+		return r;
+	}
+
+	/**
+	    Answer the bathing-water items of <code>m</code>, in id order.
+	*/
+	public static List<Resource> roots( Model m, int n ) {
+		List<Resource> result = new ArrayList<Resource>( n );
+		for (int i = 0; i < n; i += 1) result.add( m.createResource( ID + "bathing-water/" + i ) );
+		return result;
+	}
+
+	/**
+	    Answer merged object and metadata models in which a list page
+	    resource has the first <code>n</code> items as its api:items.
+	*/
+	public static MergedModels page( Model items, int n ) {
+		MergedModels mm = new MergedModels( items );
+		Model meta = mm.getMetaModel();
+		Resource page = meta.createResource( pageURI() );
+		page.addProperty( RDF.type, API.Page );
+		page.addProperty( API.items, meta.createList( roots( items, n ).iterator() ) );
+		return mm;
+	}
+
+	public static String pageURI() {
+		return "http://localhost:8080/elda/bathing-water?_page=0";
+	}
+
+	static final ModelLoader loadsNothing = new ModelLoader() {
+		@Override public Model loadModel( String uri ) {
+			return ModelFactory.createDefaultModel();
+		}
+	};
+
+	/**
+	    Answer an API spec with a list endpoint /bathing-water and an item
+	    endpoint /bathing-water/{id}, with shortnames for the fixture
+	    vocabulary.
+	*/
+	public static APISpec spec() {
+		Model m = specModel( "unused:endpoint" );
+		Resource root = m.createResource( m.expandPrefix( ":root" ) );
+		return new APISpec( EldaFileManager.get(), root, loadsNothing );
+	}
+
+	/**
+	    Answer the configuration model for the fixture spec, whose data
+	    comes from <code>sparqlEndpoint</code>. As well as the endpoints and
+	    shortnames it declares a viewer <i>summary</i> for the list endpoint.
+	*/
+	public static Model specModel( String sparqlEndpoint ) {
+		return ModelIOUtils.modelFromTurtle
+			( "@prefix def: <" + DEF + "> ."
+			+ "\n:root a api:API"
+			+ "\n  ; api:sparqlEndpoint <" + sparqlEndpoint + ">"
+			+ "\n  ; api:endpoint :list, :item"
+			+ "\n."
+			+ "\n:list a api:ListEndpoint"
+			+ "\n  ; api:uriTemplate '/bathing-water'"
+			+ "\n  ; api:selector [ api:filter 'type=BathingWater' ]"
+			+ "\n  ; api:viewer :summary"
+			+ "\n."
+			+ "\n:summary a api:Viewer"
+			+ "\n  ; api:name 'summary'"
+			+ "\n  ; api:properties 'label,eubwid,district.label,latestSample.result.label'"
+			+ "\n."
+			+ "\n:item a api:ItemEndpoint"
+			+ "\n  ; api:uriTemplate '/bathing-water/{id}'"
+			+ "\n  ; api:itemTemplate '" + ID + "bathing-water/{id}'"
+			+ "\n."
+			+ "\ndef:BathingWater api:label 'BathingWater' ."
+			+ "\nrdfs:label api:label 'label' ."
+			+ "\nrdf:type api:label 'type' ."
+			+ "\ndef:eubwid api:label 'eubwid' ."
+			+ "\ndef:sampleYear api:label 'sampleYear' ; rdfs:range xsd:integer ."
+			+ "\ndef:district api:label 'district' ."
+			+ "\ndef:region api:label 'region' ."
+			+ "\ndef:hasDistrict api:label 'hasDistrict' ."
+			+ "\ndef:samplingPoint api:label 'samplingPoint' ."
+			+ "\ndef:latestSample api:label 'latestSample' ."
+			+ "\ndef:sampleDate api:label 'sampleDate' ; rdfs:range xsd:date ."
+			+ "\ndef:result api:label 'result' ."
+			+ "\ndef:lat api:label 'lat' ; rdfs:range xsd:decimal ."
+			+ "\ndef:long api:label 'long' ; rdfs:range xsd:decimal ."
+			);
+	}
+}
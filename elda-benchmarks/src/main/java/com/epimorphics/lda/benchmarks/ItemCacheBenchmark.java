@@ -0,0 +1,99 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.cache.ItemCache;
+import com.epimorphics.lda.cache.PermaCache;
+import com.epimorphics.lda.core.View;
+import com.epimorphics.lda.query.APIQuery;
+import com.epimorphics.lda.specs.*;
+import com.epimorphics.lda.support.*;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Describing a run of <code>PAGES</code> list pages of <code>PAGE</code>
+    bathing waters, each sharing all but <code>step</code> of its items
+    with the one before, as a client following a feed or a map panning
+    across a region asks for them. The pages are described by the fixture
+    list endpoint's <i>summary</i> view over a LocalSource, through an
+    item cache that starts each run empty (<code>cached</code>) or with
+    none (<code>uncached</code>). The auxiliary counter
+    <code>itemsDescribed</code> is the number of items the view queries
+    had to describe.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class ItemCacheBenchmark {
+
+	static final int PAGE = 50;
+
+	static final int PAGES = 20;
+
+	@Param({"1", "10"}) public int step;
+
+	@Param({"cached", "uncached"}) public String mode;
+
+	File data;
+	APISpec spec;
+	View view;
+	APIQuery vars;
+	Model items;
+	ItemCache cache;
+
+	@Setup public void setup() throws IOException {
+		items = Fixtures.items( PAGE + PAGES * step );
+		data = File.createTempFile( "item-cache-benchmark", ".nt" );
+		OutputStream os = new BufferedOutputStream( new FileOutputStream( data ) );
+		try {
+			items.write( os, "N-TRIPLE" );
+		} finally {
+			os.close();
+		}
+		Model m = Fixtures.specModel( "local:" + data.getAbsolutePath() );
+		spec = new APISpec( EldaFileManager.get(), m.createResource( m.expandPrefix( ":root" ) ), Fixtures.loadsNothing );
+		for (APIEndpointSpec eps: spec.getEndpoints()) {
+			if (eps.getURITemplate().equals( "/bathing-water" )) {
+				view = eps.getView( "summary" );
+				vars = eps.getBaseQuery();
+			}
+		}
+		if (mode.equals( "cached" )) {
+			cache = new PermaCache( "benchmark" ).getItemCache();
+			cache.allowBudget( 1000000 );
+		}
+	}
+
+	@TearDown public void tearDown() {
+		data.delete();
+	}
+
+	@State(Scope.Thread) @AuxCounters public static class Volume {
+		public long itemsDescribed;
+	}
+
+	@Benchmark public long slidingPages( Volume v ) {
+		if (cache != null) cache.clear();
+		List<Resource> all = Fixtures.roots( items, PAGE + PAGES * step );
+		long triples = 0;
+		for (int page = 0; page < PAGES; page += 1) {
+			List<Resource> roots = all.subList( page * step, page * step + PAGE );
+			Controls c = new Controls( true, new Times() );
+			Model m = ModelFactory.createDefaultModel();
+			view.fetchDescriptionsFor( c, "", roots, m, spec, vars, null, cache );
+			v.itemsDescribed += cache == null ? roots.size() : c.times.itemCacheLookups() - c.times.itemCacheHits();
+			triples += m.size();
+		}
+		return triples;
+	}
+}
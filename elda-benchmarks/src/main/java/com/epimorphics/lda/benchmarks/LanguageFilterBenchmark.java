@@ -0,0 +1,44 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.support.LanguageFilter;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    LanguageFilter.filterByLanguages, which edits the model in place, so
+    each invocation filters a fresh copy of the fixture.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class LanguageFilterBenchmark {
+
+	@Param({"100", "1000"}) public int items;
+
+	@Param({"en", "en,cy", "fr,none"}) public String languages;
+
+	Model fixture;
+	Model model;
+
+	@Setup(Level.Trial) public void setupFixture() {
+		fixture = Fixtures.items( items );
+	}
+
+	@Setup(Level.Invocation) public void copyFixture() {
+		model = ModelFactory.createDefaultModel().add( fixture );
+	}
+
+	@Benchmark public Model filterByLanguages() {
+		LanguageFilter.filterByLanguages( model, languages.split( "," ) );
+		return model;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.routing.MatchSearcher;
+import com.epimorphics.lda.support.MultiMap;
+
+/**
+    MatchSearcher.lookup against a table of templates of the shapes
+    found in large configurations: literal paths, single and multiple
+    variables, and templates constrained by query parameters.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class MatchSearcherBenchmark {
+
+	@Param({"10", "100", "1000"}) public int templates;
+
+	MatchSearcher<String> searcher;
+	String [] paths;
+	MultiMap<String, String> noParams = new MultiMap<String, String>();
+	int next = 0;
+
+	@Setup public void setup() {
+		searcher = new MatchSearcher<String>();
+		for (int i = 0; i < templates; i += 1) {
+			switch (i % 4) {
+				case 0: searcher.register( "/dataset-" + i + "/items", "list-" + i ); break;
+				case 1: searcher.register( "/dataset-" + i + "/items/{id}", "item-" + i ); break;
+				case 2: searcher.register( "/dataset-" + i + "/{area}/items/{year}", "area-" + i ); break;
+				case 3: searcher.register( "/dataset-" + i + "/items?kind={kind}", "kind-" + i ); break;
+			}
+		}
+		Random r = new Random( 42 );
+		paths = new String[1024];
+		for (int i = 0; i < paths.length; i += 1) {
+			int t = r.nextInt( templates );
+			switch (t % 4) {
+				case 0: paths[i] = "/dataset-" + t + "/items"; break;
+				case 1: paths[i] = "/dataset-" + t + "/items/" + r.nextInt( 100000 ); break;
+				case 2: paths[i] = "/dataset-" + t + "/area-" + r.nextInt( 50 ) + "/items/" + (2000 + r.nextInt( 14 )); break;
+				case 3: paths[i] = "/dataset-" + t + "/nowhere/" + i; break;
+			}
+		}
+	}
+
+	@Benchmark public String lookup() {
+		String path = paths[next++ & (paths.length - 1)];
+		return searcher.lookup( new HashMap<String, String>(), path, noParams );
+	}
+}
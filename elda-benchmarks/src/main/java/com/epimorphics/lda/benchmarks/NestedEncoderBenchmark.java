@@ -0,0 +1,71 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.jsonrdf.Context;
+import com.epimorphics.jsonrdf.Encoder;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Encoder.encodeRecursive of items which each have a chain of nested
+    blank nodes <code>depth</code> deep, every level carrying several
+    multi-valued properties; one item in ten shares its chain with the
+    next item. Time per item should not grow with the number of items.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class NestedEncoderBenchmark {
+
+	@Param({"200", "1000", "5000"}) public int items;
+
+	@Param({"1", "2", "3", "4"}) public int depth;
+
+	Model model;
+	List<Resource> roots;
+
+	@Setup public void setup() {
+		model = ModelFactory.createDefaultModel();
+		Property nested = model.createProperty( Fixtures.DEF + "nested" );
+		Property note = model.createProperty( Fixtures.DEF + "note" );
+		Property code = model.createProperty( Fixtures.DEF + "code" );
+		roots = Fixtures.roots( model, items );
+		Resource shared = null;
+		for (int i = 0; i < items; i += 1) {
+			Resource item = roots.get(i);
+			item.addProperty( Fixtures.eubwid, "ukc" + (1000 + i) );
+			if (shared != null) {
+				item.addProperty( nested, shared );
+				shared = null;
+				continue;
+			}
+			Resource level = item;
+			for (int d = 0; d < depth; d += 1) {
+				Resource next = model.createResource();
+				level.addProperty( nested, next );
+				for (int k = 0; k < 4; k += 1) {
+					next.addProperty( note, "note " + ((i * 7 + k * 13) % 97) );
+					next.addProperty( code, model.createResource( Fixtures.ID + "code/" + ((i + k * 31) % 53) ) );
+				}
+				level = next;
+			}
+			if (i % 10 == 0) shared = item.getPropertyResourceValue( nested );
+		}
+	}
+
+	@Benchmark public int encodeRecursive() {
+		StringWriter w = new StringWriter();
+		Encoder.get( new Context() ).encodeRecursive( model, roots, w, true );
+		return w.getBuffer().length();
+	}
+}
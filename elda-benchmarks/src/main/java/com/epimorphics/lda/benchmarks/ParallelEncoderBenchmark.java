@@ -0,0 +1,73 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.jsonrdf.*;
+import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.shortnames.*;
+import com.epimorphics.lda.support.CycleFinder;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Encoder.encodeRecursive of a list page, as done by JSONRenderer, with
+    its items encoded in <code>threads</code> parallel runs (1 meaning
+    sequentially). The fixture districts lose their hasDistrict links
+    so that the items reach no cycle and can be encoded in parallel.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class ParallelEncoderBenchmark {
+
+	@Param({"100", "1000", "10000"}) public int items;
+
+	@Param({"1", "2", "4", "8"}) public int threads;
+
+	Model model;
+	List<Resource> roots;
+	Set<Resource> cyclics;
+	Context shared;
+	Map<String, String> termBindings;
+	ThreadPoolExecutor pool;
+	ParallelEncoding parallel;
+
+	@Setup public void setup() {
+		Model m = Fixtures.items( items );
+		m.removeAll( null, Fixtures.hasDistrict, null );
+		MergedModels mm = Fixtures.page( m, items );
+		model = mm.getMergedModel();
+		cyclics = CycleFinder.findCyclics( model );
+		shared = Fixtures.spec().getShortnameService().asContext();
+		termBindings =
+			new CompleteContext( CompleteContext.Mode.PreferLocalnames, shared, model )
+			.include( model )
+			.Do()
+			;
+		roots = new ArrayList<Resource>();
+		roots.add( model.createResource( Fixtures.pageURI() ) );
+		pool = ParallelEncoding.newPool( threads );
+		parallel = threads < 2 ? null : new ParallelEncoding( threads, 1, pool );
+	}
+
+	@TearDown public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark public int encodeRecursive() {
+		StringWriter w = new StringWriter();
+		ReadContext context = CompleteReadContext.create( shared, termBindings );
+		Encoder.getForOneResult( context ).encodeRecursive( model, roots, cyclics, w, true, parallel );
+		return w.getBuffer().length();
+	}
+}
@@ -0,0 +1,66 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.benchmarks.RDFRenderingBenchmark.CountingStream;
+import com.epimorphics.lda.renderers.streaming.*;
+import com.epimorphics.lda.support.ModelPrefixEditor;
+import com.epimorphics.util.StreamUtils;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Renaming the URIs of the fixture model, as a result set does when the
+    spec has prefix edits, and then writing it as Turtle as the renderer
+    does. <code>copy</code> builds a renamed copy of the model first, as
+    Elda once did; <code>view</code> writes through the read-through
+    PrefixEditedGraph. <code>render</code> writes the result once;
+    <code>renderTwice</code> writes it twice, to show what each further
+    read of the view costs against the copy.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class PrefixRenamingBenchmark {
+
+	@Param({"100", "1000", "10000"}) public int items;
+
+	@Param({"copy", "view"}) public String mode;
+
+	Model model;
+
+	final ModelPrefixEditor mpe = new ModelPrefixEditor().set( "http://example.com/", "http://localhost:8080/" );
+
+	@Setup public void setup() {
+		model = Fixtures.items( items );
+	}
+
+	@Benchmark public long render() {
+		return write( renamed() );
+	}
+
+	@Benchmark public long renderTwice() {
+		Model m = renamed();
+		return write( m ) + write( m );
+	}
+
+	Model renamed() {
+		Model view = mpe.rename( model );
+		return mode.equals( "copy" ) ? ModelFactory.createDefaultModel().add( view ) : view;
+	}
+
+	long write( Model m ) {
+		CountingStream os = new CountingStream( false );
+		Writer w = new BufferedWriter( StreamUtils.asUTF8( os ) );
+		new StreamingTurtleWriter( w, Layout.Fast ).write( m.getGraph() );
+		return os.count;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.renderers.StripPrefixes;
+import com.epimorphics.lda.renderers.streaming.*;
+import com.epimorphics.util.StreamUtils;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+    Writing the fixture model as Turtle or RDF/XML as the renderers do,
+    with the Jena writers over a prefix-stripped model (<code>legacy</code>,
+    where Turtle is first built in memory) or with the streaming writers
+    in pretty or fast layout. <code>render</code> writes all of it to a
+    stream that counts and discards it; <code>firstByte</code> stops at
+    the first byte that reaches the stream, as a client would see it.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class RDFRenderingBenchmark {
+
+	@Param({"100", "1000", "10000"}) public int items;
+
+	@Param({"ttl", "rdf"}) public String format;
+
+	@Param({"legacy", "pretty", "fast"}) public String writer;
+
+	Model model;
+
+	@Setup public void setup() {
+		model = Fixtures.items( items );
+	}
+
+	@Benchmark public long render() {
+		CountingStream os = new CountingStream( false );
+		write( os );
+		return os.count;
+	}
+
+	@Benchmark public long firstByte() {
+		CountingStream os = new CountingStream( true );
+		try { write( os ); } catch (RuntimeException e) { if (!os.stopped) throw e; }
+		return os.count;
+	}
+
+	void write( OutputStream os ) {
+		boolean ttl = format.equals( "ttl" );
+		if (writer.equals( "legacy" )) {
+			if (ttl) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				StripPrefixes.Do( model ).write( bytes, "TTL" );
+				try { os.write( bytes.toByteArray() ); } catch (IOException e) { throw new RuntimeException( e ); }
+			} else {
+				StripPrefixes.Do( model ).write( os, "RDF/XML-ABBREV" );
+			}
+		} else {
+			Layout layout = writer.equals( "fast" ) ? Layout.Fast : Layout.Pretty;
+			Writer w = new BufferedWriter( StreamUtils.asUTF8( os ) );
+			if (ttl) new StreamingTurtleWriter( w, layout ).write( model.getGraph() );
+			else new StreamingRDFXMLWriter( w, layout ).write( model.getGraph() );
+		}
+	}
+
+	static final IOException STOP = new IOException( "first byte written" );
+
+	/**
+	    Counts the bytes written to it and discards them; if <code>stop</code>,
+	    throws (a preallocated exception) at the first write.
+	*/
+	static class CountingStream extends OutputStream {
+
+		final boolean stop;
+		boolean stopped = false;
+		long count = 0;
+
+		CountingStream( boolean stop ) {
+			this.stop = stop;
+		}
+
+		@Override public void write( int b ) throws IOException {
+			write( null, 0, 1 );
+		}
+
+		@Override public void write( byte[] b, int off, int len ) throws IOException {
+			count += len;
+			if (stop && len > 0) {
+				stopped = true;
+				throw STOP;
+			}
+		}
+	}
+}
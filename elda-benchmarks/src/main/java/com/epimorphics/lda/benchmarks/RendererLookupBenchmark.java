@@ -0,0 +1,50 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.core.APIEndpointImpl;
+import com.epimorphics.lda.renderers.*;
+import com.epimorphics.lda.renderers.velocity.Help;
+import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.lda.specs.APISpec;
+
+/**
+    The per-request cost of finding a Velocity renderer for the list
+    endpoint of the fixture spec: <i>rebuild</i> builds a new renderer,
+    with a new engine, every time, as the default-format path once did;
+    <i>lookup</i> asks the endpoint, which builds its renderer once and
+    shares the engine.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class RendererLookupBenchmark {
+
+	APIEndpointImpl ep;
+	ShortnameService sns;
+	RendererFactory velocity;
+
+	@Setup public void setup() {
+		APISpec spec = Fixtures.spec();
+		ep = new APIEndpointImpl( spec.getEndpoints().get(0) );
+		sns = spec.getShortnameService();
+		velocity = spec.getEndpoints().get(0).getRendererFactoryTable().getFactoryByName( "_velocity" );
+	}
+
+	@Benchmark public Renderer rebuild() {
+		Help.forgetVelocityEngines();
+		return velocity.buildWith( ep, sns );
+	}
+
+	@Benchmark public Renderer lookup() {
+		return ep.getRendererNamed( "_velocity" );
+	}
+}
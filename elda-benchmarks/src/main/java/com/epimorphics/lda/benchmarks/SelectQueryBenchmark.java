@@ -0,0 +1,55 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.query.APIQuery;
+import com.epimorphics.lda.query.ContextQueryUpdater;
+import com.epimorphics.lda.specs.*;
+import com.epimorphics.lda.support.MultiMap;
+import com.hp.hpl.jena.shared.PrefixMapping;
+
+/**
+    APIQuery.assembleSelectQuery for the list endpoint of the fixture
+    spec, after ContextQueryUpdater has applied a typical set of filter,
+    property-chain and sort parameters.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class SelectQueryBenchmark {
+
+	APIQuery query;
+	Bindings bindings;
+	PrefixMapping prefixes;
+
+	@Setup public void setup() {
+		APISpec spec = Fixtures.spec();
+		APIEndpointSpec list = null;
+		for (APIEndpointSpec eps: spec.getEndpoints()) 
+			if (eps.getURITemplate().equals( "/bathing-water" )) list = eps;
+		MultiMap<String, String> params = new MultiMap<String, String>();
+		params.add( "min-sampleYear", "2005" );
+		params.add( "district.label", "District 3" );
+		params.add( "latestSample.result.label", "good" );
+		params.add( "_sort", "-sampleYear,eubwid" );
+		params.add( "_pageSize", "50" );
+		bindings = Bindings.createContext( list.getBindings(), params );
+		query = list.getBaseQuery();
+		new ContextQueryUpdater( ContextQueryUpdater.ListEndpoint, bindings, list, spec.getShortnameService(), query )
+			.updateQueryAndConstructView( query.deferredFilters );
+		prefixes = spec.getPrefixMap();
+	}
+
+	@Benchmark public String assembleSelectQuery() {
+		return query.assembleSelectQuery( bindings, prefixes );
+	}
+}
@@ -0,0 +1,77 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.spatial.SourceSpatialIndex;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.lda.vocabularies.GEOStub;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    The selection a near-lat/near-long query (25 miles around a point in
+    the densest part of a gazetteer of <code>points</code> places) makes,
+    answered from the source's spatial index with elda:withinBox
+    (<code>index</code>, the grid built in setup as the first query would
+    build it) or with the numeric FILTERs over every point that GEOLocation
+    generates without one (<code>filter</code>).
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3) @Measurement(iterations = 5) @Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark) public class SpatialIndexBenchmark {
+
+	@Param({"10000", "1000000", "3000000"}) public int points;
+
+	@Param({"index", "filter"}) public String mode;
+
+	static final double LAT = 52.5, LONG = -1.5, DLAT = 25.0 / 70, DLONG = DLAT / Math.cos( Math.toRadians( LAT ) );
+
+	Model data;
+	SourceSpatialIndex index;
+	Query query;
+
+	@Setup public void setup() {
+		data = ModelFactory.createDefaultModel();
+		Property lat = data.createProperty( GEOStub.LAT.getURI() ), lng = data.createProperty( GEOStub.LONG.getURI() );
+		Random r = new Random( 3 );
+		for (int i = 0; i < points; i += 1) {
+			Resource place = data.createResource( Fixtures.ID + "place/" + i );
+			place.addLiteral( lat, 50 + r.nextDouble() * 8 ).addLiteral( lng, -6 + r.nextDouble() * 8 );
+		}
+		String box = LAT - DLAT + " < ?lat && ?lat < " + (LAT + DLAT) + " && " + (LONG - DLONG) + " < ?long && ?long < " + (LONG + DLONG);
+		if (mode.equals( "index" )) {
+			index = SourceSpatialIndex.inMemory( "benchmark", data.getGraph() );
+			index.current( lat.asNode(), lng.asNode() );
+			query = QueryFactory.create
+				( "SELECT ?item WHERE { ?item <" + EXTRAS.withinBox.getURI() + "> (<" + lat.getURI() + "> <" + lng.getURI() + "> "
+				+ (LAT - DLAT) + " " + (LONG - DLONG) + " " + (LAT + DLAT) + " " + (LONG + DLONG) + ") }"
+				);
+		} else {
+			query = QueryFactory.create
+				( "SELECT ?item WHERE { ?item <" + lat.getURI() + "> ?lat; <" + lng.getURI() + "> ?long FILTER(" + box + ") }" );
+		}
+	}
+
+	@Benchmark public int near() {
+		QueryExecution qe = QueryExecutionFactory.create( query, data );
+		if (index != null) index.attach( qe );
+		try {
+			ResultSet rs = qe.execSelect();
+			int n = 0;
+			while (rs.hasNext()) { rs.next(); n += 1; }
+			return n;
+		} finally {
+			qe.close();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.textsearch.SourceTextIndex;
+import com.epimorphics.lda.textsearch.TextSearchConfig;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    The selection a <code>_search</code> makes over <code>literals</code>
+    labelled items, one in a thousand of which match, answered from the
+    source's text index (<code>index</code>, built in setup as the first
+    search would build it) or by a regex filter over every label
+    (<code>regex</code>), as a store without a text index must.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3) @Measurement(iterations = 5) @Fork(1)
+@State(Scope.Benchmark) public class TextSearchBenchmark {
+
+	@Param({"1000000"}) public int literals;
+
+	@Param({"index", "regex"}) public String mode;
+
+	Model data;
+	SourceTextIndex index;
+	Query query;
+
+	@Setup public void setup() {
+		data = ModelFactory.createDefaultModel();
+		for (int i = 0; i < literals; i += 1)
+			data.add( data.createResource( Fixtures.ID + "thing/" + i ), RDFS.label, "thing " + i + " word" + (i % 1000) );
+		if (mode.equals( "index" )) {
+			index = SourceTextIndex.inMemory( "benchmark", data.getGraph() );
+			index.current( null );
+			query = QueryFactory.create
+				( "SELECT ?item WHERE { ?item <" + TextSearchConfig.JENA_TEXT_QUERY.getURI() + "> ('word7' 100000) }" );
+		} else {
+			query = QueryFactory.create
+				( "SELECT ?item WHERE { ?item <" + RDFS.label.getURI() + "> ?l FILTER regex(?l, '\\\\bword7\\\\b', 'i') }" );
+		}
+	}
+
+	@Benchmark public int search() {
+		QueryExecution qe = QueryExecutionFactory.create( query, data );
+		if (index != null) index.attach( qe );
+		try {
+			ResultSet rs = qe.execSelect();
+			int n = 0;
+			while (rs.hasNext()) { rs.next(); n += 1; }
+			return n;
+		} finally {
+			qe.close();
+		}
+	}
+}
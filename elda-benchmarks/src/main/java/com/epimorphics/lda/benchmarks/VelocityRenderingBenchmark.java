@@ -0,0 +1,70 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.openjdk.jmh.annotations.*;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.core.APIResultSet;
+import com.epimorphics.lda.renderers.velocity.VelocityCore;
+import com.epimorphics.lda.vocabularies.API;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+    Rendering a list page with VelocityCore and the bundled page-shell.vm
+    templates, which walk every property of every item. The templates are
+    read from the directory named by the system property
+    <code>elda.templates</code>, by default elda-assets' vm directory as
+    seen from this module.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class VelocityRenderingBenchmark {
+
+	@Param({"10", "100", "1000"}) public int items;
+
+	APIResultSet results;
+	VelocityCore core;
+	Bindings bindings;
+
+	@Setup public void setup() {
+		Model data = Fixtures.items( items );
+		results = new APIResultSet( data.getGraph(), Fixtures.roots( data, items ), true, false, "", null );
+		Model meta = results.getModels().getMetaModel();
+		Resource page = meta.createResource( Fixtures.pageURI() );
+		page.addProperty( RDF.type, API.Page );
+		page.addProperty( API.items, meta.createList( Fixtures.roots( data, items ).iterator() ) );
+		Resource binding = meta.createResource()
+			.addProperty( API.label, "_resourceRoot" )
+			.addProperty( API.value, "/lda-assets/" )
+			;
+		page.addProperty( API.wasResultOf, meta.createResource().addProperty( API.variableBinding, binding ) );
+		results.setRoot( page.inModel( results.getMergedModel() ) );
+	//
+		VelocityEngine ve = new VelocityEngine();
+		ve.setProperty( "macro.provide.scope.control", true );
+		ve.setProperty( "foreach.provide.scope.control", true );
+		ve.setProperty( "file.resource.loader.path", System.getProperty( "elda.templates", "../elda-assets/src/main/webapp/vm" ) );
+		ve.setProperty( "file.resource.loader.cache", "true" );
+		ve.init();
+		core = new VelocityCore( ve, "html", "page-shell.vm" );
+		core.warmUp();
+		bindings = new Bindings();
+	}
+
+	@Benchmark public int render() {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		core.render( results, bindings, os );
+		return os.size();
+	}
+}
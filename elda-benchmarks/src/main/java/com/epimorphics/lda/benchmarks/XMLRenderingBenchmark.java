@@ -0,0 +1,55 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+
+import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.renderers.XMLRenderer;
+import com.epimorphics.lda.shortnames.*;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.util.DOMUtils;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+    Rendering a list page into a DOM with XMLRenderer.renderInto, which
+    drives XMLRendering; the DOM is not serialised.
+*/
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5) @Measurement(iterations = 10) @Fork(1)
+@State(Scope.Benchmark) public class XMLRenderingBenchmark {
+
+	@Param({"10", "100", "1000"}) public int items;
+
+	MergedModels mm;
+	Resource root;
+	XMLRenderer renderer;
+	Map<String, String> termBindings;
+
+	@Setup public void setup() {
+		APISpec spec = Fixtures.spec();
+		ShortnameService sns = spec.getShortnameService();
+		mm = Fixtures.page( Fixtures.items( items ), items );
+		root = mm.getMetaModel().createResource( Fixtures.pageURI() );
+		renderer = new XMLRenderer( sns );
+		termBindings =
+			new CompleteContext( CompleteContext.Mode.PreferPrefixes, sns.asContext(), mm.getMergedModel() )
+			.Do( mm.getMergedModel(), mm.getMergedModel() )
+			;
+	}
+
+	@Benchmark public Document renderInto() {
+		Document d = DOMUtils.newDocument();
+		renderer.renderInto( root, mm, d, termBindings );
+		return d;
+	}
+}
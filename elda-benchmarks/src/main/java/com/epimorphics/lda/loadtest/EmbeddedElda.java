@@ -0,0 +1,206 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.loadtest;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.nio.SelectChannelConnector;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
+import org.mortbay.thread.ThreadPool;
+
+import com.epimorphics.lda.benchmarks.Fixtures;
+import com.epimorphics.lda.restlets.RouterRestlet;
+import com.epimorphics.lda.routing.Container;
+import com.epimorphics.lda.sources.LocalSource;
+import com.epimorphics.lda.support.TDBManager;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.TDBFactory;
+import com.sun.jersey.api.core.PackagesResourceConfig;
+import com.sun.jersey.spi.container.servlet.ServletContainer;
+
+/**
+    An Elda webapp running in an embedded Jetty on a free local port,
+    configured with the fixture spec over a generated dataset of a
+    given size held either in TDB or in a local: file. Everything lives
+    in a fresh temporary directory, so no network access or prepared
+    environment is needed.
+*/
+public class EmbeddedElda {
+
+	public enum Store { tdb, local }
+
+	public static final String CONTEXT_PATH = "/elda";
+
+	static final String GRAPH = "http://example.com/graph/bathing-water";
+
+	static final String SPEC_FILE = "specs/loadtest.ttl";
+
+	static final String DATA_FILE = "data/bathing-water.ttl";
+
+	static final String LOG4J =
+		"log4j.rootLogger=WARN, stdout\n"
+		+ "log4j.logger.com.epimorphics.lda.loadtest=INFO\n"
+		+ "log4j.appender.stdout=org.apache.log4j.ConsoleAppender\n"
+		+ "log4j.appender.stdout.layout=org.apache.log4j.PatternLayout\n"
+		+ "log4j.appender.stdout.layout.ConversionPattern=%d{HH:mm:ss} %-5p %c{1} - %m%n\n"
+		;
+
+	final Server server;
+
+	final int port;
+
+	final File base;
+
+	EmbeddedElda( Server server, int port, File base ) {
+		this.server = server;
+		this.port = port;
+		this.base = base;
+	}
+
+	/**
+	    Generate a dataset of <code>items</code> bathing waters in the
+	    given store, write a spec for it, and start Elda over it.
+	*/
+	public static EmbeddedElda start( int items, Store store ) throws Exception {
+		File base = createTempDirectory();
+		writeTo( new File( base, "log4j.properties" ), LOG4J );
+		Model data = Fixtures.items( items );
+		String endpoint;
+		if (store == Store.tdb) {
+			File tdb = new File( base, "tdb" );
+			tdb.mkdirs();
+			Dataset ds = TDBFactory.createDataset( tdb.getPath() );
+			ds.getNamedModel( GRAPH ).add( data );
+			TDB.sync( ds );
+			TDBManager.setBaseTDBPath( tdb.getPath() );
+			endpoint = TDBManager.PREFIX + GRAPH;
+		} else {
+			writeTo( new File( base, DATA_FILE ), data );
+			endpoint = LocalSource.PREFIX + DATA_FILE;
+		}
+		writeTo( new File( base, SPEC_FILE ), Fixtures.specModel( endpoint ) );
+	//
+		Server server = new Server();
+		server.setThreadPool( new RecordingThreadPool() );
+		SelectChannelConnector connector = new SelectChannelConnector();
+		connector.setPort( 0 );
+		server.addConnector( connector );
+		Context context = new Context( server, CONTEXT_PATH, Context.NO_SESSIONS );
+		context.setResourceBase( base.getAbsolutePath() );
+		Map<String, String> params = new HashMap<String, String>();
+		params.put( Container.INITIAL_SPECS_PARAM_NAME, SPEC_FILE );
+		context.setInitParams( params );
+		context.addEventListener( new RouterRestlet.Init() );
+		ServletContainer jersey = new ServletContainer( new PackagesResourceConfig( "com.epimorphics.lda.restlets" ) );
+		context.addServlet( new ServletHolder( jersey ), "/*" );
+		server.start();
+		return new EmbeddedElda( server, connector.getLocalPort(), base );
+	}
+
+	/**
+	    The server's worker threads, each of which records its total
+	    allocation with LoadReport as it finishes, so that the allocation
+	    of workers retired during a run is not lost.
+	*/
+	static class RecordingThreadPool implements ThreadPool {
+
+		static final int MIN_THREADS = 8, MAX_THREADS = 250;
+
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor
+			( MIN_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+				final AtomicInteger count = new AtomicInteger();
+
+				@Override public Thread newThread( final Runnable r ) {
+					Thread t = new Thread( "elda-worker-" + count.incrementAndGet() ) {
+						@Override public void run() {
+							try { r.run(); } finally { LoadReport.threadFinished(); }
+						}
+					};
+					t.setDaemon( true );
+					return t;
+				}
+			});
+
+		@Override public boolean dispatch( Runnable job ) {
+			try {
+				executor.execute( job );
+				return true;
+			} catch (RejectedExecutionException e) {
+				return false;
+			}
+		}
+
+		@Override public void join() throws InterruptedException {
+			executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+		}
+
+		@Override public int getThreads() {
+			return executor.getPoolSize();
+		}
+
+		@Override public int getIdleThreads() {
+			return executor.getPoolSize() - executor.getActiveCount();
+		}
+
+		@Override public boolean isLowOnThreads() {
+			return executor.getActiveCount() >= MAX_THREADS - MIN_THREADS;
+		}
+
+		void shutdown() {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	    Answer the URL of the Elda context, without a trailing slash.
+	*/
+	public String baseURL() {
+		return "http://localhost:" + port + CONTEXT_PATH;
+	}
+
+	/**
+	    Stop the server and remove its temporary directory.
+	*/
+	public void stop() throws Exception {
+		server.stop();
+		((RecordingThreadPool) server.getThreadPool()).shutdown();
+		delete( base );
+	}
+
+	private static File createTempDirectory() throws IOException {
+		File f = File.createTempFile( "elda-loadtest-", "" );
+		if (!f.delete() || !f.mkdirs()) throw new IOException( "cannot create directory " + f );
+		return f;
+	}
+
+	private static void writeTo( File f, Model m ) throws IOException {
+		f.getParentFile().mkdirs();
+		OutputStream os = new FileOutputStream( f );
+		try { m.write( os, "Turtle" ); } finally { os.close(); }
+	}
+
+	private static void writeTo( File f, String content ) throws IOException {
+		Writer w = new OutputStreamWriter( new FileOutputStream( f ), "UTF-8" );
+		try { w.write( content ); } finally { w.close(); }
+	}
+
+	private static void delete( File f ) {
+		File [] children = f.listFiles();
+		if (children != null) for (File c: children) delete( c );
+		f.delete();
+	}
+}
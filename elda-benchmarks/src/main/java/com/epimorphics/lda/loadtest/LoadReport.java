@@ -0,0 +1,281 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.loadtest;
+
+import java.io.PrintStream;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.epimorphics.lda.cache.Cache;
+import com.epimorphics.lda.loadtest.RequestMix.Kind;
+import com.epimorphics.lda.support.statistics.Histogram;
+import com.epimorphics.lda.support.statistics.StripedCounter;
+
+/**
+    The measurements from one load-test run: request latencies (in
+    microseconds) overall and by request kind, errors, bytes received,
+    memory allocated and garbage collected in the JVM while the run
+    was in progress, and the change in each Elda cache's request and
+    hit counts.
+
+    <p>Client and server share the JVM, so the allocation attributed
+    to the server is that of all threads less that of the client
+    threads, which measure their own. Client threads and the server's
+    worker threads record their total allocation as they finish, so
+    what threads that end during the run allocated is still counted.</p>
+*/
+public class LoadReport {
+
+	final Histogram all = new Histogram( Histogram.HOUR * 1000 );
+
+	final Map<Kind, Histogram> byKind = new EnumMap<Kind, Histogram>( Kind.class );
+
+	final StripedCounter errors = new StripedCounter();
+
+	final StripedCounter bytes = new StripedCounter();
+
+	final StripedCounter clientAllocated = new StripedCounter();
+
+	long startNanos, endNanos;
+
+	long startAllocated, endAllocated;
+
+	long startGCs, endGCs, startGCMillis, endGCMillis;
+
+	Map<String, long[]> startCaches, endCaches;
+
+	public LoadReport() {
+		for (Kind k: Kind.values()) byKind.put( k, new Histogram( Histogram.HOUR * 1000 ) );
+	}
+
+	public void record( Kind k, long micros, long size, boolean ok ) {
+		all.record( micros );
+		byKind.get( k ).record( micros );
+		bytes.add( size );
+		if (!ok) errors.increment();
+	}
+
+	/**
+	    Note bytes allocated by a client thread during the run.
+	*/
+	public void clientAllocated( long n ) {
+		clientAllocated.add( n );
+	}
+
+	public void begin() {
+		startCaches = cacheCounts();
+		startAllocated = allAllocated();
+		startGCs = gcCount();
+		startGCMillis = gcMillis();
+		startNanos = System.nanoTime();
+	}
+
+	public void end() {
+		endNanos = System.nanoTime();
+		endGCMillis = gcMillis();
+		endGCs = gcCount();
+		endAllocated = allAllocated();
+		endCaches = cacheCounts();
+	}
+
+	public long requests() {
+		return all.count();
+	}
+
+	public double seconds() {
+		return (endNanos - startNanos) / 1e9;
+	}
+
+	public double throughput() {
+		return requests() / seconds();
+	}
+
+	public double errorRate() {
+		long n = requests();
+		return n == 0 ? 0 : errors.sum() / (double) n;
+	}
+
+	/**
+	    Answer the p99 latency over all requests, in milliseconds.
+	*/
+	public double p99Millis() {
+		return all.percentile( 99 ) / 1000.0;
+	}
+
+	/**
+	    Answer the bytes allocated by the server per second of the run,
+	    or -1 if the JVM cannot measure allocation.
+	*/
+	public double serverAllocationRate() {
+		if (startAllocated < 0 || endAllocated < 0) return -1;
+		return (endAllocated - startAllocated - clientAllocated.sum()) / seconds();
+	}
+
+	/**
+	    Answer the [requests, hits] made on each cache part during the run,
+	    keyed by "cache label/part".
+	*/
+	public Map<String, long[]> cacheDeltas() {
+		Map<String, long[]> result = new TreeMap<String, long[]>();
+		for (Map.Entry<String, long[]> e: endCaches.entrySet()) {
+			long [] before = startCaches.get( e.getKey() );
+			long [] after = e.getValue();
+			long requests = after[0] - (before == null ? 0 : before[0]);
+			long hits = after[1] - (before == null ? 0 : before[1]);
+			if (requests > 0) result.put( e.getKey(), new long[] { requests, hits } );
+		}
+		return result;
+	}
+
+	/**
+	    Write this report in human-readable form.
+	*/
+	public void render( PrintStream out ) {
+		long n = requests();
+		out.println( String.format
+			( "requests %d in %.1fs: %.1f req/s, %.1f KB/s, %d errors (%.2f%%)"
+			, n, seconds(), throughput(), bytes.sum() / 1024.0 / seconds(), errors.sum(), errorRate() * 100
+			) );
+		out.println( String.format( "%-10s %9s %9s %9s %9s %9s %9s", "latency", "count", "mean", "p50", "p95", "p99", "max" ) );
+		latencyLine( out, "all", all );
+		for (Map.Entry<Kind, Histogram> e: byKind.entrySet())
+			if (e.getValue().count() > 0) latencyLine( out, e.getKey().name(), e.getValue() );
+		out.println( "(latencies in milliseconds)" );
+		double rate = serverAllocationRate();
+		out.println( rate < 0
+			? "allocation: not measurable in this JVM"
+			: String.format
+				( "allocation: server %.1f MB/s, %.1f KB/request; client %.1f MB/s"
+				, rate / 1048576, n == 0 ? 0 : rate * seconds() / n / 1024, clientAllocated.sum() / seconds() / 1048576
+				) );
+		out.println( String.format( "gc: %d collections, %d ms", endGCs - startGCs, endGCMillis - startGCMillis ) );
+		Map<String, long[]> caches = cacheDeltas();
+		if (caches.isEmpty()) out.println( "caches: no lookups" );
+		for (Map.Entry<String, long[]> e: caches.entrySet()) {
+			long [] rh = e.getValue();
+			out.println( String.format( "cache %-40s %9d lookups %6.1f%% hits", e.getKey(), rh[0], 100.0 * rh[1] / rh[0] ) );
+		}
+	}
+
+	/**
+	    Answer the headline figures as properties, for a CI system to
+	    pick up and track between builds.
+	*/
+	public Properties asProperties() {
+		Properties p = new Properties();
+		p.setProperty( "requests", Long.toString( requests() ) );
+		p.setProperty( "errors", Long.toString( errors.sum() ) );
+		p.setProperty( "throughput", String.format( "%.2f", throughput() ) );
+		p.setProperty( "allocation.server.bytesPerSecond", String.format( "%.0f", serverAllocationRate() ) );
+		p.setProperty( "gc.millis", Long.toString( endGCMillis - startGCMillis ) );
+		putLatencies( p, "latency.all", all );
+		for (Map.Entry<Kind, Histogram> e: byKind.entrySet()) putLatencies( p, "latency." + e.getKey(), e.getValue() );
+		for (Map.Entry<String, long[]> e: cacheDeltas().entrySet()) {
+			long [] rh = e.getValue();
+			p.setProperty( "cache." + e.getKey() + ".hitRatio", String.format( "%.4f", rh[1] / (double) rh[0] ) );
+		}
+		return p;
+	}
+
+	private static void putLatencies( Properties p, String prefix, Histogram h ) {
+		if (h.count() == 0) return;
+		p.setProperty( prefix + ".p50", millis( h.percentile( 50 ) ) );
+		p.setProperty( prefix + ".p95", millis( h.percentile( 95 ) ) );
+		p.setProperty( prefix + ".p99", millis( h.percentile( 99 ) ) );
+	}
+
+	private static void latencyLine( PrintStream out, String name, Histogram h ) {
+		out.println( String.format
+			( "%-10s %9d %9s %9s %9s %9s %9s"
+			, name, h.count(), millis( h.mean() ), millis( h.percentile( 50 ) )
+			, millis( h.percentile( 95 ) ), millis( h.percentile( 99 ) ), millis( h.max() )
+			) );
+	}
+
+	private static String millis( long micros ) {
+		return String.format( "%.2f", micros / 1000.0 );
+	}
+
+	/**
+	    Answer the bytes allocated so far by the current thread, or -1
+	    if the JVM cannot say.
+	*/
+	public static long threadAllocated() {
+		ThreadMXBean t = ManagementFactory.getThreadMXBean();
+		if (t instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean st = (com.sun.management.ThreadMXBean) t;
+			if (st.isThreadAllocatedMemorySupported() && st.isThreadAllocatedMemoryEnabled())
+				return st.getThreadAllocatedBytes( Thread.currentThread().getId() );
+		}
+		return -1;
+	}
+
+	/**
+	    The total allocation of each thread that has recorded it on
+	    finishing, by thread id.
+	*/
+	static final ConcurrentMap<Long, Long> finishedThreads = new ConcurrentHashMap<Long, Long>();
+
+	/**
+	    Record the total allocation of the current thread, which is about
+	    to finish, so that it still counts once the thread has gone.
+	*/
+	public static void threadFinished() {
+		long n = threadAllocated();
+		if (n >= 0) finishedThreads.put( Thread.currentThread().getId(), n );
+	}
+
+	/**
+	    Answer the bytes allocated so far by all threads: the live ones
+	    and those that recorded their allocation on finishing.
+	*/
+	static long allAllocated() {
+		ThreadMXBean t = ManagementFactory.getThreadMXBean();
+		if (t instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean st = (com.sun.management.ThreadMXBean) t;
+			if (st.isThreadAllocatedMemorySupported() && st.isThreadAllocatedMemoryEnabled()) {
+				Map<Long, Long> finished = new HashMap<Long, Long>( finishedThreads );
+				long [] ids = st.getAllThreadIds();
+				long [] allocated = st.getThreadAllocatedBytes( ids );
+				long total = 0;
+				for (int i = 0; i < ids.length; i += 1)
+					if (allocated[i] > 0 && !finished.containsKey( ids[i] )) total += allocated[i];
+				for (long n: finished.values()) total += n;
+				return total;
+			}
+		}
+		return -1;
+	}
+
+	static long gcCount() {
+		long n = 0;
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max( 0, gc.getCollectionCount() );
+		return n;
+	}
+
+	static long gcMillis() {
+		long n = 0;
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max( 0, gc.getCollectionTime() );
+		return n;
+	}
+
+	static Map<String, long[]> cacheCounts() {
+		final Map<String, long[]> result = new HashMap<String, long[]>();
+		Cache.Registry.reportCounts( new Cache.CountReporter() {
+			@Override public void counts( String policy, String label, String part, long requests, long hits, long entries ) {
+				String key = label + "/" + part;
+				long [] already = result.get( key );
+				if (already == null) result.put( key, new long[] { requests, hits } );
+				else { already[0] += requests; already[1] += hits; }
+			}
+		});
+		return result;
+	}
+}
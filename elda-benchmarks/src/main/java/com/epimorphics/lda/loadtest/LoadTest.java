@@ -0,0 +1,204 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.loadtest;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epimorphics.lda.loadtest.RequestMix.Kind;
+
+/**
+    End-to-end load test: starts Elda in an embedded Jetty over a
+    generated dataset, replays a weighted mix of list, item, view and
+    format requests from a number of client threads for a warm-up
+    period and then a measured period, and reports throughput, latency
+    percentiles, allocation rate and cache hit ratios.
+
+    <p>Options are given as <code>--name=value</code>:</p>
+    <ul>
+    <li>items (1000): the number of bathing waters generated</li>
+    <li>store (tdb): where the data is held, <i>tdb</i> or <i>local</i></li>
+    <li>threads (8): the number of concurrent clients</li>
+    <li>warmup (10) and duration (30): the periods in seconds</li>
+    <li>mix (list:40,item:30,view:15,format:15): the weighted request mix</li>
+    <li>report: a file to which the headline figures are written as properties</li>
+    <li>min-throughput, max-p99 (milliseconds), max-error-rate (0): the gate</li>
+    </ul>
+
+    <p>If any gate condition fails the reasons are printed and the exit
+    status is 1, so the test can be used as a performance gate in CI
+    (see the <i>loadtest</i> profile of this module).</p>
+*/
+public class LoadTest {
+
+	static final Logger log = LoggerFactory.getLogger( LoadTest.class );
+
+	static final int MAX_LOGGED_ERRORS = 10;
+
+	final Map<String, String> options;
+
+	int loggedErrors = 0;
+
+	LoadTest( Map<String, String> options ) {
+		this.options = options;
+	}
+
+	public static void main( String [] args ) throws Exception {
+		LoadTest lt = new LoadTest( parse( args ) );
+		List<String> failures = lt.run( System.out );
+		for (String f: failures) System.out.println( "FAILED: " + f );
+		System.exit( failures.isEmpty() ? 0 : 1 );
+	}
+
+	/**
+	    Run the load test, writing the report to <code>out</code>, and
+	    answer the gate conditions that failed.
+	*/
+	public List<String> run( PrintStream out ) throws Exception {
+		int items = intOption( "items", 1000 );
+		EmbeddedElda.Store store = EmbeddedElda.Store.valueOf( option( "store", "tdb" ) );
+		int threads = intOption( "threads", 8 );
+		RequestMix mix = RequestMix.parse( option( "mix", "list:40,item:30,view:15,format:15" ), items );
+	//
+		log.info( "generating " + items + " items in " + store + " and starting Elda" );
+		EmbeddedElda elda = EmbeddedElda.start( items, store );
+		try {
+			log.info( "Elda running at " + elda.baseURL() + ", warming up" );
+			drive( elda.baseURL(), mix, threads, intOption( "warmup", 10 ), new LoadReport() );
+			log.info( "measuring" );
+			LoadReport report = new LoadReport();
+			report.begin();
+			drive( elda.baseURL(), mix, threads, intOption( "duration", 30 ), report );
+			report.end();
+		//
+			out.println( "Elda load test: " + items + " items (" + store + "), " + threads + " threads, mix " + mix );
+			report.render( out );
+			String reportFile = options.get( "report" );
+			if (reportFile != null) writeProperties( report.asProperties(), new File( reportFile ) );
+			return gate( report );
+		} finally {
+			elda.stop();
+		}
+	}
+
+	/**
+	    Answer descriptions of the gate conditions that <code>report</code>
+	    fails; the empty list if it passes.
+	*/
+	List<String> gate( LoadReport report ) {
+		List<String> failures = new ArrayList<String>();
+		double maxErrorRate = doubleOption( "max-error-rate", 0 );
+		if (report.errorRate() > maxErrorRate)
+			failures.add( String.format( "error rate %.4f exceeds %.4f", report.errorRate(), maxErrorRate ) );
+		if (options.containsKey( "min-throughput" )) {
+			double min = doubleOption( "min-throughput", 0 );
+			if (report.throughput() < min)
+				failures.add( String.format( "throughput %.1f req/s is below %.1f", report.throughput(), min ) );
+		}
+		if (options.containsKey( "max-p99" )) {
+			double max = doubleOption( "max-p99", 0 );
+			if (report.p99Millis() > max)
+				failures.add( String.format( "p99 latency %.2f ms exceeds %.2f", report.p99Millis(), max ) );
+		}
+		return failures;
+	}
+
+	/**
+	    Run <code>threads</code> clients against the server for
+	    <code>seconds</code> seconds, recording into <code>report</code>.
+	*/
+	void drive( final String base, final RequestMix mix, int threads, int seconds, final LoadReport report ) throws InterruptedException {
+		final long deadline = System.nanoTime() + seconds * 1000000000L;
+		Thread [] clients = new Thread[threads];
+		for (int i = 0; i < threads; i += 1) {
+			final Random r = new Random( 1000 + i );
+			clients[i] = new Thread( "loadtest-client-" + i ) {
+				@Override public void run() {
+					long allocatedBefore = LoadReport.threadAllocated();
+					while (System.nanoTime() < deadline) {
+						Kind k = mix.choose( r );
+						fetch( base + mix.pathFor( k, r ), k, report );
+					}
+					if (allocatedBefore >= 0) report.clientAllocated( LoadReport.threadAllocated() - allocatedBefore );
+					LoadReport.threadFinished();
+				}
+			};
+			clients[i].start();
+		}
+		for (Thread t: clients) t.join();
+	}
+
+	void fetch( String url, Kind k, LoadReport report ) {
+		long start = System.nanoTime();
+		long size = 0;
+		int status = 0;
+		try {
+			HttpURLConnection c = (HttpURLConnection) new URL( url ).openConnection();
+			status = c.getResponseCode();
+			InputStream in = status < 400 ? c.getInputStream() : c.getErrorStream();
+			if (in != null) size = drain( in );
+		} catch (IOException e) {
+			noteError( url, e.toString() );
+		}
+		boolean ok = status > 0 && status < 400;
+		if (status >= 400) noteError( url, "status " + status );
+		report.record( k, (System.nanoTime() - start) / 1000, size, ok );
+	}
+
+	private synchronized void noteError( String url, String what ) {
+		if (loggedErrors < MAX_LOGGED_ERRORS) log.warn( url + ": " + what );
+		if (++loggedErrors == MAX_LOGGED_ERRORS) log.warn( "(further errors not logged)" );
+	}
+
+	private static long drain( InputStream in ) throws IOException {
+		byte [] buffer = new byte[8192];
+		long total = 0;
+		try {
+			int n;
+			while ((n = in.read( buffer )) >= 0) total += n;
+		} finally {
+			in.close();
+		}
+		return total;
+	}
+
+	private static void writeProperties( Properties p, File f ) throws IOException {
+		OutputStream os = new FileOutputStream( f );
+		try { p.store( os, "Elda load test" ); } finally { os.close(); }
+	}
+
+	static Map<String, String> parse( String [] args ) {
+		Map<String, String> result = new HashMap<String, String>();
+		for (String arg: args) {
+			if (!arg.startsWith( "--" ) || arg.indexOf( '=' ) < 0)
+				throw new IllegalArgumentException( "expected --name=value, got '" + arg + "'" );
+			int eq = arg.indexOf( '=' );
+			String value = arg.substring( eq + 1 ).trim();
+			if (value.length() > 0) result.put( arg.substring( 2, eq ), value );
+		}
+		return result;
+	}
+
+	private String option( String name, String ifAbsent ) {
+		String value = options.get( name );
+		return value == null ? ifAbsent : value;
+	}
+
+	private int intOption( String name, int ifAbsent ) {
+		return Integer.parseInt( option( name, Integer.toString( ifAbsent ) ) );
+	}
+
+	private double doubleOption( String name, double ifAbsent ) {
+		return Double.parseDouble( option( name, Double.toString( ifAbsent ) ) );
+	}
+}
@@ -0,0 +1,124 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.loadtest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Random;
+
+import com.epimorphics.lda.exceptions.EldaException;
+
+/**
+    A weighted mix of request kinds, and the paths that each kind
+    generates against the fixture spec. Page and item numbers are
+    skewed towards the low end, so that (as with real traffic) some
+    requests repeat and some do not.
+*/
+public class RequestMix {
+
+	public enum Kind { list, item, view, format }
+
+	static final String [] VIEWS = { "summary", "all", "basic", "description" };
+
+	static final String [] FORMATS = { ".json", ".xml", ".ttl", ".rdf" };
+
+	final Kind [] kinds;
+
+	final int [] cumulative;
+
+	final int items;
+
+	final int pages;
+
+	RequestMix( Kind [] kinds, int [] weights, int items ) {
+		this.kinds = kinds;
+		this.cumulative = new int[weights.length];
+		int running = 0;
+		for (int i = 0; i < weights.length; i += 1) cumulative[i] = (running += weights[i]);
+		if (running == 0) EldaException.BadSpecification( "request mix has no weight" );
+		this.items = Math.max( 1, items );
+		this.pages = Math.max( 1, items / 10 );
+	}
+
+	/**
+	    Answer the mix described by <code>spec</code>, a comma-separated
+	    list of <i>kind</i>:<i>weight</i> entries, eg "list:40,item:30".
+	*/
+	public static RequestMix parse( String spec, int items ) {
+		String [] entries = spec.split( " *, *" );
+		Kind [] kinds = new Kind[entries.length];
+		int [] weights = new int[entries.length];
+		for (int i = 0; i < entries.length; i += 1) {
+			String [] kw = entries[i].split( ":" );
+			if (kw.length != 2) EldaException.BadSpecification( "bad request mix entry '" + entries[i] + "'" );
+			kinds[i] = Kind.valueOf( kw[0].trim() );
+			weights[i] = Integer.parseInt( kw[1].trim() );
+		}
+		return new RequestMix( kinds, weights, items );
+	}
+
+	public Kind [] kinds() {
+		return kinds.clone();
+	}
+
+	/**
+	    Answer a kind of request chosen according to the weights.
+	*/
+	public Kind choose( Random r ) {
+		int n = r.nextInt( cumulative[cumulative.length - 1] );
+		for (int i = 0; i < cumulative.length; i += 1) if (n < cumulative[i]) return kinds[i];
+		return kinds[kinds.length - 1];
+	}
+
+	/**
+	    Answer a path (relative to the Elda context) for a request of
+	    the given kind.
+	*/
+	public String pathFor( Kind k, Random r ) {
+		switch (k) {
+			case list:
+				switch (r.nextInt( 3 )) {
+					case 0: return "/bathing-water?_page=" + skewed( r, pages );
+					case 1: return "/bathing-water?district.label=" + encode( "District " + r.nextInt( 20 ) );
+					default: return "/bathing-water?min-sampleYear=" + (2000 + r.nextInt( 14 )) + "&_sort=-sampleYear";
+				}
+			case item:
+				return "/bathing-water/" + skewed( r, items );
+			case view:
+				return "/bathing-water?_view=" + VIEWS[r.nextInt( VIEWS.length )] + "&_page=" + skewed( r, pages );
+			case format:
+				String suffix = FORMATS[r.nextInt( FORMATS.length )];
+				return r.nextBoolean()
+					? "/bathing-water/" + skewed( r, items ) + suffix
+					: "/bathing-water" + suffix + "?_page=" + skewed( r, pages )
+					;
+		}
+		throw new IllegalArgumentException( "unknown request kind " + k );
+	}
+
+	private static int skewed( Random r, int n ) {
+		return r.nextInt( r.nextInt( n ) + 1 );
+	}
+
+	private static String encode( String s ) {
+		try {
+			return URLEncoder.encode( s, "UTF-8" );
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	@Override public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < kinds.length; i += 1) {
+			if (i > 0) sb.append( "," );
+			sb.append( kinds[i] ).append( ":" ).append( cumulative[i] - (i == 0 ? 0 : cumulative[i - 1]) );
+		}
+		return sb.toString();
+	}
+}
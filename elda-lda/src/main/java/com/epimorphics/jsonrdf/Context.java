@@ -52,6 +52,18 @@ public class Context implements ReadContext, Cloneable {
     
     protected boolean completedMappingTable = false;
     
+    /**
+        True once this context has been frozen; its maps and property
+        records are then read-only.
+    */
+    protected boolean frozen = false;
+    
+    /**
+        Incremented whenever the name mappings change, so that anything
+        derived from them can tell when it must be recomputed.
+    */
+    protected volatile int generation = 0;
+    
     @Override public String toString() {
     	return "context:"
     		+ "\nuriToProp: " + uriToProp
@@ -97,6 +109,11 @@ public class Context implements ReadContext, Cloneable {
     			result.uriToProp.put( e.getKey(), e.getValue().clone() );
     		}
     		result.nameToURI = new HashMap<String, String>( nameToURI );
+    		result.allMap = new HashMap<String, Set<String>>();
+    		for (Map.Entry<String, Set<String>> e: allMap.entrySet()) {
+    			result.allMap.put( e.getKey(), new HashSet<String>( e.getValue() ) );
+    		}
+    		result.frozen = false;
     		return result;
     	} catch (CloneNotSupportedException e) {
             throw new RuntimeException("Can't happen :)", e);
@@ -104,6 +121,35 @@ public class Context implements ReadContext, Cloneable {
     }
 
     
+    /**
+        Freeze this context. Its mapping table is completed and its maps
+        and property records become read-only, so that it can be shared
+        by concurrent renderings without copying. Properties it does not
+        know must then be given records by a per-rendering overlay (see
+        PropertyInfoView) rather than by findProperty. A clone of a frozen
+        context is not frozen.
+    */
+    public synchronized void freeze() {
+    	if (!frozen) {
+    		completeContext();
+    		for (ContextPropertyInfo prop: uriToProp.values()) prop.freeze();
+    		uriToProp = Collections.unmodifiableMap( uriToProp );
+    		uriToName = Collections.unmodifiableMap( uriToName );
+    		nameToURI = Collections.unmodifiableMap( nameToURI );
+    		allMap = Collections.unmodifiableMap( allMap );
+    		frozen = true;
+    	}
+    }
+    
+    /** True iff this context has been frozen */
+    public boolean isFrozen() {
+    	return frozen;
+    }
+    
+    private void checkNotFrozen( String what ) {
+    	if (frozen) throw new IllegalStateException( "cannot " + what + ": this Context is frozen" );
+    }
+    
     public void loadVocabularyAnnotations(Set<String> seen, Model m) {
         loadVocabularyAnnotations(seen, m, m);
     }
@@ -188,7 +234,7 @@ public class Context implements ReadContext, Cloneable {
      * Will only be used when expanding queries, not for generation of shortform listings
      */
     protected void recordAltName(String name, String uri) {
-        if (!nameToURI.containsKey(name)) nameToURI.put(name, uri);
+        if (!nameToURI.containsKey(name)) { nameToURI.put(name, uri); generation += 1; }
     }
     
     protected void recordAltName(String uri, PrefixMapping pm) {
@@ -212,6 +258,7 @@ public class Context implements ReadContext, Cloneable {
         	recordShortname(name, uri);
             nameToURI.put(name, uri);
             uriToName.put(uri, name);
+            generation += 1;
             ContextPropertyInfo prop = uriToProp.get(uri);
             if (prop != null && !prop.getName().equals(name)) {
                 prop.setName(name);
@@ -237,6 +284,7 @@ public class Context implements ReadContext, Cloneable {
     protected void completeContext() {
         if ( !completedMappingTable ) {
             completedMappingTable = true;
+            generation += 1;
             for (Map.Entry<String, String> e : nameToURI.entrySet()) {
                 String uri = e.getValue();
                 String name = e.getKey();
@@ -270,11 +318,13 @@ public class Context implements ReadContext, Cloneable {
 
     /** Set the base URI */
     public void setBase(String base) {
+    	checkNotFrozen( "set the base" );
         this.base = base;
     }
     
     /** Set flag to indicate if properties should be sorted in the encoding */
     public void setSorted(boolean sorted) {
+    	checkNotFrozen( "change sorting" );
         this.sortProperties = sorted;
     }
     
@@ -282,6 +332,14 @@ public class Context implements ReadContext, Cloneable {
         return sortProperties;
     }
     
+    /**
+        The generation of this context's name mappings; it changes
+        whenever they do.
+    */
+    public int generation() {
+        return generation;
+    }
+    
     /** The set of all mapped names */
     public Set<String> preferredNames() {
     	return new HashSet<String>( uriToName.values() );
@@ -303,6 +361,12 @@ public class Context implements ReadContext, Cloneable {
         return uriToName.get(uri);
     }
     
+    /** True iff p has a record or a name, so findProperty(p) need invent none */
+    @Override public boolean hasSettledName(Property p) {
+        String uri = p.getURI();
+        return getPropertyByURI(uri) != null || getNameForURI(uri) != null;
+    }
+    
     public String forceShorten( String uri ) {
     	String shorter = allPrefixes.shortForm( uri );
     	return shorter.equals( uri ) ? null : shorter.replace( ':', '_' );
@@ -340,6 +404,7 @@ public class Context implements ReadContext, Cloneable {
         String uri = p.getURI();
         ContextPropertyInfo prop = getPropertyByURI(uri);
         if (prop == null) {
+        	checkNotFrozen( "add a record for " + uri );
             if (name == null) name = findNameForProperty(p);
             prop = getPropertyByURI(uri);
             if (prop == null) {
@@ -16,6 +16,7 @@ public class ContextPropertyInfo implements Comparable<ContextPropertyInfo>, Clo
     protected boolean structured = false;    
     protected String type = null;
     protected Property p;
+    protected boolean frozen = false;
 
     @Override public boolean equals( Object other) {
     	return other instanceof ContextPropertyInfo && same( (ContextPropertyInfo) other );
@@ -73,20 +74,37 @@ public class ContextPropertyInfo implements Comparable<ContextPropertyInfo>, Clo
     */
     @Override public ContextPropertyInfo clone() {
     	try { 
-    		return (ContextPropertyInfo) super.clone();
+    		ContextPropertyInfo result = (ContextPropertyInfo) super.clone();
+    		result.frozen = false;
+    		return result;
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException( "Cannot happen." );
 		}
     }
     
+    /**
+        Make this record read-only: its setters will throw
+        IllegalStateException and addType does nothing. Used when its
+        Context is frozen.
+    */
+    void freeze() {
+    	frozen = true;
+    }
+    
+    private void checkNotFrozen() {
+    	if (frozen) throw new IllegalStateException( "the record for " + uri + " is frozen" );
+    }
+    
     public boolean isHidden() {
         return hidden;
     }
 	public void setHidden(boolean hidden) {
+        checkNotFrozen();
         this.hidden = hidden;
     }
 
     public void setStructured(boolean b) {
+		checkNotFrozen();
 		this.structured = b;			
 	}
     
@@ -120,20 +138,25 @@ public class ContextPropertyInfo implements Comparable<ContextPropertyInfo>, Clo
     }
     
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
     public void setMultivalued(boolean multivalued) {
+        checkNotFrozen();
         this.multivalued = multivalued;
     }
 
     public void setType(String type) {
+        checkNotFrozen();
         this.type = type;
     }
     
-    /** Record the type of a sample value, if there is a clash with prior type then default to rdfs:Resource */
+    /** Record the type of a sample value, if there is a clash with prior type then default to rdfs:Resource.
+        A frozen record keeps its declared type, so that what one rendering sees does not affect the next. */
     // Only called from JSON renderer, would like to eliminate its use if possible ...
     public void addType(RDFNode value) {
+        if (frozen) return;
         if (type == null) {
             type = decideType(value);
         } else {
@@ -177,6 +200,7 @@ public class ContextPropertyInfo implements Comparable<ContextPropertyInfo>, Clo
     
     /** Get the corresponding RDF property, may cache */
     public Property getProperty(Model m) {
+        if (frozen) return m.getProperty(uri);
         if (p == null) {
             p = m.getProperty(uri);
         }
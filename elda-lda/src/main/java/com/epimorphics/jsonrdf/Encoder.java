@@ -15,14 +15,18 @@ package com.epimorphics.jsonrdf;
 import static com.epimorphics.jsonrdf.RDFUtil.getLexicalForm;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.apache.jena.atlas.json.JsonObject;
 import org.codehaus.jettison.json.JSONException;
 
 import com.epimorphics.jsonrdf.impl.EncoderDefault;
 import com.epimorphics.lda.vocabularies.API;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.rdf.model.*;
 import com.hp.hpl.jena.util.OneToManyMap;
@@ -212,6 +216,74 @@ public class Encoder {
         return jwo.getTopObject();
     }
     
+    /**
+     * Encode the given list of resources from the given model, plus any resources that those
+     * roots reference, where the cyclic resources of the model are already known.
+     * @param model The RDF to be encoded
+     * @param roots the root resources from which encoding should start
+     * @param cyclics the resources of the model that lie on cycles
+     * @param writer The output writer, ideally platform neutral charset like UTF-8
+     * @param pretty set to true to pretty-print the json
+     */
+    public void encodeRecursive(Model model, List<Resource> roots, Set<Resource> cyclics, Writer writer, boolean pretty) {
+        EncoderInstance ei = new EncoderInstance(model, new JSONWriterWrapper( writer, pretty ));
+        ei.knownCyclics = cyclics;
+        ei.encodeSingleModelRoots(roots, true);
+    }
+    
+    /**
+     * As encodeRecursive(model, roots, cyclics, writer, pretty), encoding the api:items
+     * of a list page in parallel runs where <code>parallel</code> allows it and the
+     * output would be the same as encoding them in order.
+     * @param parallel how items may be encoded in parallel; null for sequential encoding
+     * @return how the encoding time was spent
+     */
+    public ParallelEncoding.Timing encodeRecursive(Model model, List<Resource> roots, Set<Resource> cyclics, Writer writer, boolean pretty, ParallelEncoding parallel) {
+        ParallelEncoding.Timing timing = new ParallelEncoding.Timing();
+        if (parallel == null) timing.sequentialBecause = "not enabled";
+        long start = System.nanoTime();
+        EncoderInstance ei = new EncoderInstance(model, new JSONWriterWrapper( writer, pretty ));
+        ei.knownCyclics = cyclics;
+        ei.parallel = parallel;
+        ei.timing = timing;
+        ei.encodeSingleModelRoots(roots, true);
+        timing.totalNanos = System.nanoTime() - start;
+        return timing;
+    }
+    
+    /**
+     * Encode each of <code>items</code>, and what it references, as a JSON object
+     * on a line of its own with no header, as JSON Lines. Each item is encoded
+     * as if it were the only one, but the model's blank nodes are indexed once.
+     * @param model The RDF to be encoded
+     * @param items the resources to write, one per line
+     * @param cyclics the resources of the model that lie on cycles
+     * @param writer The output writer, ideally platform neutral charset like UTF-8
+     */
+    public void encodeLines(Model model, List<Resource> items, Set<Resource> cyclics, Writer writer) throws IOException {
+        EncoderInstance shared = new EncoderInstance(model, (JSONWriterFacade) null);
+        shared.knownCyclics = cyclics;
+        shared.topItems = new HashSet<Resource>();
+        StringWriter line = new StringWriter();
+        for (Resource item: items) {
+            line.getBuffer().setLength(0);
+            JSONWriterWrapper jw = new JSONWriterWrapper(line);
+            if (model.contains(item, null, (RDFNode) null)) {
+                shared.chunkInstance(model, jw).encode(item);
+            } else {
+                // an item with no description is still an object
+                jw.object().key(rules.getPNResourceID()).value(rules.encodeResourceURI(item.getURI(), context, false)).endObject();
+            }
+            // the writer's only line breaks are between tokens
+            StringBuffer sb = line.getBuffer();
+            for (int i = 0; i < sb.length(); i += 1) {
+                char ch = sb.charAt(i);
+                if (ch != '\n') writer.write(ch);
+            }
+            writer.write('\n');
+        }
+    }
+    
     protected void encodeRecursive(Model model, List<Resource>roots, JSONWriterFacade jw) {
         EncoderInstance ei = new EncoderInstance(model, jw);
         ei.encodeSingleModelRoots(roots, true);
@@ -284,15 +356,34 @@ public class Encoder {
         protected static final boolean nestResources = true;     // Could be another config option
 		protected static final boolean deferSharedBNodes = false;  // Could be another another config option
         
-        // When nesting we need cycle detection
+        // When nesting we need cycle detection: the resources being encoded
+        // on the current path, and those known to be (or not be) on a cycle
         protected Set<Resource> cycles;
         protected Set<Resource> noCycles;
-        protected Map<Resource, Set<Resource>> visitedFrom;
+        protected Set<Resource> onPath;
+        
+        // The blank nodes that are the object of statements with more than
+        // one subject in indexedModel, found in one pass over it
+        protected Set<Node> multiplyReferenced;
+        protected Model indexedModel;
+        
+        // If not null, the resources of the model that lie on cycles; no
+        // other resource can be met again while it is being encoded
+        protected Set<Resource> knownCyclics;
         
         protected ArrayList<RDFList> topItemLists=null;
         protected HashSet<Resource>  topItems=null;
         protected long depth = 0;
         
+        // If not null, how the root's api:items may be encoded in parallel,
+        // and where to record what was done
+        protected ParallelEncoding parallel;
+        protected ParallelEncoding.Timing timing;
+        
+        // False when encoding a run of items alongside others, when the
+        // shared property records must not be updated
+        protected boolean recordTypes = true;
+        
         
         // When not nesting just track visits
         protected Set<Resource> encoded;
@@ -320,7 +411,7 @@ public class Encoder {
                 if (nestResources) {
                     cycles = new HashSet<Resource>();
                     noCycles = new HashSet<Resource>();
-                    visitedFrom = new HashMap<Resource, Set<Resource>>();
+                    onPath = new HashSet<Resource>();
                 } else {
                     encoded = new HashSet<Resource>();
                 }
@@ -382,16 +473,12 @@ public class Encoder {
                         } else if (noCycles.contains(r)) {
                             return true;
                         }
-                        if (markAsEncoded) {
-                            if (visitedFrom.containsKey(r)) {
+                        if (markAsEncoded && (knownCyclics == null || knownCyclics.contains(r))) {
+                            if (!onPath.add(r)) {
+                                // r is already being encoded further up the path
                                 cycles.add(r);
-                                visitedFrom.remove(r);
+                                onPath.remove(r);
                                 return false;
-                            } else {
-                                // Update visit records for the cycles we are tracking
-                                for (Set<Resource> s : visitedFrom.values())
-                                    s.add(r);
-                                visitedFrom.put(r, new HashSet<Resource>());
                             }
                         }
                         return true;
@@ -411,7 +498,7 @@ public class Encoder {
         
         private void markVisitcompleted(Resource r) {
             if (recurseOverResources && nestResources) {
-                visitedFrom.remove(r);
+                onPath.remove(r);
                 noCycles.add(r);
             }
         }
@@ -533,16 +620,13 @@ public class Encoder {
 		}
 
 		private List<Property> getSortedProperties(OneToManyMap<Property, RDFNode> vals) {
-			List<Property> props = new ArrayList<Property>(vals.keySet());
             if (context.isSortProperties()) {
-                Collections.sort(props, new Comparator<Property>() {
-                    @Override
-                    public int compare(Property p1, Property p2) {
-                        return context.findProperty(p1).compareTo(context.findProperty(p2));
-                    }
-                });
+            	List<Keyed<Property>> keyed = new ArrayList<Keyed<Property>>(vals.keySet().size());
+            	for (Property p : vals.keySet()) 
+            		keyed.add(new Keyed<Property>(context.findProperty(p).getName(), p));
+            	return Keyed.sortedItems(keyed);
             }
-			return props;
+			return new ArrayList<Property>(vals.keySet());
 		}
 		
         private void writePropertyValues( OneToManyMap<Property, RDFNode> vals, Property p, ContextPropertyInfo prop ) {                
@@ -550,22 +634,20 @@ public class Encoder {
             boolean multi = prop.isMultivalued();
             boolean isStructured = prop.isStructured();
             RDFNode first = i.next();
-            prop.addType(first);
+            if (recordTypes) prop.addType(first);
             if (!i.hasNext() && !multi) {
                 // just emit single value
             	jw.key(prop.getSerialisationName());
                 emitNode(first, isStructured);
             } else {
                 // Emit as array, do so with sorting
-                List<RDFNode> nvals = new ArrayList<RDFNode>();
-                nvals.add(first);
-                while (i.hasNext()) nvals.add(i.next());
-                Collections.sort(nvals, new Comparator<RDFNode>() {
-                    @Override
-                    public int compare(RDFNode arg0, RDFNode arg1) {
-                        return getLexicalForm(arg0).compareTo(getLexicalForm(arg1));
-                    }
-                });
+                List<Keyed<RDFNode>> keyed = new ArrayList<Keyed<RDFNode>>();
+                keyed.add(new Keyed<RDFNode>(getLexicalForm(first), first));
+                while (i.hasNext()) {
+                	RDFNode n = i.next();
+                	keyed.add(new Keyed<RDFNode>(getLexicalForm(n), n));
+                }
+                List<RDFNode> nvals = Keyed.sortedItems(keyed);
             	jw.key(prop.getSerialisationName());
                 jw.array();
                 for (RDFNode node : nvals) {
@@ -581,6 +663,7 @@ public class Encoder {
             } else {
                 Resource r = (Resource)valNode;
                 if (RDFUtil.isList(r)) {
+                	if (parallel != null && depth == 1 && isTopItemList(r) && emitItemsInParallel(r, isStructured)) return;
                 	jw.array();
                 	while (!r.equals(RDF.nil)) {
             			Statement first = r.getProperty( RDF.first );
@@ -612,6 +695,182 @@ public class Encoder {
             }
         }
 
+        private boolean isTopItemList(Resource r) {
+            for (RDFList list : topItemLists) 
+                if (list.asNode().equals(r.asNode())) return true;
+            return false;
+        }
+        
+        /**
+            Emit the api:items list <code>list</code> of the root, encoding
+            runs of its items in parallel, and answer true; or, if the items
+            are too few, the pool is busy, or the output might differ from
+            encoding them in order, emit nothing, record why, and answer false.
+        */
+        private boolean emitItemsInParallel(Resource list, final boolean isStructured) {
+            List<RDFNode> items = listElements(list);
+            List<Integer> starts = chunkStarts(items);
+            String reason = 
+                items.size() < parallel.minItems ? "fewer than " + parallel.minItems + " items"
+                : !(jw instanceof JSONWriterWrapper) ? "not writing a stream"
+                : knownCyclics == null ? "cycles not known"
+                : starts.size() < 2 ? "no place to divide the items"
+                : checkIndependent(items)
+                ;
+            if (reason == null && !parallel.hasRoomFor(starts.size() - 1)) reason = "encoder pool busy";
+            if (reason != null) {
+                timing.sequentialBecause = reason;
+                return false;
+            }
+        //
+            long start = System.nanoTime();
+            JSONWriterWrapper main = (JSONWriterWrapper) jw;
+            jw.array();
+            List<FutureTask<String>> tasks = new ArrayList<FutureTask<String>>();
+            List<JSONWriterWrapper> writers = new ArrayList<JSONWriterWrapper>();
+            try {
+                for (int k = 1; k < starts.size(); k += 1) {
+                    final StringWriter sw = new StringWriter();
+                    JSONWriterWrapper cw = main.continuationAfterObject(sw);
+                    final EncoderInstance chunk = chunkInstance(ModelFactory.createModelForGraph(model.getGraph()), cw);
+                    final List<RDFNode> run = items.subList(starts.get(k), k + 1 < starts.size() ? starts.get(k + 1) : items.size());
+                    FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+                        @Override public String call() {
+                            chunk.emitItems(run, isStructured);
+                            return sw.toString();
+                        }
+                    });
+                    tasks.add(task);
+                    writers.add(cw);
+                    try { parallel.executor.execute(task); } 
+                    catch (RejectedExecutionException e) { task.run(); }
+                }
+                chunkInstance(model, jw).emitItems(items.subList(0, starts.get(1)), isStructured);
+                for (int k = 0; k < tasks.size(); k += 1) 
+                    main.append(writers.get(k), resultOf(tasks.get(k)));
+            } finally {
+                for (FutureTask<String> task: tasks) task.cancel(true);
+            }
+            jw.endArray();
+            timing.chunks = starts.size();
+            timing.parallelNanos = System.nanoTime() - start;
+            return true;
+        }
+        
+        private void emitItems(List<RDFNode> run, boolean isStructured) {
+            for (RDFNode item: run) emitNode(item.inModel(model), isStructured);
+        }
+        
+        private String resultOf(FutureTask<String> task) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EncodingException("interrupted while encoding items", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new EncodingException(cause.getMessage(), cause);
+            }
+        }
+        
+        /**
+            The elements of the RDF list <code>r</code>, as emitNode walks it.
+        */
+        private List<RDFNode> listElements(Resource r) {
+            List<RDFNode> result = new ArrayList<RDFNode>();
+            while (!r.equals(RDF.nil)) {
+                Statement first = r.getProperty( RDF.first );
+                Statement rest = r.getProperty( RDF.rest );
+                if (first != null) result.add( first.getObject() );
+                if (rest == null) break;
+                r = rest.getResource();
+            }
+            return result;
+        }
+        
+        /**
+            Answer where the runs of items start, as near as possible to
+            parallel.chunks even runs: the first at 0, and every other just
+            after an item that is encoded as an object, since that is the
+            state a continuation writer starts in.
+        */
+        private List<Integer> chunkStarts(List<RDFNode> items) {
+            List<Integer> starts = new ArrayList<Integer>();
+            starts.add(0);
+            int size = (items.size() + parallel.chunks - 1) / parallel.chunks;
+            for (int k = 1; k < parallel.chunks; k += 1) {
+                int s = Math.max(k * size, starts.get(starts.size() - 1) + 1);
+                while (s < items.size() && !encodesAsObject(items.get(s - 1))) s += 1;
+                if (s >= items.size()) break;
+                starts.add(s);
+            }
+            return starts;
+        }
+        
+        private boolean encodesAsObject(RDFNode item) {
+            if (item.isLiteral() || RDFUtil.isList(item)) return false;
+            Resource r = (Resource) item;
+            return r.isAnon() || model.contains(r, null, (RDFNode) null);
+        }
+        
+        /**
+            Answer why encoding the items in separate runs might change the
+            output, or null if it cannot: it can if the items reach a
+            resource on a cycle (whether it is expanded depends on what was
+            encoded before), a shared blank node that has no id yet (ids
+            are given in order), or a property whose name is not settled
+            (names are invented in order). If it cannot, make sure every
+            property the items reach has its record, so that the runs
+            only read the context.
+        */
+        private String checkIndependent(List<RDFNode> items) {
+            Set<Resource> seen = new HashSet<Resource>();
+            List<Resource> pending = new ArrayList<Resource>();
+            for (RDFNode item: items) 
+                if (item.isResource() && seen.add((Resource) item)) pending.add((Resource) item);
+            Set<Property> properties = new HashSet<Property>();
+            while (!pending.isEmpty()) {
+                Resource r = pending.remove(pending.size() - 1);
+                if (knownCyclics.contains(r)) return "items reach a cycle";
+                if (r.isAnon() && isMultiplyReferencedbNode(r) && !seenbNode(r)) return "items share blank nodes";
+                for (StmtIterator si = r.listProperties(); si.hasNext(); ) {
+                    Statement s = si.next();
+                    properties.add(s.getPredicate());
+                    RDFNode o = s.getObject();
+                    if (o.isResource() && seen.add((Resource) o)) pending.add((Resource) o);
+                }
+            }
+            for (Property p: properties) 
+                if (!context.hasSettledName(p)) return "property names not settled";
+            for (Property p: properties) context.findProperty(p);
+            return null;
+        }
+        
+        /**
+            An instance that encodes a run of items into <code>w</code>
+            from <code>m</code>, starting from this instance's state, which
+            it shares only where it will not change.
+        */
+        private EncoderInstance chunkInstance(Model m, JSONWriterFacade w) {
+            if (indexedModel != model) indexReferences();
+            EncoderInstance result = new EncoderInstance(m, w);
+            result.recurseOverResources = true;
+            result.cycles = new HashSet<Resource>();
+            result.noCycles = new HashSet<Resource>();
+            result.onPath = new HashSet<Resource>();
+            result.knownCyclics = knownCyclics;
+            result.topItemLists = topItemLists;
+            result.topItems = topItems;
+            result.depth = depth;
+            result.bNodes = new HashMap<AnonId, Integer>(bNodes);
+            result.bnodeCount = bnodeCount;
+            result.multiplyReferenced = multiplyReferenced;
+            result.indexedModel = m;
+            result.recordTypes = false;
+            return result;
+        }
+        
         private int bNodeIdFor(Resource r) {
             AnonId id = r.getId();
             Integer shortId = bNodes.get( id );
@@ -627,14 +886,61 @@ public class Encoder {
         }
 
         private boolean isMultiplyReferencedbNode(Resource r) {
-            ResIterator ri = model.listSubjectsWithProperty(null, r);
-            boolean multiRef = false;
-            if (ri.hasNext()) {
-                ri.next();
-                multiRef = ri.hasNext();
+            if (indexedModel != model) indexReferences();
+            return multiplyReferenced.contains(r.asNode());
+        }
+        
+        /**
+            Find the blank nodes of the current model that are the object
+            of statements with two or more different subjects.
+        */
+        private void indexReferences() {
+            Map<Node, Node> referrer = new HashMap<Node, Node>();
+            multiplyReferenced = new HashSet<Node>();
+            ExtendedIterator<Triple> it = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    Node o = t.getObject();
+                    if (o.isBlank()) {
+                        Node S = t.getSubject();
+                        Node previous = referrer.put(o, S);
+                        if (previous != null && !previous.equals(S)) multiplyReferenced.add(o);
+                    }
+                }
+            } finally {
+                it.close();
             }
-            ri.close();
-            return multiRef;
+            indexedModel = model;
+        }
+    }
+    
+    /**
+        An item paired with the string it sorts by, so that the string
+        is computed once per item rather than once per comparison.
+    */
+    static class Keyed<T> implements Comparable<Keyed<T>> {
+        final String key;
+        final T item;
+        
+        Keyed(String key, T item) {
+            this.key = key;
+            this.item = item;
+        }
+        
+        @Override public int compareTo(Keyed<T> other) {
+            return key.compareTo(other.key);
+        }
+        
+        /**
+            Answer the items of <code>keyed</code> in key order; items
+            with equal keys keep their relative order.
+        */
+        static <T> List<T> sortedItems(List<Keyed<T>> keyed) {
+            Collections.sort(keyed);
+            List<T> result = new ArrayList<T>(keyed.size());
+            for (Keyed<T> k : keyed) result.add(k.item);
+            return result;
         }
     }
 }
@@ -39,9 +39,29 @@ public class JSONWriterWrapper implements JSONWriterFacade {
         jw = new JSStreamingWriter(writer);
     }
         
+    protected JSONWriterWrapper(JSStreamingWriter jw) {
+        this.jw = jw;
+    }
+        
     public void setPrettyPrint(boolean pretty) {
     }
     
+    /**
+     * Answer a wrapper writing to <code>writer</code> in the state this one
+     * will be in just after it has finished an object inside the current array.
+     */
+    public JSONWriterWrapper continuationAfterObject(Writer writer) {
+        return new JSONWriterWrapper(jw.continuationAfterObject(writer));
+    }
+    
+    /**
+     * Append <code>text</code>, the output of <code>continuation</code>, and
+     * carry on from where it finished.
+     */
+    public void append(JSONWriterWrapper continuation, String text) {
+        jw.append(continuation.jw, text);
+    }
+    
     @Override public JSONWriterFacade array() {
         try {
             jw.startArray();
@@ -0,0 +1,121 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.jsonrdf;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+    How the Encoder may encode the api:items of a list page in parallel:
+    in at most <code>chunks</code> contiguous runs of items, the first in
+    the calling thread and the others in <code>executor</code>, when
+    there are at least <code>minItems</code> items. The executor's queue
+    is bounded; when it has no room for the chunks the page is encoded
+    sequentially, as it is when parallel encoding could change the output.
+*/
+public class ParallelEncoding {
+
+	/** The number of items below which a page is always encoded sequentially */
+	public static final int DEFAULT_MIN_ITEMS = 500;
+
+	final int chunks;
+	final int minItems;
+	final ThreadPoolExecutor executor;
+
+	public ParallelEncoding( int chunks, int minItems, ThreadPoolExecutor executor ) {
+		this.chunks = chunks;
+		this.minItems = minItems;
+		this.executor = executor;
+	}
+
+	/**
+	    Answer a ParallelEncoding using the pool shared by all encodings,
+	    or null if <code>chunks</code> is less than 2, ie encoding is to be
+	    sequential.
+	*/
+	public static ParallelEncoding withSharedPool( int chunks, int minItems ) {
+		return chunks < 2 ? null : new ParallelEncoding( chunks, minItems, sharedPool() );
+	}
+
+	private static ThreadPoolExecutor shared;
+
+	/**
+	    The pool shared by all encodings: one daemon thread per processor,
+	    and a queue of four tasks per thread.
+	*/
+	static synchronized ThreadPoolExecutor sharedPool() {
+		if (shared == null) shared = newPool( Runtime.getRuntime().availableProcessors() );
+		return shared;
+	}
+
+	/**
+	    A pool of <code>threads</code> daemon threads whose queue holds
+	    four tasks per thread.
+	*/
+	public static ThreadPoolExecutor newPool( int threads ) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory daemons = new ThreadFactory() {
+			@Override public Thread newThread( Runnable r ) {
+				Thread t = new Thread( r, "elda-json-encoder-" + count.incrementAndGet() );
+				t.setDaemon( true );
+				return t;
+			}
+		};
+		return new ThreadPoolExecutor
+			( threads, threads, 60, TimeUnit.SECONDS
+			, new ArrayBlockingQueue<Runnable>( threads * 4 )
+			, daemons
+			);
+	}
+
+	/**
+	    True iff the executor's queue has room for <code>tasks</code> more
+	    tasks.
+	*/
+	boolean hasRoomFor( int tasks ) {
+		return executor.getQueue().remainingCapacity() >= tasks;
+	}
+
+	/**
+	    What happened when a model was encoded: how long was spent encoding
+	    the items in parallel and how long in the sequential parts, and
+	    if the items were encoded sequentially, why.
+	*/
+	public static class Timing {
+
+		long totalNanos;
+		long parallelNanos;
+		int chunks;
+		String sequentialBecause = "not a list page";
+
+		/** The number of chunks the items were encoded in, 0 if sequential */
+		public int chunks() {
+			return chunks;
+		}
+
+		public long parallelNanos() {
+			return parallelNanos;
+		}
+
+		public long serialNanos() {
+			return totalNanos - parallelNanos;
+		}
+
+		/** Why the items were encoded sequentially, or null if they were not */
+		public String sequentialBecause() {
+			return chunks == 0 ? sequentialBecause : null;
+		}
+
+		@Override public String toString() {
+			return chunks == 0
+				? String.format( "sequential (%s): %.3fms", sequentialBecause, totalNanos / 1000000.0 )
+				: String.format( "serial %.3fms, parallel %.3fms in %d chunks", serialNanos() / 1000000.0, parallelNanos / 1000000.0, chunks )
+				;
+		}
+	}
+}
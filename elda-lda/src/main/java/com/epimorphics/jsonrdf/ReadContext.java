@@ -11,6 +11,13 @@ public interface ReadContext {
 
 	public ContextPropertyInfo findProperty(Property p);
 	
+	/**
+	    True iff findProperty(p) answers the same record, with the same name,
+	    whenever it is first asked: p already has a record, or a name that
+	    need not be invented, so the order properties are met in is irrelevant.
+	*/
+	public boolean hasSettledName(Property p);
+	
 	public boolean isSortProperties();
 	
 	public String getNameForURI(String uri);
@@ -265,6 +265,36 @@ public class IndentedWriter
     
     public boolean atLineStart() { return startingNewLine ; }
     
+    /** A writer onto <code>writer</code> with this writer's settings and
+     *  current indent, positioned at the start of a fresh line: text
+     *  written to it is what this writer would write from that position.
+     */
+    public IndentedWriter continuationAtLineStart(Writer writer)
+    {
+        IndentedWriter result = new IndentedWriter(writer, lineNumbers) ;
+        result.unitIndent = unitIndent ;
+        result.currentIndent = currentIndent ;
+        result.padChar = padChar ;
+        result.padString = padString ;
+        result.flatMode = flatMode ;
+        result.lastChar = '\n' ;
+        return result ;
+    }
+    
+    /** Append <code>text</code>, written by <code>continuation</code>
+     *  from the position this writer is now in, without re-indenting it,
+     *  and take up the position <code>continuation</code> finished in.
+     */
+    public void append(IndentedWriter continuation, String text)
+    {
+        write(text) ;
+        row += continuation.row - 1 ;
+        column = continuation.column ;
+        currentIndent = continuation.currentIndent ;
+        startingNewLine = continuation.startingNewLine ;
+        lastChar = continuation.lastChar ;
+    }
+    
     private void lineStart()
     {
         if ( flatMode )
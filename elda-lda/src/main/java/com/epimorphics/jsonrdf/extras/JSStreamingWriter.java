@@ -47,6 +47,31 @@ public class JSStreamingWriter {
     
     boolean needsComma = false;
     
+    /**
+        A writer onto <code>w</code> in the state this writer will be in
+        just after it has finished an object inside the current array:
+        what it writes is what this writer would write from there on.
+    */
+    public JSStreamingWriter continuationAfterObject(Writer w)
+    {
+        JSStreamingWriter result = new JSStreamingWriter(out.continuationAtLineStart(w));
+        result.openerStack.addAll(openerStack);
+        result.needsComma = true;
+        return result;
+    }
+    
+    /**
+        Append <code>text</code>, the output of <code>continuation</code>,
+        to this writer and take up the state it finished in.
+    */
+    public void append(JSStreamingWriter continuation, String text)
+    {
+        out.append(continuation.out, text);
+        openerStack.clear();
+        openerStack.addAll(continuation.openerStack);
+        needsComma = continuation.needsComma;
+    }
+    
     public void startObject()
     {
         startCompound( "{" ) ;
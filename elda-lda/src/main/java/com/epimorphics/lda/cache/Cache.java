@@ -47,6 +47,18 @@ public interface Cache {
 	 */
 	public APIResultSet getCachedResultSet(List<Resource> results, String view );
 	
+	/**
+	    Answer the cache of single-item descriptions kept alongside
+	    this cache, for the same source.
+	*/
+	public ItemCache getItemCache();
+	
+	/**
+	    Answer the cache of list selection counts kept alongside
+	    this cache, for the same source.
+	*/
+	public CountCache getCountCache();
+	
 	/**
 	    Clear this cache.
 	*/
@@ -73,6 +85,21 @@ public interface Cache {
 	*/
 	public String summary();
 	
+	/**
+	    Report the request, hit and entry counts of this cache to
+	    <code>r</code>, naming <code>policy</code> as its cache policy.
+	*/
+	public void reportCounts( String policy, CountReporter r );
+	
+	/**
+	    Receiver for the counts of a cache. <code>part</code> is the
+	    part of the cache being reported, "select", "view", "items",
+	    or "counts".
+	*/
+	public interface CountReporter {
+		public void counts( String policy, String label, String part, long requests, long hits, long entries );
+	}
+	
 	public interface Controller {
 		/**
 		    Answer a Cache associated with the given Source. Create one if
@@ -85,6 +112,12 @@ public interface Cache {
 		*/
 		public void clear( Source s );
 		
+		/**
+		    Clear, but do not remove, the cache associated with the given
+		    source. Endpoints already holding that cache continue to use it.
+		*/
+		public void invalidate( Source s );
+		
 		/**
 		 	Clear and remove all the caches that this maker knows about.
 		*/
@@ -104,6 +137,12 @@ public interface Cache {
 		    Reset the counts of all the caches in this controller.
 		*/
 		public void resetCounts();
+
+		/**
+		    Report the counts of all the caches in this controller,
+		    which is registered under the name <code>policy</code>.
+		*/
+		public void reportCounts( String policy, CountReporter r );
 	}
 	
 	/**
@@ -140,6 +179,25 @@ public interface Cache {
 			}
 		}
 		
+		/**
+		    Clear (but do not remove) the caches associated with the
+		    given source in all registered controllers.
+		*/
+		public static void invalidate( Source s ) {
+			for (Map.Entry<String, Controller> e: map.entrySet()) {
+				e.getValue().invalidate( s );
+			}
+		}
+		
+		/**
+		    Report the counts of all the registered caches to <code>r</code>.
+		*/
+		public static void reportCounts( CountReporter r ) {
+			for (Map.Entry<String, Controller> e: map.entrySet()) {
+				e.getValue().reportCounts( e.getKey(), r );
+			}
+		}
+		
 		public static void showAll( StringBuilder sb ) {
 			for (Map.Entry<String, Controller> e: map.entrySet()) {
 				sb.append( "<h2>details for cache group '" + e.getKey() + "'</h2>\n" );
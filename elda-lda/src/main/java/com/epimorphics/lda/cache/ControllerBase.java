@@ -39,12 +39,23 @@ public class ControllerBase implements Cache.Controller {
 		caches.remove( key );
 	}
 	
+	@Override public synchronized void invalidate( Source s ) {
+		Cache c = caches.get( s.toString() );
+		if (c != null) c.clear();
+	}
+	
 	@Override public synchronized void resetCounts() {
 		for (Map.Entry<String, Cache> e: caches.entrySet()) {
 			e.getValue().resetCounts();
 		}
 	}
 	
+	@Override public synchronized void reportCounts( String policy, Cache.CountReporter r ) {
+		for (Map.Entry<String, Cache> e: caches.entrySet()) {
+			e.getValue().reportCounts( policy, r );
+		}
+	}
+	
 	@Override public synchronized void showAll( StringBuilder sb ) {
 		for (Map.Entry<String, Cache> e: caches.entrySet()) {
 			e.getValue().show( sb );
@@ -0,0 +1,262 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.cache;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epimorphics.lda.counting.Counts;
+
+/**
+    A cache of the total and facet counts of list selections, keyed so
+    that all the pages of a selection share one entry. Counts are
+    computed off the request thread: a request for counts that are not
+    cached starts computing them and answers Counts.PENDING, as do any
+    requests for them that arrive while they are being computed, so one
+    count query runs however many pages ask at once. Counts older than
+    the asker's time-to-live are computed again, and answered as they
+    were until that is done; the least recently used entries are dropped
+    when there are more than the budget. Counts that are dropped before
+    their turn to be computed comes are not computed, and when too many
+    are waiting for a turn, new requests for counts are not taken on.
+
+    <p>The budget is the largest any spec using the cache has asked
+    for; until one asks, it is zero and nothing is kept.</p>
+*/
+public class CountCache {
+
+	static final Logger log = LoggerFactory.getLogger( CountCache.class );
+
+	/**
+	    The number of threads shared by all count caches to run count
+	    queries.
+	*/
+	public static final int COUNTING_THREADS = 2;
+
+	/**
+	    The number of count queries that may wait for a counting thread.
+	*/
+	public static final int QUEUED_COUNTS = 100;
+
+	static final ExecutorService counters = new ThreadPoolExecutor
+		( COUNTING_THREADS, COUNTING_THREADS, 0, TimeUnit.MILLISECONDS
+		, new ArrayBlockingQueue<Runnable>( QUEUED_COUNTS )
+		, new ThreadFactory() {
+
+			final AtomicInteger count = new AtomicInteger();
+
+			@Override public Thread newThread( Runnable r ) {
+				Thread t = new Thread( r, "elda-counting-" + count.incrementAndGet() );
+				t.setDaemon( true );
+				return t;
+			}
+		});
+
+	/**
+	    The counts of one selection: the latest computed (PENDING if none
+	    have been), when they were computed, and whether they are being
+	    computed again.
+	*/
+	static class Entry {
+		Counts counts = Counts.PENDING;
+		long completed;
+		boolean computing;
+	}
+
+	protected final Executor executor;
+
+	protected final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+	protected long budget = 0;
+	protected int running = 0;
+
+	protected long requests = 0;
+	protected long hits = 0;
+	protected long computations = 0;
+	protected long failures = 0;
+	protected long rejections = 0;
+
+	public CountCache() {
+		this( counters );
+	}
+
+	/**
+	    A count cache whose counts are computed by <code>executor</code>.
+	*/
+	public CountCache( Executor executor ) {
+		this.executor = executor;
+	}
+
+	/**
+	    Allow this cache to hold at least <code>budget</code> sets of counts.
+	*/
+	public synchronized void allowBudget( long budget ) {
+		if (budget > this.budget) this.budget = budget;
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	    Answer the counts cached under <code>key</code>. If there are none,
+	    or they were computed <code>ttl</code> milliseconds ago or more,
+	    hand <code>counter</code> to the executor to compute them, unless
+	    they are already being computed; until they have been, answer
+	    the counts computed before, or Counts.PENDING if there are none.
+	*/
+	public Counts get( final String key, long ttl, final Callable<Counts> counter ) {
+		final Entry e;
+		final Counts result;
+		synchronized (this) {
+			requests += 1;
+			Entry already = entries.get( key );
+			if (already != null && (already.computing || System.currentTimeMillis() - already.completed < ttl)) {
+				if (!already.counts.isPending()) hits += 1;
+				return already.counts;
+			}
+			if (already == null) {
+				e = new Entry();
+				entries.put( key, e );
+				trim();
+			} else {
+				e = already;
+			}
+			result = e.counts;
+			e.computing = true;
+			computations += 1;
+			running += 1;
+		}
+		try {
+			executor.execute( new Runnable() {
+				@Override public void run() { complete( key, e, counter ); }
+			});
+		} catch (RejectedExecutionException x) {
+			log.debug( "too many counts waiting, not counting: " + x.getMessage() );
+			synchronized (this) { rejections += 1; }
+			finish( key, e, null );
+		}
+		return result;
+	}
+
+	/**
+	    Compute the counts of entry <code>e</code>, unless it has been
+	    dropped while waiting for its turn.
+	*/
+	private void complete( String key, Entry e, Callable<Counts> counter ) {
+		if (!isCurrent( key, e )) {
+			finish( key, e, null );
+			return;
+		}
+		Counts counts = null;
+		try {
+			counts = counter.call();
+		} catch (Exception x) {
+			log.warn( "counting failed: " + x.getMessage() );
+			synchronized (this) { failures += 1; }
+		} finally {
+			finish( key, e, counts );
+		}
+	}
+
+	private synchronized boolean isCurrent( String key, Entry e ) {
+		return entries.get( key ) == e;
+	}
+
+	/**
+	    Record the result of computing the counts of entry <code>e</code>,
+	    unless it has been dropped meanwhile. If there is no result (null),
+	    counts computed before are kept, and an entry without any is
+	    forgotten; either way the next request tries again.
+	*/
+	private synchronized void finish( String key, Entry e, Counts counts ) {
+		running -= 1;
+		e.computing = false;
+		if (entries.get( key ) == e) {
+			if (counts != null) {
+				e.counts = counts;
+				e.completed = System.currentTimeMillis();
+			} else if (e.counts.isPending()) {
+				entries.remove( key );
+			}
+		}
+		notifyAll();
+	}
+
+	private void trim() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (entries.size() > budget && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	    Wait at most <code>millis</code> milliseconds for the counts being
+	    computed to be finished. Answer true if none are still running.
+	*/
+	public synchronized boolean await( long millis ) throws InterruptedException {
+		long end = System.currentTimeMillis() + millis;
+		while (running > 0) {
+			long left = end - System.currentTimeMillis();
+			if (left <= 0) return false;
+			wait( left );
+		}
+		return true;
+	}
+
+	/**
+	    Forget all the counts. Those still being computed will not be kept,
+	    and those waiting to be computed will not be.
+	*/
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized void resetCounts() {
+		requests = hits = computations = failures = rejections = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long requests() {
+		return requests;
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long computations() {
+		return computations;
+	}
+
+	/**
+	    Append an HTML line describing this cache's use to <code>sb</code>.
+	*/
+	public synchronized void show( StringBuilder sb ) {
+		sb
+			.append( "<div style='margin-top: 1ex'>" )
+			.append( "COUNTS: " ).append( entries.size() ).append( " of " ).append( budget ).append( " selections" )
+			.append( ", " ).append( requests ).append( " requests" )
+			.append( ", " ).append( hits ).append( " hits" )
+			.append( ", " ).append( computations ).append( " computed" )
+			.append( ", " ).append( running ).append( " running" )
+			.append( ", " ).append( failures ).append( " failures" )
+			.append( ", " ).append( rejections ).append( " not started" )
+			.append( ".</div>" )
+			.append( "\n" )
+			;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.cache;
+
+import java.util.*;
+
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+    A cache of the descriptions of single items, so that list pages
+    which share items, and item endpoints showing an item already seen
+    on a list page, need only describe the items they have not seen.
+    An entry is keyed by the identity of the view and describe sources
+    that produced it and the URI of the item; its value is the triples
+    of the item's description. The least recently used entries are
+    dropped when the total number of triples held exceeds the budget.
+
+    <p>The budget is the largest any spec using the cache has asked
+    for; until one asks, it is zero and nothing is kept.</p>
+*/
+public class ItemCache {
+
+	protected final LinkedHashMap<String, Triple[]> entries = new LinkedHashMap<String, Triple[]>( 16, 0.75f, true );
+
+	protected long budget = 0;
+	protected long triples = 0;
+
+	protected long requests = 0;
+	protected long hits = 0;
+	protected long evictions = 0;
+
+	/**
+	    Allow this cache to hold at least <code>budget</code> triples.
+	*/
+	public synchronized void allowBudget( long budget ) {
+		if (budget > this.budget) this.budget = budget;
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	    Answer the triples of the description of <code>item</code> under
+	    <code>viewKey</code>, or null if there are none cached.
+	*/
+	public synchronized Triple[] get( String viewKey, String item ) {
+		requests += 1;
+		Triple[] result = entries.get( key( viewKey, item ) );
+		if (result != null) hits += 1;
+		return result;
+	}
+
+	/**
+	    Remember <code>description</code> as the description of
+	    <code>item</code> under <code>viewKey</code>, dropping the
+	    least recently used entries to keep within the budget. A
+	    description bigger than the whole budget is not kept.
+	*/
+	public synchronized void put( String viewKey, String item, Triple[] description ) {
+		if (description.length > budget) return;
+		Triple[] old = entries.put( key( viewKey, item ), description );
+		if (old != null) triples -= old.length;
+		triples += description.length;
+		Iterator<Triple[]> it = entries.values().iterator();
+		while (triples > budget && it.hasNext()) {
+			triples -= it.next().length;
+			it.remove();
+			evictions += 1;
+		}
+	}
+
+	private static String key( String viewKey, String item ) {
+		return viewKey + "::" + item;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		triples = 0;
+	}
+
+	public synchronized void resetCounts() {
+		requests = hits = evictions = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long triples() {
+		return triples;
+	}
+
+	public synchronized long requests() {
+		return requests;
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	    Append an HTML line describing this cache's use to <code>sb</code>.
+	*/
+	public synchronized void show( StringBuilder sb ) {
+		sb
+			.append( "<div style='margin-top: 1ex'>" )
+			.append( "ITEMS: " ).append( entries.size() ).append( " items" )
+			.append( ", " ).append( triples ).append( " of " ).append( budget ).append( " triples" )
+			.append( ", " ).append( requests ).append( " requests" )
+			.append( ", " ).append( hits ).append( " hits" )
+			.append( ", " ).append( evictions ).append( " evictions" )
+			.append( ".</div>" )
+			.append( "\n" )
+			;
+	}
+}
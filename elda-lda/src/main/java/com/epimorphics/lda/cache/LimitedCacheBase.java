@@ -28,7 +28,7 @@ public abstract class LimitedCacheBase implements Cache {
     }
     
     @Override public synchronized String summary() {
-    	return "#" + identity + "." + label + " (select " + cs.size() + ", view " + cd.size() + " entries)";
+    	return "#" + identity + "." + label + " (select " + cs.size() + ", view " + cd.size() + ", items " + items.size() + ", counts " + counts.size() + " entries)";
     }
     
     @Override public synchronized void show( StringBuilder sb ) {
@@ -61,6 +61,8 @@ public abstract class LimitedCacheBase implements Cache {
 			.append( ".</div>" )
 			.append( "\n" )
 			;
+    	items.show( sb );
+    	counts.show( sb );
 //    	for (Map.Entry<String, List<Resource>> e: cs.entrySet()) {
 //    		sb.append( "<pre>" );
 //    		sb.append( e.getKey().replaceAll( "\n", " " ).replaceAll( "&", "&amp;" ).replaceAll( "<", "&lt;" ) );
@@ -68,6 +70,13 @@ public abstract class LimitedCacheBase implements Cache {
 //    	}
     }
     
+    @Override public synchronized void reportCounts( String policy, CountReporter r ) {
+    	r.counts( policy, label, "select", cs.requests, cs.hits, cs.size() );
+    	r.counts( policy, label, "view", cd.requests, cd.hits, cd.size() );
+    	r.counts( policy, label, "items", items.requests(), items.hits(), items.size() );
+    	r.counts( policy, label, "counts", counts.requests(), counts.hits(), counts.size() );
+    }
+    
     static class Cachelet<K, V> {
     	protected final Map<K, V> map = new HashMap<K, V>();
     	
@@ -118,6 +127,18 @@ public abstract class LimitedCacheBase implements Cache {
 
     private final Cachelet<String, List<Resource>> cs = new Cachelet<String, List<Resource>>();
 
+    private final ItemCache items = new ItemCache();
+
+    @Override public ItemCache getItemCache() {
+    	return items;
+    }
+
+    private final CountCache counts = new CountCache();
+
+    @Override public CountCache getCountCache() {
+    	return counts;
+    }
+
     @Override public synchronized APIResultSet getCachedResultSet( List<Resource> results, String view ) {
         return cd.get( results.toString() + "::" + view );
     }
@@ -147,11 +168,15 @@ public abstract class LimitedCacheBase implements Cache {
     @Override public synchronized void resetCounts() {
         cs.resetCounts();
         cd.resetCounts();
+        items.resetCounts();
+        counts.resetCounts();
     }
 
     @Override public synchronized void clear() {
         cs.clear();
         cd.clear();
+        items.clear();
+        counts.clear();
     }
 
     @Override public synchronized int numEntries() {
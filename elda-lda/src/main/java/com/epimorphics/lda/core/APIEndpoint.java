@@ -21,6 +21,7 @@ import java.net.URI;
 import java.util.Map;
 
 import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.export.ExportFormat;
 import com.epimorphics.lda.renderers.Renderer;
 import com.epimorphics.lda.shortnames.CompleteContext;
 import com.epimorphics.lda.specs.APIEndpointSpec;
@@ -86,6 +87,13 @@ public interface APIEndpoint {
     */    
     public Triad<APIResultSet, Map<String, String>, Bindings> call( Request r );
     
+    /**
+        Answer the bulk export, in the given format, of all the items this
+        (list) endpoint selects for the request. The export is counted as
+        running until its output has been written.
+    */
+    public Renderer.BytesOut export( Request r, ExportFormat format );
+    
     /**
      	Return a metadata description for the query that would be run by this endpoint
     */
@@ -105,6 +113,11 @@ public interface APIEndpoint {
         Return the renderer known by the given media type.
     */
 	public Renderer getRendererByType( MediaType mt );
+
+    /**
+        Return the renderer for this endpoint's default format.
+    */
+	public Renderer getDefaultRenderer();
 	
 	/**
 	    Return any default bindings that this endpoint has set up (which need
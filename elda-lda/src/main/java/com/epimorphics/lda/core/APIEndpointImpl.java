@@ -14,6 +14,8 @@ package com.epimorphics.lda.core;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,7 +25,9 @@ import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.cache.Cache;
 import com.epimorphics.lda.cache.Cache.Registry;
 import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.counting.*;
 import com.epimorphics.lda.exceptions.*;
+import com.epimorphics.lda.export.*;
 import com.epimorphics.lda.query.*;
 import com.epimorphics.lda.renderers.Factories.FormatNameAndType;
 import com.epimorphics.lda.renderers.*;
@@ -31,6 +35,7 @@ import com.epimorphics.lda.shortnames.CompleteContext;
 import com.epimorphics.lda.shortnames.ShortnameService;
 import com.epimorphics.lda.sources.Source;
 import com.epimorphics.lda.specs.*;
+import com.epimorphics.lda.support.Times;
 import com.epimorphics.lda.vocabularies.API;
 import com.epimorphics.lda.vocabularies.EXTRAS;
 import com.epimorphics.util.*;
@@ -59,6 +64,10 @@ public class APIEndpointImpl implements APIEndpoint {
     public APIEndpointImpl( APIEndpointSpec spec, Cache cache ) {
         this.spec = spec;
         this.cache = cache;
+        int itemCacheTriples = spec.getAPISpec().getItemCacheTriples();
+        if (itemCacheTriples > 0) cache.getItemCache().allowBudget( itemCacheTriples );
+        CountConfig counting = spec.getCountConfig();
+        if (counting.isEnabled()) cache.getCountCache().allowBudget( counting.getCacheEntries() );
         // System.err.println( ">> endpoint with cache " + cache.summary() );
         this.specWantsContext = spec.wantsContext();
     }
@@ -88,20 +97,70 @@ public class APIEndpointImpl implements APIEndpoint {
 	    if (b.getValueString( "callback" ) != null && !"json".equals( r.format ))
 			EldaException.BadRequest( "callback specified but format '" + r.format + "' is not JSON." );
 	//
+	    Times t = r.c.times;
+	    Times.Span updating = t.begin( "ContextQueryUpdater" );
 	    View view = buildQueryAndView( b, query );
+	    updating.end();
 	//    
 	    APIResultSet unfiltered = query.runQuery( r.c, spec.getAPISpec(), cache, b, view );
-	    APIResultSet filtered = unfiltered.getFilteredSet( view, query.getDefaultLanguage() );
+	    Times.Span filtering = t.begin( "language filtering" );
+	    APIResultSet filtered = unfiltered.getFilteredSet( view, query.getDefaultLanguage(), query.getLanguageFilterMode() );
+	    filtering.end();
 	    filtered.setNsPrefixes( spec.getAPISpec().getPrefixMap() );
+	//
+	    Times.Span counting = t.begin( "counts" );
+	    Counts counts = countsFor( b, query );
+	    counting.end();
 	//
 	    Context context = spec.getAPISpec().getShortnameService().asContext();
 		CompleteContext cc = new CompleteContext( r.mode, context, filtered.getModelPrefixes() );   
-	    createMetadata( r, cc, filtered, b, query );
+	    Times.Span metadata = t.begin( "metadata" );
+	    createMetadata( r, cc, filtered, b, query, counts );
+	    metadata.end();
+	    Times.Span completing = t.begin( "CompleteContext.Do" );
 	    cc.include( filtered.getMergedModel() );	    
 	    Triad<APIResultSet, Map<String, String>, Bindings> result = new Triad<APIResultSet, Map<String, String>, Bindings>( filtered, cc.Do(), b );
+	    completing.end();
 		return result;
     }
 
+    /**
+        Export everything this endpoint selects, if it is a list endpoint
+        and its spec allows exports. If as many exports as the spec allows
+        are already running, the request fails as SERVICE UNAVAILABLE. The
+        export counts as running only while it is being written, so one
+        that is never written (a HEAD request, say) holds up no other.
+    */
+    @Override public Renderer.BytesOut export( Request r, ExportFormat format ) {
+    	APISpec apiSpec = spec.getAPISpec();
+    	ExportPolicy policy = apiSpec.getExportPolicy();
+    	if (!isListEndpoint()) EldaException.BadRequest( "only list endpoints can be exported." );
+    	if (!policy.isEnabled()) EldaException.Forbidden( "exports are not enabled for this API." );
+    //
+		Bindings b = r.context.copyWithDefaults( spec.getBindings() );
+	    APIQuery query = spec.getBaseQuery();
+	    Times.Span updating = r.c.times.begin( "ContextQueryUpdater" );
+	    View view = buildQueryAndView( b, query );
+	    updating.end();
+	//
+	    if (policy.isBusy()) EldaException.Unavailable( "too many exports are running; try again later." );
+	    return new Exporter( r.c, apiSpec, query, view, b, format, r.mode, policy );
+    }
+
+    /**
+        Answer the total and facet counts of the selection of this request,
+        or null if this endpoint does not count it. Counts not yet cached
+        are computed on another thread, once for all the pages of the
+        selection, and are Counts.PENDING until then.
+    */
+    private Counts countsFor( Bindings b, APIQuery query ) {
+    	CountConfig counting = spec.getCountConfig();
+    	if (!isListEndpoint() || !counting.wanted( b.getValueString( QueryParameter._COUNT ) )) return null;
+    	APISpec apiSpec = spec.getAPISpec();
+    	CountRequest cr = new CountRequest( apiSpec.getDataSource(), query, b, apiSpec.getPrefixMap(), counting.getFacets() );
+    	return cache.getCountCache().get( cr.getKey(), counting.getCacheMillis(), cr );
+    }
+
     private View buildQueryAndView( Bindings context, APIQuery query ) {
     	ShortnameService sns = spec.getAPISpec().getShortnameService();
     	int endpointType = isListEndpoint() ? ContextQueryUpdater.ListEndpoint : ContextQueryUpdater.ItemEndpoint;
@@ -151,7 +210,7 @@ public class APIEndpointImpl implements APIEndpoint {
 		return other;
 	}
 
-    private void createMetadata( APIEndpoint.Request r, CompleteContext cc, APIResultSet rs, Bindings bindings, APIQuery query ) {
+    private void createMetadata( APIEndpoint.Request r, CompleteContext cc, APIResultSet rs, Bindings bindings, APIQuery query, Counts counts ) {
 		boolean suppress_IPTO = bindings.getAsString( "_suppress_ipto", "no" ).equals( "yes" );
 		boolean exceptionIfEmpty = bindings.getAsString( "_exceptionIfEmpty", "yes" ).equals( "yes" );
 	//
@@ -209,6 +268,7 @@ public class APIEndpointImpl implements APIEndpoint {
         	, views
         	, formats
         	, details
+        	, counts
         	);   
     }
 
@@ -252,15 +312,32 @@ public class APIEndpointImpl implements APIEndpoint {
 		return configure( s );	
 	}
 
-	private Map<RendererFactory, Renderer> ready = new HashMap<RendererFactory, Renderer>();
+	/**
+	    Answer the Renderer of this endpoint's default format, configured
+	    with the appropriate shortname service.
+	*/
+	@Override public Renderer getDefaultRenderer() {
+		RendererFactory s = spec.getRendererFactoryTable().getDefaultFactory();
+		return configure( s );
+	}
+
+	private final ConcurrentMap<RendererFactory, Renderer> ready = new ConcurrentHashMap<RendererFactory, Renderer>();
 	
 	/**
-	    Only build a renderer for a given factory once.
+	    Only build a renderer for a given factory once. Requests for a
+	    renderer that has already been built do not lock; the first
+	    requests for a factory are serialised so that it is built only
+	    once even if they arrive together.
 	*/
 	private Renderer configure(RendererFactory s) {
 		if (s == null) return null;
 		Renderer r = ready.get( s );
-		if (r == null) ready.put( s,  r = s.buildWith( this, getSpec().getAPISpec().getShortnameService() ) );
+		if (r == null) {
+			synchronized (ready) {
+				r = ready.get( s );
+				if (r == null) ready.put( s,  r = s.buildWith( this, getSpec().getAPISpec().getShortnameService() ) );
+			}
+		}
 		return r;
 	}
 }
@@ -15,8 +15,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.export.ExportFormat;
 import com.epimorphics.lda.renderers.Renderer;
-import com.epimorphics.lda.renderers.RendererFactory;
 import com.epimorphics.lda.routing.Match;
 import com.epimorphics.lda.specs.APIEndpointSpec;
 import com.epimorphics.lda.support.MultiMap;
@@ -41,16 +41,26 @@ public class APIEndpointUtil {
     */
 	public static Triad<APIResultSet, Map<String, String>, Bindings> call( APIEndpoint.Request r, Match match, String contextPath, MultiMap<String, String> queryParams ) {
 		APIEndpoint ep = match.getEndpoint();
-		
+		return ep.call( r.withBindings( contextFor( r, match, contextPath, queryParams ) ) );
+	}
+
+	/**
+	    As call, but answering the endpoint's bulk export in the
+	    format <code>f</code> rather than a page of results.
+	*/
+	public static Renderer.BytesOut export( APIEndpoint.Request r, Match match, String contextPath, MultiMap<String, String> queryParams, ExportFormat f ) {
+		APIEndpoint ep = match.getEndpoint();
+		return ep.export( r.withBindings( contextFor( r, match, contextPath, queryParams ) ), f );
+	}
+
+	private static Bindings contextFor( APIEndpoint.Request r, Match match, String contextPath, MultiMap<String, String> queryParams ) {
 		Bindings vs = new Bindings( r.context )
 			.updateAll( match.getBindings() )
 			.put( "_suffix", r.format )
 			.put( "_APP", contextPath )
 			.put( "_HOST", getHostAndPort( r.requestURI ) )
 			;
-		
-		Bindings cc = Bindings.createContext( vs, queryParams );
-		return ep.call( r.withBindings(cc) );
+		return Bindings.createContext( vs, queryParams );
 	}
 
 	private static String getHostAndPort(URI u) {
@@ -85,8 +95,7 @@ public class APIEndpointUtil {
 	                if (byType != null) return byType;
 	            }
 	        }
-	        RendererFactory rf = spec.getRendererFactoryTable().getDefaultFactory();
-			return rf.buildWith( ep, spec.sns() );           
+	        return ep.getDefaultRenderer();
 	        }
 	    else
 	        return ep.getRendererNamed( name );
@@ -18,6 +18,7 @@ import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.epimorphics.lda.support.CycleFinder;
 import com.epimorphics.lda.support.LanguageFilter;
 import com.epimorphics.lda.support.ModelPrefixEditor;
 import com.epimorphics.lda.vocabularies.*;
@@ -98,6 +99,8 @@ public class APIResultSet implements SetsMetadata {
     	private final Model object;
     	private final Model meta;
     	
+    	private Set<Resource> objectCyclics, metaCyclics, mergedCyclics;
+    	
     	public MergedModels( Model objectModel ) {
     		this.object = objectModel;
     		this.meta = ModelFactory.createDefaultModel();
@@ -121,6 +124,34 @@ public class APIResultSet implements SetsMetadata {
     	public Model getMergedModel() {
     		return merged;
     	}
+    	
+    	/**
+    	    The cyclic resources of the object model, found the first time
+    	    they are asked for and shared by all the renderers thereafter,
+    	    so the models should not be changed once rendering has started.
+    	*/
+    	public synchronized Set<Resource> getObjectCyclics() {
+    		if (objectCyclics == null) objectCyclics = Collections.unmodifiableSet( CycleFinder.findCyclics( object ) );
+    		return objectCyclics;
+    	}
+    	
+    	/**
+    	    The cyclic resources of the metadata model, found as for
+    	    getObjectCyclics().
+    	*/
+    	public synchronized Set<Resource> getMetaCyclics() {
+    		if (metaCyclics == null) metaCyclics = Collections.unmodifiableSet( CycleFinder.findCyclics( meta ) );
+    		return metaCyclics;
+    	}
+    	
+    	/**
+    	    The cyclic resources of the merged model, found as for
+    	    getObjectCyclics().
+    	*/
+    	public synchronized Set<Resource> getMergedCyclics() {
+    		if (mergedCyclics == null) mergedCyclics = Collections.unmodifiableSet( CycleFinder.findCyclics( merged ) );
+    		return mergedCyclics;
+    	}
 
 		public void setNsPrefix(String prefix, String uri) {
 			object.setNsPrefix( prefix, uri );
@@ -134,11 +165,12 @@ public class APIResultSet implements SetsMetadata {
 			if (mpe.isEmpty()) {
 				return this;
 			} else {
+				Model renamedObject = mpe.rename( object ), renamedMeta = mpe.rename( meta );
 				return new MergedModels
 					(
-					mpe.rename( object )
-					, mpe.rename( meta )
-					, mpe.rename( merged )
+					renamedObject
+					, renamedMeta
+					, ModelFactory.createUnion( renamedObject, renamedMeta )
 				);
 			}
 		}
@@ -282,11 +314,24 @@ public class APIResultSet implements SetsMetadata {
      * @param languages  acceptable language codes for literals
      */
     public APIResultSet getFilteredSet( View v, String languages ) {
+    	return getFilteredSet( v, languages, LanguageFilter.Mode.InModel );
+    }
+    
+    /**
+     * As above, but if <code>mode</code> is InQuery the literals are filtered
+     * by a view of the result graph, which is left unchanged, rather than
+     * being removed from it.
+     */
+    public APIResultSet getFilteredSet( View v, String languages, LanguageFilter.Mode mode ) {
     	ModelPrefixEditor mpe = new ModelPrefixEditor();
-    	if (languages != null) LanguageFilter.filterByLanguages( model.object, languages.split(",") );
+    	Graph unfiltered = model.object.getGraph();
+    	if (languages != null) {
+    		if (mode == LanguageFilter.Mode.InQuery) unfiltered = LanguageFilter.filteredView( unfiltered, languages.split(",") );
+    		else LanguageFilter.filterByLanguages( model.object, languages.split(",") );
+    	}
         // model.setNsPrefixes( model );
         List<Resource> mappedResults = new ArrayList<Resource>();
-        Graph objectGraph = mpe.rename( model.object.getGraph() );
+        Graph objectGraph = mpe.rename( unfiltered );
         Model objectModel = ModelFactory.createModelForGraph( objectGraph );
         for (Resource r : results)
         	mappedResults.add( mpe.rename( r.inModel( objectModel ) ).asResource() );
@@ -12,6 +12,7 @@ import java.util.*;
 import com.epimorphics.lda.core.View.State;
 import com.epimorphics.lda.rdfq.*;
 import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.lda.support.LanguageFilter;
 import com.epimorphics.lda.support.PrefixLogger;
 import com.epimorphics.lda.support.PropertyChain;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -26,13 +27,23 @@ public class ChainTree {
 	
 	protected final RDFQ.Triple triple;
 	protected final ChainTrees followers;
+	protected final String filter;
 
 	/**
 	    Initialise this ChainTree with its triple and followers.
 	*/
 	ChainTree( RDFQ.Triple triple, ChainTrees followers ) {
+		this( triple, followers, null );
+	}
+
+	/**
+	    Initialise this ChainTree with its triple, followers, and a
+	    FILTER (or null) to apply to the triple when it is matched.
+	*/
+	ChainTree( RDFQ.Triple triple, ChainTrees followers, String filter ) {
 		this.triple = triple;
 		this.followers = followers;
+		this.filter = filter;
 	}
 	
 	/**
@@ -63,7 +74,9 @@ public class ChainTree {
 		for (int i = 0; i < depth; i += 1) sb.append( "  " );
 		sb.append( union );
 		if (isComplex) sb.append( "{" );
-		sb.append( "{ " ).append( triple.asSparqlTriple(pl) ).append( " . } " );
+		sb.append( "{ " ).append( triple.asSparqlTriple(pl) ).append( " . " );
+		if (filter != null) sb.append( filter ).append( " " );
+		sb.append( "} " );
 		if (isComplex) {
 			int index = 0;
 			sb.append( " OPTIONAL {\n" );
@@ -100,7 +113,8 @@ public class ChainTree {
 			Variable nv = st.vars.newVar();
 			RDFQ.Triple triple = RDFQ.triple( r, predicate( st, entry.getKey() ), nv );
 			ChainTrees followers = make( nv, st, entry.getValue() );
-			result.add( new ChainTree( triple, followers ) );
+			String filter = st.languages == null ? null : LanguageFilter.asSparqlFilter( nv.name(), st.languages );
+			result.add( new ChainTree( triple, followers, filter ) );
 		}
 		return result;
 	}
@@ -0,0 +1,118 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.core;
+
+import java.util.*;
+
+import com.epimorphics.lda.core.View.Type;
+import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.lda.support.PropertyChain;
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+    Splits the descriptions of several items, fetched together by a
+    view, into the description of each item: the triples the view's
+    queries would have fetched had that item been described alone. An
+    item's description is found by walking the fetched graph the way
+    the queries do: the item's own triples and their blank-node closure
+    (for DESCRIBE views), the paths along each property chain, and the
+    labels of every resource reached (for labelled DESCRIBE views).
+*/
+class DescriptionSplitter {
+
+	final View view;
+	final Node label;
+
+	DescriptionSplitter( View view ) {
+		this.view = view;
+		this.label = Node.createURI( view.labelPropertyURI );
+	}
+
+	/**
+	    Answer a map from the URI of those of <code>items</code> whose
+	    descriptions can be separated from <code>g</code> to the triples
+	    of their descriptions. An item whose description shares a blank
+	    node with another's, or includes triples about another of the items
+	    (which that item's DESCRIBE may have fetched more of than the chain
+	    queries would), is left out. If some triples of <code>g</code> are
+	    in no item's description, as when a DESCRIBE also gives the triples
+	    that point at an item, nothing can be trusted and the map is empty.
+	*/
+	Map<String, Triple[]> split( Graph g, List<Resource> items ) {
+		Set<Node> roots = new LinkedHashSet<Node>();
+		for (Resource r: items) roots.add( r.asNode() );
+		Map<Node, Set<Triple>> descriptions = new LinkedHashMap<Node, Set<Triple>>();
+		Map<Node, Node> blankOwners = new HashMap<Node, Node>();
+		Set<Node> unsplittable = new HashSet<Node>();
+		Set<Triple> covered = new HashSet<Triple>();
+		for (Node root: roots) {
+			Set<Triple> d = descriptionOf( g, root );
+			descriptions.put( root, d );
+			covered.addAll( d );
+			for (Triple t: d) {
+				Node s = t.getSubject();
+				if (!s.equals( root ) && roots.contains( s )) unsplittable.add( root );
+				claimBlank( s, root, blankOwners, unsplittable );
+				claimBlank( t.getObject(), root, blankOwners, unsplittable );
+			}
+		}
+		Map<String, Triple[]> result = new HashMap<String, Triple[]>();
+		if (covered.size() < g.size()) return result;
+		for (Map.Entry<Node, Set<Triple>> e: descriptions.entrySet()) {
+			Set<Triple> d = e.getValue();
+			if (!unsplittable.contains( e.getKey() )) result.put( e.getKey().getURI(), d.toArray( new Triple[d.size()] ) );
+		}
+		return result;
+	}
+
+	private void claimBlank( Node n, Node root, Map<Node, Node> owners, Set<Node> unsplittable ) {
+		if (n.isBlank()) {
+			Node owner = owners.get( n );
+			if (owner == null) owners.put( n, root );
+			else if (!owner.equals( root )) { unsplittable.add( owner ); unsplittable.add( root ); }
+		}
+	}
+
+	/**
+	    Answer the triples of <code>g</code> that the view's queries for
+	    <code>root</code> alone would have fetched.
+	*/
+	Set<Triple> descriptionOf( Graph g, Node root ) {
+		Set<Triple> d = new HashSet<Triple>();
+		Type type = view.getType();
+		if (type == Type.T_DESCRIBE || type == Type.T_ALL) closure( g, root, d, new HashSet<Node>() );
+		for (PropertyChain chain: view.chains) follow( g, root, chain.getProperties(), 0, d );
+		if (type == Type.T_ALL) {
+			for (Triple t: new ArrayList<Triple>( d )) {
+				Node o = t.getObject();
+				if (o.isURI()) d.addAll( g.find( o, label, Node.ANY ).toList() );
+			}
+		}
+		return d;
+	}
+
+	private void closure( Graph g, Node n, Set<Triple> d, Set<Node> seen ) {
+		for (Triple t: g.find( n, Node.ANY, Node.ANY ).toList()) {
+			d.add( t );
+			Node o = t.getObject();
+			if (o.isBlank() && seen.add( o )) closure( g, o, d, seen );
+		}
+	}
+
+	private void follow( Graph g, Node n, List<Property> chain, int i, Set<Triple> d ) {
+		if (i == chain.size()) return;
+		Property p = chain.get( i );
+		Node predicate = p.equals( ShortnameService.Util.propertySTAR ) ? Node.ANY : p.asNode();
+		for (Triple t: g.find( n, predicate, Node.ANY ).toList()) {
+			d.add( t );
+			if (!t.getObject().isLiteral()) follow( g, t.getObject(), chain, i + 1, d );
+		}
+	}
+}
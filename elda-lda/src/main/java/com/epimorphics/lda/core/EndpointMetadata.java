@@ -11,6 +11,7 @@ import java.util.*;
 
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.counting.Counts;
 import com.epimorphics.lda.query.QueryParameter;
 import com.epimorphics.lda.query.WantsMetadata;
 import com.epimorphics.lda.renderers.Factories.FormatNameAndType;
@@ -52,6 +53,7 @@ public class EndpointMetadata {
 		, Map<String, View> views
 		, Set<FormatNameAndType> formats
 		, EndpointDetails details
+		, Counts counts
 		) {
 	//
 		boolean listEndpoint = details.isListEndpoint();
@@ -100,6 +102,7 @@ public class EndpointMetadata {
 		}
 	//
 		EndpointMetadata em = new EndpointMetadata( details, thisMetaPage, "" + page, bindings, uriForList );
+		if (listEndpoint && counts != null) em.addCounts( metaModel, counts );
 		Model metaModel1 = mergedModels.getMetaModel();
 		Model mergedModels1 = mergedModels.getMergedModel();
 	//
@@ -231,6 +234,33 @@ public class EndpointMetadata {
 		page.addProperty( API.wasResultOf, exec );
 	}
 
+	/**
+	    Add the counts of the whole selection to this page: its total as
+	    os:totalResults, and for each facet property an elda:facet naming
+	    the property and giving each of its values with the number of items
+	    having it. If the counts are still being computed, the page is
+	    marked elda:countsPending instead.
+	*/
+	public void addCounts( Model meta, Counts counts ) {
+		Resource page = thisPage.inModel( meta );
+		if (counts.isPending()) {
+			page.addLiteral( EXTRAS.countsPending, true );
+			return;
+		}
+		page.addLiteral( OpenSearch.totalResults, counts.getTotal() );
+		for (Map.Entry<String, List<Counts.FacetValue>> e: counts.getFacets().entrySet()) {
+			Resource facet = createBNode( meta );
+			page.addProperty( EXTRAS.facet, facet );
+			facet.addProperty( API.property, meta.createResource( e.getKey() ) );
+			for (Counts.FacetValue v: e.getValue()) {
+				Resource value = createBNode( meta );
+				facet.addProperty( EXTRAS.facetValue, value );
+				value.addProperty( RDF.value, meta.asRDFNode( v.getValue() ) );
+				value.addLiteral( OpenSearch.totalResults, v.getCount() );
+			}
+		}
+	}
+
 	// don't add variables that are not bound!
 	public void addVariableBindings( Model meta, Resource exec ) {
 		List<String> names = new ArrayList<String>( bindings.keySet() );
@@ -19,6 +19,7 @@ import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.epimorphics.lda.cache.ItemCache;
 import com.epimorphics.lda.exceptions.EldaException;
 import com.epimorphics.lda.rdfq.RDFQ;
 import com.epimorphics.lda.rdfq.SparqlSupport;
@@ -27,6 +28,8 @@ import com.epimorphics.lda.sources.Source;
 import com.epimorphics.lda.specs.APISpec;
 import com.epimorphics.lda.support.*;
 import com.epimorphics.lda.vocabularies.API;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.rdf.model.*;
@@ -257,6 +260,8 @@ public class View {
 		final Model m; 
 		final List<Source> sources;
 		final VarSupply vars;
+		final Times times;
+		final String [] languages;
 		
 		public State
 			( String select
@@ -264,15 +269,53 @@ public class View {
 			, Model m
 			, List<Source> sources
 			, VarSupply vars
+			, Times times
+			) {
+			this( select, roots, m, sources, vars, times, null );
+		}
+		
+		/**
+		    As above, but the property-chain queries fetch only those
+		    literals that may survive filtering by <code>languages</code>,
+		    unless that is null.
+		*/
+		public State
+			( String select
+			, List<Resource> roots
+			, Model m
+			, List<Source> sources
+			, VarSupply vars
+			, Times times
+			, String [] languages
 			) {
 			this.select = select;
 			this.roots = roots;
 			this.m = m; 
 			this.sources = sources;
 			this.vars = vars;
+			this.times = times;
+			this.languages = languages;
 		}
 	}
 	
+	/**
+	    Run the CONSTRUCT query <code>q</code> (whose text is <code>queryString</code>)
+	    against source <code>x</code> inside a span of <code>t</code>.
+	*/
+	private static Model construct( Times t, Source x, Query q, String queryString ) {
+		Times.Span span = t.begin( "view query: " + x ).note( queryString );
+		try { return x.executeConstruct( q ); } finally { span.end(); }
+	}
+	
+	/**
+	    Run the DESCRIBE query <code>q</code> (whose text is <code>queryString</code>)
+	    against source <code>x</code> inside a span of <code>t</code>.
+	*/
+	private static Model describe( Times t, Source x, Query q, String queryString ) {
+		Times.Span span = t.begin( "view query: " + x ).note( queryString );
+		try { return x.executeDescribe( q ); } finally { span.end(); }
+	}
+	
 	public String fetchDescriptions( Controls c, State s ) {
 		Times t = c.times;
 		switch (type) {
@@ -336,7 +379,7 @@ public class View {
 		String prefixes = pl.writePrefixes( new StringBuilder() ).toString();
 		String queryString = prefixes + construct.toString();
 		Query constructQuery = QueryFactory.create( queryString );
-		for (Source x: s.sources) s.m.add( x.executeConstruct( constructQuery ) );
+		for (Source x: s.sources) s.m.add( construct( s.times, x, constructQuery, queryString ) );
 		return queryString;
 	}
 
@@ -364,7 +407,7 @@ public class View {
 		String queryString = selectPrefixes + prefixes + construct.toString();
 		// System.err.println( ">> QUERY:\n" + queryString );
 		Query constructQuery = QueryFactory.create( queryString );
-		for (Source x: st.sources) st.m.add( x.executeConstruct( constructQuery ) ); 
+		for (Source x: st.sources) st.m.add( construct( st.times, x, constructQuery, queryString ) ); 
 		return queryString;
 	}
 	
@@ -382,7 +425,7 @@ public class View {
 	private String describeBySelectedItems(State s, List<Resource> allRoots) {
 		String query = createDescribeQueryForItems( s.m, allRoots );
 		Query describeQuery = QueryFactory.create( query );
-		for (Source x: s.sources) s.m.add( x.executeDescribe( describeQuery ) );
+		for (Source x: s.sources) s.m.add( describe( s.times, x, describeQuery, query ) );
 		return query.toString();
 	}
 
@@ -414,7 +457,7 @@ public class View {
 			+ describe
 			;
 		Query describeQuery = QueryFactory.create( query );
-		for (Source x: s.sources) s.m.add( x.executeDescribe( describeQuery ) );
+		for (Source x: s.sources) s.m.add( describe( s.times, x, describeQuery, query ) );
 		return query.toString();
 	}		
 	
@@ -454,7 +497,7 @@ public class View {
 		sb.append( "}\n" );
 		String queryString = sb.toString();
 		Query constructQuery = QueryFactory.create( queryString );
-		for (Source x: s.sources) s.m.add( x.executeConstruct( constructQuery ) );
+		for (Source x: s.sources) s.m.add( construct( s.times, x, constructQuery, queryString ) );
 	}	
 
 	public String fetchDescriptionsFor
@@ -464,14 +507,104 @@ public class View {
 		, Model m
 		, APISpec spec
 		, VarSupply vars
+		) {
+		return fetchDescriptionsFor( c, select, roots, m, spec, vars, null );
+	}
+
+	/**
+	    Fetch the descriptions of the roots into <code>m</code>. If
+	    <code>languages</code> is not null, the property-chain queries
+	    leave out literals in languages other than those listed. Template
+	    and DESCRIBE queries are not affected.
+	*/
+	public String fetchDescriptionsFor
+		( Controls c
+		, String select
+		, List<Resource> roots
+		, Model m
+		, APISpec spec
+		, VarSupply vars
+		, String [] languages
+		) {        
+		return fetchDescriptionsFor( c, select, roots, m, spec, vars, languages, null );
+	}
+
+	/**
+	    As above, but if <code>items</code> is not null the descriptions
+	    of roots it holds are taken from it, only the other roots are
+	    described (by one set of queries), and their descriptions are
+	    added to it. Template views do not use the item cache.
+	*/
+	public String fetchDescriptionsFor
+		( Controls c
+		, String select
+		, List<Resource> roots
+		, Model m
+		, APISpec spec
+		, VarSupply vars
+		, String [] languages
+		, ItemCache items
 		) {        
 		List<Source> sources = spec.getDescribeSources();
-		return this.isTemplateView()
-        	? this.viewByTemplate( roots, m, spec, sources )
-        	: this.fetchDescriptions( c, new View.State( select, roots, m, sources, vars ) );
+		if (this.isTemplateView()) 
+			return this.viewByTemplate( c.times, roots, m, spec, sources );
+		if (items == null || !allURIs( roots ))
+			return this.fetchDescriptions( c, new View.State( select, roots, m, sources, vars, c.times, languages ) );
+		return this.fetchThroughItemCache( c, select, roots, m, sources, vars, languages, items );
+	}
+
+	private static boolean allURIs( List<Resource> roots ) {
+		for (Resource r: roots) if (r == null || !r.isURIResource()) return false;
+		return true;
+	}
+
+	/**
+	    Add to <code>m</code> the cached descriptions of the roots and
+	    describe the rest, caching those whose descriptions can be split
+	    apart. If every root is missing, the selection may still be used
+	    as a nested select; otherwise the missing roots are named.
+	*/
+	private String fetchThroughItemCache
+		( Controls c, String select, List<Resource> roots, Model m
+		, List<Source> sources, VarSupply vars, String [] languages, ItemCache items
+		) {
+		String key = itemCacheKey( sources, languages );
+		Graph g = m.getGraph();
+		Set<String> seen = new HashSet<String>();
+		List<Resource> missing = new ArrayList<Resource>();
+		int hits = 0;
+		for (Resource r: roots) {
+			if (seen.add( r.getURI() )) {
+				Triple [] cached = items.get( key, r.getURI() );
+				if (cached == null) missing.add( r );
+				else { hits += 1; for (Triple t: cached) g.add( t ); }
+			}
+		}
+		c.times.usedItemCache( seen.size(), hits );
+		if (missing.isEmpty()) return "# all " + hits + " items described from the item cache.";
+	//
+		Model fetched = ModelFactory.createDefaultModel();
+		fetched.setNsPrefixes( m );
+		String subset = hits == 0 ? select : "";
+		String query = fetchDescriptions( c, new View.State( subset, missing, fetched, sources, vars, c.times, languages ) );
+		Map<String, Triple[]> split = new DescriptionSplitter( this ).split( fetched.getGraph(), missing );
+		for (Map.Entry<String, Triple[]> e: split.entrySet()) items.put( key, e.getKey(), e.getValue() );
+		m.add( fetched );
+		return query;
+	}
+
+	/**
+	    The identity, for the item cache, of the descriptions this view
+	    fetches from <code>sources</code> in <code>languages</code>.
+	*/
+	private String itemCacheKey( List<Source> sources, String [] languages ) {
+		return 
+			type + " " + chains + " " + labelPropertyURI + " " + sources 
+			+ (languages == null ? "" : " _lang=" + Arrays.toString( languages ))
+			;
 	}
 	
-	public String viewByTemplate(List<Resource> roots, Model m, APISpec spec, List<Source> sources) {
+	public String viewByTemplate(Times t, List<Resource> roots, Model m, APISpec spec, List<Source> sources) {
 		String viewTemplate = getTemplate();
 		int estimatedSize = viewTemplate.length() * 2 + 30 + estimateRootsSize( roots );
 		StringBuilder query = new StringBuilder( estimatedSize );
@@ -486,7 +619,7 @@ public class View {
 				;
 		String resultQueryString = query.toString();
 		Query q = QueryFactory.create( resultQueryString );
-		for (Source x: sources) m.add( x.executeConstruct( q ) );		
+		for (Source x: sources) m.add( construct( t, x, q, resultQueryString ) );		
 		return resultQueryString;
 	}
 
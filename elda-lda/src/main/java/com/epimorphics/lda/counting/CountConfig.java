@@ -0,0 +1,118 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.counting;
+
+import java.util.*;
+
+import com.epimorphics.lda.exceptions.EldaException;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.util.RDFUtils;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    The elda:enableCounting settings of an API or endpoint: whether its
+    list pages report the total number of items selected, the properties
+    whose values are counted as facets, and how many sets of counts may
+    be cached for how long.
+*/
+public class CountConfig {
+
+	public static final int DEFAULT_CACHE_ENTRIES = 1000;
+
+	public static final int DEFAULT_CACHE_SECONDS = 300;
+
+	public enum Mode { NEVER, ALWAYS, OPTIONAL }
+
+	final Mode mode;
+	final List<Property> facets;
+	final int cacheEntries;
+	final int cacheSeconds;
+
+	/**
+	    The default configuration: no counting.
+	*/
+	public CountConfig() {
+		this( Mode.NEVER, new ArrayList<Property>(), DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_SECONDS );
+	}
+
+	private CountConfig( Mode mode, List<Property> facets, int cacheEntries, int cacheSeconds ) {
+		this.mode = mode;
+		this.facets = facets;
+		this.cacheEntries = Math.max( 1, cacheEntries );
+		this.cacheSeconds = Math.max( 0, cacheSeconds );
+	}
+
+	/**
+	    Answer a new CountConfig which is this one overlaid with the
+	    settings of the given API or endpoint resource. Facet properties
+	    given on <code>r</code> replace those inherited.
+	*/
+	public CountConfig overlay( Resource r ) {
+		Statement s = r.getProperty( EXTRAS.enableCounting );
+		List<Property> f = facets;
+		if (r.hasProperty( EXTRAS.facetProperty )) {
+			f = new ArrayList<Property>();
+			for (Statement p: r.listProperties( EXTRAS.facetProperty ).toList())
+				f.add( p.getResource().as( Property.class ) );
+		}
+		return new CountConfig
+			( s == null ? mode : decode( s.getObject() )
+			, f
+			, RDFUtils.getIntValue( r, EXTRAS.countCacheEntries, cacheEntries )
+			, RDFUtils.getIntValue( r, EXTRAS.countCacheSeconds, cacheSeconds )
+			);
+	}
+
+	static Mode decode( RDFNode n ) {
+		String s = n.isLiteral() ? n.asLiteral().getLexicalForm() : "";
+		if (s.equals( "true" )) return Mode.ALWAYS;
+		if (s.equals( "false" )) return Mode.NEVER;
+		if (s.equals( "optional" )) return Mode.OPTIONAL;
+		EldaException.BadSpecification( "elda:enableCounting must be true, false, or \"optional\", not " + n );
+		return /* never */ null;
+	}
+
+	/**
+	    Returns true if the pages of the endpoint may be counted at all.
+	*/
+	public boolean isEnabled() {
+		return mode != Mode.NEVER;
+	}
+
+	/**
+	    Returns true if a request whose _count parameter is <code>count</code>
+	    (null if it has none) should be counted: when counting is enabled,
+	    unless _count=no, and when it is optional, only with _count=yes.
+	*/
+	public boolean wanted( String count ) {
+		if (mode == Mode.NEVER) return false;
+		if (count == null) return mode == Mode.ALWAYS;
+		return count.equals( "yes" );
+	}
+
+	/**
+	    Answer the properties whose values are counted as facets.
+	*/
+	public List<Property> getFacets() {
+		return facets;
+	}
+
+	/**
+	    Answer the most sets of counts to keep for the data source.
+	*/
+	public int getCacheEntries() {
+		return cacheEntries;
+	}
+
+	/**
+	    Answer how long, in milliseconds, a set of counts remains current.
+	*/
+	public long getCacheMillis() {
+		return cacheSeconds * 1000L;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.counting;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.query.APIQuery;
+import com.epimorphics.lda.sources.Source;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.shared.PrefixMapping;
+
+/**
+    The count and facet queries for the selection of one request, built
+    when the request is made and run (perhaps later, by another thread)
+    against its source. The queries leave out the ordering and paging
+    of the selection, so every page of it makes the same request, with
+    the same key.
+*/
+public class CountRequest implements Callable<Counts> {
+
+	/**
+	    The most values of each facet property counted, most common first.
+	*/
+	public static final int FACET_VALUES = 100;
+
+	protected final Source source;
+	protected final String countQuery;
+	protected final Map<String, String> facetQueries = new LinkedHashMap<String, String>();
+
+	public CountRequest( Source source, APIQuery query, Bindings b, PrefixMapping pm, List<Property> facets ) {
+		this.source = source;
+		this.countQuery = query.assembleCountQuery( b, pm );
+		for (Property p: facets)
+			facetQueries.put( p.getURI(), query.assembleFacetQuery( b, pm, p, FACET_VALUES ) );
+	}
+
+	/**
+	    Answer the key under which the counts of this request are cached:
+	    the count query and the facet properties.
+	*/
+	public String getKey() {
+		StringBuilder sb = new StringBuilder( countQuery );
+		for (String p: facetQueries.keySet()) sb.append( "\n# facet " ).append( p );
+		return sb.toString();
+	}
+
+	public String getCountQuery() {
+		return countQuery;
+	}
+
+	/**
+	    Run the count and facet queries, answering their results.
+	*/
+	@Override public Counts call() {
+		final long [] total = new long[1];
+		source.executeSelect( QueryFactory.create( countQuery ), new Reader() {
+			@Override public void consume( ResultSet rs ) {
+				if (rs.hasNext()) total[0] = count( rs.next() );
+			}
+		} );
+		Map<String, List<Counts.FacetValue>> facets = new LinkedHashMap<String, List<Counts.FacetValue>>();
+		for (Map.Entry<String, String> e: facetQueries.entrySet()) {
+			final List<Counts.FacetValue> values = new ArrayList<Counts.FacetValue>();
+			source.executeSelect( QueryFactory.create( e.getValue() ), new Reader() {
+				@Override public void consume( ResultSet rs ) {
+					while (rs.hasNext()) {
+						QuerySolution qs = rs.next();
+						RDFNode v = qs.get( APIQuery.FACET_VAR.name().substring( 1 ) );
+						if (v != null) values.add( new Counts.FacetValue( v.asNode(), count( qs ) ) );
+					}
+				}
+			} );
+			facets.put( e.getKey(), values );
+		}
+		return new Counts( total[0], facets );
+	}
+
+	static long count( QuerySolution qs ) {
+		return qs.getLiteral( APIQuery.COUNT_VAR.name().substring( 1 ) ).getLong();
+	}
+
+	abstract static class Reader implements Source.ResultSetConsumer {
+		@Override public void setup( QueryExecution qe ) {
+		}
+	}
+}
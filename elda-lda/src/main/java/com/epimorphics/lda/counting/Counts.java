@@ -0,0 +1,73 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.counting;
+
+import java.util.*;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+    The total number of items a list endpoint selects, whatever the page,
+    and for each of its facet properties (keyed by URI, in configuration
+    order) the most common values among those items and how many items
+    have each. PENDING stands for counts not yet computed.
+*/
+public class Counts {
+
+	public static final Counts PENDING = new Counts( -1, new LinkedHashMap<String, List<FacetValue>>() );
+
+	protected final long total;
+	protected final Map<String, List<FacetValue>> facets;
+
+	public Counts( long total, Map<String, List<FacetValue>> facets ) {
+		this.total = total;
+		this.facets = facets;
+	}
+
+	public boolean isPending() {
+		return this == PENDING;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public Map<String, List<FacetValue>> getFacets() {
+		return facets;
+	}
+
+	@Override public String toString() {
+		return isPending() ? "Counts{pending}" : "Counts{" + total + " " + facets + "}";
+	}
+
+	/**
+	    One value of a facet property and the number of items having it.
+	*/
+	public static class FacetValue {
+
+		protected final Node value;
+		protected final long count;
+
+		public FacetValue( Node value, long count ) {
+			this.value = value;
+			this.count = count;
+		}
+
+		public Node getValue() {
+			return value;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		@Override public String toString() {
+			return value + "=" + count;
+		}
+	}
+}
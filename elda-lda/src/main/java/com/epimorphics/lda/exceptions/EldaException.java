@@ -25,9 +25,11 @@ public class EldaException extends RuntimeException {
 	}
 	
 	public static final int BAD_REQUEST = 400;
+	public static final int FORBIDDEN = 403;
 	public static final int NOT_FOUND = 404;
 	
 	public static final int SERVER_ERROR = 500;
+	public static final int SERVICE_UNAVAILABLE = 503;
 	
 	public static void NotFound( String kind, String name ) {
 		throw new EldaException( kind + " not found: " + name, null, BAD_REQUEST, null );
@@ -44,6 +46,21 @@ public class EldaException extends RuntimeException {
 		throw new EldaException( message, "", BAD_REQUEST );
 	}
 	
+	/**
+	    Throw a FORBIDDEN exception with the given message.
+	*/
+	public static void Forbidden( String message ) {
+		throw new EldaException( message, "", FORBIDDEN );
+	}
+
+	/**
+	    Throw a SERVICE UNAVAILABLE exception with the given message; the
+	    request may succeed if it is tried again later.
+	*/
+	public static void Unavailable( String message ) {
+		throw new EldaException( message, "", SERVICE_UNAVAILABLE );
+	}
+	
 	public static void NoDeploymentURIFor(String name) {
 		throw new EldaException( "No deployment uri for Endpoint " + name, "", BAD_REQUEST, null );
 	}
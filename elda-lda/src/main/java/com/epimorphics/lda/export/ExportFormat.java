@@ -0,0 +1,40 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.export;
+
+import com.epimorphics.util.MediaType;
+
+/**
+    The formats a list endpoint can be exported in, named by the value
+    of the <code>_export</code> parameter: N-Triples, the triples of the
+    item descriptions, or JSON Lines, one JSON object per item.
+*/
+public enum ExportFormat {
+
+	NTriples( "nt", new MediaType( "application", "n-triples" ) ),
+
+	JSONLines( "jsonl", new MediaType( "application", "x-ndjson" ) );
+
+	public final String name;
+
+	public final MediaType mediaType;
+
+	ExportFormat( String name, MediaType mediaType ) {
+		this.name = name;
+		this.mediaType = mediaType;
+	}
+
+	/**
+	    Answer the format called <code>name</code>, or null if there
+	    is none.
+	*/
+	public static ExportFormat byName( String name ) {
+		for (ExportFormat f: values()) if (f.name.equals( name )) return f;
+		return null;
+	}
+}
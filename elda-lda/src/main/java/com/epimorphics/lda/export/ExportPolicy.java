@@ -0,0 +1,96 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.export;
+
+import java.util.concurrent.Semaphore;
+
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.util.RDFUtils;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+/**
+    The elda:export* settings of an API spec: whether its list endpoints
+    may be exported at all, how many items are described at a time, how
+    many exports may run at once, and how fast each may write. One policy
+    is shared by all the endpoints of the spec.
+*/
+public class ExportPolicy {
+
+	public static final int DEFAULT_WINDOW_SIZE = 500;
+
+	public static final int DEFAULT_CONCURRENCY = 2;
+
+	final boolean enabled;
+	final int windowSize;
+	final int concurrency;
+	final int itemsPerSecond;
+	final Semaphore running;
+
+	public ExportPolicy( boolean enabled, int windowSize, int concurrency, int itemsPerSecond ) {
+		this.enabled = enabled;
+		this.windowSize = Math.max( 1, windowSize );
+		this.concurrency = Math.max( 1, concurrency );
+		this.itemsPerSecond = Math.max( 0, itemsPerSecond );
+		this.running = new Semaphore( this.concurrency );
+	}
+
+	public static ExportPolicy create( Resource specification ) {
+		return new ExportPolicy
+			( RDFUtils.getBooleanValue( specification, EXTRAS.exportEnabled, false )
+			, RDFUtils.getIntValue( specification, EXTRAS.exportWindowSize, DEFAULT_WINDOW_SIZE )
+			, RDFUtils.getIntValue( specification, EXTRAS.exportConcurrency, DEFAULT_CONCURRENCY )
+			, RDFUtils.getIntValue( specification, EXTRAS.exportItemsPerSecond, 0 )
+			);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public int getItemsPerSecond() {
+		return itemsPerSecond;
+	}
+
+	/**
+	    Answer true if as many exports as are allowed are running.
+	*/
+	public boolean isBusy() {
+		return running.availablePermits() == 0;
+	}
+
+	/**
+	    Answer true, and count one more export as running, if fewer than
+	    the allowed number are running; otherwise answer false.
+	*/
+	public boolean tryAcquire() {
+		return running.tryAcquire();
+	}
+
+	/**
+	    Count one fewer export as running.
+	*/
+	public void release() {
+		running.release();
+	}
+
+	/**
+	    Wait for as long as it takes for an export that started at
+	    <code>startMillis</code> and has written <code>items</code> items
+	    to be no faster than the allowed rate.
+	*/
+	public void throttle( long startMillis, long items ) throws InterruptedException {
+		if (itemsPerSecond == 0) return;
+		long due = startMillis + items * 1000 / itemsPerSecond;
+		long wait = due - System.currentTimeMillis();
+		if (wait > 0) Thread.sleep( wait );
+	}
+}
@@ -0,0 +1,332 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.export;
+
+import java.io.*;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epimorphics.jsonrdf.Context;
+import com.epimorphics.jsonrdf.Encoder;
+import com.epimorphics.jsonrdf.extras.JSStreamingWriter;
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.core.View;
+import com.epimorphics.lda.exceptions.APIException;
+import com.epimorphics.lda.exceptions.EldaException;
+import com.epimorphics.lda.query.APIQuery;
+import com.epimorphics.lda.renderers.Renderer;
+import com.epimorphics.lda.shortnames.*;
+import com.epimorphics.lda.sources.Source;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.*;
+import com.epimorphics.util.StreamUtils;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.shared.WrappedException;
+import com.hp.hpl.jena.sparql.expr.E_GreaterThan;
+import com.hp.hpl.jena.sparql.expr.E_IsIRI;
+import com.hp.hpl.jena.sparql.expr.E_Str;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+
+/**
+    The bulk export of a list endpoint. Every <code>windowSize</code>
+    items of the selection are described by the endpoint's view and
+    written, as N-Triples or JSON Lines, and the output flushed before
+    the next are read. Only the window being filled or described is held
+    in memory, and a slow client holds up the reading of the selection
+    rather than letting windows pile up. The output ends with a trailer
+    giving the number of items and windows written, so a client can tell
+    a complete export from a truncated one.
+
+    <p>The selection of a remote source is run once, with no OFFSET or
+    LIMIT, and its items read from the result set as it streams. A source
+    that reads under a lock would hold it, and keep out writers, for the
+    whole export; its selection is instead read in batches of
+    <code>READ_WINDOWS</code> windows, in order of item URI, each batch
+    starting after the last item of the one before, and the lock is held
+    only while a batch is read.</p>
+*/
+public class Exporter implements Renderer.BytesOut {
+
+	static Logger log = LoggerFactory.getLogger( Exporter.class );
+
+	/**
+	    The number of windows of items read at a time from a source that
+	    reads under a lock.
+	*/
+	public static final int READ_WINDOWS = 10;
+
+	final Controls c;
+	final APISpec spec;
+	final APIQuery query;
+	final View view;
+	final Bindings bindings;
+	final ExportFormat format;
+	final CompleteContext.Mode mode;
+	final ExportPolicy policy;
+
+	/**
+	    An exporter for the items selected by <code>query</code>, described
+	    by <code>view</code>. writeAll counts the export as running in
+	    <code>policy</code> while it writes.
+	*/
+	public Exporter
+		( Controls c, APISpec spec, APIQuery query, View view, Bindings bindings
+		, ExportFormat format, CompleteContext.Mode mode, ExportPolicy policy
+		) {
+		this.c = c;
+		this.spec = spec;
+		this.query = query;
+		this.view = view;
+		this.bindings = bindings;
+		this.format = format;
+		this.mode = mode;
+		this.policy = policy;
+	}
+
+	/**
+	    Write the export to <code>os</code>. If as many exports as the policy
+	    allows are already running -- others having started since this one
+	    was asked for -- the output is only the trailer of a failed export.
+	*/
+	@Override public void writeAll( Times t, OutputStream os ) {
+		Windows w = new Windows( new BufferedWriter( StreamUtils.asUTF8( os ) ) );
+		if (!policy.tryAcquire()) {
+			log.warn( "export refused: too many exports are running." );
+			w.failed( new EldaException( "too many exports are running; try again later." ) );
+			return;
+		}
+		try {
+			Times.Span exporting = t.begin( "export" );
+			try {
+				export( w );
+			} finally {
+				exporting.note( w.items + " items in " + w.windows + " windows" ).end();
+			}
+		} finally {
+			policy.release();
+		}
+	}
+
+	private void export( Windows w ) {
+		String select = query.assembleExportQuery( bindings, spec.getPrefixMap() );
+		Source source = spec.getDataSource();
+		Query q = createQuery( select );
+		if (log.isDebugEnabled()) log.debug( "exporting with: " + select.replaceAll( "\n", " " ) );
+		try {
+			if (source.readsUnderLock()) exportInBatches( source, q, w );
+			else source.executeSelect( q, w );
+			w.finish();
+		} catch (RuntimeException e) {
+			log.error( "export failed after " + w.items + " items: " + e.getMessage() );
+			w.failed( e );
+			throw e;
+		}
+	}
+
+	private void exportInBatches( Source source, Query select, Windows w ) {
+		int size = policy.getWindowSize() * READ_WINDOWS;
+		Batch b = new Batch();
+		String after = null;
+		while (true) {
+			source.executeSelect( batchQuery( select, after, size ), b );
+			for (Resource item: b.items) w.add( item );
+			if (b.items.size() < size) return;
+			after = b.items.get( b.items.size() - 1 ).getURI();
+		}
+	}
+
+	/**
+	    Answer a copy of <code>select</code> that selects the first
+	    <code>size</code> URI items, in order of URI, whose URIs follow
+	    <code>after</code> (unless that is null).
+	*/
+	static Query batchQuery( Query select, String after, int size ) {
+		Query q = select.cloneQuery();
+		Expr item = new ExprVar( APIQuery.SELECT_VAR.name().substring( 1 ) );
+		ElementGroup where = new ElementGroup();
+		where.addElement( q.getQueryPattern() );
+		where.addElementFilter( new ElementFilter( new E_IsIRI( item ) ) );
+		if (after != null)
+			where.addElementFilter( new ElementFilter( new E_GreaterThan( new E_Str( item ), NodeValue.makeString( after ) ) ) );
+		q.setQueryPattern( where );
+		if (q.getOrderBy() != null) q.getOrderBy().clear();
+		q.addOrderBy( new E_Str( item ), Query.ORDER_ASCENDING );
+		q.setOffset( Query.NOLIMIT );
+		q.setLimit( size );
+		return q;
+	}
+
+	/**
+	    Answer the item bound in <code>qs</code>, or null if it is a blank
+	    node, which cannot be described by a later query.
+	*/
+	static Resource itemOf( QuerySolution qs ) {
+		String var = APIQuery.SELECT_VAR.name();
+		RDFNode item = qs.get( var );
+		if (item == null)
+			EldaException.BadSpecification( "no binding for " + var + " in export SELECT." );
+		return item.isURIResource() ? ResourceFactory.createResource( item.asResource().getURI() ) : null;
+	}
+
+	/**
+	    The consumer of one batch of the selection, which keeps its items.
+	*/
+	static class Batch implements Source.ResultSetConsumer {
+
+		final List<Resource> items = new ArrayList<Resource>();
+
+		@Override public void setup( QueryExecution qe ) {
+		}
+
+		@Override public void consume( ResultSet rs ) {
+			items.clear();
+			while (rs.hasNext()) {
+				Resource item = itemOf( rs.next() );
+				if (item != null) items.add( item );
+			}
+		}
+	}
+
+	private Query createQuery( String select ) {
+		try {
+			return QueryFactory.create( select );
+		} catch (Exception e) {
+			throw new APIException( "Internal error building query: " + select, e );
+		}
+	}
+
+	/**
+	    The consumer of the selection's result set, which fills a window
+	    with items and writes out their descriptions when it is full.
+	*/
+	class Windows implements Source.ResultSetConsumer {
+
+		final Writer out;
+		final List<Resource> window = new ArrayList<Resource>( policy.getWindowSize() );
+		final long start = System.currentTimeMillis();
+
+		long items = 0;
+		int windows = 0;
+
+		Windows( Writer out ) {
+			this.out = out;
+		}
+
+		@Override public void setup( QueryExecution qe ) {
+		}
+
+		@Override public void consume( ResultSet rs ) {
+			while (rs.hasNext()) {
+				Resource item = itemOf( rs.next() );
+				if (item != null) add( item );
+			}
+		}
+
+		void add( Resource item ) {
+			window.add( item );
+			if (window.size() == policy.getWindowSize()) writeWindow();
+		}
+
+		void finish() {
+			if (window.size() > 0) writeWindow();
+			if (format == ExportFormat.NTriples)
+				write( "# export complete: " + items + " items in " + windows + " windows\n" );
+			else
+				write( "{\"_export\" : {\"complete\" : true, \"items\" : " + items + ", \"windows\" : " + windows + "}}\n" );
+			flush();
+		}
+
+		/**
+		    Try to end the output with a trailer saying that the export
+		    failed; the client may well have gone already.
+		*/
+		void failed( RuntimeException e ) {
+			try {
+				String message = String.valueOf( e.getMessage() );
+				if (format == ExportFormat.NTriples)
+					write( "\n# export failed after " + items + " items: " + message.replaceAll( "[\r\n]+", " " ) + "\n" );
+				else
+					write( "{\"_export\" : {\"complete\" : false, \"items\" : " + items + ", \"error\" : " + JSStreamingWriter.outputQuotedString( message ) + "}}\n" );
+				flush();
+			} catch (RuntimeException ignored) {
+				// nothing more can be done.
+			}
+		}
+
+		void writeWindow() {
+			Model m = ModelFactory.createDefaultModel();
+			m.setNsPrefixes( spec.getPrefixMap() );
+			Controls wc = new Controls( c.allowCache, new Times() );
+			view.fetchDescriptionsFor( wc, "", window, m, spec, query, query.languagesForViewQuery() );
+			Model described = ModelFactory.createModelForGraph( edited( m ) );
+			if (format == ExportFormat.NTriples) {
+				described.write( out, "N-TRIPLE" );
+			} else {
+				writeLines( described );
+			}
+			flush();
+			items += window.size();
+			windows += 1;
+			window.clear();
+			try {
+				policy.throttle( start, items );
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new WrappedException( e );
+			}
+		}
+
+		/**
+		    The description graph of the window after the language filter
+		    and the spec's prefix edits, as a rendering would see it.
+		*/
+		private Graph edited( Model m ) {
+			Graph g = m.getGraph();
+			String languages = query.getDefaultLanguage();
+			if (languages != null) {
+				if (query.getLanguageFilterMode() == LanguageFilter.Mode.InQuery) g = LanguageFilter.filteredView( g, languages.split(",") );
+				else LanguageFilter.filterByLanguages( m, languages.split(",") );
+			}
+			ModelPrefixEditor mpe = spec.getModelPrefixEditor();
+			return mpe.isEmpty() ? g : mpe.rename( g );
+		}
+
+		private void writeLines( Model described ) {
+			ModelPrefixEditor mpe = spec.getModelPrefixEditor();
+			List<Resource> roots = new ArrayList<Resource>( window.size() );
+			for (Resource r: window) roots.add( mpe.rename( r.inModel( described ) ).asResource() );
+			Context context = spec.getShortnameService().asContext();
+		// described has already had its prefixes edited, so the bindings need no renaming
+			Map<String, String> termBindings = new CompleteContext( mode, context, described ).Do( described, described );
+			try {
+				Encoder
+					.getForOneResult( CompleteReadContext.create( context, termBindings ) )
+					.encodeLines( described, roots, CycleFinder.findCyclics( described ), out )
+					;
+			} catch (IOException e) {
+				throw new WrappedException( e );
+			}
+		}
+
+		private void write( String s ) {
+			try { out.write( s ); } catch (IOException e) { throw new WrappedException( e ); }
+		}
+
+		private void flush() {
+			try { out.flush(); } catch (IOException e) { throw new WrappedException( e ); }
+		}
+	}
+}
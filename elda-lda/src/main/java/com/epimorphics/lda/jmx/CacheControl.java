@@ -18,6 +18,12 @@ public class CacheControl implements ServletContextListener {
     	
     	public void clearAll();
     	
+    	public long getItemCacheRequests();
+    	
+    	public long getItemCacheHits();
+    	
+    	public long getItemCacheEntries();
+    	
     }
     
     public static class Control implements ControlMBean {
@@ -25,6 +31,35 @@ public class CacheControl implements ServletContextListener {
     	public void clearAll() {
     		Cache.Registry.clearAll();
     	}
+    	
+    	public long getItemCacheRequests() {
+    		return itemCounts()[0];
+    	}
+    	
+    	public long getItemCacheHits() {
+    		return itemCounts()[1];
+    	}
+    	
+    	public long getItemCacheEntries() {
+    		return itemCounts()[2];
+    	}
+    	
+    	/**
+    	    The requests, hits, and entries of all the item caches.
+    	*/
+    	private long [] itemCounts() {
+    		final long [] result = new long[3];
+    		Cache.Registry.reportCounts( new Cache.CountReporter() {
+    			@Override public void counts( String policy, String label, String part, long requests, long hits, long entries ) {
+    				if (part.equals( "items" )) {
+    					result[0] += requests;
+    					result[1] += hits;
+    					result[2] += entries;
+    				}
+    			}
+    		});
+    		return result;
+    	}
     }
 
 }
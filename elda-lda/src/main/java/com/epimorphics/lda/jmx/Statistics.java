@@ -6,7 +6,8 @@ import java.util.Map;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
-import com.epimorphics.lda.support.statistics.Interval;
+import com.epimorphics.lda.support.statistics.EndpointStats;
+import com.epimorphics.lda.support.statistics.Histogram;
 import com.epimorphics.lda.support.statistics.StatsValues;
 
 public class Statistics implements ServletContextListener {
@@ -47,40 +48,44 @@ public class Statistics implements ServletContextListener {
     	public Map<String, Object> getRenderingDurations();
     	
     	public Map<String, Object> getRenderingSizes();
+    	
+    	public Map<String, Object> getEndpointLatencies();
+    	
+    	public Map<String, Object> getItemCacheHitRatios();
     }
     
     public static class Stats implements StatsMBean {
     	
     	public long getRequestCount() {
-    		return StatsValues.requestCount;
+    		return StatsValues.requestCount.sum();
     	}
     	
     	public long getTotalViewCacheHits() {
-    		return StatsValues.totalViewCacheHits;
+    		return StatsValues.totalViewCacheHits.sum();
     	}
     	
     	public long getTotalSelectCacheHits() {
-    		return StatsValues.totalSelectCacheHits;
+    		return StatsValues.totalSelectCacheHits.sum();
     	}
     	
     	public long getTotalTime() {
-    		return StatsValues.totalTime;
+    		return StatsValues.allEndpoints().totalTime.total();
     	}
     	
     	public long getFailedMatchCount() {
-    		return StatsValues.failedMatchCount;
+    		return StatsValues.failedMatchCount.sum();
     	}
 
 		@Override public Map<String, Object> getTotalSelectionTime() {
-			return canonise( StatsValues.totalSelectionTime );
+			return canonise( StatsValues.allEndpoints().selectionTime );
 		}
 
 		@Override public Map<String, Object> getTotalViewerTime() {
-			return canonise( StatsValues.totalSelectionTime );
+			return canonise( StatsValues.allEndpoints().viewTime );
 		}
 
 		@Override public Map<String, Object> getTotalRenderTime() {
-			return canonise( StatsValues.totalRenderTime );
+			return canonise( StatsValues.allEndpoints().renderTime );
 		}
 
 		@Override public Map<String, Object> getTotalRenderSize() {
@@ -104,23 +109,62 @@ public class Statistics implements ServletContextListener {
 		}
 		
 		@Override public Map<String, Object> getRenderingSizes() {
-			return canonise( StatsValues.formatDurations );
+			return canonise( StatsValues.formatSizes );
+		}
+		
+		/**
+		    Answer, for each endpoint URI template, the canonised histograms
+		    of its selection, view, render and total times.
+		*/
+		@Override public Map<String, Object> getEndpointLatencies() {
+			Map<String, Object> result = new HashMap<String, Object>();
+			for (Map.Entry<String, EndpointStats> e: StatsValues.endpointStats.entrySet()) {
+				EndpointStats s = e.getValue();
+				Map<String, Object> c = new HashMap<String, Object>();
+				c.put( "selection", canonise( s.selectionTime ) );
+				c.put( "view", canonise( s.viewTime ) );
+				c.put( "render", canonise( s.renderTime ) );
+				c.put( "total", canonise( s.totalTime ) );
+				result.put( e.getKey(), c );
+			}
+			return result;
+		}
+		
+		/**
+		    Answer, for each endpoint URI template, how many item cache
+		    lookups its requests made, how many hit, and their ratio.
+		*/
+		@Override public Map<String, Object> getItemCacheHitRatios() {
+			Map<String, Object> result = new HashMap<String, Object>();
+			for (Map.Entry<String, EndpointStats> e: StatsValues.endpointStats.entrySet()) {
+				EndpointStats s = e.getValue();
+				Map<String, Object> c = new HashMap<String, Object>();
+				c.put( "lookups", s.itemCacheLookups.sum() );
+				c.put( "hits", s.itemCacheHits.sum() );
+				c.put( "ratio", s.itemCacheHitRatio() );
+				result.put( e.getKey(), c );
+			}
+			return result;
 		}
     	
-    	private Map<String, Object> canonise( Map<String, Interval> map ) {
+    	private Map<String, Object> canonise( Map<String, Histogram> map ) {
 			Map<String, Object> result = new HashMap<String, Object>();
-			for (Map.Entry<String, Interval> e: map.entrySet()) 
+			for (Map.Entry<String, Histogram> e: map.entrySet()) 
 				result.put( e.getKey(), canonise( e.getValue() ) );
 			return result;
 		}
 
-		private Map<String, Object> canonise(Interval i) {
+		private Map<String, Object> canonise(Histogram h) {
     		Map<String, Object> c = new HashMap<String, Object>();
-    		if (i.count > 0) {
-    			c.put( "smallest", i.min );
-    			c.put( "biggest", i.max );
-    			c.put( "total", i.total );
-    			c.put( "hits", i.count );
+    		long count = h.count();
+    		if (count > 0) {
+    			c.put( "smallest", h.min() );
+    			c.put( "biggest", h.max() );
+    			c.put( "total", h.total() );
+    			c.put( "hits", count );
+    			c.put( "p50", h.percentile( 50 ) );
+    			c.put( "p95", h.percentile( 95 ) );
+    			c.put( "p99", h.percentile( 99 ) );
     		} else {
     			c.put( "hits", 0 );
     		}
@@ -28,9 +28,11 @@ import com.epimorphics.lda.exceptions.EldaException;
 import com.epimorphics.lda.rdfq.*;
 import com.epimorphics.lda.shortnames.ShortnameService;
 import com.epimorphics.lda.sources.Source;
+import com.epimorphics.lda.spatial.SpatialConfig;
 import com.epimorphics.lda.specs.APISpec;
 import com.epimorphics.lda.support.*;
 import com.epimorphics.lda.textsearch.TextSearchConfig;
+import com.epimorphics.lda.vocabularies.EXTRAS;
 import com.epimorphics.util.CollectionUtils;
 import com.epimorphics.util.Couple;
 import com.hp.hpl.jena.graph.Graph;
@@ -54,6 +56,12 @@ public class APIQuery implements VarSupply, WantsMetadata {
 
 	public static final Variable SELECT_VAR = RDFQ.var("?item");
 
+	/** The variable bound to the count in count and facet queries. */
+	public static final Variable COUNT_VAR = RDFQ.var("?__count");
+
+	/** The variable bound to the facet value in facet queries. */
+	public static final Variable FACET_VAR = RDFQ.var("?__facet");
+
 	public static final String PREFIX_VAR = "?___";
 
 	/**
@@ -95,10 +103,18 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		return textSearchConfig;
 	}
 
+	protected final SpatialConfig spatialConfig;
+
+	public SpatialConfig getSpatialConfig() {
+		return spatialConfig;
+	}
+
 	private boolean isItemEndpoint = false;
 
 	protected String defaultLanguage = null;
 
+	protected LanguageFilter.Mode languageFilterMode = LanguageFilter.Mode.InModel;
+
 	protected int varcount = 0;
 
 	protected int pageSize = QueryParameter.DEFAULT_PAGE_SIZE;
@@ -162,6 +178,8 @@ public class APIQuery implements VarSupply, WantsMetadata {
 
 		String getDefaultLanguage();
 
+		LanguageFilter.Mode getLanguageFilterMode();
+
 		int getMaxPageSize();
 
 		int getDefaultPageSize();
@@ -171,6 +189,8 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		boolean isItemEndpoint();
 
 		TextSearchConfig getTextSearchConfig();
+
+		SpatialConfig getSpatialConfig();
 	}
 
 	protected static class FilterExpressions implements ValTranslator.Filters {
@@ -190,12 +210,14 @@ public class APIQuery implements VarSupply, WantsMetadata {
 	public APIQuery(QueryBasis qb) {
 		this.sns = qb.sns();
 		this.defaultLanguage = qb.getDefaultLanguage();
+		this.languageFilterMode = qb.getLanguageFilterMode();
 		this.pageSize = qb.getDefaultPageSize();
 		this.defaultPageSize = qb.getDefaultPageSize();
 		this.maxPageSize = qb.getMaxPageSize();
 		this.itemTemplate = qb.getItemTemplate();
 		this.isItemEndpoint = qb.isItemEndpoint();
 		this.textSearchConfig = qb.getTextSearchConfig();
+		this.spatialConfig = qb.getSpatialConfig();
 		//
 		this.deferredFilters = new ArrayList<PendingParameterValue>();
 		this.whereExpressions = new StringBuffer();
@@ -219,6 +241,7 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		this.maxPageSize = other.maxPageSize;
 		this.defaultPageSize = other.defaultPageSize;
 		this.defaultLanguage = other.defaultLanguage;
+		this.languageFilterMode = other.languageFilterMode;
 		this.enableETags = other.enableETags;
 		this.fixedSelect = other.fixedSelect;
 		this.isItemEndpoint = other.isItemEndpoint;
@@ -230,6 +253,7 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		this.subjectResource = other.subjectResource;
 		this.varcount = other.varcount;
 		this.textSearchConfig = other.textSearchConfig;
+		this.spatialConfig = other.spatialConfig;
 		//
 		this.languagesFor = new HashMap<String, String>(other.languagesFor);
 		this.basicGraphTriples = new ArrayList<RDFQ.Triple>(
@@ -341,6 +365,22 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		return defaultLanguage;
 	}
 
+	/**
+	 * Answer how _lang filtering is done for this query.
+	 */
+	public LanguageFilter.Mode getLanguageFilterMode() {
+		return languageFilterMode;
+	}
+
+	/**
+	 * Answer the languages that view queries should filter literals by, or
+	 * null if filtering is not done in the query.
+	 */
+	public String[] languagesForViewQuery() {
+		return languageFilterMode == LanguageFilter.Mode.InQuery
+				&& defaultLanguage != null ? defaultLanguage.split(",") : null;
+	}
+
 	public void clearLanguages() {
 		languagesFor.clear();
 	}
@@ -420,6 +460,21 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		addFilterExpression(RDFQ.infix(already, op, r));
 	}
 
+	/**
+	 * Select the items with a <code>lat</code> value strictly between
+	 * <code>minLat</code> and <code>maxLat</code> and a <code>lng</code>
+	 * value strictly between <code>minLong</code> and <code>maxLong</code>,
+	 * using the elda:withinBox property function.
+	 */
+	public void addWithinBox(Property lat, Property lng, double minLat,
+			double minLong, double maxLat, double maxLong) {
+		AnyList box = RDFQ.list(RDFQ.uri(lat.getURI()),
+				RDFQ.uri(lng.getURI()), RDFQ.literal(minLat),
+				RDFQ.literal(minLong), RDFQ.literal(maxLat),
+				RDFQ.literal(maxLong));
+		addTriplePattern(SELECT_VAR, EXTRAS.withinBox, box);
+	}
+
 	public void addNumericRangeFilter(Variable v, double x, double dx) {
 		addInfixSparqlFilter(RDFQ.literal(x - dx), "<", v);
 		addInfixSparqlFilter(v, "<", RDFQ.literal(x + dx));
@@ -663,33 +718,40 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		return assembleRawSelectQuery(pl, cc);
 	}
 
+	/**
+	 * Answer the select query for a bulk export: the selection with no OFFSET
+	 * or LIMIT, and DISTINCT so that no item is selected twice. A fixed
+	 * select is used as it stands.
+	 */
+	public String assembleExportQuery(Bindings cc, PrefixMapping prefixes) {
+		PrefixLogger pl = new PrefixLogger(prefixes);
+		return assembleRawSelectQuery(pl, cc, false);
+	}
+
 	public String assembleRawSelectQuery(PrefixLogger pl, Bindings cc) {
+		return assembleRawSelectQuery(pl, cc, true);
+	}
+
+	private String assembleRawSelectQuery(PrefixLogger pl, Bindings cc,
+			boolean paged) {
 		if (!sortByOrderSpecsFrozen)
 			unpackSortByOrderSpecs();
 		if (fixedSelect == null) {
 			StringBuilder q = new StringBuilder();
 			q.append("SELECT ");
-			if (orderExpressions.length() > 0)
+			if (orderExpressions.length() > 0 || !paged)
 				q.append("DISTINCT ");
 			q.append(SELECT_VAR.name());
 			q.append("\nWHERE {\n");
-			String bgp = constructBGP(pl);
-			if (whereExpressions.length() > 0) {
-				q.append(whereExpressions);
-				pl.findPrefixesIn(whereExpressions.toString());
-			} else {
-				if (basicGraphTriples.isEmpty())
-					bgp = SELECT_VAR.name() + " ?__p ?__v .\n" + bgp;
-			}
-			q.append(bgp);
-			appendFilterExpressions(pl, q);
+			appendWhereClause(pl, q);
 			q.append("} ");
 			if (orderExpressions.length() > 0) {
 				q.append(" ORDER BY ");
 				q.append(orderExpressions);
 				pl.findPrefixesIn(orderExpressions.toString());
 			}
-			appendOffsetAndLimit(q);
+			if (paged)
+				appendOffsetAndLimit(q);
 			// System.err.println( ">> QUERY IS: \n" + q.toString() );
 			String bound = bindDefinedvariables(pl, q.toString(), cc);
 			StringBuilder x = new StringBuilder();
@@ -702,13 +764,80 @@ public class APIQuery implements VarSupply, WantsMetadata {
 			StringBuilder sb = new StringBuilder();
 			pl.writePrefixes(sb);
 			sb.append(bound);
-			appendOffsetAndLimit(sb);
+			if (paged)
+				appendOffsetAndLimit(sb);
 			// System.err.println( ">> QUERY IS: \n" + sb.toString() );
 			// if (true) throw new RuntimeException();
 			return sb.toString();
 		}
 	}
 
+	/**
+	 * Answer a query counting the distinct items of the selection, binding
+	 * the count to COUNT_VAR. It has the where clause of the select query but
+	 * no ORDER BY, OFFSET or LIMIT, so every page of a selection has the same
+	 * count query. A fixed select is counted as a nested select.
+	 */
+	public String assembleCountQuery(Bindings cc, PrefixMapping prefixes) {
+		String projection = "(COUNT(DISTINCT " + SELECT_VAR.name() + ") AS "
+				+ COUNT_VAR.name() + ")";
+		return assembleAggregateQuery(new PrefixLogger(prefixes), cc,
+				projection, "", "");
+	}
+
+	/**
+	 * Answer a query counting, for each value of the property <code>p</code>
+	 * of the items of the selection, the distinct items having it, binding
+	 * the value to FACET_VAR and the count to COUNT_VAR; at most
+	 * <code>limit</code> values, most common first.
+	 */
+	public String assembleFacetQuery(Bindings cc, PrefixMapping prefixes,
+			Property p, int limit) {
+		PrefixLogger pl = new PrefixLogger(prefixes);
+		String projection = FACET_VAR.name() + " (COUNT(DISTINCT "
+				+ SELECT_VAR.name() + ") AS " + COUNT_VAR.name() + ")";
+		String facet = SELECT_VAR.name() + " "
+				+ RDFQ.uri(p.getURI()).asSparqlTerm(pl) + " "
+				+ FACET_VAR.name() + " .\n";
+		String modifiers = " GROUP BY " + FACET_VAR.name()
+				+ " ORDER BY DESC(" + COUNT_VAR.name() + ") " + FACET_VAR.name()
+				+ " LIMIT " + limit;
+		return assembleAggregateQuery(pl, cc, projection, facet, modifiers);
+	}
+
+	private String assembleAggregateQuery(PrefixLogger pl, Bindings cc,
+			String projection, String extra, String modifiers) {
+		StringBuilder q = new StringBuilder();
+		q.append("SELECT ").append(projection).append("\nWHERE {\n");
+		if (fixedSelect == null) {
+			if (!sortByOrderSpecsFrozen)
+				unpackSortByOrderSpecs();
+			appendWhereClause(pl, q);
+		} else {
+			pl.findPrefixesIn(fixedSelect);
+			q.append("{ ").append(fixedSelect).append(" }\n");
+		}
+		q.append(extra).append("}").append(modifiers);
+		String bound = bindDefinedvariables(pl, q.toString(), cc);
+		StringBuilder x = new StringBuilder();
+		pl.writePrefixes(x);
+		x.append(bound);
+		return x.toString();
+	}
+
+	private void appendWhereClause(PrefixLogger pl, StringBuilder q) {
+		String bgp = constructBGP(pl);
+		if (whereExpressions.length() > 0) {
+			q.append(whereExpressions);
+			pl.findPrefixesIn(whereExpressions.toString());
+		} else {
+			if (basicGraphTriples.isEmpty())
+				bgp = SELECT_VAR.name() + " ?__p ?__v .\n" + bgp;
+		}
+		q.append(bgp);
+		appendFilterExpressions(pl, q);
+	}
+
 	private void appendOffsetAndLimit(StringBuilder q) {
 		q.append(" OFFSET " + (pageNumber * pageSize));
 		q.append(" LIMIT " + pageSize);
@@ -815,8 +944,10 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		String outerSelect = queryAndResults.a;
 		List<Resource> results = queryAndResults.b;
 
-		APIResultSet already = cache.getCachedResultSet(results,
-				view.toString());
+		String viewKey = view.toString();
+		if (languageFilterMode == LanguageFilter.Mode.InQuery)
+			viewKey = viewKey + "\n_lang=" + defaultLanguage;
+		APIResultSet already = cache.getCachedResultSet(results, viewKey);
 		if (c.allowCache && already != null) {
 			t.usedViewCache();
 			if (log.isDebugEnabled())
@@ -824,13 +955,17 @@ public class APIQuery implements VarSupply, WantsMetadata {
 			return already.clone();
 		}
 
-		APIResultSet rs = fetchDescriptionOfAllResources(c, outerSelect, spec,
+		Controls vc = c.allowCache && spec.getItemCacheTriples() > 0 ? c
+				.withItemCache(cache.getItemCache()) : c;
+		Times.Span viewing = t.begin("view");
+		APIResultSet rs = fetchDescriptionOfAllResources(vc, outerSelect, spec,
 				view, results);
+		viewing.end();
 
 		long afterView = System.currentTimeMillis();
 		t.setViewDuration(afterView - afterSelect);
 		rs.setSelectQuery(outerSelect);
-		cache.cacheDescription(results, view.toString(), rs.clone());
+		cache.cacheDescription(results, viewKey, rs.clone());
 		return rs;
 	}
 
@@ -843,7 +978,7 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		Graph gd = descriptions.getGraph();
 		String detailsQuery = results.isEmpty() || results.get(0) == null ? "# no results, no query."
 				: view.fetchDescriptionsFor(c, select, results, descriptions,
-						spec, this);
+						spec, this, languagesForViewQuery(), c.itemCache);
 		return new APIResultSet(gd, results, count < pageSize, enableETags,
 				detailsQuery, view);
 	}
@@ -869,7 +1004,9 @@ public class APIQuery implements VarSupply, WantsMetadata {
 	private Couple<String, List<Resource>> runGeneralQuery(Controls c,
 			Cache cache, APISpec spec, Bindings cc, Source source,
 			final List<Resource> results) {
+		Times.Span building = c.times.begin("select query build");
 		String selectQuery = assembleSelectQuery(cc, spec.getPrefixMap());
+		building.end();
 		c.times.setSelectQuerySize(selectQuery);
 		List<Resource> already = cache.getCachedResources(selectQuery);
 		if (c.allowCache && already != null) {
@@ -881,7 +1018,12 @@ public class APIQuery implements VarSupply, WantsMetadata {
 		Query q = createQuery(selectQuery);
 		if (log.isDebugEnabled())
 			log.debug("Running query: " + selectQuery.replaceAll("\n", " "));
-		source.executeSelect(q, new ResultResourcesReader(results));
+		Times.Span selecting = c.times.begin("upstream select: " + source).note(selectQuery);
+		try {
+			source.executeSelect(q, new ResultResourcesReader(results));
+		} finally {
+			selecting.end();
+		}
 		cache.cacheSelection(selectQuery, results);
 		return new Couple<String, List<Resource>>(selectQuery, results);
 	}
@@ -141,6 +141,14 @@ public class ContextQueryUpdater implements ViewSetter {
 		    aq.setPageSize( integerOneOrMore( p, val ) );
 		} else if (p.equals( QueryParameter._FORMAT )) {
 			// already handled. WAS: vs.setFormat(val);
+		} else if (p.equals( QueryParameter._EXPORT )) {
+			// the export format, handled by the router
+			mustBeListEndpoint( p );
+		} else if (p.equals( QueryParameter._COUNT )) {
+			// whether to count, handled by the endpoint
+			mustBeListEndpoint( p );
+			if (!val.equals( "yes" ) && !val.equals( "no" ))
+				EldaException.BadRequest( p + " must be yes or no, not " + val );
 		} else if (p.equals(QueryParameter._METADATA)) {
 			aq.addMetadataOptions( val.split(",") );
 	    } else if (p.equals(QueryParameter._SEARCH)) {
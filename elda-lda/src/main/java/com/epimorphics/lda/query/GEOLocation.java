@@ -13,13 +13,15 @@ package com.epimorphics.lda.query;
 
 import com.epimorphics.lda.exceptions.QueryParseException;
 import com.epimorphics.lda.rdfq.Variable;
+import com.epimorphics.lda.spatial.SpatialConfig;
 import com.epimorphics.lda.support.NumericArgUtils;
-import com.epimorphics.lda.vocabularies.GEOStub;
 
 /**
     GEOLocation is used in the query-building component to record the values
     of near-lat, near-long, and _distance parameters and to build the
-    appropriate query component if any of them are present.
+    appropriate query component if any of them are present: the
+    elda:withinBox property function if the data source has a spatial
+    index, otherwise numeric FILTERs on the lat and long values.
     
  	@author chris
 
@@ -41,11 +43,22 @@ public class GEOLocation
 			double deltaLat = NumericArgUtils.deltaLat( d, lat, lang );
 			double deltaLong = NumericArgUtils.deltaLong( d, lat, lang );
 		//
-		    Variable latVar = query.newVar(), longVar = query.newVar();
-		    query.addSubjectHasProperty( GEOStub.LAT, latVar );
-		    query.addSubjectHasProperty( GEOStub.LONG, longVar );
-		    query.addNumericRangeFilter( latVar, lat, deltaLat );
-		    query.addNumericRangeFilter( longVar, lang, deltaLong );
+			SpatialConfig sc = query.getSpatialConfig();
+			if (sc.useIndex())
+				{
+				query.addWithinBox
+					( sc.getLatProperty(), sc.getLongProperty()
+					, lat - deltaLat, lang - deltaLong, lat + deltaLat, lang + deltaLong 
+					);
+				}
+			else
+				{
+			    Variable latVar = query.newVar(), longVar = query.newVar();
+			    query.addSubjectHasProperty( sc.getLatProperty(), latVar );
+			    query.addSubjectHasProperty( sc.getLongProperty(), longVar );
+			    query.addNumericRangeFilter( latVar, lat, deltaLat );
+			    query.addNumericRangeFilter( longVar, lang, deltaLong );
+				}
 	    	}
 	    else if (nearLat != null || nearLong != null || distance != null)
 	    	{
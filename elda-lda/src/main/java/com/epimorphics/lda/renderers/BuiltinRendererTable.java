@@ -71,19 +71,9 @@ public class BuiltinRendererTable {
 			}
 			} );
 		
-		putFactory( "ttl", API.TurtleFormatter, MediaType.TEXT_TURTLE, new DoingWith() 
-			{
-			@Override public Renderer buildWith( APIEndpoint ep, ShortnameService sns ) {
-				return new TurtleRenderer();
-			}
-			} );
+		putFactory( "ttl", API.TurtleFormatter, MediaType.TEXT_TURTLE, new TurtleRendererFactory() );
 		
-		 putFactory( "rdf", API.RdfXmlFormatter, MediaType.APPLICATION_RDF_XML, new DoingWith() 
-			{
-			@Override public Renderer buildWith( APIEndpoint ep, ShortnameService sns ) {
-				return new RDFXMLRenderer();
-			}
-			} );
+		putFactory( "rdf", API.RdfXmlFormatter, MediaType.APPLICATION_RDF_XML, new RDFXMLRendererFactory() );
 		
 		putDefaultFactory( "json", API.JsonFormatter, MediaType.APPLICATION_JSON, new JSONRendererFactory( MediaType.APPLICATION_JSON ) );
 		
@@ -0,0 +1,189 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.renderers;
+
+import java.util.*;
+
+import com.epimorphics.jsonrdf.RDFUtil;
+import com.epimorphics.lda.vocabularies.*;
+import com.epimorphics.util.Couple;
+import com.epimorphics.util.RDFUtils;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.DCTerms;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    The elda:feed* settings of a feed formatter, read once when its
+    renderer is built: the feed title, rights, authors and content
+    namespace, and the properties that give each entry its title, date,
+    authors and rights. A FeedPlan is immutable and shared by all the
+    renders of its endpoint, whether Atom or RSS.
+*/
+public class FeedPlan {
+
+	// TODO better than this
+	static final String neverUpdated = "1954-02-04T00:00:01.52Z";
+
+	final String title;
+	final String namespace;
+	final String rights;
+	final List<String> authors;
+	final List<RDFNode> authorNodes;
+	final List<Property> dateProperties;
+	final List<Property> labelProperties;
+	final List<Property> authorProperties;
+	final List<Property> rightsProperties;
+
+	FeedPlan( Resource config ) {
+		this.title = RDFUtils.getStringValue( config, EXTRAS.feedTitle, "Elda feed" );
+		this.namespace = RDFUtils.getStringValue( config, EXTRAS.feedNamespace, EXTRAS.getURI() );
+		this.rights = RDFUtils.getStringValue( config, EXTRAS.feedRights, null );
+		this.authorNodes = Collections.unmodifiableList( getNodeList( config, EXTRAS.feedAuthors ) );
+		this.authors = Collections.unmodifiableList( bodies( authorNodes ) );
+		this.dateProperties = Collections.unmodifiableList( dateProperties( config ) );
+		this.labelProperties = Collections.unmodifiableList( labelProperties( config ) );
+		this.authorProperties = Collections.unmodifiableList( authorProperties( config ) );
+		this.rightsProperties = Collections.unmodifiableList( rightsProperties( config ) );
+	}
+
+	public static FeedPlan compile( Resource config ) {
+		return new FeedPlan( config );
+	}
+
+	/**
+	    Return a list of date properties, most preferred first, from the
+	    RDF list that is the value of the feedDateProperties value of
+	    config. If there is no such value, then use the list
+	    (dct:modified, dct:date, dct:dateAccepted, dct:dateSubmitted,
+	    dct:created).
+	*/
+	static List<Property> dateProperties( Resource config ) {
+		List<Property> result = getPropertyList( config, EXTRAS.feedDateProperties );
+		if (result.isEmpty()) {
+			result.add( DCTerms.modified );
+			result.add( DCTerms.date );
+			result.add( DCTerms.dateAccepted );
+			result.add( DCTerms.dateSubmitted );
+			result.add( DCTerms.created );
+		}
+		return result;
+	}
+
+	/**
+	    Return a list of label properties, most preferred first, from the
+	    RDF list that is the value of the feedLabelProperties value of
+	    config. If there is no such value, then use the list
+	    (api:label, skos:prefLabel, rdfs:label).
+	*/
+	static List<Property> labelProperties( Resource config ) {
+		List<Property> result = getPropertyList( config, EXTRAS.feedLabelProperties );
+		if (result.isEmpty()) {
+			result.add( API.label );
+			result.add( SKOSstub.prefLabel );
+			result.add( RDFS.label );
+		}
+		return result;
+	}
+
+	static List<Property> authorProperties( Resource config ) {
+		List<Property> result = getPropertyList( config, EXTRAS.feedAuthorProperties );
+		if (result.isEmpty()) {
+			result.add( DCTerms.creator );
+			result.add( DCTerms.contributor );
+		}
+		return result;
+	}
+
+	static List<Property> rightsProperties( Resource config ) {
+		List<Property> result = getPropertyList( config, EXTRAS.feedRightsProperties );
+		if (result.isEmpty()) result.add( DCTerms.rights );
+		return result;
+	}
+
+	private static List<Property> getPropertyList( Resource config, Property property ) {
+		List<Property> result = new ArrayList<Property>();
+		for (RDFNode p: getNodeList( config, property )) result.add( p.as( Property.class ) );
+		return result;
+	}
+
+	private static List<RDFNode> getNodeList( Resource config, Property property ) {
+		List<RDFNode> result = new ArrayList<RDFNode>();
+		Statement s = config.getProperty( property );
+		if (s != null) result.addAll( RDFUtil.asJavaList( s.getResource() ) );
+		return result;
+	}
+
+	private static List<String> bodies( List<RDFNode> nodes ) {
+		List<String> result = new ArrayList<String>( nodes.size() );
+		for (RDFNode n: nodes) result.add( asBody( n ) );
+		return result;
+	}
+
+	static String asBody( RDFNode n ) {
+		if (n.isLiteral()) return n.asLiteral().getLexicalForm();
+		if (n.isResource()) return n.asResource().getURI();
+		return n.toString();
+	}
+
+	/**
+	    Answer the items paired with their dates, most recent first; items
+	    with the same date keep their order in <code>items</code>.
+	*/
+	public List<Couple<Resource, String>> entries( List<Resource> items ) {
+		List<Couple<Resource, String>> result = new ArrayList<Couple<Resource, String>>( items.size() );
+		for (Resource r: items) result.add( new Couple<Resource, String>( r, dateOf( r ) ) );
+		Collections.sort( result, byDateDescending );
+		return result;
+	}
+
+	/**
+	    The date of the feed, which is the date of its most recent entry.
+	*/
+	public static String updated( List<Couple<Resource, String>> entries ) {
+		return entries.isEmpty() ? neverUpdated : entries.get(0).b;
+	}
+
+	private static final Comparator<Couple<Resource, String>> byDateDescending = new Comparator<Couple<Resource, String>>() {
+
+		@Override public int compare( Couple<Resource, String> l, Couple<Resource, String> r ) {
+			return -l.b.compareTo( r.b );
+		}
+	};
+
+	public String dateOf( Resource r ) {
+		for (Property p: dateProperties) {
+			Statement ps = r.getProperty( p );
+			if (ps != null) return ps.getLiteral().getLexicalForm();
+		}
+		return neverUpdated;
+	}
+
+	public String titleOf( Resource r ) {
+		for (Property lp: labelProperties) {
+			Statement labelStatement = r.getProperty( lp );
+			if (labelStatement != null) return labelStatement.getString();
+		}
+		return r.getURI();
+	}
+
+	public List<String> authorsOf( Resource r ) {
+		for (Property p: authorProperties) {
+			List<RDFNode> candidates = r.listProperties( p ).mapWith( Statement.Util.getObject ).toList();
+			if (candidates.size() > 0) return bodies( candidates );
+		}
+		return Collections.emptyList();
+	}
+
+	public String rightsOf( Resource r ) {
+		for (Property p: rightsProperties) {
+			Statement ps = r.getProperty( p );
+			if (ps != null) return ps.getLiteral().getLexicalForm();
+		}
+		return null;
+	}
+}
@@ -3,56 +3,61 @@ package com.epimorphics.lda.renderers;
 import java.io.*;
 import java.util.*;
 
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Document;
+import org.w3c.dom.*;
 
-import com.epimorphics.jsonrdf.RDFUtil;
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.core.APIResultSet;
 import com.epimorphics.lda.core.APIResultSet.MergedModels;
 import com.epimorphics.lda.renderers.XMLRendering.Trail;
 import com.epimorphics.lda.shortnames.CompleteContext.Mode;
 import com.epimorphics.lda.shortnames.ShortnameService;
-import com.epimorphics.lda.support.CycleFinder;
 import com.epimorphics.lda.support.Times;
-import com.epimorphics.lda.vocabularies.*;
 import com.epimorphics.util.*;
 import com.hp.hpl.jena.rdf.model.*;
-import com.hp.hpl.jena.shared.PrefixMapping;
 import com.hp.hpl.jena.shared.WrappedException;
-import com.hp.hpl.jena.vocabulary.DCTerms;
-import com.hp.hpl.jena.vocabulary.RDFS;
 
+/**
+    Renders the items of a list endpoint as an Atom feed, or as RSS 2.0
+    if its media type is application/rss+xml, using the settings in its
+    FeedPlan. The feed is written straight to the response with a
+    StAX writer; only the content of one entry at a time is built as
+    DOM, by XMLRendering. A FeedRenderer holds no mutable state and
+    can be shared by concurrent renders.
+*/
 public class FeedRenderer implements Renderer {
 
+	public static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+
+	public static final String DC_NS = "http://purl.org/dc/elements/1.1/";
+
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
 	private final MediaType mt;
-	private final Resource config;
-	private final String namespace;
-	private final String feedRights;
+	private final FeedPlan plan;
+	private final boolean asRSS;
 	private final ShortnameService sns;
-	private final List<Property> dateProperties;
-	private final List<Property> labelProperties;
-	
-	// TODO better than this
-	private final String neverUpdated = "1954-02-04T00:00:01.52Z";
-	
+
 	public FeedRenderer
 		( MediaType mt
 		, Resource config
-		, ShortnameService sns 
+		, ShortnameService sns
+		) {
+		this( mt, FeedPlan.compile( config ), sns );
+	}
+
+	public FeedRenderer
+		( MediaType mt
+		, FeedPlan plan
+		, ShortnameService sns
 		) {
 		this.mt = mt;
-		this.config = config;
+		this.plan = plan;
 		this.sns = sns;
-		this.dateProperties = getDateProperties( config );
-		this.labelProperties = getLabelProperties( config );
-		this.namespace = getConfiguredNamespace();
-		this.feedRights = getRights(config);
+		this.asRSS = mt.getSubtype().equals( FeedRendererFactory.rss.getSubtype() );
 	}
 
 	@Override public MediaType getMediaType(Bindings rc) {
@@ -72,14 +77,13 @@ public class FeedRenderer implements Renderer {
 		return new BytesOutTimed() {
 
 			@Override protected void writeAll(OutputStream os) {
-				renderFeed( os, results, t, termBindings, b );
-				flush( os );
+				renderFeed( os, results, termBindings );
 			}
 
 			@Override protected String getFormat() {
 				return FeedRendererFactory.format;
 			}
-			
+
 		};
 	}
 
@@ -87,78 +91,32 @@ public class FeedRenderer implements Renderer {
 		return FeedRendererFactory.format;
 	}
 
-	private static void flush( OutputStream os ) {
-		try { os.flush(); } 
-		catch (IOException e) { throw new WrappedException( e ); } 
-	}
-
 	/**
 	    Return a list of date properties, most preferred first, from the
 	    RDF list that is the value of the feedDateProperties value of
 	    config. If there is no such value, then use the list
-	    (dct:modified). 
+	    (dct:modified).
 	*/
 	public List<Property> getDateProperties(Resource config) {
-		List<Property> result = getPropertyList(config, EXTRAS.feedDateProperties);
-		if (result.isEmpty()) {
-			result.add( DCTerms.modified );
-			result.add( DCTerms.date );
-			result.add( DCTerms.dateAccepted );
-			result.add( DCTerms.dateSubmitted );
-			result.add( DCTerms.created );
-		}
-		return result;
+		return FeedPlan.dateProperties( config );
 	}
 
 	public List<Property> getRightsProperties() {
-		List<Property> result = getPropertyList(config, EXTRAS.feedRightsProperties);
-		if (result.isEmpty()) result.add( DCTerms.rights );
-		return result;
+		return plan.rightsProperties;
 	}
-	
+
 	public List<RDFNode> getAuthors() {
-		return getNodeList(config, EXTRAS.feedAuthors);
+		return plan.authorNodes;
 	}
-	
+
 	public List<Property> getAuthorProperties() {
-		List<Property> result = getPropertyList(config, EXTRAS.feedAuthorProperties);
-		if (result.isEmpty()) {
-			result.add( DCTerms.creator );
-			result.add( DCTerms.contributor );
-		}
-		return result;
-	}
-	
-	public String getFeedRights() {
-		return feedRights;
-	}
-	
-	private static String getRights( Resource config ) {
-		return RDFUtils.getStringValue( config,  EXTRAS.feedRights, null );
+		return plan.authorProperties;
 	}
 
-	private List<Property> getPropertyList(Resource config, Property property) {
-		List<Property> result = new ArrayList<Property>();
-		Statement s = config.getProperty( property );
-		if (s != null) {
-			for (RDFNode p: RDFUtil.asJavaList( s.getResource() )) {
-				result.add( p.as( Property.class ) );
-			}
-		}
-		return result;
+	public String getFeedRights() {
+		return plan.rights;
 	}
 
-	private List<RDFNode> getNodeList(Resource config, Property property) {
-		List<RDFNode> result = new ArrayList<RDFNode>();
-		Statement s = config.getProperty( property );
-		if (s != null) {
-			for (RDFNode p: RDFUtil.asJavaList( s.getResource() )) {
-				result.add( p );
-			}
-		}
-		return result;
-	}
-	
 	/**
 	    Return a list of label properties, most preferred first, from the
 	    RDF list that is the value of the feedLabelProperties value of
@@ -166,35 +124,33 @@ public class FeedRenderer implements Renderer {
 	    (api:label, skos:prefLabel, rdfs:label).
 	*/
 	public List<Property> getLabelProperties( Resource config ) {
-		List<Property> result = getPropertyList( config, EXTRAS.feedLabelProperties );
-		if (result.isEmpty()) {
-			result.add( API.label );
-			result.add( SKOSstub.prefLabel );
-			result.add( RDFS.label );
-		}
-		return result;
+		return FeedPlan.labelProperties( config );
 	}
-	
-	private void renderFeed( OutputStream os, APIResultSet results, Times t, Map<String, String> termBindings, Bindings b ) {
-		final PrefixMapping pm = results.getModelPrefixes();
-		Document d = DOMUtils.newDocument();
+
+	public String getNamespace() {
+		return plan.namespace;
+	}
+
+	private void renderFeed( OutputStream os, APIResultSet results, Map<String, String> termBindings ) {
 		FeedResults feedResults = new FeedResults
 			( results.getRoot(), results.getResultList(), results.getModels() );
-		renderFeedIntoDocument( d, termBindings, feedResults );
-	//
-		Transformer tr = DOMUtils.setPropertiesAndParams( t, b, pm, null );
-		OutputStreamWriter u = StreamUtils.asUTF8( os );
-		StreamResult sr = new StreamResult( u );
-		try { tr.transform( new DOMSource( d ), sr ); } 
-		catch (TransformerException e) { throw new WrappedException( e ); }
+		Writer w = new BufferedWriter( StreamUtils.asUTF8( os ) );
+		try {
+			XMLStreamWriter xw = outputFactory.createXMLStreamWriter( w );
+			writeFeed( xw, termBindings, feedResults );
+			xw.close();
+			w.flush();
+		}
+		catch (XMLStreamException e) { throw new WrappedException( e ); }
+		catch (IOException e) { throw new WrappedException( e ); }
 	}
 
 	public static class FeedResults {
-	
+
 		final Resource root;
 		final List<Resource> items;
 		final MergedModels models;
-		
+
 		public FeedResults(Resource root, List<Resource> items, MergedModels models) {
 			this.root = root;
 			this.items = items;
@@ -213,125 +169,159 @@ public class FeedRenderer implements Renderer {
 			return items;
 		}
 	}
-	
+
+	/**
+	    Write the feed for <code>results</code> as a complete document to
+	    <code>xw</code>, as Atom or RSS according to this renderer's media
+	    type, in one pass over its entries.
+	*/
+	public void writeFeed
+		( XMLStreamWriter xw
+		, Map<String, String> termBindings
+		, FeedResults results
+		) throws XMLStreamException {
+		Indented out = new Indented( xw );
+		List<Couple<Resource, String>> entries = plan.entries( results.getResultList() );
+		MergedModels mm = results.getModels();
+		Document d = DOMUtils.newDocument();
+		XMLRendering xr = new XMLRendering( mm.getMergedModel(), sns.asContext(), termBindings, d );
+		Set<Resource> objectCyclics = mm.getObjectCyclics();
+		String root = results.getRoot().getURI();
+	//
+		xw.writeStartDocument( "UTF-8", "1.0" );
+		if (asRSS) {
+			out.start( "rss" );
+			xw.writeAttribute( "version", "2.0" );
+			xw.writeNamespace( "dc", DC_NS );
+			out.start( "channel" );
+			out.textElement( "title", plan.title );
+			out.textElement( "link", root );
+			out.textElement( "description", plan.title );
+			for (String author: plan.authors) out.dcElement( "creator", author );
+			if (plan.rights != null) out.textElement( "copyright", plan.rights );
+			out.dcElement( "date", FeedPlan.updated( entries ) );
+		} else {
+			out.start( "feed" );
+			xw.writeDefaultNamespace( ATOM_NS );
+			out.textElement( "title", plan.title );
+			out.start( "link" );
+			xw.writeAttribute( "rel", "self" );
+			xw.writeAttribute( "type", "application/atom+xml" );
+			xw.writeAttribute( "href", root );
+			out.end();
+			out.textElement( "author", "<name>Nemo</name>" );
+			out.textElement( "id", root );
+			for (String author: plan.authors) out.textElement( "author", author );
+			if (plan.rights != null) out.textElement( "rights", plan.rights );
+			out.textElement( "updated", FeedPlan.updated( entries ) );
+		}
+	//
+		for (Couple<Resource, String> item: entries) {
+			Resource r = item.a;
+			String rights = plan.rightsOf( r );
+			if (asRSS) {
+				out.start( "item" );
+				out.textElement( "title", plan.titleOf( r ) );
+				out.textElement( "link", r.getURI() );
+				out.textElement( "guid", r.getURI() );
+				out.dcElement( "date", item.b );
+				for (String author: plan.authorsOf( r )) out.dcElement( "creator", author );
+				if (rights != null) out.dcElement( "rights", rights );
+			} else {
+				out.start( "entry" );
+				out.textElement( "title", plan.titleOf( r ) );
+				out.textElement( "updated", item.b );
+				out.textElement( "id", r.getURI() );
+				for (String author: plan.authorsOf( r )) out.textElement( "author", author );
+				if (rights != null) out.textElement( "rights", rights );
+			}
+			out.element( content( d, xr, objectCyclics, r ) );
+			out.end();
+		}
+	//
+		out.end();
+		if (asRSS) out.end();
+		xw.writeEndDocument();
+	}
+
+	/**
+	    Answer a content element for the entry <code>r</code> holding
+	    its properties as rendered by <code>xr</code>. The element is not
+	    added to <code>d</code>, so it is garbage once written.
+	*/
+	private Element content( Document d, XMLRendering xr, Set<Resource> objectCyclics, Resource r ) {
+		Element content = d.createElement( "content" );
+		content.setAttribute( "type", "application/xml" );
+		content.setAttribute( "xmlns", plan.namespace );
+	//
+		Set<Resource> cyclic = new HashSet<Resource>();
+		Set<Resource> seen = new HashSet<Resource>();
+		Set<Resource> blocked = new HashSet<Resource>();
+	//
+		blocked.add( r );
+		cyclic.addAll( objectCyclics );
+	//
+		Trail t = new Trail( cyclic, seen, blocked );
+		xr.expandProperties( t, content, r );
+		return content;
+	}
+
+	/**
+	    Render the Atom feed for <code>results</code> into the document
+	    <code>d</code>, as the renderer did before it streamed its output.
+	*/
 	public void renderFeedIntoDocument
 		( Document d
 		, Map<String, String> termBindings
-		, FeedResults results 
+		, FeedResults results
 		) {
 		Element feed = d.createElement( "feed" );
-		feed.setAttribute( "xmlns", "http://www.w3.org/2005/Atom" );
+		feed.setAttribute( "xmlns", ATOM_NS );
 	//
-		addChild( feed, "title", getFeedTitle() );
+		addChild( feed, "title", plan.title );
 		addLinkChild( feed, results.getRoot().getURI() );
 		addChild( feed, "author", "<name>Nemo</name>" );
 		addChild( feed, "id", results.getRoot().getURI() );
 	//
-		for (RDFNode author: getAuthors()) {
-			addChild( feed, "author", asBody( author ) );
+		for (String author: plan.authors) {
+			addChild( feed, "author", author );
 		}
 	//
-		if (feedRights != null) addChild( feed, "rights", feedRights );	
-	//		
+		if (plan.rights != null) addChild( feed, "rights", plan.rights );
+	//
 		MergedModels mm = results.getModels();
 		XMLRendering xr = new XMLRendering
 			( mm.getMergedModel()
 			, sns.asContext()
 			, termBindings
-			, d 
+			, d
 			);
 	//
-		int size = results.getResultList().size();
-		List<Couple<Resource, String>> items = new ArrayList<Couple<Resource, String>>(size);
-		for (Resource r: results.getResultList()) 
-			items.add( new Couple<Resource, String>( r, getFeedDate( r ) ) );
-		Collections.sort( items, sortCouplesByString );
+		List<Couple<Resource, String>> items = plan.entries( results.getResultList() );
+		Set<Resource> objectCyclics = mm.getObjectCyclics();
 	//
-		addChild( feed, "updated", items.get(0).b );		
+		addChild( feed, "updated", FeedPlan.updated( items ) );
 	//
 		for (Couple<Resource, String> item: items) {
 			Resource r = item.a;
 			Element entry = d.createElement( "entry" );
-			addChild( entry, "title", getEntryTitle( r ) );
+			addChild( entry, "title", plan.titleOf( r ) );
 			addChild( entry, "updated", item.b );
 			addChild( entry, "id", r.getURI() );
-			
-			for (RDFNode author: getEntryAuthors( r )) 
-				addChild( entry, "author", asBody( author ) );
-			
-			String rights = getEntryRights( r );			
+
+			for (String author: plan.authorsOf( r ))
+				addChild( entry, "author", author );
+
+			String rights = plan.rightsOf( r );
 			if (rights != null) addChild( entry, "rights", rights );
-			
-			Element content = d.createElement( "content" );
-			content.setAttribute( "type", "application/xml" );
-			content.setAttribute( "xmlns", namespace );
-			
-			Set<Resource> cyclic = new HashSet<Resource>();
-			Set<Resource> seen = new HashSet<Resource>();
-			Set<Resource> blocked = new HashSet<Resource>();
-			
-			blocked.add( r );
-			cyclic.addAll( CycleFinder.findCycles( r ) );
-			
-			Trail t = new Trail( cyclic, seen, blocked );
-			xr.expandProperties( t, content, r );
-
-			entry.appendChild( content );
+
+			entry.appendChild( content( d, xr, objectCyclics, r ) );
 
 			feed.appendChild( entry );
 		}
 	//
 		d.appendChild( feed );
 	}
-	
-	private List<RDFNode> getEntryAuthors(Resource r) {
-		for (Property p: getAuthorProperties()) {
-			List<RDFNode> candidates = r.listProperties(p).mapWith(Statement.Util.getObject).toList();
-			if (candidates.size() > 0) return candidates;
-		}
-		return new ArrayList<RDFNode>();
-	}
-
-	private String asBody( RDFNode n ) {
-		if (n.isLiteral()) return n.asLiteral().getLexicalForm();
-		if (n.isResource()) return n.asResource().getURI();
-		return n.toString();
-	}
-	
-	private String getEntryRights(Resource r) {
-		for (Property p: getRightsProperties()) {
-			Statement ps = r.getProperty( p );
-			if (ps != null) return ps.getLiteral().getLexicalForm();
-		}
-		return null;
-	}
-
-	private static final Comparator<Couple<Resource, String>> sortCouplesByString = new Comparator<Couple<Resource, String>>() {
-
-		@Override public int compare( Couple<Resource, String> l, Couple<Resource, String> r) {
-			return -l.b.compareTo( r.b );
-		}
-	};
-
-	private String getFeedDate( Resource r ) {
-		for (Property p: dateProperties) {
-			Statement ps = r.getProperty( p );
-			if (ps != null) return ps.getLiteral().getLexicalForm();
-		}
-		return neverUpdated;
-	}
-
-	private String getEntryTitle( Resource r ) {
-		return getLabel( r );
-	}
-	
-	private String getLabel( Resource r ) {
-		for (Property lp: labelProperties ) {
-			Statement labelStatement = r.getProperty( lp );
-			if (labelStatement != null) return labelStatement.getString();
-		}
-		return r.getURI();
-	}
 
 	private void addLinkChild( Element feed, String root ) {
 		Document d = feed.getOwnerDocument();
@@ -340,11 +330,7 @@ public class FeedRenderer implements Renderer {
 		child.setAttribute( "type", "application/atom+xml" );
 		child.setAttribute( "href", root );
 		feed.appendChild( child );
-		
-	}
 
-	private String getFeedTitle() {
-		return RDFUtils.getStringValue( config, EXTRAS.feedTitle, "Elda feed" );
 	}
 
 	private void addChild( Element e, String tag, String body ) {
@@ -353,13 +339,84 @@ public class FeedRenderer implements Renderer {
 		child.appendChild( d.createTextNode( body ) );
 		e.appendChild( child );
 	}
-	
-	protected String getConfiguredNamespace() {
-		return RDFUtils.getStringValue( config,  EXTRAS.feedNamespace, EXTRAS.getURI() );
-	}
 
-	public String getNamespace() {
-		return namespace;
+	/**
+	    Wraps an XMLStreamWriter to indent elements that have element
+	    children, two spaces a level, as the DOM serialiser did; elements
+	    with only text keep it on the same line.
+	*/
+	static class Indented {
+
+		final XMLStreamWriter xw;
+
+		// bit i is set when the open element at depth i has element children
+		final BitSet hasChildren = new BitSet();
+
+		int depth = 0;
+
+		Indented( XMLStreamWriter xw ) {
+			this.xw = xw;
+		}
+
+		void start( String tag ) throws XMLStreamException {
+			startLine();
+			xw.writeStartElement( tag );
+		}
+
+		void dcElement( String localName, String body ) throws XMLStreamException {
+			startLine();
+			xw.writeStartElement( "dc", localName, DC_NS );
+			xw.writeCharacters( body );
+			end();
+		}
+
+		void textElement( String tag, String body ) throws XMLStreamException {
+			start( tag );
+			xw.writeCharacters( body );
+			end();
+		}
+
+		void end() throws XMLStreamException {
+			if (hasChildren.get( depth )) newline( depth - 1 );
+			xw.writeEndElement();
+			depth -= 1;
+		}
+
+		/**
+		    Write the DOM element <code>e</code> and its descendants;
+		    xmlns attributes are written as namespace declarations.
+		*/
+		void element( Element e ) throws XMLStreamException {
+			start( e.getTagName() );
+			NamedNodeMap attributes = e.getAttributes();
+			for (int i = 0; i < attributes.getLength(); i += 1) {
+				Attr a = (Attr) attributes.item( i );
+				String name = a.getName();
+				if (name.equals( "xmlns" )) xw.writeDefaultNamespace( a.getValue() );
+				else if (name.startsWith( "xmlns:" )) xw.writeNamespace( name.substring( 6 ), a.getValue() );
+				else xw.writeAttribute( name, a.getValue() );
+			}
+			for (org.w3c.dom.Node child = e.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child instanceof Element) element( (Element) child );
+				else if (child instanceof Text) xw.writeCharacters( ((Text) child).getData() );
+			}
+			end();
+		}
+
+		private void startLine() throws XMLStreamException {
+			if (depth > 0) {
+				hasChildren.set( depth );
+				newline( depth );
+			}
+			depth += 1;
+			hasChildren.clear( depth );
+		}
+
+		private void newline( int level ) throws XMLStreamException {
+			StringBuilder sb = new StringBuilder( 1 + 2 * level ).append( '\n' );
+			for (int i = 0; i < level; i += 1) sb.append( "  " );
+			xw.writeCharacters( sb.toString() );
+		}
 	}
 
 }
@@ -9,6 +9,11 @@ public class FeedRendererFactory implements RendererFactory  {
 	
 	public static final MediaType atom = new MediaType( "application", "atom+xml" );
 	
+	/**
+	    Feeds whose formatter gives this media type are rendered as RSS 2.0.
+	*/
+	public static final MediaType rss = new MediaType( "application", "rss+xml" );
+	
 	private  MediaType mt = atom;
 	
 	private Resource config = null;
@@ -79,16 +79,21 @@ public class JSONRenderer implements Renderer {
 		roots.add( root );
 	//
 		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		ParallelEncoding parallel = api.getSpec().getAPISpec().getJSONParallelism();
+		Times.Span encoding = t.begin( "JSON encoding" );
 		try {
 			Writer writer = StreamUtils.asUTF8( os );
 			writer.write( before );
-			Encoder.getForOneResult( context ).encodeRecursive( model, roots, writer, true );
+			ParallelEncoding.Timing timing = Encoder.getForOneResult( context ).encodeRecursive( model, roots, results.getModels().getMergedCyclics(), writer, true, parallel );
+			encoding.note( timing.toString() );
 			writer.write( after );
 			writer.flush();
 		} catch (Exception e) {
 			log.error( "Failed to encode model: stacktrace follows:", e );
 			throw new WrappedException( e );
-		}				
+		} finally {
+			encoding.end();
+		}
 		final String content = UTF8.toString( os );
 	//
 		return new BytesOutTimed() {
@@ -126,9 +131,7 @@ public class JSONRenderer implements Renderer {
 		List<Resource> roots = new ArrayList<Resource>(1);
 		roots.add( root );
 		StringWriter writer = new StringWriter();
-		Context context = given.clone();
-		context.setSorted(true);
-        Encoder.getForOneResult( context ).encodeRecursive( model, roots, writer, true );
+        Encoder.getForOneResult( new PropertyInfoView( given ) ).encodeRecursive( model, roots, writer, true );
 	}
 
 //	private void paranoiaCheckForLegalJSON(String written) throws Exception {
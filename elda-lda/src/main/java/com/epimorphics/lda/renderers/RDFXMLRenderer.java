@@ -14,17 +14,34 @@
 
 package com.epimorphics.lda.renderers;
 
-import java.io.OutputStream;
+import java.io.*;
 import java.util.Map;
 
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.core.APIResultSet;
+import com.epimorphics.lda.renderers.streaming.Layout;
+import com.epimorphics.lda.renderers.streaming.StreamingRDFXMLWriter;
 import com.epimorphics.lda.shortnames.CompleteContext.Mode;
 import com.epimorphics.lda.support.Times;
 import com.epimorphics.util.MediaType;
+import com.epimorphics.util.StreamUtils;
 
+/**
+    Renders the merged model as RDF/XML, streaming it to the output
+    as it is written rather than building it in memory first.
+*/
 public class RDFXMLRenderer implements Renderer {
 	
+	final Layout layout;
+	
+	public RDFXMLRenderer() {
+		this( Layout.Pretty );
+	}
+	
+	public RDFXMLRenderer( Layout layout ) {
+		this.layout = layout;
+	}
+	
     @Override public MediaType getMediaType( Bindings irrelevant ) {
        return MediaType.APPLICATION_RDF_XML;
     }
@@ -41,7 +58,8 @@ public class RDFXMLRenderer implements Renderer {
     	return new BytesOutTimed() {
 			
 			@Override public void writeAll(OutputStream os) {
-				StripPrefixes.Do(results.getMergedModel()).write( os, "RDF/XML-ABBREV" );
+				Writer u = new BufferedWriter( StreamUtils.asUTF8(os) );
+				new StreamingRDFXMLWriter( u, layout ).write( results.getMergedModel().getGraph() );
 			}
 
 			@Override protected String getFormat() {
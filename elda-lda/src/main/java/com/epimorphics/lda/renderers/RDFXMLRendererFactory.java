@@ -0,0 +1,32 @@
+package com.epimorphics.lda.renderers;
+
+import com.epimorphics.lda.core.APIEndpoint;
+import com.epimorphics.lda.renderers.streaming.Layout;
+import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.util.MediaType;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+public class RDFXMLRendererFactory implements RendererFactory {
+
+	final Layout layout;
+	
+	public RDFXMLRendererFactory() {
+		this(Layout.Pretty);
+	}
+	
+	public RDFXMLRendererFactory(Layout layout) {
+		this.layout = layout;
+	}
+	
+	@Override public RendererFactory withRoot( Resource r ) {
+		return new RDFXMLRendererFactory( Layout.decode( r, Layout.Pretty ) );
+	}
+	
+	@Override public RendererFactory withMediaType( MediaType mt ) {
+		return this;
+	}
+	
+	@Override public Renderer buildWith( APIEndpoint ep, ShortnameService sns ) {
+		return new RDFXMLRenderer( layout );
+	}
+}
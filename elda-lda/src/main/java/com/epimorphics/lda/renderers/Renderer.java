@@ -35,6 +35,20 @@ public interface Renderer {
 		public void writeAll(Times t, OutputStream os);
 	}
 	
+	/**
+	    A renderer that has expensive one-off preparation (compiling a
+	    stylesheet, loading a template) can implement WarmsUp so that the
+	    preparation can be done at startup rather than on the first request.
+	*/
+	public interface WarmsUp {
+		
+		/**
+		    Do any one-off preparation for rendering in the context
+		    of the bindings <code>b</code>.
+		*/
+		public void warmUp( Bindings b );
+	}
+	
 	/**
      	@return the mimetype which this renderer returns
      		in the given renderer context.
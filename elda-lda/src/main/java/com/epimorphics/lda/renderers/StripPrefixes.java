@@ -25,21 +25,7 @@ public class StripPrefixes {
 	    use (much) additional space.
 	*/
 	public static Model Do(Model a) {
-		final Set<String> namespaces = new HashSet<String>();
-	//
-		ExtendedIterator<Triple> triples = a.getGraph().find( Triple.ANY );
-		while (triples.hasNext()) {
-			Triple t = triples.next();
-			StripPrefixes.addNamespace( namespaces, t.getSubject() );
-			StripPrefixes.addNamespace( namespaces, t.getPredicate() );
-			StripPrefixes.addNamespace( namespaces, t.getObject() );
-		}
-	//
-		final PrefixMapping pm = PrefixMapping.Factory.create();
-		for (String ns: namespaces) {
-			String prefix = a.getNsURIPrefix( ns );
-			if (prefix != null) pm.setNsPrefix(prefix, ns);
-		}
+		final PrefixMapping pm = prefixesFor( namespacesOf( a.getGraph() ), a );
 	//
 		Graph gg = new WrappedGraph( a.getGraph() ) {
 			
@@ -51,6 +37,43 @@ public class StripPrefixes {
 		return ModelFactory.createModelForGraph( gg );
 	}
 
+	/**
+	    Answer a new PrefixMapping holding the prefixes of <code>given</code>
+	    whose namespaces are in <code>namespaces</code>.
+	*/
+	public static PrefixMapping prefixesFor( Set<String> namespaces, PrefixMapping given ) {
+		PrefixMapping pm = PrefixMapping.Factory.create();
+		for (String ns: namespaces) {
+			String prefix = given.getNsURIPrefix( ns );
+			if (prefix != null) pm.setNsPrefix(prefix, ns);
+		}
+		return pm;
+	}
+
+	/**
+	    Answer the namespaces used by the triples of <code>g</code>.
+	*/
+	public static Set<String> namespacesOf( Graph g ) {
+		Set<String> namespaces = new HashSet<String>();
+		ExtendedIterator<Triple> triples = g.find( Triple.ANY );
+		try {
+			while (triples.hasNext()) addNamespaces( namespaces, triples.next() );
+		} finally {
+			triples.close();
+		}
+		return namespaces;
+	}
+
+	/**
+	    Add to <code>namespaces</code> the namespaces used by the subject,
+	    predicate, and object of <code>t</code>.
+	*/
+	public static void addNamespaces( Set<String> namespaces, Triple t ) {
+		addNamespace( namespaces, t.getSubject() );
+		addNamespace( namespaces, t.getPredicate() );
+		addNamespace( namespaces, t.getObject() );
+	}
+
 	public static void addNamespace(Set<String> namespaces, Node n) {
 		if (n.isURI()) 
 			namespaces.add(n.getNameSpace());
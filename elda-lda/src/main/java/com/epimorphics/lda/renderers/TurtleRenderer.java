@@ -19,14 +19,29 @@ import java.util.Map;
 
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.core.APIResultSet;
+import com.epimorphics.lda.renderers.streaming.Layout;
+import com.epimorphics.lda.renderers.streaming.StreamingTurtleWriter;
 import com.epimorphics.lda.shortnames.CompleteContext.Mode;
 import com.epimorphics.lda.support.Times;
 import com.epimorphics.util.MediaType;
 import com.epimorphics.util.StreamUtils;
-import com.hp.hpl.jena.shared.WrappedException;
 
+/**
+    Renders the merged model as Turtle, streaming it to the output
+    as it is written rather than building it in memory first.
+*/
 public class TurtleRenderer implements Renderer {
 	
+	final Layout layout;
+	
+	public TurtleRenderer() {
+		this( Layout.Pretty );
+	}
+	
+	public TurtleRenderer( Layout layout ) {
+		this.layout = layout;
+	}
+	
     @Override public MediaType getMediaType( Bindings irrelevant ) {
         return MediaType.TEXT_TURTLE;
     }
@@ -40,22 +55,11 @@ public class TurtleRenderer implements Renderer {
     }
     
     @Override public Renderer.BytesOut render( Times t, Bindings ignored, Map<String, String> termBindings, final APIResultSet results ) {
-    	ByteArrayOutputStream os = new ByteArrayOutputStream();
-    	StripPrefixes.Do(results.getMergedModel()).write( os, "TTL" );
-    	try { os.flush(); } catch (IOException e) { throw new WrappedException( e ); }
-    	final String content = UTF8.toString( os );
-    	
     	return new BytesOutTimed() {
 
 			@Override public void writeAll(OutputStream os) {			
-				OutputStreamWriter u = StreamUtils.asUTF8(os);
-				try {
-					u.write(content);
-					u.flush();
-					u.close();
-				} catch (IOException e) {
-					throw new WrappedException(e);
-				}
+				Writer u = new BufferedWriter( StreamUtils.asUTF8(os) );
+				new StreamingTurtleWriter( u, layout ).write( results.getMergedModel().getGraph() );
 			}
 
 			@Override protected String getFormat() {
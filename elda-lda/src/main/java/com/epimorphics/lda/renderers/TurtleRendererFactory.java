@@ -0,0 +1,32 @@
+package com.epimorphics.lda.renderers;
+
+import com.epimorphics.lda.core.APIEndpoint;
+import com.epimorphics.lda.renderers.streaming.Layout;
+import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.util.MediaType;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+public class TurtleRendererFactory implements RendererFactory {
+
+	final Layout layout;
+	
+	public TurtleRendererFactory() {
+		this(Layout.Pretty);
+	}
+	
+	public TurtleRendererFactory(Layout layout) {
+		this.layout = layout;
+	}
+	
+	@Override public RendererFactory withRoot( Resource r ) {
+		return new TurtleRendererFactory( Layout.decode( r, Layout.Pretty ) );
+	}
+	
+	@Override public RendererFactory withMediaType( MediaType mt ) {
+		return this;
+	}
+	
+	@Override public Renderer buildWith( APIEndpoint ep, ShortnameService sns ) {
+		return new TurtleRenderer( layout );
+	}
+}
@@ -439,13 +439,20 @@ public class XMLRendering {
 	*/
 	public Element addResourceToElement( Element e, Resource x, MergedModels mm ) {
 		Resource xInMetaModel = x.inModel( mm.getMetaModel() );
-		renderMetadata( e, x, xInMetaModel );
-		renderObjectData( e, x, mm.getObjectModel(), xInMetaModel );
+		renderMetadata( e, x, xInMetaModel, mm.getMetaCyclics() );
+		renderObjectData( e, x, mm.getObjectModel(), xInMetaModel, mm.getObjectCyclics() );
 		return e;
 	}
 
 	public void renderMetadata(Element e, Resource x, Resource xInMetaModel) {
-		Set<Resource> cyclic = CycleFinder.findCycles( xInMetaModel );
+		renderMetadata( e, x, xInMetaModel, CycleFinder.findCycles( xInMetaModel ) );
+	}
+
+	/**
+	    Render the metadata of x, given the cyclic resources of the 
+	    metadata model.
+	*/
+	public void renderMetadata(Element e, Resource x, Resource xInMetaModel, Set<Resource> cyclic) {
 		Set<Resource> blocked = new HashSet<Resource>();
 		Set<Resource> seen = new HashSet<Resource>();
 		Trail t = new Trail( cyclic, seen, blocked );
@@ -461,6 +468,14 @@ public class XMLRendering {
 	}
 	
 	public void renderObjectData(Element e, Resource x, Model objectModel, Resource xInMetaModel) {
+		renderObjectData( e, x, objectModel, xInMetaModel, CycleFinder.findCyclics( objectModel ) );
+	}
+
+	/**
+	    Render the object data of x, given the cyclic resources of the 
+	    object model.
+	*/
+	public void renderObjectData(Element e, Resource x, Model objectModel, Resource xInMetaModel, Set<Resource> objectCyclics) {
 		Set<Resource> blocked = new HashSet<Resource>();
 
 		Set<RDFNode> selectedItems = getItemsList( getItemsResource( x ) );
@@ -477,10 +492,10 @@ public class XMLRendering {
 		if (hasPrimaryTopic) { 	
 			Resource primaryTopic = xInMetaModel.getProperty( FOAF.primaryTopic ).getResource().inModel(objectModel);		
 			blocked.add( primaryTopic );
-			cyclic.addAll( CycleFinder.findCyclics( objectModel ) );
+			cyclic.addAll( objectCyclics );
 			topLevelExpansion(objectModel, t, findByNodeName( e, "primaryTopic" ));			
 		} else {			
-			cyclic.addAll( CycleFinder.findCyclics( objectModel ) );
+			cyclic.addAll( objectCyclics );
 			NodeList nl = findItems( e ).getChildNodes();
 			for (int i = 0; i < nl.getLength(); i += 1) {
 				topLevelExpansion(objectModel, t, (Element) nl.item(i));
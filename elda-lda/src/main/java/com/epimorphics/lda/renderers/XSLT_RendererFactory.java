@@ -16,6 +16,7 @@ import com.epimorphics.lda.shortnames.CompleteContext.Mode;
 import com.epimorphics.lda.specs.MetadataOptions;
 import com.epimorphics.lda.support.Times;
 import com.epimorphics.lda.vocabularies.API;
+import com.epimorphics.util.DOMUtils;
 import com.epimorphics.util.MediaType;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.rdf.model.Resource;
@@ -40,7 +41,7 @@ public class XSLT_RendererFactory implements RendererFactory {
 	}
 	
 	@Override public Renderer buildWith( final APIEndpoint ep, final ShortnameService sns ) {
-		return new Renderer() {
+		class XSLT_Renderer implements Renderer, Renderer.WarmsUp {
 
 			@Override public MediaType getMediaType( Bindings irrelevant ) {
 				return mt;
@@ -60,6 +61,11 @@ public class XSLT_RendererFactory implements RendererFactory {
 				final XMLRenderer xr = new XMLRenderer( mode, sns, mt, sheet );
 				return xr.render( t, rc.copyWithDefaults( ep.defaults() ), termBindings, results ); 
 			}
+			
+			@Override public void warmUp( Bindings b ) {
+				String sheet = b.expandVariables( objectSpelling( root.getProperty( API.stylesheet ) ));
+				DOMUtils.getTemplates( new Times(), b, sheet );
+			}
 
 			private String objectSpelling(Statement s) {
 				Node ob = s.getObject().asNode();
@@ -71,7 +77,8 @@ public class XSLT_RendererFactory implements RendererFactory {
 				if (options.length == 0) options = "bindings,formats,versions,execution".split(",");
 				results.includeMetadata( options );
 			}
-		}; 
+		}
+		return new XSLT_Renderer();
 	}
 
 	@Override public RendererFactory withRoot( Resource r ) {
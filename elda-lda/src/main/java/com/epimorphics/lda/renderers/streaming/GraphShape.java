@@ -0,0 +1,172 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.renderers.streaming;
+
+import java.util.*;
+
+import com.epimorphics.lda.renderers.StripPrefixes;
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.rdf.model.impl.Util;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+    What a pretty-printing writer needs to know about a graph before it
+    writes any of it, found in one pass over its triples: the prefixes
+    for the namespaces it uses, its subjects in the order find meets them,
+    and which blank nodes are the object of exactly one triple and so can
+    be written inside the description of that triple's subject.
+*/
+public class GraphShape {
+
+	final Graph graph;
+
+	final PrefixMapping prefixes;
+
+	final Set<String> predicateNamespaces = new LinkedHashSet<String>();
+
+	final Set<Node> subjects = new LinkedHashSet<Node>();
+
+	// blank objects, mapped to 1 if they are the object of one triple
+	// and 2 if of more than one
+	final Map<Node, Integer> references = new HashMap<Node, Integer>();
+
+	GraphShape( Graph graph ) {
+		this.graph = graph;
+		Set<String> namespaces = new HashSet<String>();
+		ExtendedIterator<Triple> it = graph.find( Node.ANY, Node.ANY, Node.ANY );
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				Node S = t.getSubject(), P = t.getPredicate(), O = t.getObject();
+				subjects.add( S );
+				StripPrefixes.addNamespaces( namespaces, t );
+				predicateNamespaces.add( P.getURI().substring( 0, Util.splitNamespace( P.getURI() ) ) );
+				if (O.isBlank()) {
+					Integer count = references.get( O );
+					references.put( O, count == null ? 1 : 2 );
+				}
+			}
+		} finally {
+			it.close();
+		}
+		prefixes = StripPrefixes.prefixesFor( namespaces, graph.getPrefixMapping() );
+	}
+
+	public static GraphShape of( Graph graph ) {
+		return new GraphShape( graph );
+	}
+
+	/**
+	    The prefixes of the graph whose namespaces it uses.
+	*/
+	public PrefixMapping prefixes() {
+		return prefixes;
+	}
+
+	/**
+	    True iff <code>n</code> is a blank node that is the object of
+	    exactly one triple.
+	*/
+	public boolean isInlinable( Node n ) {
+		Integer count = references.get( n );
+		return count != null && count == 1;
+	}
+
+	/**
+	    The deepest that descriptions are nested inside one another;
+	    deeper blank nodes are labelled and written as subjects.
+	*/
+	static final int MAX_NESTING = 32;
+
+	/**
+	    True iff the object <code>o</code> should be written inside the
+	    description of its subject: it is inlinable, it is neither being
+	    written (<code>path</code>) nor already written (<code>written</code>),
+	    which can happen only when inlinable blank nodes form a cycle, and
+	    nesting is not too deep.
+	*/
+	boolean writeInside( Node o, Set<Node> path, Set<Node> written ) {
+		return isInlinable( o ) && !path.contains( o ) && !written.contains( o ) && path.size() < MAX_NESTING;
+	}
+
+	/**
+	    If <code>head</code> is the first cell of an RDF list whose cells
+	    can all be written inside the description that refers to the list
+	    (each is inlinable, not yet written, and has exactly one rdf:first
+	    and one rdf:rest and no other properties, and the last rdf:rest is
+	    rdf:nil), and if <code>resourcesOnly</code> none of its elements is
+	    a literal, answer its elements, adding its cells to <code>written</code>;
+	    otherwise answer null.
+	*/
+	List<Node> inlineListElements( Node head, Set<Node> path, Set<Node> written, boolean resourcesOnly ) {
+		List<Node> elements = new ArrayList<Node>();
+		Set<Node> cells = new HashSet<Node>();
+		Node cell = head;
+		while (!cell.equals( RDF.Nodes.nil )) {
+			if (!isInlinable( cell ) || path.contains( cell ) || written.contains( cell ) || !cells.add( cell )) return null;
+			Node first = null, rest = null;
+			ExtendedIterator<Triple> it = graph.find( cell, Node.ANY, Node.ANY );
+			try {
+				while (it.hasNext()) {
+					Triple t = it.next();
+					Node P = t.getPredicate();
+					if (P.equals( RDF.Nodes.first ) && first == null) first = t.getObject();
+					else if (P.equals( RDF.Nodes.rest ) && rest == null) rest = t.getObject();
+					else return null;
+				}
+			} finally {
+				it.close();
+			}
+			if (first == null || rest == null || (resourcesOnly && first.isLiteral())) return null;
+			elements.add( first );
+			cell = rest;
+		}
+		written.addAll( cells );
+		return elements;
+	}
+
+	/**
+	    Answer the properties of <code>s</code> and their values, in the
+	    order find answers them.
+	*/
+	Map<Node, List<Node>> propertiesOf( Node s ) {
+		Map<Node, List<Node>> result = new LinkedHashMap<Node, List<Node>>();
+		ExtendedIterator<Triple> it = graph.find( s, Node.ANY, Node.ANY );
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				List<Node> values = result.get( t.getPredicate() );
+				if (values == null) result.put( t.getPredicate(), values = new ArrayList<Node>() );
+				values.add( t.getObject() );
+			}
+		} finally {
+			it.close();
+		}
+		return result;
+	}
+
+	/**
+	    Answer a label for the blank node <code>n</code> made only of
+	    letters, digits, and underscores, and different for different
+	    blank nodes: characters of its id other than letters and digits
+	    are written as an underscore followed by four hex digits.
+	*/
+	public static String blankLabel( Node n ) {
+		String id = n.getBlankNodeLabel();
+		StringBuilder sb = new StringBuilder( id.length() + 8 );
+		sb.append( 'b' );
+		for (int i = 0; i < id.length(); i += 1) {
+			char ch = id.charAt( i );
+			if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')) sb.append( ch );
+			else sb.append( String.format( "_%04x", (int) ch ) );
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,40 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.renderers.streaming;
+
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+    How a streaming RDF writer lays out its output. Pretty layout makes
+    one pass over the graph first, to find the prefixes it uses and which
+    blank nodes can be written inline, then writes each subject with its
+    properties grouped; fast layout writes the triples in a single pass,
+    grouping only those with the same subject that are found together.
+*/
+public enum Layout {
+	Pretty, Fast;
+
+	/**
+	    Answer the layout given by the elda:rdfLayout property of the
+	    formatter <code>root</code>, or <code>defaultLayout</code> if
+	    it has none.
+	*/
+	public static Layout decode( Resource root, Layout defaultLayout ) {
+		if (root == null) return defaultLayout;
+		Statement s = root.getProperty( EXTRAS.rdfLayout );
+		if (s == null) return defaultLayout;
+		Resource layout = s.getResource();
+		return
+			layout.equals( EXTRAS.prettyLayout ) ? Pretty
+			: layout.equals( EXTRAS.fastLayout ) ? Fast
+			: defaultLayout
+			;
+	}
+}
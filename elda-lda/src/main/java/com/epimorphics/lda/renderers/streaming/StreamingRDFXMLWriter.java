@@ -0,0 +1,238 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.renderers.streaming;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.rdf.model.impl.Util;
+import com.hp.hpl.jena.shared.InvalidPropertyURIException;
+import com.hp.hpl.jena.shared.WrappedException;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+    Writes a graph as RDF/XML straight to a Writer, holding no more of the
+    output than the description of one subject. In Pretty layout it
+    declares the namespaces of the graph's properties once, then writes
+    an rdf:Description for each subject with its properties grouped, the
+    blank nodes that are the object of only one triple written inline
+    with rdf:parseType="Resource", and lists of resources written with
+    rdf:parseType="Collection". In Fast layout it writes an rdf:Description
+    for each run of triples with the same subject that are found together,
+    each property element declaring its own namespace, and labels every
+    blank node.
+*/
+public class StreamingRDFXMLWriter {
+
+	static final String INDENT = "  ";
+
+	static final Pattern PREFIX = Pattern.compile( "[A-Za-z_][A-Za-z0-9_\\-.]*" );
+
+	final Writer out;
+	final Layout layout;
+
+	// namespace -> prefix, for the namespaces of all the properties
+	final Map<String, String> prefixFor = new HashMap<String, String>();
+
+	public StreamingRDFXMLWriter( Writer out, Layout layout ) {
+		this.out = out;
+		this.layout = layout;
+	}
+
+	/**
+	    Write <code>g</code> to this writer's Writer and flush it.
+	*/
+	public void write( Graph g ) {
+		emit( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+		if (layout == Layout.Fast) writeFast( g ); else writePretty( g );
+		emit( "</rdf:RDF>\n" );
+		flush();
+	}
+
+	private void writeFast( Graph g ) {
+		emit( "<rdf:RDF xmlns:rdf=\"" ).emit( attr( RDF.getURI() ) ).emit( "\">\n" );
+		Node current = null;
+		ExtendedIterator<Triple> it = g.find( Node.ANY, Node.ANY, Node.ANY );
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				if (!t.getSubject().equals( current )) {
+					if (current != null) emit( INDENT ).emit( "</rdf:Description>\n" );
+					current = t.getSubject();
+					emit( INDENT ).emit( "<rdf:Description " ).emit( nodeAttribute( current, "rdf:about" ) ).emit( ">\n" );
+				}
+				String uri = t.getPredicate().getURI();
+				int split = splitPredicate( uri );
+				String element = "p:" + uri.substring( split );
+				emit( INDENT + INDENT ).emit( "<" ).emit( element )
+					.emit( " xmlns:p=\"" ).emit( attr( uri.substring( 0, split ) ) ).emit( "\"" );
+				writeSimpleValue( element, t.getObject() );
+			}
+		} finally {
+			it.close();
+		}
+		if (current != null) emit( INDENT ).emit( "</rdf:Description>\n" );
+	}
+
+	private void writePretty( Graph g ) {
+		GraphShape shape = GraphShape.of( g );
+		prefixFor.put( RDF.getURI(), "rdf" );
+		Map<String, String> given = shape.prefixes().getNsPrefixMap();
+		Set<String> used = new HashSet<String>( prefixFor.values() );
+		for (Map.Entry<String, String> e: new TreeMap<String, String>( given ).entrySet()) {
+			String prefix = e.getKey(), ns = e.getValue();
+			if (shape.predicateNamespaces.contains( ns ) && !prefixFor.containsKey( ns ) && usable( prefix ) && used.add( prefix ))
+				prefixFor.put( ns, prefix );
+		}
+		int count = 0;
+		for (String ns: shape.predicateNamespaces) {
+			if (!prefixFor.containsKey( ns )) {
+				String prefix = "j." + count++;
+				while (!used.add( prefix )) prefix = "j." + count++;
+				prefixFor.put( ns, prefix );
+			}
+		}
+		emit( "<rdf:RDF" );
+		for (Map.Entry<String, String> e: new TreeMap<String, String>( invert( prefixFor ) ).entrySet())
+			emit( "\n" ).emit( INDENT + INDENT ).emit( "xmlns:" ).emit( e.getKey() ).emit( "=\"" ).emit( attr( e.getValue() ) ).emit( "\"" );
+		emit( ">\n" );
+	//
+	// As for Turtle: the blank nodes that are the object of only one triple
+	// are written inside the description of that triple's subject
+		Set<Node> path = new HashSet<Node>();
+		Set<Node> written = new HashSet<Node>();
+		for (Node s: shape.subjects)
+			if (!shape.isInlinable( s )) writeSubject( shape, s, path, written );
+		for (Node s: shape.subjects)
+			if (shape.isInlinable( s ) && written.add( s )) writeSubject( shape, s, path, written );
+	}
+
+	private void writeSubject( GraphShape shape, Node s, Set<Node> path, Set<Node> written ) {
+		emit( INDENT ).emit( "<rdf:Description " ).emit( nodeAttribute( s, "rdf:about" ) ).emit( ">\n" );
+		writeProperties( shape, s, INDENT + INDENT, path, written );
+		emit( INDENT ).emit( "</rdf:Description>\n" );
+	}
+
+	private void writeProperties( GraphShape shape, Node s, String indent, Set<Node> path, Set<Node> written ) {
+		path.add( s );
+		for (Map.Entry<Node, List<Node>> e: shape.propertiesOf( s ).entrySet()) {
+			String element = qname( e.getKey().getURI() );
+			for (Node o: e.getValue()) {
+				emit( indent ).emit( "<" ).emit( element );
+				if (shape.writeInside( o, path, written )) {
+					List<Node> elements = shape.inlineListElements( o, path, written, true );
+					if (elements == null) {
+						written.add( o );
+						emit( " rdf:parseType=\"Resource\">\n" );
+						writeProperties( shape, o, indent + INDENT, path, written );
+					} else {
+					// a collection holds no literals; its blank elements are
+					// labelled, and written as subjects of their own
+						emit( " rdf:parseType=\"Collection\">\n" );
+						for (Node x: elements)
+							emit( indent + INDENT ).emit( "<rdf:Description " ).emit( nodeAttribute( x, "rdf:about" ) ).emit( "/>\n" );
+					}
+					emit( indent ).emit( "</" ).emit( element ).emit( ">\n" );
+				} else {
+					writeSimpleValue( element, o );
+				}
+			}
+		}
+		path.remove( s );
+	}
+
+	/**
+	    Finish the property element <code>element</code>, whose start tag
+	    is open, with the value <code>o</code> written as an attribute or
+	    as text.
+	*/
+	private void writeSimpleValue( String element, Node o ) {
+		if (o.isLiteral()) {
+			String lang = o.getLiteralLanguage();
+			String type = o.getLiteralDatatypeURI();
+			if (lang != null && lang.length() > 0) emit( " xml:lang=\"" ).emit( attr( lang ) ).emit( "\"" );
+			else if (type != null) emit( " rdf:datatype=\"" ).emit( attr( type ) ).emit( "\"" );
+			emit( ">" ).emit( text( o.getLiteralLexicalForm() ) ).emit( "</" ).emit( element ).emit( ">\n" );
+		} else {
+			emit( " " ).emit( nodeAttribute( o, "rdf:resource" ) ).emit( "/>\n" );
+		}
+	}
+
+	private String nodeAttribute( Node n, String uriAttribute ) {
+		return n.isBlank()
+			? "rdf:nodeID=\"" + GraphShape.blankLabel( n ) + "\""
+			: uriAttribute + "=\"" + attr( n.getURI() ) + "\""
+			;
+	}
+
+	private String qname( String uri ) {
+		int split = splitPredicate( uri );
+		return prefixFor.get( uri.substring( 0, split ) ) + ":" + uri.substring( split );
+	}
+
+	private static int splitPredicate( String uri ) {
+		int split = Util.splitNamespace( uri );
+		if (split == uri.length() || split == 0) throw new InvalidPropertyURIException( uri );
+		return split;
+	}
+
+	private static boolean usable( String prefix ) {
+		return PREFIX.matcher( prefix ).matches() && !prefix.toLowerCase().startsWith( "xml" );
+	}
+
+	private static Map<String, String> invert( Map<String, String> m ) {
+		Map<String, String> result = new HashMap<String, String>();
+		for (Map.Entry<String, String> e: m.entrySet()) result.put( e.getValue(), e.getKey() );
+		return result;
+	}
+
+	static String text( String s ) {
+		return escape( s, false );
+	}
+
+	static String attr( String s ) {
+		return escape( s, true );
+	}
+
+	private static String escape( String s, boolean inAttribute ) {
+		StringBuilder sb = null;
+		for (int i = 0; i < s.length(); i += 1) {
+			char ch = s.charAt( i );
+			String replacement =
+				ch == '&' ? "&amp;"
+				: ch == '<' ? "&lt;"
+				: ch == '>' ? "&gt;"
+				: ch == '\r' ? "&#xD;"
+				: inAttribute && ch == '"' ? "&quot;"
+				: inAttribute && ch == '\n' ? "&#xA;"
+				: inAttribute && ch == '\t' ? "&#x9;"
+				: null
+				;
+			if (replacement != null && sb == null) sb = new StringBuilder( s.substring( 0, i ) );
+			if (sb != null) {
+				if (replacement == null) sb.append( ch ); else sb.append( replacement );
+			}
+		}
+		return sb == null ? s : sb.toString();
+	}
+
+	private StreamingRDFXMLWriter emit( String s ) {
+		try { out.write( s ); }
+		catch (IOException e) { throw new WrappedException( e ); }
+		return this;
+	}
+
+	private void flush() {
+		try { out.flush(); }
+		catch (IOException e) { throw new WrappedException( e ); }
+	}
+}
@@ -0,0 +1,220 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.renderers.streaming;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.rdf.model.impl.Util;
+import com.hp.hpl.jena.shared.WrappedException;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+    Writes a graph as Turtle straight to a Writer, holding no more of the
+    output than the description of one subject. In Pretty layout it
+    writes the prefixes the graph uses, then each subject with its
+    properties grouped and the blank nodes that are the object of only
+    one triple written inline as [ ... ]; in Fast layout it writes full
+    IRIs and labelled blank nodes, one triple per line, joining the
+    triples of a subject that are found together with ';'.
+*/
+public class StreamingTurtleWriter {
+
+	static final String INDENT = "    ";
+
+	static final Pattern LOCAL = Pattern.compile( "([A-Za-z_][A-Za-z0-9_\\-]*)?" );
+
+	static final Pattern INTEGER = Pattern.compile( "[+-]?[0-9]+" );
+
+	static final Pattern DECIMAL = Pattern.compile( "[+-]?[0-9]*\\.[0-9]+" );
+
+	final Writer out;
+	final Layout layout;
+
+	// namespace -> prefix, for the namespaces with usable prefixes
+	final Map<String, String> prefixFor = new HashMap<String, String>();
+
+	public StreamingTurtleWriter( Writer out, Layout layout ) {
+		this.out = out;
+		this.layout = layout;
+	}
+
+	/**
+	    Write <code>g</code> to this writer's Writer and flush it.
+	*/
+	public void write( Graph g ) {
+		if (layout == Layout.Fast) writeFast( g ); else writePretty( g );
+		flush();
+	}
+
+	private void writeFast( Graph g ) {
+		Node current = null;
+		ExtendedIterator<Triple> it = g.find( Node.ANY, Node.ANY, Node.ANY );
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				if (t.getSubject().equals( current )) {
+					emit( " ;\n" ).emit( INDENT );
+				} else {
+					if (current != null) emit( " .\n" );
+					current = t.getSubject();
+					emit( term( current ) ).emit( " " );
+				}
+				emit( term( t.getPredicate() ) ).emit( " " ).emit( term( t.getObject() ) );
+			}
+		} finally {
+			it.close();
+		}
+		if (current != null) emit( " .\n" );
+	}
+
+	private void writePretty( Graph g ) {
+		GraphShape shape = GraphShape.of( g );
+		for (Map.Entry<String, String> e: new TreeMap<String, String>( shape.prefixes().getNsPrefixMap() ).entrySet()) {
+			String prefix = e.getKey(), ns = e.getValue();
+			if (LOCAL.matcher( prefix ).matches() && !prefix.startsWith( "_" )) {
+				prefixFor.put( ns, prefix );
+				emit( "@prefix " ).emit( prefix ).emit( ": " ).emit( iri( ns ) ).emit( " .\n" );
+			}
+		}
+		if (!prefixFor.isEmpty()) emit( "\n" );
+	//
+	// The blank nodes that are the object of only one triple are written
+	// inside their subject's description; those still unwritten after all
+	// the other subjects are on cycles of such nodes, or nested too deeply
+		Set<Node> path = new HashSet<Node>();
+		Set<Node> written = new HashSet<Node>();
+		for (Node s: shape.subjects)
+			if (!shape.isInlinable( s )) writeSubject( shape, s, path, written );
+		for (Node s: shape.subjects)
+			if (shape.isInlinable( s ) && written.add( s )) writeSubject( shape, s, path, written );
+	}
+
+	private void writeSubject( GraphShape shape, Node s, Set<Node> path, Set<Node> written ) {
+		emit( term( s ) );
+		writeProperties( shape, s, INDENT, path, written );
+		emit( " .\n\n" );
+	}
+
+	private void writeProperties( GraphShape shape, Node s, String indent, Set<Node> path, Set<Node> written ) {
+		path.add( s );
+		boolean first = true;
+		for (Map.Entry<Node, List<Node>> e: shape.propertiesOf( s ).entrySet()) {
+			Node p = e.getKey();
+			emit( first ? " " : " ;\n" + indent );
+			emit( p.equals( RDF.Nodes.type ) ? "a" : term( p ) );
+			String sep = " ";
+			for (Node o: e.getValue()) {
+				emit( sep );
+				writeObject( shape, o, indent, path, written );
+				sep = " , ";
+			}
+			first = false;
+		}
+		path.remove( s );
+	}
+
+	private void writeObject( GraphShape shape, Node o, String indent, Set<Node> path, Set<Node> written ) {
+		if (shape.writeInside( o, path, written )) {
+			List<Node> elements = shape.inlineListElements( o, path, written, false );
+			if (elements == null) {
+				written.add( o );
+				emit( "[" );
+				writeProperties( shape, o, indent + INDENT, path, written );
+				emit( " ]" );
+			} else {
+				emit( "(" );
+				for (Node element: elements) {
+					emit( " " );
+					writeObject( shape, element, indent + INDENT, path, written );
+				}
+				emit( " )" );
+			}
+		} else {
+			emit( term( o ) );
+		}
+	}
+
+	/**
+	    Answer the Turtle term for the node <code>n</code>.
+	*/
+	String term( Node n ) {
+		if (n.isURI()) return uriTerm( n.getURI() );
+		if (n.isBlank()) return "_:" + GraphShape.blankLabel( n );
+		String lex = n.getLiteralLexicalForm();
+		String lang = n.getLiteralLanguage();
+		String type = n.getLiteralDatatypeURI();
+		if (layout == Layout.Pretty && type != null) {
+			if (type.equals( XSDDatatype.XSDinteger.getURI() ) && INTEGER.matcher( lex ).matches()) return lex;
+			if (type.equals( XSDDatatype.XSDdecimal.getURI() ) && DECIMAL.matcher( lex ).matches()) return lex;
+			if (type.equals( XSDDatatype.XSDboolean.getURI() ) && (lex.equals( "true" ) || lex.equals( "false" ))) return lex;
+		}
+		StringBuilder sb = new StringBuilder( lex.length() + 2 );
+		sb.append( '"' );
+		for (int i = 0; i < lex.length(); i += 1) {
+			char ch = lex.charAt( i );
+			switch (ch) {
+				case '"': sb.append( "\\\"" ); break;
+				case '\\': sb.append( "\\\\" ); break;
+				case '\n': sb.append( "\\n" ); break;
+				case '\r': sb.append( "\\r" ); break;
+				case '\t': sb.append( "\\t" ); break;
+				default:
+					if (ch < ' ') sb.append( String.format( "\\u%04X", (int) ch ) );
+					else sb.append( ch );
+			}
+		}
+		sb.append( '"' );
+		if (lang != null && lang.length() > 0) sb.append( '@' ).append( lang );
+		else if (type != null) sb.append( "^^" ).append( uriTerm( type ) );
+		return sb.toString();
+	}
+
+	private String uriTerm( String uri ) {
+		if (!prefixFor.isEmpty()) {
+			int split = Util.splitNamespace( uri );
+			String prefix = prefixFor.get( uri.substring( 0, split ) );
+			if (prefix != null) {
+				String local = uri.substring( split );
+				if (LOCAL.matcher( local ).matches()) return prefix + ":" + local;
+			}
+		}
+		return iri( uri );
+	}
+
+	/**
+	    Answer <code>uri</code> as an IRI reference, with the characters
+	    that cannot appear in one written as \\u escapes.
+	*/
+	static String iri( String uri ) {
+		StringBuilder sb = new StringBuilder( uri.length() + 2 );
+		sb.append( '<' );
+		for (int i = 0; i < uri.length(); i += 1) {
+			char ch = uri.charAt( i );
+			if (ch <= ' ' || "<>\"{}|^`\\".indexOf( ch ) >= 0) sb.append( String.format( "\\u%04X", (int) ch ) );
+			else sb.append( ch );
+		}
+		return sb.append( '>' ).toString();
+	}
+
+	private StreamingTurtleWriter emit( String s ) {
+		try { out.write( s ); }
+		catch (IOException e) { throw new WrappedException( e ); }
+		return this;
+	}
+
+	private void flush() {
+		try { out.flush(); }
+		catch (IOException e) { throw new WrappedException( e ); }
+	}
+}
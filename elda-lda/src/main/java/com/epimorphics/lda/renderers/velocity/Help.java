@@ -3,6 +3,8 @@ package com.epimorphics.lda.renderers.velocity;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.velocity.app.VelocityEngine;
 import org.slf4j.Logger;
@@ -20,6 +22,39 @@ public class Help {
     
 	static final Logger log = LoggerFactory.getLogger( Help.class );
 
+	static final ConcurrentMap<String, VelocityEngine> engines = new ConcurrentHashMap<String, VelocityEngine>();
+
+	/**
+	    Answer a VelocityEngine for the bindings <code>b</code>, shared
+	    with every other renderer whose bindings name the same properties
+	    file and template root. An engine is created and initialised (see
+	    createVelocityEngine) the first time its configuration is seen;
+	    engines are safe to use from several threads at once, and sharing
+	    one means sharing its template cache.
+	*/
+	public static VelocityEngine velocityEngineFor( Bindings b, Resource config ) {
+		String key = velocityPropertiesFileName( b ) + "\n" + templateRoot( b );
+		VelocityEngine ve = engines.get( key );
+		if (ve == null) {
+			synchronized (engines) {
+				ve = engines.get( key );
+				if (ve == null) engines.put( key, ve = createVelocityEngine( b, config ) );
+			}
+		}
+		return ve;
+	}
+
+	/**
+	    Forget all the shared VelocityEngines, so that the next renderer
+	    for any configuration gets a freshly-initialised one. Called when
+	    a configuration is reloaded, before its changed specs build their
+	    renderers, so that they see changed velocity properties and
+	    template roots; renderers of unchanged specs keep their engines.
+	*/
+	public static void forgetVelocityEngines() {
+		engines.clear();
+	}
+
 	/**
 	    Create a new VelocityEngine. Initialise it with properties from
 	    the file named by velocityPropertiesFileName, and if that is absent
@@ -33,8 +68,7 @@ public class Help {
 		if (p.isEmpty()) {
 			log.debug( "using default velocity properties." );
 		//
-			String defaultRoot = b.getAsString("_resourceRoot", "") + "/vm/";
-			String templateRoot = b.getAsString("_velocityRoot", defaultRoot);	
+			String templateRoot = templateRoot(b);
 		//
 			ve.setProperty( "macro.provide.scope.control", true );
 			ve.setProperty( "foreach.provide.scope.control", true );
@@ -66,6 +100,11 @@ public class Help {
 		return ve;
 	}
 	
+	private static String templateRoot(Bindings b) {
+		String defaultRoot = b.getAsString("_resourceRoot", "") + "/vm/";
+		return b.getAsString("_velocityRoot", defaultRoot);
+	}
+
 	private static String velocityPropertiesFileName(Bindings b) {
 		return b.getAsString("_resourceRoot", "") + "/velocity.properties";
 	}
@@ -0,0 +1,211 @@
+package com.epimorphics.lda.renderers.velocity;
+
+import java.util.*;
+
+import com.epimorphics.lda.vocabularies.SKOSstub;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.sparql.vocabulary.FOAF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    A ModelIndex answers the questions that WrappedNodes ask of a model
+    -- the values of a resource's properties, the subjects that have a
+    node as a value, labels, and sorted property lists -- and remembers
+    the answers, so that however often a template asks about a node the
+    model is consulted only once. It is built for one render and assumes
+    that the model does not change while it is in use.
+*/
+public class ModelIndex {
+
+	final Model model;
+
+	final Map<Resource, Map<Property, List<RDFNode>>> forward = new HashMap<Resource, Map<Property, List<RDFNode>>>();
+
+	final Map<RDFNode, Map<Property, List<Resource>>> inverse = new HashMap<RDFNode, Map<Property, List<Resource>>>();
+
+	final Map<Resource, String> labels = new HashMap<Resource, String>();
+
+	final Map<Resource, List<Literal>> allLabels = new HashMap<Resource, List<Literal>>();
+
+	final Map<Resource, List<Property>> sortedProperties = new HashMap<Resource, List<Property>>();
+
+	final Map<RDFNode, List<Property>> sortedInverses = new HashMap<RDFNode, List<Property>>();
+
+	public ModelIndex( Model model ) {
+		this.model = model;
+	}
+
+	/**
+	    Answer a map from each property of <code>r</code> to its values,
+	    in the order the model delivers them.
+	*/
+	public Map<Property, List<RDFNode>> propertiesOf( Resource r ) {
+		Map<Property, List<RDFNode>> result = forward.get( r );
+		if (result == null) {
+			result = new LinkedHashMap<Property, List<RDFNode>>();
+			for (StmtIterator it = model.listStatements( r, null, (RDFNode) null ); it.hasNext();) {
+				Statement s = it.next();
+				List<RDFNode> values = result.get( s.getPredicate() );
+				if (values == null) result.put( s.getPredicate(), values = new ArrayList<RDFNode>( 2 ) );
+				values.add( s.getObject() );
+			}
+			forward.put( r, result );
+		}
+		return result;
+	}
+
+	/**
+	    Answer the values of property <code>p</code> of <code>r</code>.
+	*/
+	public List<RDFNode> valuesOf( Resource r, Resource p ) {
+		List<RDFNode> result = propertiesOf( r ).get( p );
+		return result == null ? Collections.<RDFNode>emptyList() : result;
+	}
+
+	/**
+	    Answer a map from each property P to the subjects S where
+	    (S, P, o) is in the model.
+	*/
+	public Map<Property, List<Resource>> inversesOf( RDFNode o ) {
+		Map<Property, List<Resource>> result = inverse.get( o );
+		if (result == null) {
+			result = new LinkedHashMap<Property, List<Resource>>();
+			for (StmtIterator it = model.listStatements( null, null, o ); it.hasNext();) {
+				Statement s = it.next();
+				List<Resource> subjects = result.get( s.getPredicate() );
+				if (subjects == null) result.put( s.getPredicate(), subjects = new ArrayList<Resource>( 2 ) );
+				subjects.add( s.getSubject() );
+			}
+			inverse.put( o, result );
+		}
+		return result;
+	}
+
+	/**
+	    Answer the subjects S where (S, p, o) is in the model.
+	*/
+	public List<Resource> subjectsOf( Resource p, RDFNode o ) {
+		List<Resource> result = inversesOf( o ).get( p );
+		return result == null ? Collections.<Resource>emptyList() : result;
+	}
+
+	/**
+	    Answer the preferred label of <code>r</code>, chosen as
+	    Help.labelFor does.
+	*/
+	public String labelFor( Resource r ) {
+		String result = labels.get( r );
+		if (result == null) labels.put( r, result = computeLabel( r ) );
+		return result;
+	}
+
+	private String computeLabel( Resource r ) {
+		List<RDFNode> prefs = valuesOf( r, SKOSstub.prefLabel );
+		if (prefs.size() > 0 && prefs.get(0).isLiteral())
+			return prefs.get(0).asLiteral().getLexicalForm();
+	//
+		String langLabel = null;
+		for (RDFNode o: valuesOf( r, RDFS.label )) {
+			if (o.isLiteral()) {
+				Literal label = o.asLiteral();
+				String spelling = label.getLexicalForm();
+				if (label.getLanguage().equals("")) return spelling;
+				else langLabel = spelling;
+			}
+		}
+		if (langLabel != null) return langLabel;
+		return r.getLocalName();
+	}
+
+	/**
+	    Answer all the skos:prefLabels and rdfs:labels of <code>r</code>,
+	    as Help.labelsFor does.
+	*/
+	public List<Literal> labelsFor( Resource r ) {
+		List<Literal> result = allLabels.get( r );
+		if (result == null) {
+			result = new ArrayList<Literal>();
+			for (RDFNode n: valuesOf( r, SKOSstub.prefLabel )) result.add( n.asLiteral() );
+			for (RDFNode n: valuesOf( r, RDFS.label )) result.add( n.asLiteral() );
+			allLabels.put( r, result );
+		}
+		return result;
+	}
+
+	/**
+	    Answer true iff <code>r</code> has just one property, which is
+	    a single rdfs:label.
+	*/
+	public boolean isJustALabel( Resource r ) {
+		Map<Property, List<RDFNode>> properties = propertiesOf( r );
+		return properties.size() == 1 && valuesOf( r, RDFS.label ).size() == 1;
+	}
+
+	/**
+	    Answer the distinct properties of <code>r</code> (apart from
+	    foaf:isPrimaryTopicOf), sorted so that properties with some
+	    literal value come first and otherwise by local name.
+	*/
+	public List<Property> sortedPropertiesOf( Resource r ) {
+		List<Property> result = sortedProperties.get( r );
+		if (result == null) {
+			List<Property> properties = new ArrayList<Property>( propertiesOf( r ).keySet() );
+			// Brutal ad-hoc suppression of a known item endpoint loop.
+			properties.remove( FOAF.isPrimaryTopicOf );
+			sortedProperties.put( r, result = sort( r, properties ) );
+		}
+		return result;
+	}
+
+	/**
+	    Answer the distinct properties P for which some (S, P, o) is in
+	    the model, sorted as for sortedPropertiesOf.
+	*/
+	public List<Property> sortedInversePropertiesOf( RDFNode o ) {
+		List<Property> result = sortedInverses.get( o );
+		if (result == null) {
+			List<Property> properties = new ArrayList<Property>( inversesOf( o ).keySet() );
+			Resource subject = o.isResource() ? o.asResource() : null;
+			sortedInverses.put( o, result = sort( subject, properties ) );
+		}
+		return result;
+	}
+
+	/**
+	    A sortable item wrapping a property. The label is the local name
+	    of the property. <code>hasLiterals</code> is true if any of the
+	    values of this property with respect to the given subject are
+	    literals.
+	*/
+	static class Sortable implements Comparable<Sortable> {
+		final Property property;
+		final String label;
+		final boolean hasLiterals;
+
+		Sortable( Property property, boolean hasLiterals ) {
+			this.property = property;
+			this.label = property.getLocalName();
+			this.hasLiterals = hasLiterals;
+		}
+
+		@Override public int compareTo( Sortable other ) {
+			if (hasLiterals == other.hasLiterals)
+				return label.compareToIgnoreCase( other.label );
+			return hasLiterals ? -1 : +1;
+		}
+	}
+
+	private List<Property> sort( Resource S, List<Property> properties ) {
+		List<Sortable> toSort = new ArrayList<Sortable>( properties.size() );
+		for (Property p: properties) toSort.add( new Sortable( p, S != null && hasLiterals( S, p ) ) );
+		Collections.sort( toSort );
+		List<Property> result = new ArrayList<Property>( properties.size() );
+		for (Sortable s: toSort) result.add( s.property );
+		return result;
+	}
+
+	private boolean hasLiterals( Resource S, Property p ) {
+		for (RDFNode o: valuesOf( S, p )) if (o.isLiteral()) return true;
+		return false;
+	}
+}
@@ -28,6 +28,14 @@ public class VelocityCore {
 		this.templateName = templateName;
 	}
 
+	/**
+	    Fetch the page template from the engine so that it is parsed
+	    and cached before the first render.
+	*/
+	public void warmUp() {
+		ve.getTemplate( templateName );
+	}
+
 	public void render( APIResultSet results, Bindings bindings, OutputStream os ) {
 		Resource thisPage = results.getRoot();
 		MergedModels mm = results.getModels();
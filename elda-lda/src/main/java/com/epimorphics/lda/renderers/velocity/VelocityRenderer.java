@@ -18,7 +18,7 @@ import com.epimorphics.util.MediaType;
 import com.epimorphics.util.RDFUtils;
 import com.hp.hpl.jena.rdf.model.Resource;
 
-public class VelocityRenderer implements Renderer {
+public class VelocityRenderer implements Renderer, Renderer.WarmsUp {
 	
 	final MediaType mt;
 	final VelocityCore core;
@@ -28,7 +28,7 @@ public class VelocityRenderer implements Renderer {
 	static final String[] defaultMetadataOptions = "bindings,formats,versions,execution".split(",");
 	
 	public VelocityRenderer( MediaType mt, Bindings b, Resource config ) {
-		VelocityEngine ve = Help.createVelocityEngine( b, config );
+		VelocityEngine ve = Help.velocityEngineFor( b, config );
 		String templateName = RDFUtils.getStringValue( config, EXTRAS.velocityTemplate, "page-shell.vm" );
 		this.suffix = RDFUtils.getStringValue( config, API.name, "html" );
 		this.mt = mt;
@@ -53,6 +53,13 @@ public class VelocityRenderer implements Renderer {
     	return Mode.PreferLocalnames;
     }
     
+    /**
+        Load (and hence parse and cache) this renderer's page template.
+    */
+    @Override public void warmUp( Bindings b ) {
+    	core.warmUp();
+    }
+    
     @Override public Renderer.BytesOut render
     	( Times t
     	, final Bindings b
@@ -10,8 +10,6 @@ import com.hp.hpl.jena.datatypes.RDFDatatype;
 import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.rdf.model.*;
 import com.hp.hpl.jena.shared.PrefixMapping;
-import com.hp.hpl.jena.sparql.vocabulary.FOAF;
-import com.hp.hpl.jena.vocabulary.RDFS;
 
 /**
     A WrappedNode is an RDF node wrapped in a shell of useful methods to be
@@ -31,16 +29,30 @@ public class WrappedNode implements Comparable<WrappedNode> {
 	protected List<WrappedNode> inverses = null;
 	
 	/**
-	    Struct holding the short-names and id maps.
+	    Struct holding the short-names and id maps, and the indexes
+	    of the models that the wrapped nodes belong to. A bundle is
+	    meant to last for one render, so the indexes are not shared
+	    between renders.
 	*/
 	public static class Bundle {
 		final ShortNames sn;
 		final IdMap ids;
+		final Map<Model, ModelIndex> indexes = new IdentityHashMap<Model, ModelIndex>();
 		
 		public Bundle(ShortNames sn, IdMap ids) {
 			this.sn = sn;
 			this.ids = ids;
 		}
+		
+		/**
+		    Answer the index for model <code>m</code>, creating it if
+		    necessary.
+		*/
+		public ModelIndex indexFor(Model m) {
+			ModelIndex result = indexes.get(m);
+			if (result == null) indexes.put(m, result = new ModelIndex(m));
+			return result;
+		}
 	}
 
 	public static List<WrappedNode> itemise(Bundle b, List<Resource> items) {
@@ -71,17 +83,24 @@ public class WrappedNode implements Comparable<WrappedNode> {
 	public WrappedNode( Bundle b, RDFNode r ) {
 		this.bundle = b;
 		this.r = (r.isResource() ? r.asResource() : null);
-		this.label = (this.r == null ? "NONE" : Help.labelFor( this.r ) );
+		this.label = (this.r == null ? "NONE" : b.indexFor( r.getModel() ).labelFor( this.r ) );
 		this.basis = r;
-		this.labels = this.r == null ? noLabels : Help.labelsFor( this.r );
+		this.labels = this.r == null ? noLabels : b.indexFor( r.getModel() ).labelsFor( this.r );
 	}
 	
 	public WrappedNode( Bundle b, Resource r ) {
 		this.bundle = b;
 		this.basis = r;
 		this.r = r;
-		this.label = Help.labelFor( r );
-		this.labels = Help.labelsFor( r );
+		this.label = b.indexFor( r.getModel() ).labelFor( r );
+		this.labels = b.indexFor( r.getModel() ).labelsFor( r );
+	}
+	
+	/**
+	    The index of the model this node belongs to.
+	*/
+	private ModelIndex index() {
+		return bundle.indexFor( basis.getModel() );
 	}
 	
 	/**
@@ -151,8 +170,7 @@ public class WrappedNode implements Comparable<WrappedNode> {
 	*/
 	public boolean isJustALabel() {
 		if (r == null) return false;
-		List<Statement> properties = r.listProperties().toList();
-		return properties.size() == 1 && properties.get(0).getPredicate().equals(RDFS.label);
+		return index().isJustALabel( r );
 	}
 	
 	/**
@@ -334,8 +352,8 @@ public class WrappedNode implements Comparable<WrappedNode> {
 		List<WrappedNode> result = new ArrayList<WrappedNode>();
 	//
 		if (basis.isResource())
-			for (Statement s: r.listProperties( p.r.as(Property.class) ).toList() ) {	
-			result.add( new WrappedNode( bundle, s.getObject() ) );
+			for (RDFNode o: index().valuesOf( r, p.r )) {	
+			result.add( new WrappedNode( bundle, o ) );
 			}
 	//
 		return result;
@@ -349,11 +367,8 @@ public class WrappedNode implements Comparable<WrappedNode> {
 			APIResultSet.setUsedPrefixes(m, PrefixMapping.Standard);		
 		
 		Property p = m.createProperty( m.expandPrefix(qName) );
-		Statement s = r.getProperty(p);
-		
-		// System.err.println( ">> " + qName + " ==> " + (s == null ? "NONE" : s.getObject() ) );
-		
-		return s == null ? null : wrap(s.getObject());
+		List<RDFNode> values = index().valuesOf( r, p );
+		return values.isEmpty() ? null : wrap(values.get(0));
 	}
 	
 	/**
@@ -366,8 +381,8 @@ public class WrappedNode implements Comparable<WrappedNode> {
 	public List<WrappedNode> getInverseValues( WrappedNode p ) {	
 		List<WrappedNode> result = new ArrayList<WrappedNode>();
 	//
-		for (Statement s: r.getModel().listStatements(null, p.r.as(Property.class), basis).toList()) {	
-			result.add( new WrappedNode( bundle, s.getSubject() ) );
+		for (Resource S: index().subjectsOf( p.r, basis )) {	
+			result.add( new WrappedNode( bundle, S ) );
 		}
 	//
 		return result;
@@ -396,85 +411,26 @@ public class WrappedNode implements Comparable<WrappedNode> {
 	
 	/**
 	    Return a list of WrappedNodes corresponding to the distinct
-	    predicates of properties of this WrappedNode.
-	    
+	    predicates of properties of this WrappedNode, sorted so that
+	    properties with literal values come first and otherwise by
+	    local name.
 	*/
 	private List<WrappedNode> coreGetProperties() {
-		Set<WrappedNode> properties = new HashSet<WrappedNode>();
-		ArrayList<WrappedNode> result = new ArrayList<WrappedNode>( properties );
-		Set<Resource> seen = new HashSet<Resource>();
-	//
-		for (Statement s: r.listProperties().toList()) {
-			Property p = s.getPredicate();
-			// Brutal ad-hoc suppression of a known item endpoint loop.
-			if (!p.equals(FOAF.isPrimaryTopicOf))
-				if (seen.add(p)) result.add( new WrappedNode( bundle, p ) );
-		}
-	//
-		return sort( result );
+		return wrapAll( index().sortedPropertiesOf( r ) );
 	}
 
 	/**
 	    Return a list of WrappedNodes corresponding to the distinct
-	    predicates of inverse properties of this WrappedNode.
-	    
+	    predicates of inverse properties of this WrappedNode, sorted
+	    as for coreGetProperties.
 	*/
 	private List<WrappedNode> coreGetInverseProperties() {
-		Set<WrappedNode> properties = new HashSet<WrappedNode>();
-		ArrayList<WrappedNode> result = new ArrayList<WrappedNode>( properties );
-		Set<Resource> seen = new HashSet<Resource>();
-	//
-		for (Statement s: r.getModel().listStatements(null, null, basis).toList()) {
-			Property p = s.getPredicate();
-			if (seen.add(p)) result.add( new WrappedNode( bundle, p ) );
-		}
-	//
-		return sort( result );
+		return wrapAll( index().sortedInversePropertiesOf( basis ) );
 	}
 	
-	/**
-	    A sortable item wrapping a property node. The label is to toString()
-	    of the property, computed once. <code>hasLiterals</code> is precomputed
-	    and is true if any of the values of this property with respect to
-	    the given subject node S are literals.	    
-	*/
-	static class Sortable implements Comparable<Sortable> {
-		final WrappedNode property;
-		final String label;
-		final boolean hasLiterals;
-		
-		Sortable(WrappedNode S, WrappedNode property) {
-			this.property = property;
-			this.label = property.toString();
-			this.hasLiterals = hasLiterals(S, property);
-		}
-
-		@Override public int compareTo(Sortable other) {
-			if (hasLiterals == other.hasLiterals)
-				return label.compareToIgnoreCase(other.label);
-			return hasLiterals ? -1 : +1;
-		}
-		
-		private static boolean hasLiterals(WrappedNode S, WrappedNode property) {
-			StmtIterator s = S.r.listProperties(property.r.as(Property.class));
-			while (s.hasNext())	if (s.next().getObject().isLiteral()) return true;
-			return false;
-		}
-	}
-	
-	/**
-	    Sort <code>nodes</code> as properties with respect to this resource
-	    node. Properties which have literal values sort before those that
-	    have resource values. Otherwise they sort according to their toString().
-	    [This will probably change, since numbers don't sort property on
-	    lexical forms.]
-	*/
-	private List<WrappedNode> sort(ArrayList<WrappedNode> nodes) {
-		List<Sortable> toSort = new ArrayList<Sortable>(nodes.size() );
-		for (WrappedNode n: nodes) toSort.add(new Sortable( this, n ) );		
-		Collections.sort( toSort );
-		List<WrappedNode> result = new ArrayList<WrappedNode>( nodes.size() );
-		for (Sortable s: toSort) result.add( s.property );
+	private List<WrappedNode> wrapAll( List<Property> properties ) {
+		List<WrappedNode> result = new ArrayList<WrappedNode>( properties.size() );
+		for (Property p: properties) result.add( new WrappedNode( bundle, p ) );
 		return result;
 	}
 
@@ -24,6 +24,7 @@ import com.epimorphics.jsonrdf.Encoder;
 import com.epimorphics.jsonrdf.utils.ModelIOUtils;
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.restlets.ControlRestlet.SpecRecord;
+import com.epimorphics.lda.shortnames.PropertyInfoView;
 import com.epimorphics.lda.specs.APIEndpointSpec;
 import com.epimorphics.lda.vocabularies.API;
 import com.epimorphics.lda.vocabularies.EXTRAS;
@@ -87,8 +88,7 @@ import com.hp.hpl.jena.util.ResourceUtils;
             List<Resource> roots = new ArrayList<Resource>(1);
             roots.add( meta );
             com.epimorphics.jsonrdf.Context context = rec.getAPIEndpoint().getSpec().getAPISpec().getShortnameService().asContext();
-            context.setSorted(true);
-            Encoder.getForOneResult( context ).encodeRecursive(meta.getModel(), roots, writer, true);
+            Encoder.getForOneResult( new PropertyInfoView( context ) ).encodeRecursive(meta.getModel(), roots, writer, true);
             String enc = writer.toString();
             return returnAs(enc, "application/json");
         }
@@ -0,0 +1,28 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.restlets;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.Response;
+
+import com.epimorphics.lda.support.pageComposition.ComposeMetrics;
+
+/**
+	The MetricsRestlet exposes Elda's per-endpoint, per-source,
+	per-format and per-cache statistics in the Prometheus text
+	format, for scraping by a monitoring system.
+*/
+@Path( "/control/metrics") public class MetricsRestlet {
+
+	/**
+	    Compose the current metrics and respond with them.
+	*/
+	@GET @Produces("text/plain") public Response metrics() {
+		return RouterRestlet.returnAs( new ComposeMetrics().renderMetrics(), ComposeMetrics.CONTENT_TYPE );
+	}
+}
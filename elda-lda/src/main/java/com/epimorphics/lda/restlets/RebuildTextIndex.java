@@ -0,0 +1,27 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.restlets;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.Response;
+
+import com.epimorphics.lda.textsearch.SourceTextIndex;
+
+/**
+    Rebuild, from scratch, the text index of every source that has
+    been searched, as after the data has been changed in a way its
+    marker does not show.
+*/
+@Path( "/control/rebuild-text-index") public class RebuildTextIndex {
+
+	@POST @Produces("text/plain") public Response rebuild() {
+		int n = SourceTextIndex.rebuildAll();
+		return Response.ok( "rebuilt " + n + " text index(es).\n" ).build();
+	}
+
+}
@@ -34,12 +34,15 @@ import org.slf4j.LoggerFactory;
 import com.epimorphics.lda.Version;
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.bindings.URLforResource;
-import com.epimorphics.lda.cache.Cache;
 import com.epimorphics.lda.core.*;
 import com.epimorphics.lda.exceptions.*;
+import com.epimorphics.lda.export.ExportFormat;
+import com.epimorphics.lda.query.QueryParameter;
 import com.epimorphics.lda.renderers.Renderer;
 import com.epimorphics.lda.renderers.Renderer.BytesOut;
+import com.epimorphics.lda.renderers.velocity.Help;
 import com.epimorphics.lda.routing.*;
+import com.epimorphics.lda.shortnames.CompleteContext;
 import com.epimorphics.lda.specmanager.SpecManagerFactory;
 import com.epimorphics.lda.support.*;
 import com.epimorphics.lda.support.pageComposition.Messages;
@@ -63,6 +66,7 @@ import com.sun.jersey.api.NotFoundException;
     public static final String VARY = "Vary";
     public static final String ETAG = "Etag";
     public static final String LAST_MODIFIED_DATE = "Last-Modified-Date";
+    public static final String RETRY_AFTER = "Retry-After";
     
     final Router router;
     
@@ -78,17 +82,19 @@ import com.sun.jersey.api.NotFoundException;
 		public static final long forever = 1000 * 60 * 24 * 365;
     	
     	final Router router;
+    	final RouterRestletSupport.LoadedConfig config;
     	final long timestamp;
     	final long interval;
     	
     	long nextCheck;
     	
-    	public TimestampedRouter(Router router, long when, long interval) {
-    		this(router, when, interval, when + interval);
+    	public TimestampedRouter(RouterRestletSupport.LoadedConfig config, long when, long interval) {
+    		this(config, when, interval, when + interval);
     	}
     		
-    	public TimestampedRouter(Router router, long when, long interval, long nextCheck) {
-    		this.router = router;
+    	public TimestampedRouter(RouterRestletSupport.LoadedConfig config, long when, long interval, long nextCheck) {
+    		this.config = config;
+    		this.router = config.router;
     		this.timestamp = when;
     		this.interval = interval;
     		this.nextCheck = nextCheck;
@@ -123,7 +129,8 @@ import com.sun.jersey.api.NotFoundException;
 				log.info( "\n\n    =>=> Starting Elda (Init)" + Version.string + "\n" ); 
 				announced = true;
 			}
-			getRouterFor( sc );
+			SlowRequestLog.setThreshold( sc.getInitParameter( Container.SLOW_REQUEST_THRESHOLD_PARAM_NAME ) );
+			WarmUp.run( sc, getRouterFor( sc ) );
 		}
 	
 		@Override public void contextDestroyed(ServletContextEvent sce) {			
@@ -145,16 +152,16 @@ import com.sun.jersey.api.NotFoundException;
     	 if (r == null) {
     		 log.info( "creating router for '" + contextPath + "'");
     		 long interval = getRefreshInterval(contextPath);
-    		 r = new TimestampedRouter( RouterRestletSupport.createRouterFor( con ), timeNow, interval );
+    		 r = new TimestampedRouter( RouterRestletSupport.loadConfigFor( con, null ), timeNow, interval );
     		 routers.put(contextPath, r );
     	 } else if (r.nextCheck < timeNow) {
 	    	 long latestTime = RouterRestletSupport.latestConfigTime(con, contextPath);
 	    	 if (latestTime > r.timestamp) {
 	    		 log.info( "reloading router for '" + contextPath + "'");
 	    		 long interval = getRefreshInterval(contextPath);
-	    		 r = new TimestampedRouter( RouterRestletSupport.createRouterFor( con ), timeNow, interval );
+	    		 Help.forgetVelocityEngines();
+	    		 r = new TimestampedRouter( RouterRestletSupport.loadConfigFor( con, r.config ), timeNow, interval );
 	    		 DOMUtils.clearCache();
-	    		 Cache.Registry.clearAll();
 	    		 routers.put( contextPath, r );	    		 
 	    	 } else {
 	    		 // checked, but no change to reload
@@ -187,6 +194,10 @@ import com.sun.jersey.api.NotFoundException;
 	}
 
 	public Match getMatch( String path, MultiMap<String, String> queryParams ) {
+		return getMatch( router, path, queryParams );
+	}
+
+	static Match getMatch( Router router, String path, MultiMap<String, String> queryParams ) {
         Match match = router.getMatch( path, queryParams );
         if (match == null) {
             // No match in the table at the moment, but check the persistence
@@ -210,6 +221,8 @@ import com.sun.jersey.api.NotFoundException;
     		, "text/html"
     		, "text/xml" 
     		, "text/plain"
+    		, "application/n-triples"
+    		, "application/x-ndjson"
     	} )
     public Response requestHandler(
             @PathParam("path") String pathstub,
@@ -221,14 +234,14 @@ import com.sun.jersey.api.NotFoundException;
     	String contextPath = servCon.getContextPath(); 
     	MultiMap<String, String> queryParams = JerseyUtils.convert(ui.getQueryParameters());
     	boolean dontCache = has( rh, "pragma", "no-cache" ) || has( rh, "cache-control", "no-cache" );
+        Times t = new Times( pathstub );
+        Times.Span matching = t.begin( "route matching" );
         Couple<String, String> pathAndType = parse( pathstub );
-        Match matchAll = getMatch( "/" + pathstub, queryParams );
-        Match matchTrimmed = getMatch( "/" + pathAndType.a, queryParams );  
-        Match match = matchTrimmed == null || notFormat( matchTrimmed, pathAndType.b ) ? matchAll : matchTrimmed;
+        Couple<Match, String> routed = route( router, pathstub, queryParams );
+        matching.end();
     //
-        String formatSuffix = match == matchAll ? null : pathAndType.b;
-        Set<String> _formats = queryParams.getAll("_format");
-        if (_formats.size() == 1) formatSuffix = _formats.iterator().next();
+        Match match = routed.a;
+        String formatSuffix = routed.b;
         
         if (match == null) {
         	StatsValues.endpointNoMatch();
@@ -238,12 +251,7 @@ import com.sun.jersey.api.NotFoundException;
         	else 
         		return standardHeaders( Response.seeOther( new URI( item ) ) ).build();
         } else {
-        //
-        	String prefixPath = match.getEndpoint().getPrefixPath();
-        	String path = contextPath + prefixPath;
-        	match.getEndpoint().getSpec().getBindings().put("_rootPath", path );
-        //
-        	Times t = new Times( pathstub );
+        	t.setEndpoint( statsKey( match.getEndpoint() ) );
         	Controls c = new Controls( !dontCache, t );
         	int encodingHash = hashOf( headers.getRequestHeaders().get("Accept-Encoding") );
         	int mediaHash = hashOf( headers.getAcceptableMediaTypes() );
@@ -287,10 +295,47 @@ import com.sun.jersey.api.NotFoundException;
     	return "<a href='" + preamble + template.substring(1) + "'>" + template + "</a>";
     }
 
+	/**
+        Answer the key of the statistics for <code>ep</code>: its prefix
+        path and URI template, so that APIs mounted under different
+        prefixes with the same templates are counted separately.
+    */
+    static String statsKey( APIEndpoint ep ) {
+    	String prefixPath = ep.getPrefixPath();
+    	return (prefixPath == null ? "" : prefixPath) + ep.getURITemplate();
+    }
+
+	/**
+        Answer the match for the request path <code>pathstub</code> and the
+        name of the format to render it in. If the path ends with a suffix
+        naming a format of the endpoint that matches the rest of the path,
+        that endpoint and format are chosen; otherwise the whole path is
+        matched and the format is left to content negotiation (null). A
+        single _format query parameter names the format in either case.
+        The whole path is only looked up (and so only recorded as a miss)
+        if the suffix-stripped one does not do.
+    */
+    public static Couple<Match, String> route( Router router, String pathstub, MultiMap<String, String> queryParams ) {
+        Couple<String, String> pathAndType = parse( pathstub );
+        Match match = null;
+        String formatName = null;
+        if (pathAndType.b != null) {
+        	Match matchTrimmed = getMatch( router, "/" + pathAndType.a, queryParams );
+        	if (matchTrimmed != null && !notFormat( matchTrimmed, pathAndType.b )) {
+        		match = matchTrimmed;
+        		formatName = pathAndType.b;
+        	}
+        }
+        if (match == null) match = getMatch( router, "/" + pathstub, queryParams );
+        Set<String> _formats = queryParams.getAll("_format");
+        if (_formats.size() == 1) formatName = _formats.iterator().next();
+        return new Couple<Match, String>( match, formatName );
+    }
+
 	/**
         Answer true of m's endpoint has no formatter called type.
     */
-    private boolean notFormat( Match m, String type ) {
+    private static boolean notFormat( Match m, String type ) {
     	return m.getEndpoint().getRendererNamed( type ) == null;
 	}
     
@@ -322,16 +367,14 @@ import com.sun.jersey.api.NotFoundException;
     //
         try {
         	URI ru = makeRequestURI(ui, match, requestUri);
-        	APIEndpoint ep = match.getEndpoint();
-        	boolean needsVaryAccept = formatName == null && queryParams.containsKey( "_format" ) == false;
         	
-        	Renderer _default = APIEndpointUtil.getRenderer( ep, formatName, mediaTypes );
-        	
-        	if (formatName == null && _default != null) formatName = _default.getPreferredSuffix();
+        	String _export = queryParams.getOne( QueryParameter._EXPORT );
+        	if (_export != null) return runExport( c, contextPath, ru, queryParams, match, _export );
+        	boolean needsVaryAccept = formatName == null && queryParams.containsKey( "_format" ) == false;
         	
-        	Renderer r = APIEndpointUtil.getRenderer( ep, formatName, mediaTypes );
+        	Rendered rendered = render( c, contextPath, as, ru, queryParams, mediaTypes, formatName, match );
         	
-        	if (r == null) {
+        	if (rendered == null) {
         		String message = formatName == null
         			? "no suitable media type was provided for rendering."
         			: "renderer '" + formatName + "' is not known to this server."
@@ -341,48 +384,9 @@ import com.sun.jersey.api.NotFoundException;
         			.build()
         			;
         	} 
-        //        	
-        	Bindings b = ep.getSpec().getBindings();
-        	
-        	String _properties = queryParams.getOne("_properties");
-			b.put("_properties", _properties == null ? "" : _properties );
-			
-			String _page = queryParams.getOne("_page");
-			b.put("_page", _page == null ? "" : _page );
-			
-			String _view = queryParams.getOne("_view");
-			b.put("_view", _view == null ? "" : _view );
-        	
-        	APIEndpoint.Request req =
-        		new APIEndpoint.Request( c, ru, b )
-        		.withFormat( formatName )
-        		.withMode( r.getMode() )
-        		;
-        	
-        	ModelPrefixEditor mpe = ep.getSpec().getAPISpec().getModelPrefixEditor();
         //
-        	Triad<APIResultSet, Map<String, String>, Bindings> resultsAndBindings = 
-        		APIEndpointUtil.call( req, match, contextPath, queryParams );
-        	
-        	Map<String, String> termBindings = mpe.rename( resultsAndBindings.b );
-        //
-            APIResultSet results = resultsAndBindings.a.applyEdits( mpe );
-            
-			Bindings rc = new Bindings( resultsAndBindings.c.copy(), as );
-			
-        	if (_default.getPreferredSuffix().equals( r.getPreferredSuffix())) {
-        		MediaType dmt = _default.getMediaType(rc);
-        		if (!dmt.equals(r.getMediaType(rc))) {
-        			r = RouterRestletSupport.changeMediaType( r, dmt );
-        		}
-        	}
-						
-			MediaType mt = r.getMediaType(rc);
-			log.info( "rendering with formatter " + mt );
-			Times times = c.times;
-			Renderer.BytesOut bo = r.render( times, rc, termBindings, results );
 			int mainHash = runHash + ru.toString().hashCode();
-			return returnAs( results, mainHash + mt.hashCode(), wrap(times, bo), needsVaryAccept, mt );
+			return returnAs( rendered.results, mainHash + rendered.mt.hashCode(), wrap(c.times, rendered.bo), needsVaryAccept, rendered.mt );
 	//
         } catch (StackOverflowError e) {
         	StatsValues.endpointException();
@@ -411,17 +415,150 @@ import com.sun.jersey.api.NotFoundException;
         }
     }    
     
+    /**
+        The results of one request and their rendering, not yet written:
+        the media type chosen and the bytes to write.
+    */
+    public static class Rendered {
+    	public final APIResultSet results;
+    	public final MediaType mt;
+    	public final Renderer.BytesOut bo;
+    	
+    	public Rendered( APIResultSet results, MediaType mt, Renderer.BytesOut bo ) {
+    		this.results = results;
+    		this.mt = mt;
+    		this.bo = bo;
+    	}
+    }
+
+    /**
+        Run the request for <code>match</code> and render its results in
+        the format named <code>formatName</code>, or if that is null in the
+        format negotiated from <code>mediaTypes</code>. This is the
+        pipeline of every request RouterRestlet serves and of every request
+        WarmUp replays. Answer null if there is no suitable renderer.
+    */
+    public static Rendered render
+    	( Controls c
+    	, String contextPath
+    	, URLforResource as
+    	, URI ru
+    	, MultiMap<String, String> queryParams
+    	, List<MediaType> mediaTypes
+    	, String formatName
+    	, Match match
+    	) {
+    	APIEndpoint ep = match.getEndpoint();
+    	Renderer _default = APIEndpointUtil.getRenderer( ep, formatName, mediaTypes );
+    	
+    	if (formatName == null && _default != null) formatName = _default.getPreferredSuffix();
+    	
+    	Renderer r = APIEndpointUtil.getRenderer( ep, formatName, mediaTypes );
+    	if (r == null) return null;
+    //
+    	APIEndpoint.Request req =
+    		new APIEndpoint.Request( c, ru, requestBindings( ep, contextPath, queryParams ) )
+    		.withFormat( formatName )
+    		.withMode( r.getMode() )
+    		;
+    	
+    	ModelPrefixEditor mpe = ep.getSpec().getAPISpec().getModelPrefixEditor();
+    //
+    	Triad<APIResultSet, Map<String, String>, Bindings> resultsAndBindings = 
+    		APIEndpointUtil.call( req, match, contextPath, queryParams );
+    	
+    	Times.Span editing = c.times.begin( "prefix editing" );
+    	Map<String, String> termBindings = mpe.rename( resultsAndBindings.b );
+    //
+    	APIResultSet results = resultsAndBindings.a.applyEdits( mpe );
+    	editing.end();
+    	
+    	Bindings rc = new Bindings( resultsAndBindings.c.copy(), as );
+    	
+    	if (_default.getPreferredSuffix().equals( r.getPreferredSuffix())) {
+    		MediaType dmt = _default.getMediaType(rc);
+    		if (!dmt.equals(r.getMediaType(rc))) {
+    			r = RouterRestletSupport.changeMediaType( r, dmt );
+    		}
+    	}
+    	
+    	MediaType mt = r.getMediaType(rc);
+    	log.info( "rendering with formatter " + mt );
+    	Times.Span rendering = c.times.begin( "rendering" ).note( mt.toString() );
+    	Renderer.BytesOut bo = r.render( c.times, rc, termBindings, results );
+    	rendering.end();
+    	return new Rendered( results, mt, bo );
+    }
+
+    /**
+        Answer this request's copy of the bindings of <code>ep</code>'s
+        spec, with its root path and its _properties, _page and _view
+        parameters (empty if not given) bound. The spec's bindings are
+        shared by all concurrent requests and so are never changed.
+    */
+    static Bindings requestBindings( APIEndpoint ep, String contextPath, MultiMap<String, String> queryParams ) {
+    	Bindings b = ep.getSpec().getBindings().copy();
+    	b.put( "_rootPath", contextPath + ep.getPrefixPath() );
+    	for (String name: new String[] {"_properties", "_page", "_view"}) {
+    		String value = queryParams.getOne( name );
+    		b.put( name, value == null ? "" : value );
+    	}
+    	return b;
+    }
+    
+    /**
+        Stream the bulk export of the matched endpoint in the format named
+        by <code>formatName</code>. Shortnames in JSON Lines are chosen as
+        the endpoint's JSON renderer would choose them.
+    */
+    private Response runExport
+    	( Controls c
+    	, String contextPath
+    	, URI ru
+    	, MultiMap<String, String> queryParams
+    	, Match match
+    	, String formatName
+    	) {
+    	APIEndpoint ep = match.getEndpoint();
+    	ExportFormat f = ExportFormat.byName( formatName );
+    	if (f == null) {
+    		String message = "export format '" + formatName + "' is not known to this server.";
+    		return standardHeaders( Response.status( Status.BAD_REQUEST )
+    			.entity( Messages.niceMessage( message ) ) )
+    			.build()
+    			;
+    	}
+    	Renderer json = ep.getRendererNamed( "json" );
+    	APIEndpoint.Request req =
+    		new APIEndpoint.Request( c, ru, requestBindings( ep, contextPath, queryParams ) )
+    		.withFormat( f.name )
+    		.withMode( json == null ? CompleteContext.Mode.RoundTrip : json.getMode() )
+    		;
+    	log.info( "exporting as " + f.mediaType );
+    	BytesOut bo = APIEndpointUtil.export( req, match, contextPath, queryParams, f );
+    	return standardHeaders( Response.ok( wrap( c.times, bo ), f.mediaType.toFullString() ) ).build();
+    }
+
     public static URI makeRequestURI(UriInfo ui, Match match, URI requestUri) {
+		return makeRequestURI( ui.getPath(), match, requestUri );
+	}
+
+    /**
+        Answer the URI of the request for <code>path</code> (relative to
+        the context), resolved against the base of the matched spec if it
+        has one.
+    */
+    public static URI makeRequestURI(String path, Match match, URI requestUri) {
 		String base = match.getEndpoint().getSpec().getAPISpec().getBase();
 		if (base == null) return requestUri;
-		return URIUtils.resolveAgainstBase( requestUri, URIUtils.newURI( base ), ui.getPath() );
+		return URIUtils.resolveAgainstBase( requestUri, URIUtils.newURI( base ), path );
 	}
 
     private static String MATCHES_SCHEME = "[a-zA-Z][-.+A-Za-z0-9]+:";
     		
     private static String STARTS_WITH_SCHEME_OR_SLASH = "^(/|" + MATCHES_SCHEME + ").*";
     
-	private static URLforResource pathAsURLFactory( final ServletContext servCon ) {
+	static URLforResource pathAsURLFactory( final ServletContext servCon ) {
 		return new URLforResource() 
 			{
 			@Override public URL asResourceURL( String ePath ) { 		
@@ -479,8 +616,14 @@ import com.sun.jersey.api.NotFoundException;
 		return new StreamingOutput() {
 			
 			@Override public void write(OutputStream os) throws IOException, WebApplicationException {
-				response.writeAll(t, os);
+				Times.Span writing = t.begin( "write" );
+				try {
+					response.writeAll(t, os);
+				} finally {
+					writing.end();
+				}
 				StatsValues.accumulate( t );
+				SlowRequestLog.check( t );
 			}
 		};
 	}
@@ -508,8 +651,16 @@ import com.sun.jersey.api.NotFoundException;
         return standardHeaders( Response.status(Status.NOT_FOUND) ).entity( Messages.niceMessage( message, "404 Resource Not Found: " + what ) ).build();
     }
     
+	/**
+	    Seconds a client refused with SERVICE UNAVAILABLE is asked to wait
+	    before trying again.
+	*/
+	public static final int RETRY_AFTER_SECONDS = 30;
+    
 	private Response buildErrorResponse( EldaException e ) {
-		return standardHeaders( Response.status( e.code ) )
+		ResponseBuilder rb = standardHeaders( Response.status( e.code ) );
+		if (e.code == EldaException.SERVICE_UNAVAILABLE) rb = rb.header( RETRY_AFTER, RETRY_AFTER_SECONDS );
+		return rb
 			.entity( Messages.niceMessage( e ) )
 			.build()
 			;
@@ -2,6 +2,7 @@ package com.epimorphics.lda.restlets;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.servlet.ServletContext;
 
@@ -9,8 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.cache.Cache;
 import com.epimorphics.lda.core.*;
-import com.epimorphics.lda.exceptions.APISecurityException;
 import com.epimorphics.lda.renderers.Renderer;
 import com.epimorphics.lda.routing.*;
 import com.epimorphics.lda.routing.ServletUtils.GetInitParameter;
@@ -18,10 +19,13 @@ import com.epimorphics.lda.routing.Container;
 import com.epimorphics.lda.shortnames.CompleteContext;
 import com.epimorphics.lda.sources.AuthMap;
 import com.epimorphics.lda.sources.AuthMap.NamesAndValues;
+import com.epimorphics.lda.sources.Source;
+import com.epimorphics.lda.specmanager.SpecEntry;
 import com.epimorphics.lda.specmanager.SpecManagerFactory;
 import com.epimorphics.lda.specmanager.SpecManagerImpl;
 import com.epimorphics.lda.specs.APISpec;
 import com.epimorphics.lda.support.*;
+import com.epimorphics.lda.support.statistics.StatsValues;
 import com.epimorphics.lda.vocabularies.API;
 import com.epimorphics.util.MediaType;
 import com.hp.hpl.jena.rdf.model.*;
@@ -93,11 +97,67 @@ public class RouterRestletSupport {
     	return pfs;
     }
     
+    /**
+        A LoadedSpecFile records the spec entries created from a single
+        config file together with that file's modification time when it
+        was loaded, so that a reload can tell whether it must be re-read.
+    */
+    public static class LoadedSpecFile {
+    	final PrefixAndFilename pf;
+    	final long lastModified;
+    	final List<SpecEntry> entries;
+    	final long loadDuration;
+    	
+    	public LoadedSpecFile( PrefixAndFilename pf, long lastModified, List<SpecEntry> entries, long loadDuration ) {
+    		this.pf = pf;
+    		this.lastModified = lastModified;
+    		this.entries = entries;
+    		this.loadDuration = loadDuration;
+    	}
+    	
+    	/**
+    	    Answer all the sources used by the specs loaded from this file.
+    	*/
+    	public List<Source> sources() {
+    		List<Source> result = new ArrayList<Source>();
+    		for (SpecEntry e: entries) result.addAll( e.getSpec().getDescribeSources() );
+    		return result;
+    	}
+    }
+    
+    /**
+        A LoadedConfig is a router together with the record of which
+        spec files it was built from.
+    */
+    public static class LoadedConfig {
+    	public final Router router;
+    	final Map<String, LoadedSpecFile> files;
+    	
+    	public LoadedConfig( Router router, Map<String, LoadedSpecFile> files ) {
+    		this.router = router;
+    		this.files = files;
+    	}
+    }
+    
     /**
         Create a new Router initialised with the configs appropriate to the
         contextPath.
     */
 	public static Router createRouterFor( ServletContext con ) {
+		return loadConfigFor( con, null ).router;
+	}
+
+	/**
+	    Create a new router for the configs appropriate to the context
+	    path of <code>con</code>. If <code>previous</code> is not null,
+	    specs loaded from files which have not changed since
+	    <code>previous</code> was built are carried over without being
+	    re-read; only new or modified files are loaded. The caches of
+	    sources used by specs from changed or removed files are
+	    invalidated, leaving other caches intact.
+	*/
+	public static LoadedConfig loadConfigFor( ServletContext con, LoadedConfig previous ) {
+		long startTime = System.currentTimeMillis();
 		String contextName = RouterRestletSupport.flatContextPath( con.getContextPath() );		
 		List<PrefixAndFilename> pfs = prefixAndFilenames( con, contextName );
 	//	
@@ -105,16 +165,148 @@ public class RouterRestletSupport {
 		String baseFilePath = ServletUtils.withTrailingSlash( con.getRealPath("/") );
         AuthMap am = AuthMap.loadAuthMap( EldaFileManager.get(), noNamesAndValues );
         ModelLoader modelLoader = new APIModelLoader( baseFilePath );
+        ModelLoader vocabLoader = new SharingModelLoader( modelLoader );
         addBaseFilepath( baseFilePath );
     //
-        SpecManagerImpl sm = new SpecManagerImpl(result, modelLoader);
+        SpecManagerImpl sm = new SpecManagerImpl(result, vocabLoader);
 		SpecManagerFactory.set( sm );
-	//		
+	//
+		Map<String, LoadedSpecFile> oldFiles = previous == null 
+			? new HashMap<String, LoadedSpecFile>() 
+			: previous.files
+			;
+		Map<String, LoadedSpecFile> files = new HashMap<String, LoadedSpecFile>();
+		List<LoadedSpecFile> stale = new ArrayList<LoadedSpecFile>();
+		List<PrefixAndFilename> toLoad = new ArrayList<PrefixAndFilename>();
+	//
 		for (PrefixAndFilename pf: pfs) {
-			loadOneConfigFile( result, am, modelLoader, pf.prefixPath, pf.fileName );
+			String key = pf.toString();
+			LoadedSpecFile old = oldFiles.get( key );
+			if (old != null && old.lastModified == new File( pf.fileName ).lastModified()) {
+				files.put( key, old );
+			} else {
+				if (old != null) stale.add( old );
+				toLoad.add( pf );
+			}
+		}
+	//
+		int threads = loadingThreads( con, toLoad.size() );
+		for (LoadedSpecFile f: loadConfigFiles( threads, am, modelLoader, vocabLoader, toLoad )) 
+			files.put( f.pf.toString(), f );
+	//
+	// register in configuration order so that later files override earlier ones.
+		for (PrefixAndFilename pf: pfs) {
+			LoadedSpecFile f = files.get( pf.toString() );
+			for (SpecEntry e: f.entries) sm.adoptSpec( pf.prefixPath, e );
 		}
+	//
+		for (Map.Entry<String, LoadedSpecFile> e: oldFiles.entrySet()) 
+			if (!files.containsKey( e.getKey() )) stale.add( e.getValue() );
+		if (previous != null) invalidateCachesFor( stale );
+	//
+		long duration = System.currentTimeMillis() - startTime;
+		int loaded = toLoad.size(), reused = files.size() - loaded;
+		log.info
+			( (previous == null ? "loaded " : "reloaded ") + loaded + " spec file(s)"
+			+ (previous == null ? "" : ", reused " + reused + ", dropped " + stale.size())
+			+ " using " + threads + " thread(s) in " + duration + "ms"
+			);
+		if (previous != null) StatsValues.configReloaded( duration, loaded, reused );
+		Map<String, Long> loadTimes = new TreeMap<String, Long>();
+		for (LoadedSpecFile f: files.values()) loadTimes.put( f.pf.fileName, f.loadDuration );
+		StatsValues.specFilesLoaded( loadTimes );
+	//
 		int count = result.countTemplates();
-		return count == 0  ? RouterFactory.getDefaultRouter() : result;
+		return new LoadedConfig( count == 0  ? RouterFactory.getDefaultRouter() : result, files );
+	}
+
+	/**
+	    Answer the number of threads to use when loading <code>toLoad</code>
+	    spec files: the value of the init parameter named by
+	    Container.SPEC_LOADING_THREADS_PARAM_NAME if there is one,
+	    otherwise the number of available processors, but never more
+	    than the number of files.
+	*/
+	private static int loadingThreads( ServletContext con, int toLoad ) {
+		String given = con.getInitParameter( Container.SPEC_LOADING_THREADS_PARAM_NAME );
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (given != null) {
+			try {
+				threads = Integer.parseInt( given.trim() );
+			} catch (NumberFormatException e) {
+				log.warn( "ignoring spec loading threads '" + given + "': not an integer; using " + threads + "." );
+			}
+		}
+		return Math.max( 1, Math.min( threads, toLoad ) );
+	}
+
+	/**
+	    Load the given spec files, in parallel using <code>threads</code>
+	    threads, and answer the LoadedSpecFiles in the same order. Nothing is
+	    registered with a router; that is left to the caller so that
+	    registration order is independent of loading order. If any file
+	    fails to load, the failure is rethrown once all loads have finished.
+	*/
+	private static List<LoadedSpecFile> loadConfigFiles
+		( int threads
+		, final AuthMap am
+		, final ModelLoader specLoader
+		, final ModelLoader vocabLoader
+		, List<PrefixAndFilename> toLoad
+		) {
+		List<LoadedSpecFile> result = new ArrayList<LoadedSpecFile>();
+		if (threads < 2) {
+			for (PrefixAndFilename pf: toLoad) result.add( loadOneConfigFile( am, specLoader, vocabLoader, pf ) );
+			return result;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool( threads );
+		try {
+			List<Future<LoadedSpecFile>> pending = new ArrayList<Future<LoadedSpecFile>>();
+			for (final PrefixAndFilename pf: toLoad) {
+				pending.add( pool.submit( new Callable<LoadedSpecFile>() {
+					@Override public LoadedSpecFile call() {
+						return loadOneConfigFile( am, specLoader, vocabLoader, pf );
+					}
+				}));
+			}
+			RuntimeException failure = null;
+			for (Future<LoadedSpecFile> f: pending) {
+				try { 
+					result.add( f.get() ); 
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new WrappedException( e );
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (failure == null) failure = cause instanceof RuntimeException 
+						? (RuntimeException) cause 
+						: new WrappedException( cause )
+						;
+				}
+			}
+			if (failure != null) throw failure;
+			return result;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	    Invalidate the caches for all of the sources used by the specs
+	    loaded from the given (changed or removed) spec files. The caches
+	    are cleared but not removed, so that endpoints from unchanged
+	    files which share a source keep a live cache.
+	*/
+	private static void invalidateCachesFor( List<LoadedSpecFile> stale ) {
+		Set<String> seen = new HashSet<String>();
+		for (LoadedSpecFile f: stale) {
+			for (Source s: f.sources()) {
+				if (seen.add( s.toString() )) {
+					log.info( "invalidating caches for " + s );
+					Cache.Registry.invalidate( s );
+				}
+			}
+		}
 	}
 
 	/**
@@ -149,22 +341,30 @@ public class RouterRestletSupport {
 		return contextPath.equals("") ? "ROOT" : contextPath.substring(1).replaceAll("/", "_");
 	}
 
-	public static void loadOneConfigFile(Router router, AuthMap am, ModelLoader ml, String prefixPath, String thisSpecPath) {
+	/**
+	    Load the spec file named by <code>pf</code> and construct an APISpec
+	    for each of the APIs it defines, using <code>vocabLoader</code>
+	    to load their vocabularies. Answer a LoadedSpecFile recording the
+	    resulting spec entries. Nothing is registered with any router.
+	*/
+	public static LoadedSpecFile loadOneConfigFile( AuthMap am, ModelLoader ml, ModelLoader vocabLoader, PrefixAndFilename pf ) {
+		String prefixPath = pf.prefixPath, thisSpecPath = pf.fileName;
+		long startTime = System.currentTimeMillis();
+		long lastModified = new File( thisSpecPath ).lastModified();
 		log.info( "Loading spec file from " + thisSpecPath + " with prefix path " + prefixPath );
 		Model init = ml.loadModel( thisSpecPath );
 		ServletUtils.addLoadedFrom( init, thisSpecPath );
 		log.info( "Loaded " + thisSpecPath + ": " + init.size() + " statements" );
+		List<SpecEntry> entries = new ArrayList<SpecEntry>();
 		for (ResIterator ri = init.listSubjectsWithProperty( RDF.type, API.API ); ri.hasNext();) {
 		    Resource api = ri.next();
             Resource specRoot = init.getResource(api.getURI());
-            try {
-				SpecManagerFactory.get().addSpec(prefixPath, am, prefixPath, api.getURI(), "", init );
-			} catch (APISecurityException e) {
-				throw new WrappedException(e);
-			}
-			APISpec apiSpec = new APISpec( prefixPath, am, EldaFileManager.get(), specRoot, ml );
-			APIFactory.registerApi( router, prefixPath, apiSpec );
+			APISpec apiSpec = new APISpec( prefixPath, am, EldaFileManager.get(), specRoot, vocabLoader );
+			entries.add( new SpecEntry( api.getURI(), "", apiSpec, init ) );
 		}
+		long duration = System.currentTimeMillis() - startTime;
+		log.info( "Constructed " + entries.size() + " API spec(s) from " + thisSpecPath + " in " + duration + "ms" );
+		return new LoadedSpecFile( pf, lastModified, entries, duration );
 	}
     
     static final NamesAndValues noNamesAndValues = new NamesAndValues() {
@@ -0,0 +1,218 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.restlets;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.servlet.ServletContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.bindings.URLforResource;
+import com.epimorphics.lda.core.*;
+import com.epimorphics.lda.renderers.Renderer;
+import com.epimorphics.lda.routing.*;
+import com.epimorphics.lda.support.*;
+import com.epimorphics.util.*;
+import com.epimorphics.util.MediaType;
+
+/**
+    The warm-up stage run when a webapp context is initialised, before
+    it starts serving requests. It prepares every renderer that supports
+    Renderer.WarmsUp (compiling XSLT stylesheets, loading Velocity
+    templates) and, if a URI list is configured, replays those requests
+    in-process so that the selection and view caches are primed.
+
+    <p>Configured by the context parameters named by
+    Container.WARM_UP_PARAM_NAME ("no" disables warm-up),
+    Container.WARM_UP_URIS_PARAM_NAME (a file of request paths, one
+    per line, relative to the context path) and
+    Container.WARM_UP_THREADS_PARAM_NAME (replay parallelism).</p>
+*/
+public class WarmUp {
+
+    protected static Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    static final List<MediaType> noMediaTypes = new ArrayList<MediaType>();
+
+    /**
+        Run the warm-up stage for the context <code>con</code> whose
+        endpoints are served by <code>router</code>.
+    */
+	public static void run( ServletContext con, Router router ) {
+		if ("no".equals( con.getInitParameter( Container.WARM_UP_PARAM_NAME ) )) return;
+		long startTime = System.currentTimeMillis();
+		int prepared = prepareRenderers( con, router );
+		String uriFile = con.getInitParameter( Container.WARM_UP_URIS_PARAM_NAME );
+		int replayed = 0;
+		if (uriFile != null) {
+			List<String> paths = readPaths( con, uriFile );
+			replayed = replay( con, router, paths, threads( con ) );
+		}
+		long duration = System.currentTimeMillis() - startTime;
+		log.info( "warm-up prepared " + prepared + " renderer(s) and replayed " + replayed + " request(s) in " + duration + "ms" );
+	}
+
+	/**
+	    Warm up each distinct renderer of each endpoint that implements
+	    Renderer.WarmsUp. Failures are logged and do not stop the warm-up.
+	    Answer the number of renderers successfully prepared.
+	*/
+	static int prepareRenderers( ServletContext con, Router router ) {
+		int count = 0;
+		Set<Renderer> seen = new HashSet<Renderer>();
+		for (APIEndpoint ep: router.endpoints()) {
+			Bindings b = warmUpBindings( con, ep );
+			for (String name: ep.getSpec().getRendererFactoryTable().formatNames()) {
+				Renderer r = ep.getRendererNamed( name );
+				if (r instanceof Renderer.WarmsUp && seen.add( r )) {
+					try {
+						((Renderer.WarmsUp) r).warmUp( b );
+						count += 1;
+					} catch (RuntimeException e) {
+						log.warn( "could not warm up renderer '" + name + "' for " + ep.getURITemplate() + ": " + e.getMessage() );
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private static Bindings warmUpBindings( ServletContext con, APIEndpoint ep ) {
+		Bindings b = new Bindings( ep.getSpec().getBindings().copyWithDefaults( ep.defaults() ), RouterRestlet.pathAsURLFactory( con ) );
+		b.put( "_APP", con.getContextPath() );
+		return b;
+	}
+
+	/**
+	    Read the request paths to replay from the named file (resolved
+	    against the webapp root if relative). Blank lines and lines
+	    starting with '#' are ignored.
+	*/
+	static List<String> readPaths( ServletContext con, String fileName ) {
+		List<String> result = new ArrayList<String>();
+		String fullName = fileName.startsWith("/") ? fileName : ServletUtils.withTrailingSlash( con.getRealPath("/") ) + fileName;
+		InputStream is = EldaFileManager.get().open( fullName );
+		if (is == null) {
+			log.warn( "warm-up URI list " + fullName + " not found." );
+			return result;
+		}
+		String [] lines = EldaFileManager.get().readWholeFileAsUTF8( is ).split( "\n" );
+		try { is.close(); } catch (IOException e) { log.warn( "closing " + fullName + ": " + e.getMessage() ); }
+		for (String line: lines) {
+			String path = line.trim();
+			if (path.length() > 0 && !path.startsWith("#")) result.add( path );
+		}
+		return result;
+	}
+
+	private static int threads( ServletContext con ) {
+		String given = con.getInitParameter( Container.WARM_UP_THREADS_PARAM_NAME );
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (given != null) {
+			try {
+				threads = Integer.parseInt( given.trim() );
+			} catch (NumberFormatException e) {
+				log.warn( "ignoring warm-up threads '" + given + "': not an integer; using " + threads + "." );
+			}
+		}
+		return Math.max( 1, threads );
+	}
+
+	/**
+	    Replay the given request paths in parallel using <code>threads</code>
+	    threads, waiting until all have completed. Answer the number that
+	    were replayed successfully.
+	*/
+	static int replay( ServletContext con, final Router router, List<String> paths, int threads ) {
+		final String contextPath = con.getContextPath();
+		final URLforResource as = RouterRestlet.pathAsURLFactory( con );
+		ExecutorService pool = Executors.newFixedThreadPool( threads );
+		List<Future<Boolean>> pending = new ArrayList<Future<Boolean>>();
+		for (final String path: paths) {
+			pending.add( pool.submit( new Callable<Boolean>() {
+				@Override public Boolean call() { return replayOne( contextPath, as, router, path ); }
+			}));
+		}
+		int count = 0;
+		try {
+			for (Future<Boolean> f: pending) {
+				try {
+					if (f.get()) count += 1;
+				} catch (ExecutionException e) {
+					log.warn( "warm-up request failed: " + e.getCause().getMessage() );
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+		return count;
+	}
+
+	/**
+	    Run the request for <code>pathAndQuery</code> (relative to the
+	    context path <code>contextPath</code>) through RouterRestlet's own
+	    route and render steps, discarding the rendered bytes; it fills
+	    the same cache entries as that request made by a client. Answer
+	    true if the request could be matched and rendered.
+	*/
+	public static boolean replayOne( String contextPath, URLforResource as, Router router, String pathAndQuery ) {
+		int q = pathAndQuery.indexOf( '?' );
+		String path = q < 0 ? pathAndQuery : pathAndQuery.substring(0, q);
+		String pathstub = path.startsWith("/") ? path.substring(1) : path;
+		MultiMap<String, String> queryParams = parseQuery( q < 0 ? "" : pathAndQuery.substring(q + 1) );
+	//
+		Couple<Match, String> routed = RouterRestlet.route( router, pathstub, queryParams );
+		Match match = routed.a;
+		if (match == null) {
+			log.warn( "warm-up: no endpoint matches " + pathAndQuery );
+			return false;
+		}
+	//
+		Times t = new Times( pathstub );
+		Controls c = new Controls( true, t );
+		URI requestUri = URIUtils.newURI( "http://localhost" + contextPath + "/" + pathAndQuery.replaceFirst( "^/", "" ) );
+		URI ru = RouterRestlet.makeRequestURI( pathstub, match, requestUri );
+		RouterRestlet.Rendered rendered = RouterRestlet.render( c, contextPath, as, ru, queryParams, noMediaTypes, routed.b, match );
+		if (rendered == null) return false;
+		rendered.bo.writeAll( t, new CountStream( discard ) );
+		t.done();
+		log.debug( "warm-up replayed " + pathAndQuery + " in " + t.totalTime() + "ms" );
+		return true;
+	}
+
+	static MultiMap<String, String> parseQuery( String query ) {
+		MultiMap<String, String> result = new MultiMap<String, String>();
+		for (String pair: query.split( "&" )) {
+			if (pair.length() == 0) continue;
+			int eq = pair.indexOf( '=' );
+			String key = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			result.add( decode( key ), decode( value ) );
+		}
+		return result;
+	}
+
+	private static String decode( String s ) {
+		try { return URLDecoder.decode( s, "UTF-8" ); }
+		catch (UnsupportedEncodingException e) { throw new RuntimeException( e ); }
+	}
+
+	static final OutputStream discard = new OutputStream() {
+		@Override public void write( int b ) {}
+		@Override public void write( byte[] b, int off, int len ) {}
+	};
+}
@@ -30,5 +30,37 @@ public class Container {
 	    the prefix is empty.
 	*/
 	public static final String INITIAL_SPECS_PREFIX_PATH_NAME = "com.epimorphics.api.prefixPath";
+	
+	/**
+	    The param-name for the number of threads used to load and construct
+	    API specs in parallel. By default it is the number of available
+	    processors; a value of 1 loads the specs serially.
+	*/
+	public static final String SPEC_LOADING_THREADS_PARAM_NAME = "com.epimorphics.api.specLoadingThreads";
+	
+	/**
+	    The param-name controlling the startup warm-up stage. The value
+	    "no" disables it; by default renderers are warmed up.
+	*/
+	public static final String WARM_UP_PARAM_NAME = "com.epimorphics.api.warmUp";
+	
+	/**
+	    The param-name for a file of request paths (relative to the
+	    context path, one per line) to replay during warm-up.
+	*/
+	public static final String WARM_UP_URIS_PARAM_NAME = "com.epimorphics.api.warmUpURIs";
+	
+	/**
+	    The param-name for the number of threads used to replay warm-up
+	    requests. By default it is the number of available processors.
+	*/
+	public static final String WARM_UP_THREADS_PARAM_NAME = "com.epimorphics.api.warmUpThreads";
+	
+	/**
+	    The param-name for the slow-request threshold in milliseconds.
+	    Requests taking longer are logged with their span tree and
+	    queries. By default no requests are logged as slow.
+	*/
+	public static final String SLOW_REQUEST_THRESHOLD_PARAM_NAME = "com.epimorphics.api.slowRequestThreshold";
 
 }
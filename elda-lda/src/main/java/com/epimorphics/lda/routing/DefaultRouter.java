@@ -32,7 +32,16 @@ public class DefaultRouter implements Router {
 	    Answer the (endpoint, bindings) Match for the given path,
 	    or null if there isn't one.
 	*/
-	@Override public Match getMatch( String path, MultiMap<String, String> queryParams ) {		
+	@Override public Match getMatch( String path, MultiMap<String, String> queryParams ) {
+		String missKey = missKey( path, queryParams );
+		long generation = matchMisses.generation();
+		if (matchMisses.contains( missKey )) return null;
+		Match result = findMatch( path, queryParams );
+		if (result == null) matchMisses.add( missKey, generation );
+		return result;
+	}
+	
+	private Match findMatch( String path, MultiMap<String, String> queryParams ) {
 		int slash = path.indexOf('/', 1);
 		Searcher b = searchers.get("_");
 	//
@@ -74,6 +83,56 @@ public class DefaultRouter implements Router {
 	
 	final Searcher searcher = new Searcher();
 	
+	/**
+	    Paths (plus any query parameters that templates constrain) that
+	    have failed to match an endpoint, and paths that have failed to
+	    match an item template. Both are cleared whenever the registered
+	    templates change; a replacement router starts with them empty.
+	*/
+	final MissCache matchMisses = new MissCache(), itemMisses = new MissCache();
+	
+	/**
+	    The names of query parameters constrained by any registered
+	    template, or null if the templates have changed since they were
+	    last computed. They are recomputed by the first lookup after a
+	    change, so registering many endpoints computes them once.
+	*/
+	private volatile Set<String> queryParamNames = new TreeSet<String>();
+	
+	/**
+	    Answer the key under which a failure to match the given path and
+	    query parameters is recorded. Only the parameters that some
+	    template constrains take part, so unrelated query strings share
+	    the path's entry.
+	*/
+	private String missKey( String path, MultiMap<String, String> queryParams ) {
+		Set<String> names = queryParamNames;
+		if (names == null) names = computeQueryParamNames();
+		if (names.isEmpty() || queryParams == null) return path;
+		StringBuilder sb = new StringBuilder( path );
+		for (String name: names) {
+			if (queryParams.containsKey( name ))
+				sb.append( '&' ).append( name ).append( '=' ).append( new TreeSet<String>( queryParams.getAll( name ) ) );
+		}
+		return sb.toString();
+	}
+	
+	private synchronized Set<String> computeQueryParamNames() {
+		Set<String> names = queryParamNames;
+		if (names == null) {
+			names = new TreeSet<String>();
+			for (Searcher s: searchers.values()) names.addAll( s.self.paramNames() );
+			queryParamNames = names;
+		}
+		return names;
+	}
+	
+	private synchronized void templatesChanged() {
+		queryParamNames = null;
+		matchMisses.clear();
+		itemMisses.clear();
+	}
+	
 	final Map<String, Searcher> searchers = createSearchers();
 
 	private HashMap<String, Searcher> createSearchers() {
@@ -101,6 +160,7 @@ public class DefaultRouter implements Router {
 			s.inverseMap.put( ut, path );
 			s.ms.register( path, new BaseAndTemplate( apiBase, ep.getURITemplate() ) );
 		}
+		templatesChanged();
 	}	
 	
 	@Override public void unregister( String context, String ut ) {
@@ -111,6 +171,7 @@ public class DefaultRouter implements Router {
 		String it = b.inverseMap.get( ut );
 		b.self.unregister( ut );
 		if (it != null) b.ms.unregister( it );
+		templatesChanged();
 	}
 	
 	/**
@@ -119,10 +180,13 @@ public class DefaultRouter implements Router {
 	*/
 	@Override public String findItemURIPath( String context, URI requestURI, String path ) {
 		
+		long generation = itemMisses.generation();
+		if (itemMisses.contains( path )) return null;
 		Searcher s = searchers.get("_");
 		
 		Map<String, String> bindings = new HashMap<String, String>();
 		BaseAndTemplate bt = s.ms.lookup( bindings, path, null );
+		if (bt == null) itemMisses.add( path, generation );
 		if (bt != null) {
 			String et = Bindings.expandVariables( Lookup.Util.asLookup( bindings ), bt.template );
 			// return resolvePath( bt.base, et );
@@ -159,6 +223,13 @@ public class DefaultRouter implements Router {
 		return result;
 	}
 
+	@Override public List<APIEndpoint> endpoints() {
+		List<APIEndpoint> result = new ArrayList<APIEndpoint>();
+		for (Map.Entry<String, Searcher> e: searchers.entrySet()) 
+			result.addAll( e.getValue().self.values() );
+		return result;
+	}
+
 	@Override public List<String> templates() {
 		return searcher.self.templates();
 	}
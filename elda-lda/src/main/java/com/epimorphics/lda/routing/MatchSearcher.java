@@ -78,6 +78,26 @@ public class MatchSearcher<T> {
         needsSorting = false;
     }
     
+    /**
+        Answer the values associated with all the templates in
+        this collection.
+    */
+    public List<T> values() {
+    	List<T> result = new ArrayList<T>();
+    	for (MatchTemplate<T> mt: templates) result.add(mt.value());
+    	return result;
+    }
+    
+    /**
+        Answer the names of all the query parameters constrained by
+        any template in this collection.
+    */
+    public Set<String> paramNames() {
+    	Set<String> result = new HashSet<String>();
+    	for (MatchTemplate<T> mt: templates) result.addAll(mt.paramNames());
+    	return result;
+    }
+    
     public List<String> templates() {
     	List<String> result = new ArrayList<String>();
     	if (needsSorting) sortTemplates();
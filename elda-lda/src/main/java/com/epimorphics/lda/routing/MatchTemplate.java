@@ -95,6 +95,14 @@ public class MatchTemplate<T> {
 		return value;
 	}
 
+	/**
+	    Answer the names of the query parameters this template
+	    constrains, if any.
+	*/
+	public Set<String> paramNames() {
+		return params.keySet();
+	}
+
 	/**
 	    Match the given uri string. If it matches, add entries to the
 	    bindings map so that a template variable X maps to the corresponding
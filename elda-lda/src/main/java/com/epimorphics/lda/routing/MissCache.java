@@ -0,0 +1,118 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+    
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+
+package com.epimorphics.lda.routing;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+    A bounded set of keys (request paths) known not to match anything,
+    so that repeated misses can be rejected with a single hash lookup
+    rather than another scan of the templates. When full, the oldest
+    entry is dropped to make room.
+
+    <p>Lookups take no lock. Each miss is stamped with the generation
+    of the cache in which the failed lookup began, and clearing the
+    cache starts a new generation, so a miss found by a lookup that
+    overlapped a change of templates is never reported.</p>
+*/
+public class MissCache {
+	
+	public static final int DEFAULT_LIMIT = 10000;
+	
+	protected final int limit;
+	
+	protected final ConcurrentMap<String, Long> misses = new ConcurrentHashMap<String, Long>();
+	
+	protected final Queue<String> order = new ConcurrentLinkedQueue<String>();
+	
+	protected final AtomicInteger count = new AtomicInteger();
+	
+	protected final AtomicLong generation = new AtomicLong();
+	
+	protected final AtomicLong hits = new AtomicLong();
+	
+	public MissCache() {
+		this( DEFAULT_LIMIT );
+	}
+	
+	public MissCache( int limit ) {
+		this.limit = limit;
+	}
+	
+	/**
+	    Answer the current generation, to be passed to add() by a
+	    lookup that starts now.
+	*/
+	public long generation() {
+		return generation.get();
+	}
+	
+	/**
+	    Answer true iff <code>key</code> has been recorded as a miss
+	    in the current generation (and not since evicted).
+	*/
+	public boolean contains( String key ) {
+		Long g = misses.get( key );
+		boolean result = g != null && g.longValue() == generation.get();
+		if (result) hits.incrementAndGet();
+		return result;
+	}
+	
+	/**
+	    Record <code>key</code> as a miss.
+	*/
+	public void add( String key ) {
+		add( key, generation() );
+	}
+	
+	/**
+	    Record <code>key</code> as a miss found by a lookup that began
+	    in generation <code>g</code>. If the cache has been cleared
+	    since then the miss may be stale, and it is not recorded.
+	*/
+	public void add( String key, long g ) {
+		if (g != generation.get()) return;
+		if (misses.put( key, g ) == null) {
+			order.add( key );
+			if (count.incrementAndGet() > limit) evictOldest();
+		}
+	}
+	
+	private void evictOldest() {
+		String oldest = order.poll();
+		if (oldest != null) {
+			misses.remove( oldest );
+			count.decrementAndGet();
+		}
+	}
+	
+	/**
+	    Forget all recorded misses, starting a new generation.
+	*/
+	public void clear() {
+		generation.incrementAndGet();
+		misses.clear();
+		order.clear();
+		count.set( 0 );
+	}
+	
+	public int size() {
+		return misses.size();
+	}
+	
+	/**
+	    Answer how many lookups have found a recorded miss.
+	*/
+	public long hits() {
+		return hits.get();
+	}
+}
@@ -67,7 +67,12 @@ public interface Router {
     /**
         Return the number of URI templates served by this Router.
     */
-	public int countTemplates();
+	public int countTemplates();
+	
+	/**
+	    Return a list of all the endpoints registered with this Router.
+	*/
+	public List<APIEndpoint> endpoints();
     
 }
 
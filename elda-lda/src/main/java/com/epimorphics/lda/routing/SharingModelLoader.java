@@ -0,0 +1,64 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+
+package com.epimorphics.lda.routing;
+
+import java.util.concurrent.*;
+
+import com.epimorphics.lda.core.ModelLoader;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.shared.WrappedException;
+
+/**
+    A ModelLoader that loads each distinct uri at most once using an
+    underlying loader and hands the same Model to every caller. Concurrent
+    requests for a uri that is still being loaded wait for that load
+    rather than starting another one.
+
+    <p>The shared models must be treated as read-only; this loader is
+    intended for vocabularies, which several specs commonly name.</p>
+*/
+public class SharingModelLoader implements ModelLoader {
+
+	protected final ModelLoader base;
+
+	protected final ConcurrentMap<String, FutureTask<Model>> loaded =
+		new ConcurrentHashMap<String, FutureTask<Model>>();
+
+	public SharingModelLoader( ModelLoader base ) {
+		this.base = base;
+	}
+
+	@Override public Model loadModel( final String uri ) {
+		FutureTask<Model> f = loaded.get( uri );
+		if (f == null) {
+			FutureTask<Model> task = new FutureTask<Model>( new Callable<Model>() {
+				@Override public Model call() { return base.loadModel( uri ); }
+			});
+			f = loaded.putIfAbsent( uri, task );
+			if (f == null) { f = task; task.run(); }
+		}
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WrappedException( e );
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new WrappedException( cause );
+		}
+	}
+
+	/**
+	    Answer the number of distinct uris requested from this loader.
+	*/
+	public int size() {
+		return loaded.size();
+	}
+}
@@ -108,12 +108,16 @@ public class BuiltIn {
 		magic.add( DCTerms.isFormatOf );
 		magic.add( DCTerms.isPartOf );
 		magic.add( DCTerms.isVersionOf );
+		magic.add( EXTRAS.countsPending );
+		magic.add( EXTRAS.facet );
+		magic.add( EXTRAS.facetValue );
 		magic.add( EXTRAS.listURL );
 		magic.add( EXTRAS.sparqlQuery );
 		magic.add( FOAF.isPrimaryTopicOf );
 		magic.add( FOAF.primaryTopic );
 		magic.add( OpenSearch.itemsPerPage );
 		magic.add( OpenSearch.startIndex );
+		magic.add( OpenSearch.totalResults );
 		magic.add( SPARQL.endpoint );
 		magic.add( SPARQL.query );
 		magic.add( SPARQL.url );
@@ -5,22 +5,52 @@ import static com.hp.hpl.jena.rdf.model.impl.Util.splitNamespace;
 import java.util.*;
 
 import com.epimorphics.jsonrdf.Context;
+import com.epimorphics.lda.support.OverlayMap;
 import com.epimorphics.lda.vocabularies.API;
 import com.epimorphics.lda.vocabularies.EXTRAS;
 import com.epimorphics.util.NameUtils;
 import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.*;
 import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 
+/**
+    Completes the shortname mapping for a result: every predicate and
+    literal datatype in the included models is given a shortname. The
+    preferred shortnames of the vocabulary (the Context) are computed
+    once per Context and shared; each Do() computes shortnames only
+    for terms of the result that the vocabulary does not name, and
+    answers them overlaid on the shared map.
+*/
 public class CompleteContext {
 	
 	final Context context;
 	final PrefixMapping prefixes;
 	final boolean transcodedNames;
 	final boolean allowUniqueLocalnames;
-	public final Model model = ModelFactory.createDefaultModel();
 	
-	final Map<String, String> uriToShortname = new HashMap<String, String>();
+	/**
+	    The prefixes of the included models (and any supplied to Do),
+	    used to construct prefixed shortnames.
+	*/
+	final PrefixMapping modelPrefixes = PrefixMapping.Factory.create();
+	
+	/**
+	    The URIs of the predicates and literal datatypes of the models
+	    included so far, collected as each model is included.
+	*/
+	final Set<String> termURIs = new HashSet<String>();
+	
+	OverlayMap<String, String> uriToShortname;
+	
+	Vocabulary vocabulary;
+	
+	/**
+	    The shortnames given to terms by this Do(), which together with
+	    the vocabulary's shortnames are the ones in use.
+	*/
+	final Set<String> addedShortnames = new HashSet<String>();
 	
 	public enum Mode { 
 		RoundTrip, PreferPrefixes, PreferLocalnames ;
@@ -77,9 +107,14 @@ public class CompleteContext {
 		}
 	}
 
+	/**
+	    Include the terms of <code>m</code> as it is now (later changes to
+	    it are not seen) and any of its prefixes that do not clash with
+	    ones already known.
+	*/
 	public CompleteContext include(Model m) {
-		model.add(m);
-		model.withDefaultMappings( m );
+		loadModelTerms( m );
+		modelPrefixes.withDefaultMappings( m );
 		return this;
 	}
 	
@@ -88,21 +123,26 @@ public class CompleteContext {
 	}
 	
 	public Map<String, String> Do(Model m, PrefixMapping pm) {
-		model.setNsPrefixes( pm );
+		modelPrefixes.setNsPrefixes( pm );
 		return include( m ).Do();
 	}
 
+	/**
+	    Answer a map from the URIs of the vocabulary and of all the terms
+	    included so far to their shortnames. Each call answers a new map,
+	    and updating it does not affect the shared vocabulary.
+	*/
 	public Map<String, String> Do() {	
-		uriToShortname.clear();
-	//
-		uriToShortname.put(API.value.getURI(), "value");
-		uriToShortname.put(API.label.getURI(), "label");
+		vocabulary = Vocabulary.of( context );
+		uriToShortname = new OverlayMap<String, String>( vocabulary.uriToShortname );
+		addedShortnames.clear();
 	//
-		pickPreferredShortnames();
-		Set<SplitURI> modelTerms = loadModelTerms( uriToShortname.keySet() );
+		Set<SplitURI> modelTerms = new HashSet<SplitURI>();
+		for (String uri: termURIs)
+			if (!vocabulary.uriToShortname.containsKey( uri )) modelTerms.add( SplitURI.create( uri ) );
 	//
 		if (transcodedNames) {
-			oldTermHandler( uriToShortname, modelTerms );
+			oldTermHandler( modelTerms );
 		} else {
 			extractPrefixedAndUniqueShortnames(	modelTerms );
 			extractHashedShortnames( modelTerms );
@@ -119,8 +159,8 @@ public class CompleteContext {
 		Set<SplitURI> mtsRemoved = new HashSet<SplitURI>();
 		for (SplitURI mt: modelTerms) {
 			String sn = encodeLocalname(mt.ns, mt.ln);
-			if (!uriToShortname.containsValue(sn)) {
-				uriToShortname.put(mt.uri,  sn);
+			if (!inUse(sn)) {
+				bind(mt.uri, sn);
 				mtsRemoved.add(mt);
 			}
 		}
@@ -150,7 +190,7 @@ public class CompleteContext {
 				List<SplitURI> terms = localNameToURIs.get(ln);
 				if (terms.size() == 1) {
 					SplitURI term = terms.get(0);
-					uriToShortname.put( term.uri, ln );
+					bind( term.uri, ln );
 					modelTerms.remove( term );
 					lnsRemoved.add( ln );
 				} 
@@ -162,11 +202,11 @@ public class CompleteContext {
 		Set<SplitURI> mtsRemoved = new HashSet<SplitURI>();
 		
 		for (SplitURI mt: modelTerms) {
-			String prefix = model.getNsURIPrefix( mt.ns );
+			String prefix = modelPrefixes.getNsURIPrefix( mt.ns );
 			if (prefix != null) {
 				String sn = prefix + "_" + mt.ln;
-				if (!uriToShortname.containsValue(sn)) {
-					uriToShortname.put( mt.uri, sn );
+				if (!inUse(sn)) {
+					bind( mt.uri, sn );
 					mtsRemoved.add( mt );
 				}
 			}
@@ -175,11 +215,62 @@ public class CompleteContext {
 		modelTerms.removeAll( mtsRemoved );
 	}
 	
+	private boolean inUse(String sn) {
+		return addedShortnames.contains(sn) || vocabulary.shortnames.contains(sn);
+	}
+	
+	private void bind(String uri, String sn) {
+		uriToShortname.put(uri, sn);
+		addedShortnames.add(sn);
+	}
+
+	/**
+	    The preferred shortnames of a Context's vocabulary, with the value
+	    and label properties of the API vocabulary, and the set of those
+	    shortnames. They are computed once for each generation of each
+	    Context and shared by all the requests that use it.
+	*/
+	static class Vocabulary {
+		
+		final int generation;
+		final Map<String, String> uriToShortname;
+		final Set<String> shortnames;
+		
+		private Vocabulary(int generation, Map<String, String> uriToShortname) {
+			this.generation = generation;
+			this.uriToShortname = uriToShortname;
+			this.shortnames = new HashSet<String>( uriToShortname.values() );
+		}
+		
+		static final Map<Context, Vocabulary> vocabularies = new WeakHashMap<Context, Vocabulary>();
+		
+		static Vocabulary of(Context context) {
+			synchronized (vocabularies) {
+				Vocabulary v = vocabularies.get(context);
+				if (v == null || v.generation != context.generation()) {
+					vocabularies.put( context, v = create(context) );
+				}
+				return v;
+			}
+		}
+		
+		private static Vocabulary create(Context context) {
+			while (true) {
+				int generation = context.generation();
+				Map<String, String> uriToShortname = new HashMap<String, String>();
+				uriToShortname.put(API.value.getURI(), "value");
+				uriToShortname.put(API.label.getURI(), "label");
+				pickPreferredShortnames( context, uriToShortname );
+				if (generation == context.generation()) return new Vocabulary( generation, uriToShortname );
+			}
+		}
+	}
+	
 	/**
 	    For each URI with any shortnames, pick the "best" shortname and
-	    add `shortName -> URI` to the result map.
+	    add `URI -> shortName` to the result map.
 	*/
-	private void pickPreferredShortnames() {
+	private static void pickPreferredShortnames( Context context, Map<String, String> uriToShortname ) {
 		Map<String, List<String>> shortNames = new HashMap<String, List<String>>();
 		for (String key: context.preferredNames()) {
 			String uri = context.getURIfromName( key );
@@ -193,32 +284,30 @@ public class CompleteContext {
 		}
 	}	
 
-	private void oldTermHandler(Map<String, String> result,	Set<SplitURI> modelTerms) {
-		for (SplitURI mt: modelTerms) result.put( mt.uri, Transcoding.encode( prefixes, mt.uri ) );
+	private void oldTermHandler(Set<SplitURI> modelTerms) {
+		for (SplitURI mt: modelTerms) bind( mt.uri, Transcoding.encode( prefixes, mt.uri ) );
 	}
 
 	/**
-	    Return the set of terms (URIs) seen in the model as predicates or
-	    datatypes, excluding those that have already been seen. These are
-	    the terms that will need to be given shortnames.
+	    Add to termURIs the terms (URIs) seen in the model as predicates or
+	    datatypes. Those not named by the vocabulary are the terms that
+	    will need to be given shortnames. The graph is scanned in place.
 	*/
-	private Set<SplitURI> loadModelTerms(Set<String> seenTerms) {		
-		Set<SplitURI> modelTerms = new HashSet<SplitURI>();
-		for (StmtIterator sit = model.listStatements(); sit.hasNext();) {
-			Statement s = sit.next();
-			String predicate = s.getPredicate().getURI();
-						
-			if (!seenTerms.contains( predicate )) 
-				modelTerms.add( SplitURI.create(predicate) );	
-			
-			Node o = s.getObject().asNode();
-			if (o.isLiteral()) {
-				String type = o.getLiteralDatatypeURI();
-				if (type != null && !seenTerms.contains(type)) 
-					modelTerms.add( SplitURI.create(type) );
+	private void loadModelTerms(Model m) {		
+		ExtendedIterator<Triple> triples = m.getGraph().find( Node.ANY, Node.ANY, Node.ANY );
+		try {
+			while (triples.hasNext()) {
+				Triple t = triples.next();
+				termURIs.add( t.getPredicate().getURI() );
+				Node o = t.getObject();
+				if (o.isLiteral()) {
+					String type = o.getLiteralDatatypeURI();
+					if (type != null) termURIs.add( type );
+				}
 			}
+		} finally {
+			triples.close();
 		}
-		return modelTerms;
 	}
 
 	// order by badness first, then shortest, then alphabetical
@@ -249,7 +338,7 @@ public class CompleteContext {
 	    Retunr the "best" short name, which we take to be the shortest. 
 	    Tiebreak by alphabetical order.
 	*/
-	private String bestShortname( List<String> names ) {
+	private static String bestShortname( List<String> names ) {
 		if (names.size() > 1) Collections.sort(names, compareBySizeThenSpelling);
 		return names.get(0);
 	}
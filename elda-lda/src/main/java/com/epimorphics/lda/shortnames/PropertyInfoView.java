@@ -0,0 +1,125 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.shortnames;
+
+import java.util.*;
+
+import com.epimorphics.jsonrdf.*;
+import com.hp.hpl.jena.rdf.model.Property;
+
+/**
+    A PropertyInfoView is the ReadContext for one rendering. It reads
+    names and property records from a (usually frozen) Context shared by
+    every rendering of a spec, and keeps the records for properties that
+    the Context does not know in a small overlay of its own, so rendering
+    never changes the shared Context and needs no copy of it.
+*/
+public class PropertyInfoView implements ReadContext {
+
+	protected final Context context;
+
+	protected final Map<String, String> uriToName;
+
+	protected final Map<String, ContextPropertyInfo> overlay = new HashMap<String, ContextPropertyInfo>();
+
+	protected final Set<String> overlayNames = new HashSet<String>();
+
+	protected int nameCount = 0;
+
+	/**
+	    A view of <code>context</code> in which URIs are named by
+	    <code>uriToName</code> (as computed by CompleteContext) where they
+	    have entries there, and otherwise by the context.
+	*/
+	public PropertyInfoView( Context context, Map<String, String> uriToName ) {
+		this.context = context;
+		this.uriToName = uriToName;
+	}
+
+	/**
+	    A view of <code>context</code> whose names are those of the
+	    context.
+	*/
+	public PropertyInfoView( Context context ) {
+		this( context, Collections.<String, String>emptyMap() );
+	}
+
+	@Override public boolean isSortProperties() {
+		return true;
+	}
+
+	@Override public String getBase() {
+		return context.getBase();
+	}
+
+	@Override public String getNameForURI( String uri ) {
+		String name = uriToName.get( uri );
+		return name == null ? context.getNameForURI( uri ) : name;
+	}
+
+	@Override public String getURIfromName( String name ) {
+		return context.getURIfromName( name );
+	}
+
+	@Override public String forceShorten( String uri ) {
+		return context.forceShorten( uri );
+	}
+
+	@Override public ContextPropertyInfo getPropertyByName( String name ) {
+		return context.getPropertyByName( name );
+	}
+
+	/**
+	    Answer the record for <code>p</code>: the shared record if the
+	    context has one, otherwise a record in this view's overlay, created
+	    the first time <code>p</code> is asked for.
+	*/
+	@Override public ContextPropertyInfo findProperty( Property p ) {
+		String uri = p.getURI();
+		ContextPropertyInfo result = context.getPropertyByURI( uri );
+		if (result == null) {
+			result = overlay.get( uri );
+			if (result == null) overlay.put( uri, result = new ContextPropertyInfo( uri, nameFor( p ) ) );
+		}
+		return result;
+	}
+
+	@Override public boolean hasSettledName( Property p ) {
+		String uri = p.getURI();
+		return context.getPropertyByURI( uri ) != null || overlay.containsKey( uri ) || getNameForURI( uri ) != null;
+	}
+
+	/**
+	    Answer the records this view has created for properties that its
+	    context does not know.
+	*/
+	public Map<String, ContextPropertyInfo> discovered() {
+		return Collections.unmodifiableMap( overlay );
+	}
+
+	/**
+	    Choose a name for <code>p</code>, which has no record in the
+	    context: its given name if it has one, otherwise its local name
+	    if that is not already in use, otherwise its local name with a
+	    numeric suffix.
+	*/
+	private String nameFor( Property p ) {
+		String name = getNameForURI( p.getURI() );
+		if (name == null) {
+			String localname = p.getLocalName();
+			name = localname;
+			while (!isNameFree( name )) name = localname + nameCount++;
+		}
+		overlayNames.add( name );
+		return name;
+	}
+
+	private boolean isNameFree( String name ) {
+		return !overlayNames.contains( name ) && context.getURIfromName( name ) == null;
+	}
+}
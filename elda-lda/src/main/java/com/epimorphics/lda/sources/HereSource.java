@@ -12,6 +12,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.epimorphics.lda.exceptions.APIException;
+import com.epimorphics.lda.spatial.SourceSpatialIndex;
+import com.epimorphics.lda.textsearch.SourceTextIndex;
 import com.epimorphics.lda.vocabularies.API;
 import com.hp.hpl.jena.query.*;
 import com.hp.hpl.jena.rdf.model.Model;
@@ -34,6 +36,8 @@ public class HereSource extends SourceBase implements Source
     
 	final String endpoint;
 	final Model model;
+	final SourceTextIndex textIndex;
+	final SourceSpatialIndex spatialIndex;
 
 	public HereSource( Model fullModel, Resource endpoint ) 
 		{
@@ -44,6 +48,8 @@ public class HereSource extends SourceBase implements Source
 		this.endpoint = endpointString;
 		model = ResourceUtils.reachableClosure( fullModel.createResource( endpointString ) );
 		model.setNsPrefixes( fullModel );
+		textIndex = SourceTextIndex.inMemory( endpointString, model.getGraph() );
+		spatialIndex = SourceSpatialIndex.inMemory( endpointString, model.getGraph() );
 		}
 	
 	/**
@@ -51,6 +57,12 @@ public class HereSource extends SourceBase implements Source
 	*/
 	@Override public boolean supportsNestedSelect() 
 		{ return true; }
+	
+	/**
+	    HereSources have a spatial index.
+	*/
+	@Override public boolean supportsSpatialIndex() 
+		{ return true; }
 
 	@Override public void addMetadata( Resource meta ) 
 		{
@@ -60,7 +72,7 @@ public class HereSource extends SourceBase implements Source
 	@Override public QueryExecution execute( Query query ) 
 		{
         if (log.isInfoEnabled()) log.info("Creating query:\n" + query);    
-        return QueryExecutionFactory.create( query, model );
+        return spatialIndex.attach( textIndex.attach( QueryExecutionFactory.create( query, model ) ) );
 		}
 
 	@Override public String toString()
@@ -21,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.epimorphics.lda.exceptions.APIException;
+import com.epimorphics.lda.spatial.SourceSpatialIndex;
+import com.epimorphics.lda.textsearch.SourceTextIndex;
 import com.epimorphics.lda.vocabularies.API;
 import com.hp.hpl.jena.query.*;
 import com.hp.hpl.jena.rdf.model.*;
@@ -43,6 +45,8 @@ public class LocalSource extends SourceBase implements Source {
     
     protected final Model source; 
     protected final String endpoint;
+    protected final SourceTextIndex textIndex;
+    protected final SourceSpatialIndex spatialIndex;
     
     
     public LocalSource( FileManager fm, Resource endpoint ) {
@@ -52,11 +56,13 @@ public class LocalSource extends SourceBase implements Source {
             throw new APIException("Illegal local endpoint: " + endpointString);
         this.source = fm.loadModel( endpointString.substring( PREFIX.length() ) );
         this.endpoint = endpointString;
+        this.textIndex = SourceTextIndex.inMemory( endpointString, source.getGraph() );
+        this.spatialIndex = SourceSpatialIndex.inMemory( endpointString, source.getGraph() );
     }
     
     @Override public QueryExecution execute(Query query) {
         if (log.isDebugEnabled()) log.debug("Running query: " + query);
-        return QueryExecutionFactory.create(query, source);
+        return spatialIndex.attach( textIndex.attach( QueryExecutionFactory.create(query, source) ) );
     }
     
     @Override public Lock getLock() {
@@ -82,5 +88,12 @@ public class LocalSource extends SourceBase implements Source {
 		return true;
 	}
 
+    /**
+        Local sources have a spatial index.
+    */
+	@Override public boolean supportsSpatialIndex() {
+		return true;
+	}
+
 }
 
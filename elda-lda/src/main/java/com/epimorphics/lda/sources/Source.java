@@ -81,6 +81,20 @@ public interface Source {
 	*/
 	public TextSearchConfig getTextSearchConfig();
 	
+	/**
+	    Answer TRUE iff this source executes queries in-process with its
+	    spatial index attached, so that near-lat/near-long queries may use
+	    the elda:withinBox property function.
+	*/
+	public boolean supportsSpatialIndex();
+	
+	/**
+	    Answer TRUE iff the results of a SELECT on this source are read
+	    while holding a lock that writers to it must wait for, so that
+	    long reads should be split into shorter ones.
+	*/
+	public boolean readsUnderLock();
+	
 	static class Util {
 		
 		/**
@@ -10,6 +10,7 @@ package com.epimorphics.lda.sources;
 
 import com.epimorphics.lda.exceptions.EldaException;
 import com.epimorphics.lda.sources.Source.ResultSetConsumer;
+import com.epimorphics.lda.support.statistics.StatsValues;
 import com.epimorphics.lda.textsearch.TextSearchConfig;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
@@ -39,6 +40,20 @@ public abstract class SourceBase {
 		return textSearchConfig;
 	}
 	
+	/**
+	    By default, sources have no spatial index.
+	*/
+	public boolean supportsSpatialIndex() {
+		return false;
+	}
+	
+	/**
+	    By default, sources read their results under their lock.
+	*/
+	public boolean readsUnderLock() {
+		return true;
+	}
+	
 	/**
 	    Each SourceBase subclass must provide <code>execute</code>.    
 	*/
@@ -57,9 +72,11 @@ public abstract class SourceBase {
     	Lock l = getLock();
     	l.enterCriticalSection( Lock.READ );
     	QueryExecution qe = execute( query );
+    	long origin = System.currentTimeMillis();
 		try { 
 			return qe.execDescribe(); 
 		} finally {
+			StatsValues.sourceQuery( toString(), System.currentTimeMillis() - origin );
 			try { qe.close(); } finally { l.leaveCriticalSection(); } 
 		}
 	}
@@ -72,10 +89,12 @@ public abstract class SourceBase {
     	Lock l = getLock();
     	l.enterCriticalSection( Lock.READ );
     	QueryExecution qe = execute( query );
+    	long origin = System.currentTimeMillis();
 		try { 
 			return qe.execConstruct(); 
 		}
 		finally { 
+			StatsValues.sourceQuery( toString(), System.currentTimeMillis() - origin );
 			try { qe.close(); } finally { l.leaveCriticalSection(); } 
 		}
 	}
@@ -93,11 +112,13 @@ public abstract class SourceBase {
     		( "lock is null for " + this.toString() + " (" + this.getClass() + ")" );
     	l.enterCriticalSection( Lock.READ );
     	QueryExecution qe = execute( q );
+    	long origin = System.currentTimeMillis();
     	try {    		
     		c.setup( qe );
     		c.consume( qe.execSelect() );
     	}
     	finally {			
+    		StatsValues.sourceQuery( toString(), System.currentTimeMillis() - origin );
     		try { qe.close(); } finally { l.leaveCriticalSection(); } 
     	}
     }
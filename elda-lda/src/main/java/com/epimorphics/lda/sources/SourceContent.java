@@ -0,0 +1,28 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.sources;
+
+import com.hp.hpl.jena.graph.Graph;
+
+/**
+    The data of an in-process source, as seen by the indexes (text,
+    spatial) built from it.
+*/
+public interface SourceContent {
+
+	/**
+	    The graph the indexes are made from.
+	*/
+	Graph getGraph();
+
+	/**
+	    A string that changes whenever the graph does, or null if
+	    the graph never changes.
+	*/
+	String getMarker();
+}
@@ -95,6 +95,13 @@ public class SparqlSource extends SourceBase implements Source {
     	return lock;
     }
     
+    /**
+        A remote source's lock is no lock at all.
+    */
+    @Override public boolean readsUnderLock() {
+    	return false;
+    }
+    
     /**
      * Add metadata describing this source to a metadata model 
      */
@@ -14,12 +14,19 @@
 
 package com.epimorphics.lda.sources;
 
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.epimorphics.lda.exceptions.EldaException;
+import com.epimorphics.lda.spatial.SourceSpatialIndex;
 import com.epimorphics.lda.support.TDBManager;
+import com.epimorphics.lda.textsearch.SourceTextIndex;
 import com.epimorphics.lda.vocabularies.API;
+import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.query.*;
 import com.hp.hpl.jena.rdf.model.*;
 import com.hp.hpl.jena.shared.Lock;
@@ -31,6 +38,8 @@ public class TDBSource extends SourceBase implements Source
     protected final Model source; 
     protected final Dataset sourceSet;
     protected final String endpoint;
+    protected final SourceTextIndex textIndex;
+    protected final SourceSpatialIndex spatialIndex;
     
     public TDBSource( Resource endpoint ) {
     	super( endpoint );
@@ -48,6 +57,57 @@ public class TDBSource extends SourceBase implements Source
             source = null;
             log.info("Using TDB whole dataset");
         }
+        TDBContent content = new TDBContent( name );
+        this.textIndex = new SourceTextIndex( endpointString, content, textIndexDirectory( name ) );
+        this.spatialIndex = new SourceSpatialIndex( endpointString, content );
+    }
+
+    /**
+        The text index of a TDB source lives beside the TDB directory, in
+        <code><i>tdb</i>-text/<i>name</i></code> (<code>_union</code> for
+        the whole dataset), so that it survives restarts. With no TDB
+        directory it is held in memory.
+    */
+    static File textIndexDirectory( String name ) {
+        String base = TDBManager.getBaseTDBPath();
+        if (base == null || base.isEmpty()) return null;
+        try {
+            String leaf = name == null || name.isEmpty() ? "_union" : URLEncoder.encode( name, "UTF-8" );
+            return new File( new File( base ).getAbsolutePath() + "-text", leaf );
+        } catch (UnsupportedEncodingException e) {
+            throw new EldaException( "UTF-8 not supported" );
+        }
+    }
+
+    /**
+        The content of a TDB source's indexes is its model (or the
+        union graph of the dataset). Its marker summarises the sizes and
+        latest modification time of the TDB files, so it changes when the
+        dataset is reloaded or written to.
+    */
+    static class TDBContent implements SourceContent {
+
+        final String name;
+
+        TDBContent( String name ) {
+            this.name = name;
+        }
+
+        @Override public Graph getGraph() {
+            return TDBManager.getTDBModelNamed( name ).getGraph();
+        }
+
+        @Override public String getMarker() {
+            String base = TDBManager.getBaseTDBPath();
+            File [] files = base == null || base.isEmpty() ? null : new File( base ).listFiles();
+            if (files == null) return null;
+            long length = 0, latest = 0;
+            for (File f: files) {
+                length += f.length();
+                latest = Math.max( latest, f.lastModified() );
+            }
+            return files.length + "/" + length + "/" + latest;
+        }
     }
 
     @Override public void addMetadata( Resource meta )
@@ -69,9 +129,11 @@ public class TDBSource extends SourceBase implements Source
 //        Model result = q.execDescribe();
 //        if (log.isInfoEnabled()) log.info( "Resulting model has " + result.size() + " triples." );
         return
-            source == null 
+            spatialIndex.attach( textIndex.attach
+                ( source == null 
                 ?  QueryExecutionFactory.create( query, sourceSet )
-                :  QueryExecutionFactory.create( query, source );
+                :  QueryExecutionFactory.create( query, source )
+                ) );
         }
 
     /**
@@ -79,6 +141,14 @@ public class TDBSource extends SourceBase implements Source
     */
 	@Override public boolean supportsNestedSelect() 
 		{ return true; }
+
+    /**
+        TDB sources naming a model have a spatial index. The whole
+        dataset does not, since its queries go to the default graph
+        rather than the union graph an index would be built from.
+    */
+	@Override public boolean supportsSpatialIndex() 
+		{ return source != null; }
     }
 
     
@@ -0,0 +1,208 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.spatial;
+
+import java.util.*;
+
+import com.hp.hpl.jena.datatypes.DatatypeFormatException;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+    An index of the points (subject, latitude, longitude) of a graph,
+    bucketed into a grid of <code>CELL</code>-degree cells. The points
+    are held in parallel primitive arrays sorted by cell, so a box query
+    is a binary search for each row of cells it covers followed by an
+    exact comparison of each candidate's coordinates with the box.
+
+    <p>A point is made for each pair of numeric lat and long values of a
+    subject; values that are not numbers (including ill-formed numeric
+    literals) are left out, as a SPARQL comparison with them would fail.
+    No wrapping is done at the antimeridian or the poles: a box is taken
+    as given, just as the numeric FILTERs it replaces take it.</p>
+*/
+public class GridIndex {
+
+	/**
+	    The size of a grid cell, in degrees.
+	*/
+	public static final double CELL = 0.1;
+
+	/**
+	    Cell numbers are clamped to +/- LIMIT so that the boxes of
+	    near-polar queries, whose longitude deltas are huge, still
+	    have cells.
+	*/
+	static final int LIMIT = 1 << 30;
+
+	protected final Node [] subjects;
+	protected final long [] cells;
+	protected final double [] lats;
+	protected final double [] longs;
+	protected final int [] owners;
+
+	/**
+	    Build the index of the points of <code>g</code> given by the
+	    properties <code>lat</code> and <code>lng</code>.
+	*/
+	public GridIndex( Graph g, Node lat, Node lng ) {
+		List<Node> subjectList = new ArrayList<Node>();
+		Map<Node, double[]> latsOf = new HashMap<Node, double[]>();
+		for (Iterator<Triple> it = g.find( Node.ANY, lat, Node.ANY ); it.hasNext();) {
+			Triple t = it.next();
+			Double v = number( t.getObject() );
+			if (v != null) {
+				double [] already = latsOf.get( t.getSubject() );
+				latsOf.put( t.getSubject(), append( already, v ) );
+			}
+		}
+		int n = 0;
+		double [] pointLats = new double[latsOf.size()], pointLongs = new double[latsOf.size()];
+		int [] pointOwners = new int[latsOf.size()];
+		Map<Node, Integer> ids = new HashMap<Node, Integer>();
+		for (Iterator<Triple> it = g.find( Node.ANY, lng, Node.ANY ); it.hasNext();) {
+			Triple t = it.next();
+			double [] ls = latsOf.get( t.getSubject() );
+			Double v = ls == null ? null : number( t.getObject() );
+			if (v != null) {
+				Integer id = ids.get( t.getSubject() );
+				if (id == null) {
+					id = subjectList.size();
+					ids.put( t.getSubject(), id );
+					subjectList.add( t.getSubject() );
+				}
+				for (double l: ls) {
+					if (n == pointLats.length) {
+						int size = n * 2 + 1;
+						pointLats = Arrays.copyOf( pointLats, size );
+						pointLongs = Arrays.copyOf( pointLongs, size );
+						pointOwners = Arrays.copyOf( pointOwners, size );
+					}
+					pointLats[n] = l;
+					pointLongs[n] = v;
+					pointOwners[n] = id;
+					n += 1;
+				}
+			}
+		}
+		this.subjects = subjectList.toArray( new Node[subjectList.size()] );
+		this.lats = Arrays.copyOf( pointLats, n );
+		this.longs = Arrays.copyOf( pointLongs, n );
+		this.owners = Arrays.copyOf( pointOwners, n );
+		this.cells = new long[n];
+		for (int i = 0; i < n; i += 1) cells[i] = cell( cellOf( lats[i] ), cellOf( longs[i] ) );
+		sort( 0, n - 1 );
+	}
+
+	/**
+	    Answer the number of points in this index.
+	*/
+	public int size() {
+		return cells.length;
+	}
+
+	/**
+	    Answer the distinct subjects having a point strictly inside the box
+	    from (minLat, minLong) to (maxLat, maxLong), in cell order.
+	*/
+	public List<Node> within( double minLat, double minLong, double maxLat, double maxLong ) {
+		List<Node> result = new ArrayList<Node>();
+		if (!(minLat < maxLat && minLong < maxLong)) return result;
+		int fromRow = cellOf( minLat ), toRow = cellOf( maxLat );
+		int fromCol = cellOf( minLong ), toCol = cellOf( maxLong );
+		BitSet seen = new BitSet( subjects.length );
+		int i = lowerBound( cell( fromRow, fromCol ) );
+		long last = cell( toRow, toCol );
+		while (i < cells.length && cells[i] <= last) {
+			int row = (int) (cells[i] >> 32), col = column( cells[i] );
+			if (col < fromCol) {
+				i = lowerBound( cell( row, fromCol ) );
+			} else if (col > toCol) {
+				i = lowerBound( cell( row + 1, fromCol ) );
+			} else {
+				double lat = lats[i], lng = longs[i];
+				if (minLat < lat && lat < maxLat && minLong < lng && lng < maxLong && !seen.get( owners[i] )) {
+					seen.set( owners[i] );
+					result.add( subjects[owners[i]] );
+				}
+				i += 1;
+			}
+		}
+		return result;
+	}
+
+	static int cellOf( double degrees ) {
+		double c = Math.floor( degrees / CELL );
+		return c < -LIMIT ? -LIMIT : c > LIMIT ? LIMIT : (int) c;
+	}
+
+	/**
+	    The cell of (row, col) as a long which sorts by row then column.
+	*/
+	static long cell( int row, int col ) {
+		return ((long) row << 32) | ((col ^ Integer.MIN_VALUE) & 0xffffffffL);
+	}
+
+	static int column( long cell ) {
+		return ((int) cell) ^ Integer.MIN_VALUE;
+	}
+
+	private int lowerBound( long key ) {
+		int lo = 0, hi = cells.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cells[mid] < key) lo = mid + 1; else hi = mid;
+		}
+		return lo;
+	}
+
+	static Double number( Node o ) {
+		if (!o.isLiteral()) return null;
+		try {
+			Object v = o.getLiteralValue();
+			if (!(v instanceof Number)) return null;
+			double d = ((Number) v).doubleValue();
+			return Double.isNaN( d ) || Double.isInfinite( d ) ? null : d;
+		} catch (DatatypeFormatException e) {
+			return null;
+		}
+	}
+
+	private static double [] append( double [] a, double x ) {
+		if (a == null) return new double[] { x };
+		double [] result = Arrays.copyOf( a, a.length + 1 );
+		result[a.length] = x;
+		return result;
+	}
+
+	private void sort( int lo, int hi ) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cells[mid] < cells[lo]) swap( mid, lo );
+			if (cells[hi] < cells[lo]) swap( hi, lo );
+			if (cells[hi] < cells[mid]) swap( hi, mid );
+			long pivot = cells[mid];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (cells[i] < pivot) i += 1;
+				while (cells[j] > pivot) j -= 1;
+				if (i <= j) { swap( i, j ); i += 1; j -= 1; }
+			}
+			if (j - lo < hi - i) { sort( lo, j ); lo = i; }
+			else { sort( i, hi ); hi = j; }
+		}
+	}
+
+	private void swap( int i, int j ) {
+		long c = cells[i]; cells[i] = cells[j]; cells[j] = c;
+		double a = lats[i]; lats[i] = lats[j]; lats[j] = a;
+		double b = longs[i]; longs[i] = longs[j]; longs[j] = b;
+		int o = owners[i]; owners[i] = owners[j]; owners[j] = o;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.spatial;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epimorphics.lda.sources.SourceContent;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.QueryExecution;
+
+/**
+    The spatial indexes of the data of one source, one for each pair of
+    lat and long properties asked about. Each is built the first time a
+    query asks for it; when the source's marker changes (looked at no
+    more often than every <code>RECHECK</code> milliseconds) they are
+    all dropped, to be rebuilt as they are next asked for.
+*/
+public class SourceSpatialIndex {
+
+	static final Logger log = LoggerFactory.getLogger( SourceSpatialIndex.class );
+
+	static final long RECHECK = 5000;
+
+	static {
+		WithinBoxPF.register();
+	}
+
+	protected final String name;
+	protected final SourceContent content;
+
+	protected final Map<String, GridIndex> indexes = new HashMap<String, GridIndex>();
+	protected String marker;
+	protected long checked;
+
+	public SourceSpatialIndex( String name, SourceContent content ) {
+		this.name = name;
+		this.content = content;
+		this.marker = content.getMarker();
+		this.checked = System.currentTimeMillis();
+	}
+
+	/**
+	    A spatial index of the unchanging graph <code>g</code>.
+	*/
+	public static SourceSpatialIndex inMemory( String name, final Graph g ) {
+		SourceContent c = new SourceContent() {
+			@Override public Graph getGraph() { return g; }
+			@Override public String getMarker() { return null; }
+		};
+		return new SourceSpatialIndex( name, c );
+	}
+
+	/**
+	    Make this index available to the withinBox property function when
+	    <code>qe</code> is executed.
+	*/
+	public QueryExecution attach( QueryExecution qe ) {
+		qe.getContext().set( WithinBoxPF.INDEX, this );
+		return qe;
+	}
+
+	/**
+	    Answer the grid index of the points given by <code>lat</code> and
+	    <code>lng</code>, made up to date with the content.
+	*/
+	public synchronized GridIndex current( Node lat, Node lng ) {
+		long now = System.currentTimeMillis();
+		if (now - checked > RECHECK) {
+			checked = now;
+			String latest = content.getMarker();
+			if (latest == null ? marker != null : !latest.equals( marker )) {
+				marker = latest;
+				indexes.clear();
+			}
+		}
+		String key = lat.getURI() + " " + lng.getURI();
+		GridIndex result = indexes.get( key );
+		if (result == null) {
+			long origin = System.currentTimeMillis();
+			result = new GridIndex( content.getGraph(), lat, lng );
+			indexes.put( key, result );
+			log.info( "built spatial index for " + name + ": " + result.size() + " points in " + (System.currentTimeMillis() - origin) + "ms" );
+		}
+		return result;
+	}
+
+	@Override public String toString() {
+		return "SourceSpatialIndex{" + name + "}";
+	}
+}
@@ -0,0 +1,80 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.spatial;
+
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.lda.vocabularies.GEOStub;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    The configuration of near-lat/near-long queries: the properties
+    giving the latitude and longitude of items, and whether the query
+    may use the spatial index of the data source (which it can only
+    if the source has one).
+*/
+public class SpatialConfig {
+
+	final Property latProperty;
+	final Property longProperty;
+	final boolean allowIndex;
+	final boolean sourceIndexed;
+
+	/**
+	    The default configuration, geo:lat and geo:long, using the
+	    source's spatial index if <code>sourceIndexed</code>.
+	*/
+	public SpatialConfig( boolean sourceIndexed ) {
+		this( ResourceFactory.createProperty( GEOStub.LAT.getURI() ), ResourceFactory.createProperty( GEOStub.LONG.getURI() ), true, sourceIndexed );
+	}
+
+	private SpatialConfig( Property latProperty, Property longProperty, boolean allowIndex, boolean sourceIndexed ) {
+		this.latProperty = latProperty;
+		this.longProperty = longProperty;
+		this.allowIndex = allowIndex;
+		this.sourceIndexed = sourceIndexed;
+	}
+
+	/**
+	    Answer a new SpatialConfig which is this one overlaid with the
+	    settings of the given API or endpoint resource.
+	*/
+	public SpatialConfig overlay( Resource r ) {
+		Resource lat = r.getPropertyResourceValue( EXTRAS.latProperty );
+		Resource lng = r.getPropertyResourceValue( EXTRAS.longProperty );
+		Statement allow = r.getProperty( EXTRAS.spatialIndex );
+		return new SpatialConfig
+			( lat == null ? latProperty : lat.as( Property.class )
+			, lng == null ? longProperty : lng.as( Property.class )
+			, allow == null ? allowIndex : allow.getBoolean()
+			, sourceIndexed
+			);
+	}
+
+	/**
+	    Return the property giving the latitude of items, by default geo:lat.
+	*/
+	public Property getLatProperty() {
+		return latProperty;
+	}
+
+	/**
+	    Return the property giving the longitude of items, by default geo:long.
+	*/
+	public Property getLongProperty() {
+		return longProperty;
+	}
+
+	/**
+	    Returns true if near-lat/near-long queries should select items with
+	    the withinBox property function (answered from the source's spatial
+	    index) rather than with numeric FILTERs.
+	*/
+	public boolean useIndex() {
+		return allowIndex && sourceIndexed;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.spatial;
+
+import java.util.*;
+
+import com.epimorphics.lda.exceptions.EldaException;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import com.hp.hpl.jena.sparql.pfunction.PropFuncArg;
+import com.hp.hpl.jena.sparql.pfunction.PropertyFunctionBase;
+import com.hp.hpl.jena.sparql.pfunction.PropertyFunctionRegistry;
+import com.hp.hpl.jena.sparql.util.IterLib;
+import com.hp.hpl.jena.sparql.util.Symbol;
+
+/**
+    The property function
+    <code>?item elda:withinBox (lat long minLat minLong maxLat maxLong)</code>,
+    binding ?item to each subject with a value of <code>lat</code> strictly
+    between minLat and maxLat and a value of <code>long</code> strictly
+    between minLong and maxLong: exactly the items that the numeric FILTERs
+    GEOLocation would otherwise generate select. It is answered from the
+    spatial index attached to the query execution by its source; if ?item
+    is already bound, its coordinates are compared with the box directly.
+    Without an index there are no results.
+*/
+public class WithinBoxPF extends PropertyFunctionBase {
+
+	/**
+	    The context symbol under which a source attaches its spatial index.
+	*/
+	public static final Symbol INDEX = Symbol.create( "http://www.epimorphics.com/vocabularies/lda#spatialIndex" );
+
+	public static void register() {
+		PropertyFunctionRegistry.get().put( EXTRAS.withinBox.getURI(), WithinBoxPF.class );
+	}
+
+	@Override public QueryIterator exec( Binding binding, PropFuncArg subject, Node predicate, PropFuncArg object, ExecutionContext cxt ) {
+		SourceSpatialIndex source = (SourceSpatialIndex) cxt.getContext().get( INDEX );
+		if (source == null) return IterLib.noResults( cxt );
+		List<Node> args = object.isList() ? object.getArgList() : Collections.<Node>emptyList();
+		if (args.size() != 6) EldaException.BadRequest( predicate + " needs (lat long minLat minLong maxLat maxLong), not " + object );
+	//
+		Node lat = value( binding, args.get( 0 ) ), lng = value( binding, args.get( 1 ) );
+		if (!lat.isURI() || !lng.isURI()) EldaException.BadRequest( predicate + " needs lat and long properties, not " + lat + " and " + lng );
+		double [] box = new double[4];
+		for (int i = 0; i < 4; i += 1) {
+			Double d = GridIndex.number( value( binding, args.get( i + 2 ) ) );
+			if (d == null) EldaException.BadRequest( predicate + " needs numeric bounds, not " + args.get( i + 2 ) );
+			box[i] = d;
+		}
+	//
+		Node item = value( binding, subject.getArg() );
+		List<Binding> result = new ArrayList<Binding>();
+		if (item.isVariable()) {
+			Var v = Var.alloc( item );
+			for (Node n: source.current( lat, lng ).within( box[0], box[1], box[2], box[3] ))
+				result.add( BindingFactory.binding( binding, v, n ) );
+		} else if (within( cxt.getActiveGraph(), item, lat, lng, box )) {
+			result.add( binding );
+		}
+		return new QueryIterPlainWrapper( result.iterator(), cxt );
+	}
+
+	private static boolean within( Graph g, Node item, Node lat, Node lng, double [] box ) {
+		for (Triple a: g.find( item, lat, Node.ANY ).toList()) {
+			Double y = GridIndex.number( a.getObject() );
+			if (y != null && box[0] < y && y < box[2]) {
+				for (Triple b: g.find( item, lng, Node.ANY ).toList()) {
+					Double x = GridIndex.number( b.getObject() );
+					if (x != null && box[1] < x && x < box[3]) return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static Node value( Binding b, Node n ) {
+		if (n.isVariable()) {
+			Node v = b.get( Var.alloc( n ) );
+			if (v != null) return v;
+		}
+		return n;
+	}
+}
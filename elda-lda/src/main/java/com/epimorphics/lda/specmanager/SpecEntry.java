@@ -20,7 +20,7 @@ public class SpecEntry {
     final byte [] keyDigest;
     final Model model;
     
-    SpecEntry(String uri, String key, APISpec spec, Model model) {
+    public SpecEntry(String uri, String key, APISpec spec, Model model) {
         this.uri = uri;
         this.keyDigest = digestKey(uri, key);
         this.spec = spec;
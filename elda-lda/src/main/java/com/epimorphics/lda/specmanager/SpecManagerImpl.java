@@ -81,6 +81,17 @@ public class SpecManagerImpl implements SpecManager {
         }
     }
 
+    /**
+        Record an already-constructed spec entry, registering its
+        endpoints with this manager's router. Used when reloading a
+        configuration to carry over specs whose files have not changed
+        without rebuilding their APISpecs.
+    */
+    public void adoptSpec( String context, SpecEntry entry ) {
+        synchronized (specs) { specs.put( entry.uri, entry ); }
+        APIFactory.registerApi( router, context, entry.spec );
+    }
+
     @Override public void loadSpecFor(String uriRequest) {
         // Nothing to do in this environment,  all known specs are permanently loaded
     }
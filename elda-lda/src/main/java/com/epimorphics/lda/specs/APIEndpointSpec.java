@@ -18,12 +18,16 @@ import org.slf4j.LoggerFactory;
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.bindings.VariableExtractor;
 import com.epimorphics.lda.core.*;
+import com.epimorphics.lda.counting.CountConfig;
 import com.epimorphics.lda.exceptions.APIException;
 import com.epimorphics.lda.exceptions.EldaException;
 import com.epimorphics.lda.query.APIQuery;
 import com.epimorphics.lda.renderers.Factories;
 import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.lda.support.LanguageFilter;
 import com.epimorphics.lda.support.RendererFactoriesSpec;
+import com.epimorphics.lda.spatial.SpatialConfig;
+import com.epimorphics.lda.textsearch.TextQueryPF;
 import com.epimorphics.lda.textsearch.TextSearchConfig;
 import com.epimorphics.lda.vocabularies.API;
 import com.epimorphics.lda.vocabularies.EXTRAS;
@@ -44,6 +48,8 @@ public class APIEndpointSpec implements EndpointDetails, NamedViews, APIQuery.Qu
     protected final Resource endpointResource;
     
     protected final TextSearchConfig textSearchConfig;
+    protected final SpatialConfig spatialConfig;
+    protected final CountConfig countConfig;
     
     protected APIQuery baseQuery;
     protected String uriTemplate ;
@@ -51,6 +57,8 @@ public class APIEndpointSpec implements EndpointDetails, NamedViews, APIQuery.Qu
     protected final Map<String, View> views;
     protected final String defaultLanguage;
     
+    protected final LanguageFilter.Mode languageFilterMode;
+    
     protected final String itemTemplate;
     
     protected final boolean wantsContext;
@@ -77,6 +85,7 @@ public class APIEndpointSpec implements EndpointDetails, NamedViews, APIQuery.Qu
     	bindings.putAll( apiSpec.bindings );
         bindings.putAll( VariableExtractor.findAndBindVariables( bindings, endpoint ) );
         defaultLanguage = getStringValue(endpoint, API.lang, apiSpec.getDefaultLanguage());
+        languageFilterMode = LanguageFilter.Mode.decode( endpoint, apiSpec.getLanguageFilterMode() );
     	defaultPageSize = getIntValue( endpoint, API.defaultPageSize, apiSpec.defaultPageSize );
 		maxPageSize = getIntValue( endpoint, API.maxPageSize, apiSpec.maxPageSize );
 		cachePolicyName = getStringValue( endpoint, EXTRAS.cachePolicyName, apiSpec.getCachePolicyName() );
@@ -88,6 +97,9 @@ public class APIEndpointSpec implements EndpointDetails, NamedViews, APIQuery.Qu
         describeThreshold = getIntValue( endpoint, EXTRAS.describeThreshold, apiSpec.describeThreshold );
     //
         textSearchConfig = apiSpec.getTextSearchConfig().overlay( endpoint );
+        TextQueryPF.register( textSearchConfig.getTextQueryProperty() );
+        spatialConfig = apiSpec.getSpatialConfig().overlay( endpoint );
+        countConfig = apiSpec.getCountConfig().overlay( endpoint );
     //        
         instantiateBaseQuery( endpoint ); 
         views = extractViews( endpoint );
@@ -389,6 +401,13 @@ public class APIEndpointSpec implements EndpointDetails, NamedViews, APIQuery.Qu
     @Override public String getDefaultLanguage() {
     	return defaultLanguage;
     }
+    
+    /**
+     * How _lang filtering is done for this endpoint.
+     */
+    @Override public LanguageFilter.Mode getLanguageFilterMode() {
+    	return languageFilterMode;
+    }
 
     /**
      * Return the URI template at which this instance should
@@ -463,4 +482,15 @@ public class APIEndpointSpec implements EndpointDetails, NamedViews, APIQuery.Qu
 		return textSearchConfig;
 	}
 	
+	@Override public SpatialConfig getSpatialConfig() {
+		return spatialConfig;
+	}
+	
+	/**
+	    Answer this endpoint's configuration of total and facet counts.
+	*/
+	public CountConfig getCountConfig() {
+		return countConfig;
+	}
+	
 }
\ No newline at end of file
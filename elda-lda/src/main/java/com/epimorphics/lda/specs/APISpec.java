@@ -19,18 +19,23 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.epimorphics.jsonrdf.ParallelEncoding;
 import com.epimorphics.lda.bindings.Bindings;
 import com.epimorphics.lda.bindings.VariableExtractor;
 import com.epimorphics.lda.core.ModelLoader;
+import com.epimorphics.lda.counting.CountConfig;
 import com.epimorphics.lda.exceptions.APIException;
 import com.epimorphics.lda.exceptions.EldaException;
+import com.epimorphics.lda.export.ExportPolicy;
 import com.epimorphics.lda.query.QueryParameter;
 import com.epimorphics.lda.renderers.Factories;
 import com.epimorphics.lda.shortnames.ShortnameService;
 import com.epimorphics.lda.shortnames.StandardShortnameService;
 import com.epimorphics.lda.sources.*;
+import com.epimorphics.lda.support.LanguageFilter;
 import com.epimorphics.lda.support.ModelPrefixEditor;
 import com.epimorphics.lda.support.RendererFactoriesSpec;
+import com.epimorphics.lda.spatial.SpatialConfig;
 import com.epimorphics.lda.textsearch.TextSearchConfig;
 import com.epimorphics.lda.vocabularies.API;
 import com.epimorphics.lda.vocabularies.EXTRAS;
@@ -67,6 +72,10 @@ public class APISpec {
     
     protected final TextSearchConfig textSearchConfig;
     
+    protected final SpatialConfig spatialConfig;
+    
+    protected final CountConfig countConfig;
+    
     public final int defaultPageSize;
     public final int maxPageSize;
     
@@ -79,8 +88,16 @@ public class APISpec {
 
 	public final int describeThreshold;
 	
+	protected final ParallelEncoding jsonParallelism;
+	
+	protected final ExportPolicy exportPolicy;
+	
+	protected final int itemCacheTriples;
+	
 	public final String cachePolicyName;
 	
+	protected final LanguageFilter.Mode languageFilterMode;
+	
 	protected final ModelPrefixEditor modelPrefixEditor = new ModelPrefixEditor();
 	
 	/**
@@ -88,6 +105,12 @@ public class APISpec {
 	    query to use nested selects if they are available.
 	*/
 	public static final int DEFAULT_DESCRIBE_THRESHOLD = 10;
+	
+	/**
+	    The default number of runs JSON list pages are encoded in: 1, ie
+	    they are encoded sequentially.
+	*/
+	public static final int DEFAULT_JSON_PARALLELISM = 1;
     
 	public APISpec( FileManager fm, Resource specification, ModelLoader loader ) {
 		this( "", fm, specification, loader );
@@ -103,10 +126,18 @@ public class APISpec {
     	this.defaultPageSize = RDFUtils.getIntValue( specification, API.defaultPageSize, QueryParameter.DEFAULT_PAGE_SIZE );
 		this.maxPageSize = RDFUtils.getIntValue( specification, API.maxPageSize, QueryParameter.MAX_PAGE_SIZE );
         this.describeThreshold = RDFUtils.getIntValue( specification, EXTRAS.describeThreshold, DEFAULT_DESCRIBE_THRESHOLD );
+        this.jsonParallelism = ParallelEncoding.withSharedPool
+        	( RDFUtils.getIntValue( specification, EXTRAS.jsonParallelism, DEFAULT_JSON_PARALLELISM )
+        	, RDFUtils.getIntValue( specification, EXTRAS.jsonParallelThreshold, ParallelEncoding.DEFAULT_MIN_ITEMS ) 
+        	);
+        this.exportPolicy = ExportPolicy.create( specification );
+        this.itemCacheTriples = RDFUtils.getIntValue( specification, EXTRAS.itemCacheTriples, 0 );
 		this.prefixes = ExtractPrefixMapping.from(specification);
         this.sns = loadShortnames(specification, loader);
         this.dataSource = GetDataSource.sourceFromSpec( fm, specification, am );
         this.textSearchConfig = dataSource.getTextSearchConfig().overlay(specification);
+        this.spatialConfig = new SpatialConfig( dataSource.supportsSpatialIndex() ).overlay( specification );
+        this.countConfig = new CountConfig().overlay( specification );
         this.describeSources = extractDescribeSources( fm, am, specification, dataSource );
         this.primaryTopic = getStringValue(specification, FOAF.primaryTopic, null);
         this.defaultLanguage = getStringValue(specification, API.lang, null);
@@ -115,8 +146,10 @@ public class APISpec {
         this.factoryTable = RendererFactoriesSpec.createFactoryTable( specification );
         this.hasParameterBasedContentNegotiation = specification.hasProperty( API.contentNegotiation, API.parameterBased ); 
 		this.cachePolicyName = getStringValue( specification, EXTRAS.cachePolicyName, "default" );
+		this.languageFilterMode = LanguageFilter.Mode.decode( specification, LanguageFilter.Mode.InModel );
         extractEndpointSpecifications( specification );
         extractModelPrefixEditor( specification );
+        sns.asContext().freeze();
     }
 
 	private void extractModelPrefixEditor(Resource specification) {
@@ -262,6 +295,38 @@ public class APISpec {
 		return cachePolicyName;
 	}
 	
+	/**
+	    Answer how the items of JSON list pages may be encoded in parallel,
+	    or null if they are to be encoded sequentially.
+	*/
+	public ParallelEncoding getJSONParallelism() {
+		return jsonParallelism;
+	}
+	
+	/**
+	    Answer whether, and how, the list endpoints of this API may be
+	    exported in bulk.
+	*/
+	public ExportPolicy getExportPolicy() {
+		return exportPolicy;
+	}
+	
+	/**
+	    Answer the most triples of single-item descriptions this API
+	    wants cached; 0 if its views are not to use the item cache.
+	*/
+	public int getItemCacheTriples() {
+		return itemCacheTriples;
+	}
+	
+	/**
+	    How _lang filtering is done for this API, unless an endpoint
+	    says otherwise.
+	*/
+	public LanguageFilter.Mode getLanguageFilterMode() {
+		return languageFilterMode;
+	}
+	
 	/**
 		Returns a new APIEndpointSpec for this APISpec and the given endpoint
 	*/
@@ -281,6 +346,14 @@ public class APISpec {
 		return textSearchConfig;
 	}
 	
+	public SpatialConfig getSpatialConfig() {
+		return spatialConfig;
+	}
+	
+	public CountConfig getCountConfig() {
+		return countConfig;
+	}
+	
 	public String getPrefixPath() {
 		return prefixPath;
 	}
@@ -8,10 +8,13 @@
 
 package com.epimorphics.lda.support;
 
+import com.epimorphics.lda.cache.ItemCache;
+
 /**
     a Controls object contains control and report values for Elda
-    execution. At this time we have only a cache-suppress control
-    and the Times reports.
+    execution. At this time we have a cache-suppress control, the
+    Times reports, and the item description cache (if any) that
+    fetching descriptions may use.
 */
 public class Controls {
 	
@@ -25,6 +28,12 @@ public class Controls {
 	*/
 	public final Times times;
 	
+	/**
+	    The cache of item descriptions to re-use and add to when
+	    describing items, or null if there is none.
+	*/
+	public final ItemCache itemCache;
+	
 	/**
 	    A Controls that permits use of the cache and allocates its
 	    own Times object.
@@ -38,7 +47,24 @@ public class Controls {
 	    the Times object.
 	*/
 	public Controls( boolean allowCache, Times times ) {
+		this( allowCache, times, null );
+	}
+	
+	/** 
+	    A Controls that uses the supplied values for allowCache, the
+	    Times object, and the item description cache.
+	*/
+	public Controls( boolean allowCache, Times times, ItemCache itemCache ) {
 		this.allowCache = allowCache;
 		this.times = times;
+		this.itemCache = itemCache;
+	}
+	
+	/**
+	    Answer a Controls like this one but with the item description
+	    cache <code>itemCache</code>.
+	*/
+	public Controls withItemCache( ItemCache itemCache ) {
+		return new Controls( allowCache, times, itemCache );
 	}
 }
@@ -1,10 +1,6 @@
 package com.epimorphics.lda.support;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
+import java.util.*;
 
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.RDFNode;
@@ -23,20 +19,25 @@ import com.hp.hpl.jena.rdf.model.StmtIterator;
 	
 	<p>
 	The model underlying the resources to be searched for cyclicity is
-	converted to a simpler form that collapses all the properties linking
-	A to B into a single edge and makes the index fields of a node directly
-	accessible.
+	converted to a simpler form: each resource is given a number, and the
+	edges (all the properties linking A to B) are held as int arrays
+	indexed by those numbers. The algorithm is run iteratively with an
+	explicit call stack, so long chains cannot overflow the Java stack,
+	and membership of the component stack is a bitset.
 	</p>
 */
 public class CycleFinder {
 
-	int index = 0;
+	final Map<Resource, Integer> numbers = new HashMap<Resource, Integer>();
 	
-	Stack<Node> S = new Stack<Node>();
+	final List<Resource> resources = new ArrayList<Resource>();
 	
-	Set<Resource> cyclics = new HashSet<Resource>();
-
-	Map<Resource, Node> nodes = new HashMap<Resource, Node>();
+	final BitSet selfCyclic = new BitSet();
+	
+	/**
+	    The edges out of node i are targets[first[i]] .. targets[first[i+1]-1].
+	*/
+	int [] first, targets;
 	
 	CycleFinder(Model m) {
 		convert(m);
@@ -47,109 +48,101 @@ public class CycleFinder {
 	}
 	
 	public static Set<Resource> findCyclics(Model m) {
-		return new CycleFinder(m).find_cyclics(m);
-	}
-	
-	Set<Resource> find_cyclics(Model m) {
-		for (Map.Entry<Resource, Node> e: nodes.entrySet()) {
-			stronglyConnect(e.getValue());
-		}
-		return cyclics;
-	}
-	
-	public static class Node {
-		
-		final Resource r;
-		int index;
-		int lowlink;
-		
-		Set<Node> others = new HashSet<Node>();
-		
-		Node(Resource r) {
-			this.r = r;
-			this.index = -1;
-			this.lowlink = -1;
-		}
-		
-		void addEdgeTo(Node other) {
-			others.add(other);
-		}
-		
-		boolean isSelfCyclic() {
-			return others.contains(this);
-		}
+		return new CycleFinder(m).find_cyclics();
 	}
 	
 	/**
-	    Convert a model to a set of nodes with edges to other nodes
+	    Convert a model to numbered nodes with edges to other nodes.
 	*/
 	void convert(Model m) {
+		int [] from = new int[16], to = new int[16];
+		int edges = 0;
 		for (StmtIterator it = m.listStatements(); it.hasNext();) {
 			Statement s = it.next();
 			RDFNode o = s.getObject();
-			if (o.isResource()) convert(s.getSubject(), o.asResource());
+			if (o.isResource()) {
+				if (edges == from.length) {
+					from = Arrays.copyOf(from, edges * 2);
+					to = Arrays.copyOf(to, edges * 2);
+				}
+				int a = number(s.getSubject()), b = number(o.asResource());
+				if (a == b) selfCyclic.set(a);
+				from[edges] = a;
+				to[edges] = b;
+				edges += 1;
+			}
 		}
+	//
+		int n = resources.size();
+		first = new int[n + 1];
+		targets = new int[edges];
+		for (int e = 0; e < edges; e += 1) first[from[e] + 1] += 1;
+		for (int i = 0; i < n; i += 1) first[i + 1] += first[i];
+		int [] next = Arrays.copyOf(first, n);
+		for (int e = 0; e < edges; e += 1) targets[next[from[e]]++] = to[e];
 	}
 	
-	void convert(Resource s, Resource o) {
-		convert(s).addEdgeTo(convert(o));
-	}
-	
-	Node convert(Resource x) {
-		Node n = nodes.get(x);
-		if (n == null) nodes.put(x, n = new Node(x));
-		return n;
-	}
-	
-	boolean isSelfCyclic(Resource x) {
-		return convert(x).isSelfCyclic();
-	}
-	
-	/**
-	    The Tarjan algorithm.
-	*/
-	void stronglyConnect(Node v) {
-		v.index = index;
-		v.lowlink = index;
-		index += 1;
-		S.push(v);	
-		
-		for (Node w: v.others) {
-			if (w.index < 0) {
-				stronglyConnect(w);
-				v.lowlink = Math.min(v.lowlink, w.lowlink);
-			} else if (S.contains(w)) {
-				v.lowlink = Math.min(v.lowlink, w.index);
-			}
-		}
-		
-		if (v.lowlink == v.index) {
-			CycleFinder.Component c = new Component();
-			while (true) {
-				Node w = S.pop();
-				c.add( w.r );
-				if (v == w) break;
-			}
-			hereIsAComponent(c);
+	int number(Resource x) {
+		Integer i = numbers.get(x);
+		if (i == null) {
+			numbers.put(x, i = resources.size());
+			resources.add(x);
 		}
+		return i;
 	}
 	
 	/**
-	    Cyclic nodes are those in a nonsingular strongly connected
-	    component or those that have an edge back to themselves.
+	    The Tarjan algorithm. Cyclic nodes are those in a nonsingular 
+	    strongly connected component or those that have an edge back 
+	    to themselves.
 	*/
-	void hereIsAComponent(CycleFinder.Component c) {
-		if (c.size() > 1 || isSelfCyclic(c.iterator().next())) {
-			cyclics.addAll(c);
+	Set<Resource> find_cyclics() {
+		Set<Resource> cyclics = new HashSet<Resource>();
+		int n = resources.size();
+		int [] index = new int[n], lowlink = new int[n], edge = new int[n];
+		int [] stack = new int[n], calls = new int[n];
+		BitSet onStack = new BitSet(n);
+		Arrays.fill(index, -1);
+		int counter = 0, sp = 0;
+	//
+		for (int root = 0; root < n; root += 1) {
+			if (index[root] >= 0) continue;
+			int cp = 0;
+			index[root] = lowlink[root] = counter++;
+			edge[root] = first[root];
+			stack[sp++] = root; onStack.set(root);
+			calls[cp++] = root;
+			while (cp > 0) {
+				int v = calls[cp - 1];
+				if (edge[v] < first[v + 1]) {
+					int w = targets[edge[v]++];
+					if (index[w] < 0) {
+						index[w] = lowlink[w] = counter++;
+						edge[w] = first[w];
+						stack[sp++] = w; onStack.set(w);
+						calls[cp++] = w;
+					} else if (onStack.get(w)) {
+						lowlink[v] = Math.min(lowlink[v], index[w]);
+					}
+				} else {
+					cp -= 1;
+					if (cp > 0) {
+						int u = calls[cp - 1];
+						lowlink[u] = Math.min(lowlink[u], lowlink[v]);
+					}
+					if (lowlink[v] == index[v]) {
+						int base = sp;
+						while (stack[--base] != v) {}
+						boolean cyclic = sp - base > 1 || selfCyclic.get(v);
+						for (int k = base; k < sp; k += 1) {
+							onStack.clear(stack[k]);
+							if (cyclic) cyclics.add(resources.get(stack[k]));
+						}
+						sp = base;
+					}
+				}
+			}
 		}
+		return cyclics;
 	}
-
-	/**
-	    Just to abbreviate `HashSet<Resource>`.
-	*/
-	static class Component extends HashSet<Resource> {
-		
-		private static final long serialVersionUID = 1L;
-	}		
-
-}
\ No newline at end of file
+}
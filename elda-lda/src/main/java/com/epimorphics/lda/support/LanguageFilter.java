@@ -9,7 +9,10 @@
 package com.epimorphics.lda.support;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.rdf.model.*;
 
@@ -17,6 +20,72 @@ import com.hp.hpl.jena.rdf.model.*;
     This class implements the language-filtering rules of LDA views.
 */
 public class LanguageFilter {
+	
+	/**
+	    How language filtering is done. InModel (the default) fetches
+	    all the literals and then removes the unwanted ones from the
+	    result model. InQuery adds language filters to the view's
+	    CONSTRUCT queries, so that literals in unwanted languages are
+	    not fetched at all, and applies the rules to whatever remains
+	    through a filtering view of the result graph, leaving the
+	    fetched model alone.
+	*/
+	public enum Mode {
+		InModel, InQuery;
+		
+		public static Mode decode( Resource root, Mode defaultMode ) {
+			if (root == null) return defaultMode;
+			Statement s = root.getProperty( EXTRAS.languageFilterMode );
+			if (s == null) return defaultMode;
+			Resource mode = s.getResource();
+			return
+				mode.equals( EXTRAS.filterInQuery ) ? Mode.InQuery
+				: mode.equals( EXTRAS.filterInModel ) ? Mode.InModel
+				: defaultMode
+				;
+		}
+	}
+	
+	/**
+	    Answer the set of languages allowed by the language codes in
+	    <code>split</code>, where "none" allows literals with no language.
+	*/
+	public static Set<String> allowedLanguages( String[] split ) {
+        Set<String> allowed = new HashSet<String>( Arrays.asList( split ) );
+        if (allowed.contains( "none" )) allowed.add( "" );
+        return allowed;
+	}
+	
+	/**
+	    Answer a view of <code>g</code> in which the language-filtering rules
+	    have been applied to the literals, without changing <code>g</code>.
+	*/
+	public static Graph filteredView( Graph g, String[] split ) {
+		return new LanguageFilteredGraph( g, allowedLanguages( split ) );
+	}
+	
+	static final Pattern languageTag = Pattern.compile( "[A-Za-z]{1,8}(-[A-Za-z0-9]{1,8})*" );
+	
+	/**
+	    Answer a SPARQL FILTER that keeps the bindings of <code>var</code>
+	    that are not literals, are literals with no language, or have a
+	    language matching one of the codes in <code>split</code>. The
+	    filter is only a first cut: literals with no language are kept
+	    whether or not the rules will want them, and language ranges are
+	    matched with langMatches, so the full rules must still be applied
+	    to the result. Codes that are not language tags are ignored.
+	*/
+	public static String asSparqlFilter( String var, String[] split ) {
+		StringBuilder sb = new StringBuilder();
+		sb.append( "FILTER(!isLiteral(" ).append( var ).append( ") || lang(" ).append( var ).append( ") = \"\"" );
+		for (String lang: split) {
+			String tag = lang.trim();
+			if (!tag.equals( "none" ) && languageTag.matcher( tag ).matches())
+				sb.append( " || langMatches(lang(" ).append( var ).append( "), \"" ).append( tag ).append( "\")" );
+		}
+		return sb.append( ")" ).toString();
+	}
+	
 	/**
         Filter the model m according to the view-languages rules 
         of the LDA spec.
@@ -29,8 +98,7 @@ public class LanguageFilter {
         </p>
     */
     public static void filterByLanguages( Model m, String[] split) {
-        Set<String> allowed = new HashSet<String>( Arrays.asList( split ) );
-        if (allowed.contains( "none" )) allowed.add( "" );
+        Set<String> allowed = allowedLanguages( split );
         for (Resource sub: m.listSubjects().toList()) {
             for (Property prop: sub.listProperties().mapWith( Statement.Util.getPredicate ).toSet())
                 removeUnwantedPropertyValues( allowed, sub, prop );
@@ -61,7 +129,7 @@ public class LanguageFilter {
         m.remove( removes );        
     }
     
-	private static boolean isStringLiteral(Node o) {
+	static boolean isStringLiteral(Node o) {
 		return o.isLiteral() && o.getLiteralDatatypeURI() == null; 
 	}
 }
@@ -0,0 +1,95 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.Filter;
+
+/**
+    A view of a graph with the language-filtering rules of LDA views
+    applied as triples are found, rather than by removing triples from
+    the graph. A plain literal with no language is hidden if its subject
+    has, for the same predicate, a literal in an allowed language; that
+    is decided once per subject and predicate and remembered. Updates
+    go to the underlying graph.
+*/
+public class LanguageFilteredGraph extends GraphBase {
+
+	protected final Graph base;
+
+	protected final Set<String> allowed;
+
+	protected final Map<Triple, Boolean> hasAllowedValue = new ConcurrentHashMap<Triple, Boolean>();
+
+	public LanguageFilteredGraph( Graph base, Set<String> allowed ) {
+		this.base = base;
+		this.allowed = allowed;
+	}
+
+	final Filter<Triple> wanted = new Filter<Triple>() {
+		@Override public boolean accept( Triple t ) {
+			return isWanted( t );
+		}
+	};
+
+	@Override protected ExtendedIterator<Triple> graphBaseFind( TripleMatch m ) {
+		return base.find( m ).filterKeep( wanted );
+	}
+
+	/**
+	    Answer true iff the triple <code>t</code> survives language filtering.
+	*/
+	protected boolean isWanted( Triple t ) {
+		Node o = t.getObject();
+		if (!LanguageFilter.isStringLiteral( o )) return true;
+		String lang = o.getLiteralLanguage();
+		if (allowed.contains( lang )) return true;
+		if (lang.length() > 0) return false;
+		return !hasAllowedValue( t.getSubject(), t.getPredicate() );
+	}
+
+	private boolean hasAllowedValue( Node S, Node P ) {
+		Triple key = Triple.create( S, P, Node.ANY );
+		Boolean already = hasAllowedValue.get( key );
+		if (already == null) {
+			boolean found = false;
+			ExtendedIterator<Triple> it = base.find( S, P, Node.ANY );
+			try {
+				while (!found && it.hasNext()) {
+					Node o = it.next().getObject();
+					found = LanguageFilter.isStringLiteral( o ) && allowed.contains( o.getLiteralLanguage() );
+				}
+			} finally {
+				it.close();
+			}
+			hasAllowedValue.put( key, already = found );
+		}
+		return already;
+	}
+
+	@Override public void performAdd( Triple t ) {
+		base.add( t );
+		hasAllowedValue.clear();
+	}
+
+	@Override public void performDelete( Triple t ) {
+		base.delete( t );
+		hasAllowedValue.clear();
+	}
+
+	@Override protected PrefixMapping createPrefixMapping() {
+		return base.getPrefixMapping();
+	}
+}
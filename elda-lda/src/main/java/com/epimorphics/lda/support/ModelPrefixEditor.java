@@ -1,17 +1,19 @@
 package com.epimorphics.lda.support;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.hp.hpl.jena.datatypes.RDFDatatype;
 import com.hp.hpl.jena.datatypes.TypeMapper;
 import com.hp.hpl.jena.graph.*;
 import com.hp.hpl.jena.rdf.model.*;
-import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 
 /**
     Class to edit models by editing all the resource URIs according to the 
-    rules for a PrefixEditor.
+    rules for a PrefixEditor. Models and graphs are edited by wrapping them
+    in a PrefixEditedGraph, so only the triples that are read are renamed.
 */
 public class ModelPrefixEditor {
 
@@ -57,36 +59,33 @@ public class ModelPrefixEditor {
 		return renamed;
 	}	
 
+	/**
+	    Answer a model whose statements are those of <code>x</code> with
+	    their URIs renamed. The model is a view of <code>x</code>, not a copy;
+	    it has no prefixes of its own.
+	*/
 	public Model rename( Model x ) {
 		if (pe.isEmpty()) return x;
-		Model result = ModelFactory.createDefaultModel();
-		Graph from = x.getGraph(), to = result.getGraph();
-		rename( from, to );
-		return result;
-	}
-
-	private void rename( Graph from, Graph to ) {
-		if (!pe.isEmpty()) {
-			ExtendedIterator<Triple> triples = from.find( Node.ANY, Node.ANY, Node.ANY );
-			while (triples.hasNext()) to.add( rename( triples.next() ) );
-		}
+		return ModelFactory.createModelForGraph( rename( x.getGraph() ) );
 	}
 
+	/**
+	    Answer a graph whose triples are those of <code>from</code> with
+	    their URIs renamed, as a view of <code>from</code>.
+	*/
 	public Graph rename( Graph from ) {
 		if (pe.isEmpty()) return from;
-		Graph to = ModelFactory.createDefaultModel().getGraph();
-		rename( from, to );
-		return to;
+		return new PrefixEditedGraph( from, this );
 	}
 
-	private Triple rename(Triple t) {
+	Triple rename(Triple t) {
 		Node S = t.getSubject(), P = t.getPredicate(), O = t.getObject();
 		Node newS = rename(S), newP = rename(P), newO = rename(O);
 		if (newS == S && newP == P && newO == O) return t;
 		return Triple.create(newS, newP, newO);
 	}
 
-	private Node rename(Node o) {
+	Node rename(Node o) {
 		if (o.isBlank()) return o;
 		if (o.isLiteral()) return rename( (Node_Literal) o );
 		String uri = o.getURI(), newUri = pe.rename(uri);
@@ -102,6 +101,51 @@ public class ModelPrefixEditor {
 		return Node.createLiteral( o.getLiteralLexicalForm(), typeNamed( newURI ) );
 	}
 
+	/**
+	    Answer true iff <code>n</code> may have been produced by renaming
+	    some other node, ie it may have other preimages than itself.
+	*/
+	boolean mayBeResultOfRenaming( Node n ) {
+		if (n.isURI()) return pe.mayBeResultOfRenaming( n.getURI() );
+		if (n.isLiteral()) {
+			String typeURI = n.getLiteralDatatypeURI();
+			return typeURI != null && pe.mayBeResultOfRenaming( typeURI );
+		}
+		return false;
+	}
+
+	/**
+	    Answer the nodes that rename to <code>n</code>. A non-concrete
+	    node stands for itself.
+	*/
+	List<Node> preimages( Node n ) {
+		List<Node> result = new ArrayList<Node>( 2 );
+		if (n.isURI()) {
+			for (String uri: pe.preimages( n.getURI() )) 
+				result.add( uri.equals( n.getURI() ) ? n : Node.createURI( uri ) );
+		} else if (n.isLiteral() && n.getLiteralDatatypeURI() != null) {
+			String typeURI = n.getLiteralDatatypeURI();
+			for (String uri: pe.preimages( typeURI )) 
+				result.add( uri.equals( typeURI ) ? n : Node.createLiteral( n.getLiteralLexicalForm(), typeNamed( uri ) ) );
+		} else {
+			result.add( n );
+		}
+		return result;
+	}
+
+	/**
+	    Answer the triples that rename to <code>t</code>, in a fixed order
+	    (triples that are left alone by renaming come first). 
+	*/
+	List<Triple> preimages( Triple t ) {
+		List<Triple> result = new ArrayList<Triple>( 1 );
+		for (Node S: preimages( t.getSubject() ))
+			for (Node P: preimages( t.getPredicate() ))
+				for (Node O: preimages( t.getObject() ))
+					result.add( Triple.create( S, P, O ) );
+		return result;
+	}
+
 	public RDFNode rename( RDFNode n ) {
 		if (n.isAnon()) return n;
 		if (n.isLiteral()) return rename( (Literal) n );
@@ -0,0 +1,99 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support;
+
+import java.util.*;
+
+/**
+    A map made of a read-only base map and a private overlay that
+    receives all updates, so that a large shared map can be extended
+    for one use without copying it. Entries in the overlay hide those
+    of the base with the same key. Null values are not supported and
+    entries cannot be removed.
+*/
+public class OverlayMap<K, V> extends AbstractMap<K, V> {
+
+	protected final Map<K, V> base;
+
+	protected final Map<K, V> overlay = new HashMap<K, V>();
+
+	protected int hidden = 0;
+
+	public OverlayMap( Map<K, V> base ) {
+		this.base = base;
+	}
+
+	@Override public V get( Object key ) {
+		V v = overlay.get( key );
+		return v == null ? base.get( key ) : v;
+	}
+
+	@Override public boolean containsKey( Object key ) {
+		return overlay.containsKey( key ) || base.containsKey( key );
+	}
+
+	@Override public V put( K key, V value ) {
+		if (value == null) throw new NullPointerException( "OverlayMap does not allow null values" );
+		V old = overlay.put( key, value );
+		if (old != null) return old;
+		V under = base.get( key );
+		if (under != null) hidden += 1;
+		return under;
+	}
+
+	@Override public int size() {
+		return base.size() + overlay.size() - hidden;
+	}
+
+	/**
+	    Answer the entries added to this map, not including those of
+	    the base.
+	*/
+	public Map<K, V> added() {
+		return Collections.unmodifiableMap( overlay );
+	}
+
+	@Override public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+
+			@Override public int size() {
+				return OverlayMap.this.size();
+			}
+
+			@Override public Iterator<Map.Entry<K, V>> iterator() {
+				final Iterator<Map.Entry<K, V>> added = overlay.entrySet().iterator();
+				final Iterator<Map.Entry<K, V>> under = base.entrySet().iterator();
+				return new Iterator<Map.Entry<K, V>>() {
+
+					Map.Entry<K, V> pending = null;
+
+					@Override public boolean hasNext() {
+						if (pending != null || added.hasNext()) return true;
+						while (under.hasNext()) {
+							Map.Entry<K, V> e = under.next();
+							if (!overlay.containsKey( e.getKey() )) { pending = e; return true; }
+						}
+						return false;
+					}
+
+					@Override public Map.Entry<K, V> next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						if (pending == null) return added.next();
+						Map.Entry<K, V> result = new SimpleImmutableEntry<K, V>( pending );
+						pending = null;
+						return result;
+					}
+
+					@Override public void remove() {
+						throw new UnsupportedOperationException( "OverlayMap entries cannot be removed" );
+					}
+				};
+			}
+		};
+	}
+}
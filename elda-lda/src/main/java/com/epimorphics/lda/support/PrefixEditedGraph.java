@@ -0,0 +1,135 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.shared.AddDeniedException;
+import com.hp.hpl.jena.util.iterator.*;
+
+/**
+    A view of a graph with all its URIs renamed by a ModelPrefixEditor.
+    Triples are renamed as they are found, and the concrete nodes of a
+    find pattern are mapped back to the nodes that rename to them, so
+    only those triples that are read cost anything. If renaming makes
+    several triples of the base graph look the same, the view shows one
+    of them. Added triples go to the base graph in a form that renames
+    to them; deletions remove every form.
+
+    <p>Renderers read a graph several times over, so the view remembers
+    the renaming of each URI it meets, and for each renamed node whether
+    the base graph uses more than one node that renames to it. Only a
+    triple with such a node can look the same as another, so only those
+    triples are checked against the base graph. Which nodes are ambiguous
+    is forgotten when triples are added or deleted through the view, but
+    not when the base graph is changed directly; a base graph that gains
+    a collision that way after being read through the view may show both
+    triples.</p>
+*/
+public class PrefixEditedGraph extends GraphBase {
+
+	protected final Graph base;
+
+	protected final ModelPrefixEditor mpe;
+
+	// the renaming of each URI node met so far
+	protected final ConcurrentHashMap<Node, Node> renamedURIs = new ConcurrentHashMap<Node, Node>();
+
+	// for each renamed node met so far, whether base uses several of its preimages
+	protected final ConcurrentHashMap<Node, Boolean> ambiguous = new ConcurrentHashMap<Node, Boolean>();
+
+	public PrefixEditedGraph( Graph base, ModelPrefixEditor mpe ) {
+		this.base = base;
+		this.mpe = mpe;
+	}
+
+	final Map1<Triple, Triple> renamed = new Map1<Triple, Triple>() {
+		@Override public Triple map1( Triple t ) {
+			return rename( t );
+		}
+	};
+
+	final Filter<Triple> firstOfItsRenaming = new Filter<Triple>() {
+		@Override public boolean accept( Triple t ) {
+			return isFirstOfItsRenaming( t );
+		}
+	};
+
+	@Override protected ExtendedIterator<Triple> graphBaseFind( TripleMatch m ) {
+		ExtendedIterator<Triple> result = NullIterator.instance();
+		for (Triple pattern: mpe.preimages( m.asTriple() )) 
+			result = result.andThen( base.find( pattern ) );
+		return result.filterKeep( firstOfItsRenaming ).mapWith( renamed );
+	}
+
+	/**
+	    Answer true unless the renaming of base triple <code>t</code> is
+	    also the renaming of some other base triple which comes before it.
+	*/
+	protected boolean isFirstOfItsRenaming( Triple t ) {
+		Triple r = rename( t );
+		if (!isAmbiguous( r.getSubject() ) && !isAmbiguous( r.getPredicate() ) && !isAmbiguous( r.getObject() )) return true;
+		for (Triple candidate: mpe.preimages( r )) {
+			if (candidate.equals( t )) return true;
+			if (base.contains( candidate )) return false;
+		}
+		return true;
+	}
+
+	Triple rename( Triple t ) {
+		Node S = t.getSubject(), P = t.getPredicate(), O = t.getObject();
+		Node newS = rename( S ), newP = rename( P ), newO = rename( O );
+		if (newS == S && newP == P && newO == O) return t;
+		return Triple.create( newS, newP, newO );
+	}
+
+	private Node rename( Node n ) {
+		if (!n.isURI()) return mpe.rename( n );
+		Node r = renamedURIs.get( n );
+		if (r == null) renamedURIs.put( n, r = mpe.rename( n ) );
+		return r;
+	}
+
+	/**
+	    Answer true iff the base graph uses more than one of the nodes
+	    that rename to <code>r</code>.
+	*/
+	private boolean isAmbiguous( Node r ) {
+		if (r.isBlank()) return false;
+		Boolean known = ambiguous.get( r );
+		if (known == null) {
+			int used = 0;
+			if (mpe.mayBeResultOfRenaming( r ))
+				for (Node n: mpe.preimages( r )) if (uses( n )) used += 1;
+			ambiguous.put( r, known = used > 1 );
+		}
+		return known;
+	}
+
+	private boolean uses( Node n ) {
+		return 
+			base.contains( Node.ANY, Node.ANY, n ) 
+			|| (n.isURI() && (base.contains( n, Node.ANY, Node.ANY ) || base.contains( Node.ANY, n, Node.ANY )))
+			;
+	}
+
+	@Override public void performAdd( Triple t ) {
+		List<Triple> preimages = mpe.preimages( t );
+		if (preimages.isEmpty()) throw new AddDeniedException( "no triple renames to this one", t );
+		base.add( preimages.get(0) );
+		ambiguous.clear();
+	}
+
+	@Override public void performDelete( Triple t ) {
+		for (Triple p: mpe.preimages( t )) base.delete( p );
+		ambiguous.clear();
+	}
+}
@@ -39,6 +39,35 @@ public class PrefixEditor {
 		return subject;
 	}
 	
+	/**
+	    Answer all the strings that rename to <code>renamed</code>. There
+	    may be none (if <code>renamed</code> would itself be renamed and no
+	    renaming produces it) or several (if it is produced by a renaming
+	    and also left alone, or is produced by several renamings).
+	*/
+	public List<String> preimages( String renamed ) {
+		sortRenamingsIfNecessary();
+		List<String> result = new ArrayList<String>( 2 );
+		if (rename( renamed ).equals( renamed )) result.add( renamed );
+		for (PrefixEditor.FromTo ft: renamings) {
+			String candidate = ft.unrename( renamed );
+			if (candidate != null && !result.contains( candidate ) && rename( candidate ).equals( renamed )) 
+				result.add( candidate );
+		}
+		return result;
+	}
+	
+	/**
+	    Answer true iff some renaming produces a string with the same prefix
+	    as <code>renamed</code>, ie if <code>renamed</code> may have more
+	    preimages than itself.
+	*/
+	public boolean mayBeResultOfRenaming( String renamed ) {
+		for (PrefixEditor.FromTo ft: renamings)
+			if (renamed.startsWith( ft.to )) return true;
+		return false;
+	}
+	
 	@Override public boolean equals(Object other) {
 		return other instanceof PrefixEditor && same( (PrefixEditor) other );
 	}
@@ -101,6 +130,13 @@ public class PrefixEditor {
 			}
 			return null;
 		}
+		
+		public String unrename(String renamed) {
+			if (renamed.startsWith( to )) {
+				return from + renamed.substring( to.length() );
+			}
+			return null;
+		}
 	}
 
 	
@@ -18,6 +18,7 @@ import com.epimorphics.lda.query.APIQuery;
 import com.epimorphics.lda.rdfq.*;
 import com.epimorphics.lda.rdfq.RDFQ.Triple;
 import com.epimorphics.lda.textsearch.TextSearchConfig;
+import com.epimorphics.lda.vocabularies.EXTRAS;
 
 public class QuerySupport {
 
@@ -27,6 +28,8 @@ public class QuerySupport {
 
 	public static final Any text_query = RDFQ.uri(TextSearchConfig.JENA_TEXT_QUERY.getURI());
 	
+	public static final Any within_box = RDFQ.uri(EXTRAS.withinBox.getURI());
+	
 	/**
 	    <p>
 	    	Reorder the given triples to try and arrange that query engines with weak
@@ -40,6 +43,8 @@ public class QuerySupport {
 	 	<p>
 	 		Uses of the text query property are pushed early if tqFirst
 	 		is true, and later (just before the types) if it is false. 
+	 		Uses of elda:withinBox, answered from a spatial index, always
+	 		come first.
 	 	</p>
 	 
 	 	@param triples the list of triples to re-order.
@@ -50,8 +55,11 @@ public class QuerySupport {
 		List<Triple> hasLiteral = new ArrayList<Triple>(triples.size());
 		List<Triple> typed = new ArrayList<Triple>(triples.size());
 		List<Triple> lateTextQueries = new ArrayList<Triple>(triples.size());
+		List<Triple> spatial = new ArrayList<Triple>(triples.size());
 		for (Triple t : triples) {
-			if (t.P.equals(text_query))
+			if (t.P.equals(within_box))
+				spatial.add(t);
+			else if (t.P.equals(text_query))
 				(tqFirst ? hasLiteral : lateTextQueries).add(t);
 			else if (t.O instanceof Value && canPromoteSubject(t.S))
 				hasLiteral.add(t);
@@ -62,6 +70,7 @@ public class QuerySupport {
 		}
 	//
 		List<Triple> result = new ArrayList<Triple>(triples.size());
+		result.addAll(spatial);
 		result.addAll(hasLiteral);
 		result.addAll(plain);
 		result.addAll(lateTextQueries);
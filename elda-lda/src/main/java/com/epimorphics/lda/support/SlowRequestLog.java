@@ -0,0 +1,57 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+    The slow-request log. When a request's elapsed time exceeds the
+    threshold, its span tree (including the text of the SPARQL queries
+    noted on the spans) is written to the log named by this class at
+    WARN level. A negative threshold, the default, disables it.
+*/
+public class SlowRequestLog {
+
+	protected static Logger log = LoggerFactory.getLogger( SlowRequestLog.class );
+
+	static volatile long thresholdNanos = -1;
+
+	/**
+	    Set the slow-request threshold to <code>millis</code>
+	    milliseconds; negative disables the log.
+	*/
+	public static void setThreshold( long millis ) {
+		thresholdNanos = millis < 0 ? -1 : millis * 1000000L;
+	}
+
+	/**
+	    Set the threshold from the value of a configuration parameter,
+	    which may be null (leaving the threshold unchanged).
+	*/
+	public static void setThreshold( String millis ) {
+		if (millis == null) return;
+		try {
+			setThreshold( Long.parseLong( millis.trim() ) );
+		} catch (NumberFormatException e) {
+			log.warn( "ignoring slow-request threshold '" + millis + "': not an integer." );
+		}
+	}
+
+	/**
+	    Finish the request timed by <code>t</code> and log it if it
+	    exceeded the threshold. Answer true if it was logged.
+	*/
+	public static boolean check( Times t ) {
+		long elapsed = t.finish();
+		long threshold = thresholdNanos;
+		if (threshold < 0 || elapsed <= threshold) return false;
+		log.warn( "slow request (" + elapsed / 1000000 + "ms):\n" + t.spanTree() );
+		return true;
+	}
+}
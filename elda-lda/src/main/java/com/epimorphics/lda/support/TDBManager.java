@@ -51,9 +51,17 @@ public class TDBManager {
     }
 
     /**
-        The TDB base directory path, not (currently) accessible to the outside.
+        The TDB base directory path.
     */
     protected static String baseTDBPath = "";
+
+    /**
+        Answer the TDB base directory path, empty if there is none
+        (and TDB is held in memory).
+    */
+    public static String getBaseTDBPath() {
+        return baseTDBPath;
+    }
     
     static Logger log = LoggerFactory.getLogger( TDBManager.class );
 
@@ -63,7 +71,7 @@ public class TDBManager {
         Answer the model with the given name in the TDB dataset.
     */
     public static Model getTDBModelNamed( String uri ) {
-        if (dataset == null) dataset = openDataset();
+        Dataset dataset = getDataset();
         Model result = 
             (uri == null || uri.isEmpty()) 
                 ? dataset.getNamedModel( Quad.unionGraph.getURI() )
@@ -75,7 +83,7 @@ public class TDBManager {
     /*
      * Answer the whole dataset for this TDB
      */
-    public static Dataset getDataset() {
+    public static synchronized Dataset getDataset() {
         if (dataset == null) dataset = openDataset();
         return dataset;
     }
@@ -7,18 +7,91 @@
 */
 package com.epimorphics.lda.support;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
     A Times object holds information about the times (and mayhap other
     details) associated with an Elda query.
+    
+    <p>As well as the millisecond phase durations accumulated into the
+    statistics, a Times records a tree of nanosecond Spans, one for
+    each traced phase of the request, which may carry a note such as
+    the text of a SPARQL query. The tree is rooted at a span for the
+    whole request.</p>
 */
 public class Times {
 	
+	/**
+	    A timed phase of a request. A span is begun by Times.begin, which
+	    makes it a child of the innermost span still open, and is closed
+	    by end().
+	*/
+	public static class Span {
+		
+		public final String name;
+		final Span parent;
+		final Times owner;
+		final long start = System.nanoTime();
+		long end = -1;
+		String note;
+		final List<Span> children = new ArrayList<Span>();
+		
+		Span( Times owner, Span parent, String name ) {
+			this.owner = owner;
+			this.parent = parent;
+			this.name = name;
+		}
+		
+		/**
+		    Attach <code>note</code> (eg a query) to this span. Answer this span.
+		*/
+		public Span note( String note ) {
+			this.note = note;
+			return this;
+		}
+		
+		/**
+		    Close this span.
+		*/
+		public void end() {
+			owner.end( this );
+		}
+		
+		/**
+		    Answer the duration of this span in nanoseconds. If it is
+		    still open, answer the time since it began.
+		*/
+		public long durationNanos() {
+			return (end < 0 ? System.nanoTime() : end) - start;
+		}
+		
+		public List<Span> children() {
+			return children;
+		}
+		
+		void appendTo( StringBuilder sb, String indent ) {
+			sb.append( indent ).append( name ).append( ": " )
+				.append( String.format( "%.3f", durationNanos() / 1000000.0 ) ).append( "ms" )
+				.append( end < 0 ? " (unfinished)" : "" )
+				.append( '\n' )
+				;
+			if (note != null) 
+				sb.append( indent ).append( "    | " ).append( note.replaceAll( "\n", "\n" + indent + "    | " ) ).append( '\n' );
+			for (Span child: children) child.appendTo( sb, indent + "  " );
+		}
+	}
+	
+	final Span root;
+	Span current;
+	
 	long selectionDuration;
 	long viewDuration;
 	long startTime;
 	long renderDuration;
 	public String renderFormat;
 	String forPath;
+	String endpoint = "(none)";
 	long endTime;
 	long selectQuerySize;
 	long viewQuerySize;
@@ -26,17 +99,82 @@ public class Times {
 	long stylesheetCompileTime;
 	public boolean usedSelectionCache;
 	public boolean usedViewCache;	
+	long itemCacheLookups;
+	long itemCacheHits;
 
 	public Times( String forPath ) {
 		this.forPath = forPath;
 		this.startTime = System.currentTimeMillis();
 		this.endTime = this.startTime;
+		this.root = this.current = new Span( this, null, forPath );
 	}
 	
 	public Times() {
 		this( "(none)" );
 	}
 	
+	/**
+	    Record the URI template of the endpoint handling this request.
+	*/
+	public void setEndpoint( String endpoint ) {
+		this.endpoint = endpoint;
+	}
+
+	/**
+	    Answer the URI template of the endpoint handling this request,
+	    or "(none)" if it has not been set.
+	*/
+	public String endpoint() {
+		return endpoint;
+	}
+	
+	/**
+	    Begin a span called <code>name</code> nested inside the innermost
+	    open span. The caller must end() it, normally in a finally clause.
+	*/
+	public synchronized Span begin( String name ) {
+		Span s = new Span( this, current, name );
+		current.children.add( s );
+		current = s;
+		return s;
+	}
+	
+	/**
+	    Close <code>s</code>. If it encloses the innermost open span (ie
+	    some nested span was not ended) the enclosing span becomes current.
+	*/
+	synchronized void end( Span s ) {
+		if (s.end < 0) s.end = System.nanoTime();
+		for (Span x = current; x != null; x = x.parent) 
+			if (x == s) { current = s.parent == null ? s : s.parent; return; }
+	}
+	
+	/**
+	    Answer the span covering the whole request.
+	*/
+	public Span root() {
+		return root;
+	}
+	
+	/**
+	    Close the root span, if it is still open, and answer the
+	    request's elapsed time in nanoseconds.
+	*/
+	public long finish() {
+		end( root );
+		return root.durationNanos();
+	}
+	
+	/**
+	    Answer an indented rendering of the span tree, one span per line
+	    with its duration in milliseconds and any note beneath it.
+	*/
+	public synchronized String spanTree() {
+		StringBuilder sb = new StringBuilder();
+		root.appendTo( sb, "" );
+		return sb.toString();
+	}
+	
 	public void setSelectionDuration( long time ) {
 		selectionDuration = time;
 	}
@@ -71,6 +209,23 @@ public class Times {
 		usedViewCache = true;
 	}
 
+	/**
+	    Record that <code>lookups</code> items were looked for in the
+	    item cache and <code>hits</code> of them were found.
+	*/
+	public synchronized void usedItemCache( int lookups, int hits ) {
+		itemCacheLookups += lookups;
+		itemCacheHits += hits;
+	}
+
+	public synchronized long itemCacheLookups() {
+		return itemCacheLookups;
+	}
+
+	public synchronized long itemCacheHits() {
+		return itemCacheHits;
+	}
+
 	public long totalTime() {
 		return endTime - startTime;
 	}
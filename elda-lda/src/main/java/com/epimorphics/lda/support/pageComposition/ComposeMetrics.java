@@ -0,0 +1,152 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.pageComposition;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.epimorphics.lda.cache.Cache;
+import com.epimorphics.lda.support.statistics.EndpointStats;
+import com.epimorphics.lda.support.statistics.Histogram;
+import com.epimorphics.lda.support.statistics.StatsValues;
+
+/**
+    Composes Elda's statistics in the Prometheus text exposition format
+    (version 0.0.4): request counts and latency histograms per endpoint
+    URI template, query latency per source, render time and size per
+    format, and request/hit counts per cache. Everything is read from
+    the lock-free StatsValues structures, so composing is cheap enough
+    to be scraped every few seconds.
+*/
+public class ComposeMetrics {
+
+	/**
+	    Histogram bucket bounds for durations, in milliseconds.
+	*/
+	static final long [] DURATION_BOUNDS =
+		{ 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+	/**
+	    Histogram bucket bounds for sizes, in bytes.
+	*/
+	static final long [] SIZE_BOUNDS =
+		{ 1024, 4096, 16384, 65536, 262144, 1048576, 4194304, 16777216 };
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	public String renderMetrics() {
+		final StringBuilder sb = new StringBuilder();
+	//
+		header( sb, "elda_requests_total", "counter", "Requests rendered, by endpoint." );
+		Map<String, EndpointStats> endpoints = new TreeMap<String, EndpointStats>( StatsValues.endpointStats );
+		for (Map.Entry<String, EndpointStats> e: endpoints.entrySet()) {
+			sample( sb, "elda_requests_total", labels( "endpoint", e.getKey() ), e.getValue().totalTime.count() );
+		}
+		header( sb, "elda_unmatched_requests_total", "counter", "Requests that matched no endpoint." );
+		sample( sb, "elda_unmatched_requests_total", "", StatsValues.failedMatchCount.sum() );
+		header( sb, "elda_failed_requests_total", "counter", "Requests that failed with an error." );
+		sample( sb, "elda_failed_requests_total", "", StatsValues.failedRequestCount.sum() );
+	//
+		header( sb, "elda_request_duration_seconds", "histogram", "Request phase durations, by endpoint." );
+		for (Map.Entry<String, EndpointStats> e: endpoints.entrySet()) {
+			EndpointStats s = e.getValue();
+			String endpoint = labels( "endpoint", e.getKey() );
+			durations( sb, "elda_request_duration_seconds", endpoint + ",phase=\"selection\"", s.selectionTime );
+			durations( sb, "elda_request_duration_seconds", endpoint + ",phase=\"view\"", s.viewTime );
+			durations( sb, "elda_request_duration_seconds", endpoint + ",phase=\"render\"", s.renderTime );
+			durations( sb, "elda_request_duration_seconds", endpoint + ",phase=\"total\"", s.totalTime );
+		}
+		header( sb, "elda_item_cache_lookups_total", "counter", "Items looked for in the item cache, by endpoint." );
+		for (Map.Entry<String, EndpointStats> e: endpoints.entrySet()) {
+			sample( sb, "elda_item_cache_lookups_total", labels( "endpoint", e.getKey() ), e.getValue().itemCacheLookups.sum() );
+		}
+		header( sb, "elda_item_cache_hits_total", "counter", "Items found in the item cache, by endpoint." );
+		for (Map.Entry<String, EndpointStats> e: endpoints.entrySet()) {
+			sample( sb, "elda_item_cache_hits_total", labels( "endpoint", e.getKey() ), e.getValue().itemCacheHits.sum() );
+		}
+	//
+		header( sb, "elda_source_query_duration_seconds", "histogram", "Upstream query durations, by source." );
+		for (Map.Entry<String, Histogram> e: new TreeMap<String, Histogram>( StatsValues.sourceQueryTimes ).entrySet()) {
+			durations( sb, "elda_source_query_duration_seconds", labels( "source", e.getKey() ), e.getValue() );
+		}
+	//
+		header( sb, "elda_render_duration_seconds", "histogram", "Rendering durations, by format." );
+		for (Map.Entry<String, Histogram> e: new TreeMap<String, Histogram>( StatsValues.formatDurations ).entrySet()) {
+			durations( sb, "elda_render_duration_seconds", labels( "format", e.getKey() ), e.getValue() );
+		}
+		header( sb, "elda_render_size_bytes", "histogram", "Rendered sizes, by format." );
+		for (Map.Entry<String, Histogram> e: new TreeMap<String, Histogram>( StatsValues.formatSizes ).entrySet()) {
+			sizes( sb, "elda_render_size_bytes", labels( "format", e.getKey() ), e.getValue() );
+		}
+	//
+		final StringBuilder requests = new StringBuilder(), hits = new StringBuilder(), entries = new StringBuilder();
+		Cache.Registry.reportCounts( new Cache.CountReporter() {
+			@Override public void counts( String policy, String label, String part, long r, long h, long n ) {
+				String l = labels( "policy", policy ) + "," + labels( "cache", label ) + "," + labels( "part", part );
+				sample( requests, "elda_cache_requests_total", l, r );
+				sample( hits, "elda_cache_hits_total", l, h );
+				sample( entries, "elda_cache_entries", l, n );
+			}
+		});
+		header( sb, "elda_cache_requests_total", "counter", "Cache lookups, by cache and part." );
+		sb.append( requests );
+		header( sb, "elda_cache_hits_total", "counter", "Cache lookups that hit, by cache and part." );
+		sb.append( hits );
+		header( sb, "elda_cache_entries", "gauge", "Entries currently held, by cache and part." );
+		sb.append( entries );
+		return sb.toString();
+	}
+
+	private static void header( StringBuilder sb, String name, String type, String help ) {
+		sb.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+		sb.append( "# TYPE " ).append( name ).append( ' ' ).append( type ).append( '\n' );
+	}
+
+	private static void sample( StringBuilder sb, String name, String labels, Object value ) {
+		sb.append( name );
+		if (labels.length() > 0) sb.append( '{' ).append( labels ).append( '}' );
+		sb.append( ' ' ).append( value ).append( '\n' );
+	}
+
+	/**
+	    Append the buckets, sum and count of the millisecond histogram
+	    <code>h</code>, converted to seconds.
+	*/
+	private static void durations( StringBuilder sb, String name, String labels, Histogram h ) {
+		long [] counts = h.cumulativeCounts( DURATION_BOUNDS );
+		for (int i = 0; i < DURATION_BOUNDS.length; i += 1) {
+			sample( sb, name + "_bucket", labels + ",le=\"" + DURATION_BOUNDS[i] / 1000.0 + "\"", counts[i] );
+		}
+		sample( sb, name + "_bucket", labels + ",le=\"+Inf\"", counts[DURATION_BOUNDS.length] );
+		sample( sb, name + "_sum", labels, h.total() / 1000.0 );
+		sample( sb, name + "_count", labels, counts[DURATION_BOUNDS.length] );
+	}
+
+	private static void sizes( StringBuilder sb, String name, String labels, Histogram h ) {
+		long [] counts = h.cumulativeCounts( SIZE_BOUNDS );
+		for (int i = 0; i < SIZE_BOUNDS.length; i += 1) {
+			sample( sb, name + "_bucket", labels + ",le=\"" + SIZE_BOUNDS[i] + "\"", counts[i] );
+		}
+		sample( sb, name + "_bucket", labels + ",le=\"+Inf\"", counts[SIZE_BOUNDS.length] );
+		sample( sb, name + "_sum", labels, h.total() );
+		sample( sb, name + "_count", labels, counts[SIZE_BOUNDS.length] );
+	}
+
+	/**
+	    Answer the label <code>name="value"</code> with the value escaped
+	    as the exposition format requires.
+	*/
+	static String labels( String name, String value ) {
+		String escaped = value
+			.replace( "\\", "\\\\" )
+			.replace( "\"", "\\\"" )
+			.replace( "\n", "\\n" )
+			;
+		return name + "=\"" + escaped + "\"";
+	}
+}
@@ -8,7 +8,10 @@
 package com.epimorphics.lda.support.pageComposition;
 
 import java.util.Map;
+import java.util.TreeMap;
 
+import com.epimorphics.lda.support.statistics.EndpointStats;
+import com.epimorphics.lda.support.statistics.Histogram;
 import com.epimorphics.lda.support.statistics.Interval;
 import com.epimorphics.lda.support.statistics.StatsValues;
 import com.epimorphics.util.Util;
@@ -19,52 +22,87 @@ public class ComposeStatsDisplay {
 		StringBuilder sb = new StringBuilder();
 		sb.append( "<h1>Elda: endpoint statistics.</h2>" );
 	//
-		if (StatsValues.requestCount == 0) {
+		if (StatsValues.requestCount.sum() == 0) {
 			sb.append( "<i>No requests have been processed yet.</i>" );
 		} else {
-			long totalSparqlTime = StatsValues.totalSelectionTime.total + StatsValues.totalViewTime.total;
+			EndpointStats all = StatsValues.allEndpoints();
+			long totalTime = all.totalTime.total();
+			long totalSparqlTime = all.selectionTime.total() + all.viewTime.total();
 			sb.append( "<h2>requests and hits</h2>\n" );
 			sb.append( "<table>\n" );
 			sb.append( "<thead><tr><th>label</th><th>value</th></tr></thead>" );
-			countRow( sb, "total requests", StatsValues.requestCount );
-			countRow( sb, "failed requests", StatsValues.failedRequestCount );
-			countRow( sb, "selection cache hits", StatsValues.totalSelectCacheHits );
-			countRow( sb, "view cache hits", StatsValues.totalViewCacheHits );
+			countRow( sb, "total requests", StatsValues.requestCount.sum() );
+			countRow( sb, "failed requests", StatsValues.failedRequestCount.sum() );
+			countRow( sb, "selection cache hits", StatsValues.totalSelectCacheHits.sum() );
+			countRow( sb, "view cache hits", StatsValues.totalViewCacheHits.sum() );
 			sb.append( "</table>\n" );
 		//
 			sb.append( "<h2>query and rendering timings.</h2>\n" );
 			sb.append( "<table>\n" );			
-			sb.append( "<thead><tr><th>label</th><th>value</th><th>min</th><th>mean</th><th>max</th></tr></thead>" );
-			timeRow( sb, "total elapsed time", StatsValues.totalTime );
-			timeRow( sb, "total item selection time", StatsValues.totalSelectionTime );
-			timeRow( sb, "total view generation time", StatsValues.totalViewTime );
+			sb.append( "<thead><tr><th>label</th><th>value</th><th>min</th><th>mean</th><th>max</th>" + PERCENTILE_HEADINGS + "</tr></thead>" );
+			timeRow( sb, "total elapsed time", all.totalTime );
+			timeRow( sb, "total item selection time", all.selectionTime );
+			timeRow( sb, "total view generation time", all.viewTime );
 			timeRow( sb, "total stylesheet compile time", StatsValues.totalStylesheetCompileTime );
 			timeRow( sb, "total SPARQL time", totalSparqlTime );
-			timeRow( sb, "total rendering time", StatsValues.totalRenderTime );
-			timeRow( sb, "remaining Elda time", StatsValues.totalTime - totalSparqlTime - StatsValues.totalRenderTime.total );
+			timeRow( sb, "total rendering time", all.renderTime );
+			timeRow( sb, "remaining Elda time", totalTime - totalSparqlTime - all.renderTime.total() );
 			sb.append( "</table>\n" );
 		//
 			sb.append( "<h2>query and rendering sizes.</h2>\n" );
 			sb.append( "<table>\n" );
-			sb.append( "<thead><tr><th>label</th><th>value</th><th>min</th><th>mean</th><th>max</th></tr></thead>" );
+			sb.append( "<thead><tr><th>label</th><th>value</th><th>min</th><th>mean</th><th>max</th>" + PERCENTILE_HEADINGS + "</tr></thead>" );
 			sizeRow( sb, "total rendered size", StatsValues.totalRenderSize );
 			sizeRow( sb, "total select query size", StatsValues.totalSelectQuerySize );
 			sizeRow( sb, "total view query size", StatsValues.totalViewQuerySize );
 			sb.append( "</table>\n" );
+		//
+			sb.append( "<h2>latencies by endpoint</h2>\n" );
+			sb.append( "<table>\n" );
+			sb.append( "<thead><tr><th>endpoint</th><th>requests</th>" + PERCENTILE_HEADINGS + "<th>selection p95</th><th>view p95</th><th>render p95</th></tr></thead>\n" );
+			for (Map.Entry<String, EndpointStats> e: new TreeMap<String, EndpointStats>( StatsValues.endpointStats ).entrySet()) {
+				endpointRow( sb, e.getKey(), e.getValue() );
+			}
+			sb.append( "</table>\n" );
+		}
+	//
+		if (StatsValues.reloadCount > 0) {
+			sb.append( "<h2>configuration reloads</h2>\n" );
+			sb.append( "<table>\n" );
+			sb.append( "<thead><tr><th>label</th><th>value</th></tr></thead>" );
+			countRow( sb, "reloads", StatsValues.reloadCount );
+			countRow( sb, "spec files re-read (last reload)", StatsValues.lastReloadFilesLoaded );
+			countRow( sb, "spec files reused (last reload)", StatsValues.lastReloadFilesReused );
+			sb.append( "</table>\n" );
+			sb.append( "<table>\n" );			
+			sb.append( "<thead><tr><th>label</th><th>value</th><th>min</th><th>mean</th><th>max</th></tr></thead>" );
+			timeRow( sb, "total reload time", StatsValues.reloadTimes() );
+			sb.append( "</table>\n" );
+		}
+	//
+		Map<String, Long> loadTimes = StatsValues.specLoadTimes;
+		if (!loadTimes.isEmpty()) {
+			sb.append( "<h2>spec file load times</h2>\n" );
+			sb.append( "<table>\n" );
+			sb.append( "<thead><tr><th>spec file</th><th>load time</th></tr></thead>\n" );
+			for (Map.Entry<String, Long> e: loadTimes.entrySet()) {
+				timeRow( sb, e.getKey(), e.getValue() );
+			}
+			sb.append( "</table>\n" );
 		}
 	//
 		sb.append( "<h2>rendering times by type</h2>\n" );
 		sb.append( "<table>\n" );
-		sb.append( "<thead><tr><th>format</th><th>total</th><th>min</th><th>mean</th><th>max</th></tr></thead>\n" );
-		for (Map.Entry<String, Interval> e: StatsValues.formatDurations.entrySet()) {
+		sb.append( "<thead><tr><th>format</th><th>total</th><th>min</th><th>mean</th><th>max</th>" + PERCENTILE_HEADINGS + "</tr></thead>\n" );
+		for (Map.Entry<String, Histogram> e: StatsValues.formatDurations.entrySet()) {
 			timeRow( sb, e.getKey(), e.getValue() );
 		}
 		sb.append( "</table>\n" );
 	//
 		sb.append( "<h2>rendering sizes by type</h2>\n" );
 		sb.append( "<table>\n" );
-		sb.append( "<thead><tr><th>format</th><th>total</th><th>min</th><th>mean</th><th>max</th></tr></thead>\n" );
-		for (Map.Entry<String, Interval> e: StatsValues.formatSizes.entrySet()) {
+		sb.append( "<thead><tr><th>format</th><th>total</th><th>min</th><th>mean</th><th>max</th>" + PERCENTILE_HEADINGS + "</tr></thead>\n" );
+		for (Map.Entry<String, Histogram> e: StatsValues.formatSizes.entrySet()) {
 			sizeRow( sb, e.getKey(), e.getValue() );
 		}
 		sb.append( "</table>\n" );
@@ -73,13 +111,46 @@ public class ComposeStatsDisplay {
 		return html;
 	}
 	
-	private void sizeRow(StringBuilder sb, String label, Interval i ) {
+	static final String PERCENTILE_HEADINGS = "<th>p50</th><th>p95</th><th>p99</th>";
+	
+	private void sizeRow(StringBuilder sb, String label, Histogram h ) {
+		sb
+			.append( "<tr><td>" ).append( label ).append( ":</td>" )
+			.append( "<td align='right'>" ).append( kb(h.total()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( kb(h.min()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( kb(h.mean()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( kb(h.max()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( kb(h.percentile(50)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( kb(h.percentile(95)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( kb(h.percentile(99)) ).append( "</td>" )
+			.append( "</tr>\n" )
+			;
+	}
+	
+	private void timeRow(StringBuilder sb, String label, Histogram h ) {
 		sb
 			.append( "<tr><td>" ).append( label ).append( ":</td>" )
-			.append( "<td align='right'>" ).append( kb(i.total) ).append( "</td>" )
-			.append( "<td align='right'>" ).append( kb(i.min) ).append( "</td>" )
-			.append( "<td align='right'>" ).append( kb(i.mean()) ).append( "</td>" )
-			.append( "<td align='right'>" ).append( kb(i.max) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.total()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.min()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.mean()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.max()) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.percentile(50)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.percentile(95)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(h.percentile(99)) ).append( "</td>" )
+			.append( "</tr>\n" )
+			;
+	}
+	
+	private void endpointRow(StringBuilder sb, String template, EndpointStats s ) {
+		sb
+			.append( "<tr><td>" ).append( template ).append( "</td>" )
+			.append( "<td align='right'>" ).append( s.totalTime.count() ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(s.totalTime.percentile(50)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(s.totalTime.percentile(95)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(s.totalTime.percentile(99)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(s.selectionTime.percentile(95)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(s.viewTime.percentile(95)) ).append( "</td>" )
+			.append( "<td align='right'>" ).append( ms(s.renderTime.percentile(95)) ).append( "</td>" )
 			.append( "</tr>\n" )
 			;
 	}
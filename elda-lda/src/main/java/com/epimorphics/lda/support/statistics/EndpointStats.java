@@ -0,0 +1,62 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.statistics;
+
+import com.epimorphics.lda.support.Times;
+
+/**
+    The latency histograms for the requests handled by one endpoint
+    (or, when merged, by several): item selection, view generation,
+    rendering, and the total time for the request; and how many of
+    the items it described were looked for, and found, in the item
+    cache.
+*/
+public class EndpointStats {
+
+	public final Histogram selectionTime = new Histogram();
+	public final Histogram viewTime = new Histogram();
+	public final Histogram renderTime = new Histogram();
+	public final Histogram totalTime = new Histogram();
+	public final StripedCounter itemCacheLookups = new StripedCounter();
+	public final StripedCounter itemCacheHits = new StripedCounter();
+
+	/**
+	    Record the timings of the request described by <code>t</code>.
+	*/
+	public void record( Times t ) {
+		selectionTime.record( t.selectionDuration(), t.usedSelectionCache );
+		viewTime.record( t.viewDuration(), t.usedViewCache );
+		renderTime.record( t.renderDuration() );
+		totalTime.record( t.totalTime() );
+		itemCacheLookups.add( t.itemCacheLookups() );
+		itemCacheHits.add( t.itemCacheHits() );
+	}
+
+	/**
+	    Answer the fraction of item cache lookups that hit, or 0 if
+	    there have been none.
+	*/
+	public double itemCacheHitRatio() {
+		long lookups = itemCacheLookups.sum();
+		return lookups == 0 ? 0 : (double) itemCacheHits.sum() / lookups;
+	}
+
+	/**
+	    Add all the timings recorded by <code>other</code> to this
+	    EndpointStats.
+	*/
+	public EndpointStats add( EndpointStats other ) {
+		selectionTime.add( other.selectionTime );
+		viewTime.add( other.viewTime );
+		renderTime.add( other.renderTime );
+		totalTime.add( other.totalTime );
+		itemCacheLookups.add( other.itemCacheLookups.sum() );
+		itemCacheHits.add( other.itemCacheHits.sum() );
+		return this;
+	}
+}
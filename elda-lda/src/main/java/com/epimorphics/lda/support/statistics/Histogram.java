@@ -0,0 +1,242 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+    A Histogram records non-negative values (durations, sizes) into
+    log-linear buckets in the style of HdrHistogram: values below 64
+    have a bucket each, and every larger power-of-two range is split
+    into 32 equal buckets, so any value is reported to within about
+    3% of its true size. It also keeps the count, total, minimum and
+    maximum of the recorded values, so it can stand in for an Interval.
+
+    <p>Buckets cover values up to a fixed highest value, by default an
+    hour in milliseconds; larger values are counted in one overflow
+    bucket, whose values are reported as the maximum recorded. Size
+    histograms use the larger range SIZES.</p>
+
+    <p>Recording is lock-free and may be done concurrently from any
+    number of threads. Histograms with the same bucket layout (all of
+    them) can be merged with <code>add</code>, so per-endpoint
+    histograms can be combined into an overall one when read.</p>
+*/
+public class Histogram {
+
+	static final int SUB_BITS = 5;
+
+	static final int SUB = 1 << SUB_BITS;
+
+	/**
+	    The default highest value bucketed: an hour, in milliseconds.
+	*/
+	public static final long HOUR = 60L * 60 * 1000;
+
+	/**
+	    The highest value bucketed by histograms of sizes: 4Gb.
+	*/
+	public static final long SIZES = 1L << 32;
+
+	protected final long highest;
+
+	protected final int overflow;
+
+	protected final AtomicLongArray counts;
+
+	protected final StripedCounter count = new StripedCounter();
+
+	protected final StripedCounter total = new StripedCounter();
+
+	protected final AtomicLong min = new AtomicLong( Long.MAX_VALUE );
+
+	protected final AtomicLong max = new AtomicLong( Long.MIN_VALUE );
+
+	/**
+	    A histogram bucketing values up to an hour in milliseconds.
+	*/
+	public Histogram() {
+		this( HOUR );
+	}
+
+	/**
+	    A histogram bucketing values up to <code>highest</code>; larger
+	    values share an overflow bucket.
+	*/
+	public Histogram( long highest ) {
+		this.highest = highest;
+		this.overflow = indexFor( highest ) + 1;
+		this.counts = new AtomicLongArray( overflow + 1 );
+	}
+
+	/**
+	    Record one occurrence of <code>value</code>.
+	*/
+	public void record( long value ) {
+		record( value, false );
+	}
+
+	/**
+	    Record one occurrence of <code>value</code>. If <code>suppressMin</code>
+	    is true, do not update the record of the minimum value (as for
+	    Interval, this is used for timings satisfied from a cache).
+	*/
+	public void record( long value, boolean suppressMin ) {
+		long v = value < 0 ? 0 : value;
+		counts.incrementAndGet( slotFor( v ) );
+		count.increment();
+		total.add( v );
+		if (!suppressMin) lower( min, v );
+		raise( max, v );
+	}
+
+	/**
+	    Add all the values recorded by <code>other</code> to this histogram.
+	*/
+	public Histogram add( Histogram other ) {
+		for (int i = 0; i <= other.overflow; i += 1) {
+			long n = other.counts.get( i );
+			if (n > 0) counts.addAndGet( i == other.overflow ? overflow : slotFor( highestValueAt( i ) ), n );
+		}
+		count.add( other.count() );
+		total.add( other.total() );
+		lower( min, other.min.get() );
+		raise( max, other.max.get() );
+		return this;
+	}
+
+	/**
+	    Answer the number of values recorded.
+	*/
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	    Answer the sum of the values recorded.
+	*/
+	public long total() {
+		return total.sum();
+	}
+
+	/**
+	    Answer the smallest (unsuppressed) value recorded, or
+	    Long.MAX_VALUE if there is none.
+	*/
+	public long min() {
+		return min.get();
+	}
+
+	/**
+	    Answer the largest value recorded, or Long.MIN_VALUE if
+	    nothing has been recorded.
+	*/
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	    Answer the mean of all the values recorded. If no values have
+	    arrived, answer -1.
+	*/
+	public long mean() {
+		long n = count();
+		return n == 0 ? -1 : total() / n;
+	}
+
+	/**
+	    Answer the value at or below which <code>percent</code> percent of
+	    the recorded values fall, accurate to the width of its bucket. If
+	    no values have been recorded, answer -1. The buckets are read in
+	    one pass without copying them, so values recorded meanwhile may
+	    or may not be counted.
+	*/
+	public long percentile( double percent ) {
+		long n = count();
+		if (n == 0) return -1;
+		long rank = Math.max( 1, (long) Math.ceil( percent / 100.0 * n ) );
+		long seen = 0;
+		for (int i = 0; i < overflow; i += 1) {
+			seen += counts.get( i );
+			if (seen >= rank) return Math.min( highestValueAt( i ), max() );
+		}
+		return max();
+	}
+
+	/**
+	    Answer, for each of the ascending <code>bounds</code>, the number of
+	    recorded values no greater than it, followed by the total number
+	    of values, all taken from one snapshot. A bucket that straddles a
+	    bound is counted above it.
+	*/
+	public long [] cumulativeCounts( long [] bounds ) {
+		long [] result = new long[bounds.length + 1];
+		long running = 0;
+		int j = 0;
+		for (int i = 0; i <= overflow; i += 1) {
+			long n = counts.get( i );
+			if (n == 0) continue;
+			long high = i == overflow ? Long.MAX_VALUE : highestValueAt( i );
+			while (j < bounds.length && high > bounds[j]) result[j++] = running;
+			running += n;
+		}
+		while (j < bounds.length) result[j++] = running;
+		result[bounds.length] = running;
+		return result;
+	}
+
+	private int slotFor( long v ) {
+		return v > highest ? overflow : indexFor( v );
+	}
+
+	/**
+	    Answer the bucket index for the non-negative value <code>v</code>.
+	*/
+	static int indexFor( long v ) {
+		if (v < 2 * SUB) return (int) v;
+		int shift = (63 - Long.numberOfLeadingZeros( v )) - SUB_BITS;
+		return SUB * shift + (int) (v >>> shift);
+	}
+
+	/**
+	    Answer the largest value that falls into bucket <code>i</code>.
+	*/
+	static long highestValueAt( int i ) {
+		if (i < 2 * SUB) return i;
+		int shift = i / SUB - 1;
+		long sub = i % SUB + SUB;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	private static void lower( AtomicLong m, long v ) {
+		while (true) {
+			long current = m.get();
+			if (v >= current || m.compareAndSet( current, v )) return;
+		}
+	}
+
+	private static void raise( AtomicLong m, long v ) {
+		while (true) {
+			long current = m.get();
+			if (v <= current || m.compareAndSet( current, v )) return;
+		}
+	}
+
+	@Override public String toString() {
+		return "<Histogram"
+			+ " min: " + min()
+			+ " max: " + max()
+			+ " tot: " + total()
+			+ " num: " + count()
+			+ " p50: " + percentile( 50 )
+			+ " p99: " + percentile( 99 )
+			+ ">"
+			;
+	}
+}
@@ -1,81 +1,182 @@
 /*
     See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
     for the licence for this software.
-    
+
     (c) Copyright 2011 Epimorphics Limited
     $Id$
 */
 package com.epimorphics.lda.support.statistics;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.epimorphics.lda.support.Times;
 
+/**
+    Elda's request statistics. The per-request values are held in
+    striped counters and histograms so that accumulating them does
+    not serialise the threads completing responses; readers see
+    values that may be very slightly behind concurrent updates.
+*/
 public class StatsValues {
 
-	public static long failedMatchCount = 0;
-	public static long requestCount = 0;
-	public static long failedRequestCount = 0;
-	public static long totalViewCacheHits = 0;
-	public static long totalSelectCacheHits = 0;
-	public static long totalTime = 0;
-	
-	public static Interval totalSelectionTime = new Interval();
-	public static Interval totalViewTime = new Interval();
-	public static Interval totalRenderTime = new Interval();
-	public static Interval totalRenderSize = new Interval();
-	public static Interval totalSelectQuerySize = new Interval();
-	public static Interval totalViewQuerySize = new Interval();
-	public static Interval totalStylesheetCompileTime = new Interval();
+	public static final StripedCounter failedMatchCount = new StripedCounter();
+	public static final StripedCounter requestCount = new StripedCounter();
+	public static final StripedCounter failedRequestCount = new StripedCounter();
+	public static final StripedCounter totalViewCacheHits = new StripedCounter();
+	public static final StripedCounter totalSelectCacheHits = new StripedCounter();
+
+	public static final Histogram totalRenderSize = new Histogram( Histogram.SIZES );
+	public static final Histogram totalSelectQuerySize = new Histogram( Histogram.SIZES );
+	public static final Histogram totalViewQuerySize = new Histogram( Histogram.SIZES );
+	public static final Histogram totalStylesheetCompileTime = new Histogram();
+
+	/**
+	    The latency histograms for each endpoint, keyed by its API's prefix
+	    path followed by its URI template.
+	*/
+	public static final ConcurrentMap<String, EndpointStats> endpointStats =
+		new ConcurrentHashMap<String, EndpointStats>();
+
+	public static final ConcurrentMap<String, Histogram> formatDurations =
+		new ConcurrentHashMap<String, Histogram>();
+
+	public static final ConcurrentMap<String, Histogram> formatSizes =
+		new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	    The upstream query latencies of each Source, keyed by its name.
+	*/
+	public static final ConcurrentMap<String, Histogram> sourceQueryTimes =
+		new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	    The time taken to load and construct the specs of each spec file
+	    of the current configuration, keyed by file name, when it was
+	    last read.
+	*/
+	public static volatile Map<String, Long> specLoadTimes = 
+		Collections.<String, Long>emptyMap();
+
+	public static volatile long reloadCount = 0;
+	public static volatile long lastReloadFilesLoaded = 0;
+	public static volatile long lastReloadFilesReused = 0;
 	
+	private static final Interval totalReloadTime = new Interval();
+
+	/**
+	    Record a configuration reload which took <code>duration</code>
+	    milliseconds, re-reading <code>loaded</code> spec files and
+	    carrying over <code>reused</code> unchanged ones.
+	*/
+	public static synchronized void configReloaded( long duration, int loaded, int reused ) {
+		reloadCount += 1;
+		lastReloadFilesLoaded = loaded;
+		lastReloadFilesReused = reused;
+		totalReloadTime.update( duration );
+	}
+
+	/**
+	    Record the load times of the spec files of a newly-loaded
+	    configuration, replacing those of the previous one.
+	*/
+	public static void specFilesLoaded( Map<String, Long> loadTimes ) {
+		specLoadTimes = Collections.unmodifiableMap( new TreeMap<String, Long>( loadTimes ) );
+	}
+
+	/**
+	    Answer a copy of the reload-time interval, taken under the same
+	    lock as the updates so that its fields are consistent.
+	*/
+	public static synchronized Interval reloadTimes() {
+		Interval result = new Interval();
+		result.min = totalReloadTime.min;
+		result.max = totalReloadTime.max;
+		result.total = totalReloadTime.total;
+		result.count = totalReloadTime.count;
+		return result;
+	}
+
 	/**
 	    Record an occurence of a non-matched URI.
 	*/
-	public static synchronized void endpointNoMatch() {
-		failedMatchCount += 1;
+	public static void endpointNoMatch() {
+		failedMatchCount.increment();
 	}
-	
-	public static synchronized void endpointException() {
-		failedRequestCount += 1;
+
+	public static void endpointException() {
+		failedRequestCount.increment();
 	}
-	
+
 	/**
 	    Accumulate more statistics information from the given Times
 	    object.
 	*/
-	public static synchronized void accumulate( Times t ) {
-		requestCount += 1;
-		totalTime += t.totalTime();
-		totalSelectionTime.update( t.selectionDuration(), t.usedSelectionCache );
-		totalViewTime.update( t.viewDuration(), t.usedViewCache );
-		totalRenderTime.update( t.renderDuration() );
-		totalRenderSize.update( t.renderSize() );
-		totalSelectQuerySize.update( t.selectQuerySize() );
-		totalViewQuerySize.update( t.viewQuerySize() );
-		totalStylesheetCompileTime.update( t.stylesheetCompileDuration() );
-		StatsValues.updateFormatDurations( t.renderFormat, t.renderDuration() );
-		StatsValues.updateFormatSizes( t.renderFormat, t.renderSize() );
-		if (t.usedViewCache) totalViewCacheHits += 1;
-		if (t.usedSelectionCache) totalSelectCacheHits += 1;
+	public static void accumulate( Times t ) {
+		requestCount.increment();
+		statsFor( t.endpoint() ).record( t );
+		totalRenderSize.record( t.renderSize() );
+		totalSelectQuerySize.record( t.selectQuerySize() );
+		totalViewQuerySize.record( t.viewQuerySize() );
+		totalStylesheetCompileTime.record( t.stylesheetCompileDuration() );
+		updateFormatDurations( t.renderFormat, t.renderDuration() );
+		updateFormatSizes( t.renderFormat, t.renderSize() );
+		if (t.usedViewCache) totalViewCacheHits.increment();
+		if (t.usedSelectionCache) totalSelectCacheHits.increment();
 	}
-	
-	public static void updateFormatDependentValues(Map<String, Interval> x, String format, long duration) {
-		Interval i = x.get( format );
-		if (i == null) x.put( format, i = new Interval() );
-		i.count += 1;
-		i.update( duration );
+
+	/**
+	    Answer the EndpointStats for the endpoint with the given
+	    key (prefix path and URI template), creating it if necessary.
+	*/
+	public static EndpointStats statsFor( String endpoint ) {
+		EndpointStats s = endpointStats.get( endpoint );
+		if (s == null) {
+			EndpointStats created = new EndpointStats();
+			s = endpointStats.putIfAbsent( endpoint, created );
+			if (s == null) s = created;
+		}
+		return s;
 	}
-	
-	public static Map<String, Interval> formatDurations = new HashMap<String, Interval>();
-	public static Map<String, Interval> formatSizes = new HashMap<String, Interval>();
-	
+
+	/**
+	    Answer a new EndpointStats holding the merged timings of all
+	    endpoints.
+	*/
+	public static EndpointStats allEndpoints() {
+		EndpointStats result = new EndpointStats();
+		for (EndpointStats s: endpointStats.values()) result.add( s );
+		return result;
+	}
+
+	/**
+	    Record that a query to the named source took <code>duration</code>
+	    milliseconds.
+	*/
+	public static void sourceQuery( String source, long duration ) {
+		histogramFor( sourceQueryTimes, source ).record( duration );
+	}
+
+	public static void updateFormatDependentValues( ConcurrentMap<String, Histogram> x, String format, long value ) {
+		histogramFor( x, format == null ? "(none)" : format ).record( value );
+	}
+
+	private static Histogram histogramFor( ConcurrentMap<String, Histogram> x, String key ) {
+		Histogram h = x.get( key );
+		if (h == null) {
+			Histogram created = new Histogram( x == formatSizes ? Histogram.SIZES : Histogram.HOUR );
+			h = x.putIfAbsent( key, created );
+			if (h == null) h = created;
+		}
+		return h;
+	}
+
 	public static void updateFormatDurations( String format, long duration ) {
 		updateFormatDependentValues( formatDurations, format, duration );
 	}
-	
+
 	public static void updateFormatSizes( String format, long size ) {
 		updateFormatDependentValues( formatSizes, format, size );
 	}
-
 }
@@ -0,0 +1,67 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+    A counter that many threads can update without contending on a
+    single memory location. Each thread adds into one of several
+    cells (chosen by its thread id); the value of the counter is the
+    sum of the cells. Cells are spaced a cache line apart so that
+    neighbouring cells do not share a line.
+*/
+public class StripedCounter {
+
+	static final int PAD = 8;
+
+	static final int STRIPES = stripesFor( Runtime.getRuntime().availableProcessors() );
+
+	protected final AtomicLongArray cells = new AtomicLongArray( STRIPES * PAD );
+
+	/**
+	    Answer the smallest power of two at least twice <code>processors</code>.
+	*/
+	static int stripesFor( int processors ) {
+		int n = 1;
+		while (n < processors * 2) n <<= 1;
+		return n;
+	}
+
+	/**
+	    Add <code>x</code> to this counter.
+	*/
+	public void add( long x ) {
+		cells.addAndGet( cell(), x );
+	}
+
+	/**
+	    Add one to this counter.
+	*/
+	public void increment() {
+		add( 1 );
+	}
+
+	/**
+	    Answer the current value of this counter. Updates that happen
+	    while the sum is being taken may or may not be included.
+	*/
+	public long sum() {
+		long result = 0;
+		for (int i = 0; i < STRIPES; i += 1) result += cells.get( i * PAD );
+		return result;
+	}
+
+	private static int cell() {
+		return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PAD;
+	}
+
+	@Override public String toString() {
+		return Long.toString( sum() );
+	}
+}
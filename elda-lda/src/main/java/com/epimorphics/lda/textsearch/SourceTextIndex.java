@@ -0,0 +1,210 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.textsearch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epimorphics.lda.sources.SourceContent;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.shared.WrappedException;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    The text index of the data of one source. The index is built the
+    first time a query searches it, rather than when the source is
+    loaded, so sources that are never searched pay nothing. Thereafter,
+    whenever the source's marker has changed (looked at no more often
+    than every <code>RECHECK</code> milliseconds), the index is brought
+    up to date by adding and deleting only the literals that differ;
+    a search naming a property not yet indexed adds that property.
+    Searches that arrive while the index is being brought up to date use
+    it as it was, rather than waiting.
+
+    <p>An index held in a directory survives restarts: if its recorded
+    marker is the source's current marker it is used as it is, and
+    otherwise it is brought up to date in the same way.</p>
+*/
+public class SourceTextIndex {
+
+	static final Logger log = LoggerFactory.getLogger( SourceTextIndex.class );
+
+	/**
+	    The properties indexed from the start.
+	*/
+	public static final Set<String> DEFAULT_PROPERTIES = new HashSet<String>( Arrays.asList
+		( RDFS.label.getURI()
+		, "http://www.w3.org/2004/02/skos/core#prefLabel"
+		) );
+
+	static final long RECHECK = 5000;
+
+	static {
+		TextQueryPF.register( TextSearchConfig.JENA_TEXT_QUERY );
+	}
+
+	static final Map<SourceTextIndex, Boolean> all = Collections.synchronizedMap( new WeakHashMap<SourceTextIndex, Boolean>() );
+
+	protected final String name;
+	protected final SourceContent content;
+	protected final File directory;
+
+	// held while the index is built, updated, or rebuilt
+	protected final ReentrantLock maintaining = new ReentrantLock();
+
+	protected volatile TextIndex index;
+	protected volatile long checked;
+	protected String marker;
+
+	/**
+	    A text index of <code>content</code>, named <code>name</code> in
+	    log messages, held in <code>directory</code> or, if that is null,
+	    in memory.
+	*/
+	public SourceTextIndex( String name, SourceContent content, File directory ) {
+		this.name = name;
+		this.content = content;
+		this.directory = directory;
+		all.put( this, Boolean.TRUE );
+	}
+
+	/**
+	    A text index, held in memory, of the unchanging graph <code>g</code>.
+	*/
+	public static SourceTextIndex inMemory( String name, final Graph g ) {
+		SourceContent c = new SourceContent() {
+			@Override public Graph getGraph() { return g; }
+			@Override public String getMarker() { return null; }
+		};
+		return new SourceTextIndex( name, c, null );
+	}
+
+	/**
+	    Make this index available to the text query property function when
+	    <code>qe</code> is executed.
+	*/
+	public QueryExecution attach( QueryExecution qe ) {
+		qe.getContext().set( TextQueryPF.INDEX, this );
+		return qe;
+	}
+
+	/**
+	    Answer the index, made up to date with the content and including
+	    <code>property</code> (unless that is null).
+	*/
+	public TextIndex current( String property ) {
+		TextIndex i = index;
+		if (i != null && (property == null || i.getProperties().contains( property ))) {
+			if (System.currentTimeMillis() - checked <= RECHECK || !maintaining.tryLock()) return i;
+		} else {
+			maintaining.lock();
+		}
+		try {
+			return maintain( property );
+		} finally {
+			maintaining.unlock();
+		}
+	}
+
+	private TextIndex maintain( String property ) {
+		long now = System.currentTimeMillis();
+		if (index == null) {
+			TextIndex i = new TextIndex( openDirectory() );
+			marker = content.getMarker();
+			checked = now;
+			Set<String> properties = i.getProperties();
+			if (properties.isEmpty()) {
+				properties.addAll( DEFAULT_PROPERTIES );
+				if (property != null) properties.add( property );
+				long origin = System.currentTimeMillis();
+				int n = i.build( content.getGraph(), properties, marker );
+				log.info( "built text index for " + name + ": " + n + " literals in " + (System.currentTimeMillis() - origin) + "ms" );
+			} else if (!same( marker, i.getMarker() )) {
+				long origin = System.currentTimeMillis();
+				int n = i.update( content.getGraph(), properties, marker );
+				log.info( "updated text index for " + name + ": " + n + " changes in " + (System.currentTimeMillis() - origin) + "ms" );
+			}
+			index = i;
+		} else if (now - checked > RECHECK) {
+			checked = now;
+			String latest = content.getMarker();
+			if (!same( latest, marker )) {
+				marker = latest;
+				long origin = System.currentTimeMillis();
+				int n = index.update( content.getGraph(), index.getProperties(), marker );
+				log.info( "updated text index for " + name + ": " + n + " changes in " + (System.currentTimeMillis() - origin) + "ms" );
+			}
+		}
+		if (property != null) {
+			Set<String> properties = index.getProperties();
+			if (properties.add( property )) index.update( content.getGraph(), properties, marker );
+		}
+		return index;
+	}
+
+	/**
+	    Rebuild this index from scratch, keeping the properties it has
+	    indexed so far. Answer false if it has not been built yet.
+	*/
+	public boolean rebuild() {
+		maintaining.lock();
+		try {
+			if (index == null) return false;
+			marker = content.getMarker();
+			checked = System.currentTimeMillis();
+			Set<String> properties = index.getProperties();
+			properties.addAll( DEFAULT_PROPERTIES );
+			int n = index.build( content.getGraph(), properties, marker );
+			log.info( "rebuilt text index for " + name + ": " + n + " literals" );
+			return true;
+		} finally {
+			maintaining.unlock();
+		}
+	}
+
+	/**
+	    Rebuild every text index that has been built. Answer how many
+	    there were.
+	*/
+	public static int rebuildAll() {
+		List<SourceTextIndex> indexes;
+		synchronized (all) { indexes = new ArrayList<SourceTextIndex>( all.keySet() ); }
+		int count = 0;
+		for (SourceTextIndex i: indexes) {
+			if (i.rebuild()) count += 1;
+		}
+		return count;
+	}
+
+	private Directory openDirectory() {
+		if (directory == null) return new RAMDirectory();
+		try {
+			directory.mkdirs();
+			return FSDirectory.open( directory );
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		}
+	}
+
+	private static boolean same( String a, String b ) {
+		return a == null ? b == null : a.equals( b );
+	}
+
+	@Override public String toString() {
+		return "SourceTextIndex{" + name + "}";
+	}
+}
@@ -0,0 +1,377 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.textsearch;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.*;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Version;
+
+import com.epimorphics.lda.exceptions.EldaException;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.shared.WrappedException;
+
+/**
+    A Lucene index of the literal values of some properties of the
+    URI subjects of a graph. Each (subject, property, literal) triple
+    is one document, holding the subject URI, the property, the
+    literal's language (if any) and its analysed text, and a key
+    identifying the triple so that the index can be brought up to date
+    with the graph by adding and deleting only the triples that differ.
+    Each commit records the properties indexed and a marker saying
+    which state of the data the index reflects.
+
+    <p>Building and updating are serialised, but searches are not: they
+    use whichever commit was latest when they began, which a later build
+    or update does not close until they have finished with it.</p>
+*/
+public class TextIndex {
+
+	static final Version VERSION = Version.LUCENE_35;
+
+	static final String URI = "uri";
+	static final String PROPERTY = "property";
+	static final String LANG = "lang";
+	static final String TEXT = "text";
+	static final String KEY = "key";
+
+	static final String MARKER = "marker";
+	static final String PROPERTIES = "properties";
+
+	/**
+	    A subject found by a search, with the score of its best matching
+	    literal.
+	*/
+	public static class Hit {
+
+		public final String uri;
+		public final float score;
+
+		public Hit( String uri, float score ) {
+			this.uri = uri;
+			this.score = score;
+		}
+
+		@Override public String toString() {
+			return uri + " (" + score + ")";
+		}
+	}
+
+	/**
+	    A reader of the index as of one commit, and a searcher over it.
+	    The reader is reference counted; it is closed when the commit has
+	    been replaced and the searches using it are done.
+	*/
+	static class Opened {
+
+		final IndexReader reader;
+		final IndexSearcher searcher;
+
+		Opened( IndexReader reader ) {
+			this.reader = reader;
+			this.searcher = new IndexSearcher( reader );
+		}
+
+		void release() {
+			try { reader.decRef(); } catch (IOException e) { throw new WrappedException( e ); }
+		}
+	}
+
+	protected final Directory directory;
+	protected final Analyzer analyzer = new StandardAnalyzer( VERSION );
+
+	// the latest commit, replaced by reopen; null if not yet opened
+	protected volatile Opened opened;
+
+	// true if the directory has been looked at and held no index
+	protected volatile boolean absent;
+
+	public TextIndex( Directory directory ) {
+		this.directory = directory;
+	}
+
+	/**
+	    Answer true if the directory holds an index.
+	*/
+	public boolean exists() {
+		try {
+			return IndexReader.indexExists( directory );
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		}
+	}
+
+	/**
+	    Answer the marker recorded by the last commit, or null if
+	    there is none.
+	*/
+	public String getMarker() {
+		return commitUserData().get( MARKER );
+	}
+
+	/**
+	    Answer the properties indexed as of the last commit.
+	*/
+	public Set<String> getProperties() {
+		Set<String> result = new TreeSet<String>();
+		String properties = commitUserData().get( PROPERTIES );
+		if (properties != null && properties.length() > 0) result.addAll( Arrays.asList( properties.split( " " ) ) );
+		return result;
+	}
+
+	private Map<String, String> commitUserData() {
+		Opened o = acquire();
+		if (o == null) return new HashMap<String, String>();
+		try {
+			return o.reader.getCommitUserData();
+		} finally {
+			o.release();
+		}
+	}
+
+	/**
+	    Replace the content of this index with the values of
+	    <code>properties</code> in <code>g</code>, recording
+	    <code>marker</code>. Answer the number of literals indexed.
+	*/
+	public synchronized int build( Graph g, Set<String> properties, String marker ) {
+		IndexWriter w = writer( IndexWriterConfig.OpenMode.CREATE );
+		int added = 0;
+		try {
+			for (String p: properties) {
+				for (Triple t: g.find( Node.ANY, Node.createURI( p ), Node.ANY ).toList()) {
+					if (indexable( t )) { w.addDocument( document( t ) ); added += 1; }
+				}
+			}
+			w.commit( userData( properties, marker ) );
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		} finally {
+			close( w );
+		}
+		reopen();
+		return added;
+	}
+
+	/**
+	    Bring this index up to date with the values of <code>properties</code>
+	    in <code>g</code>, adding the literals it lacks and deleting those
+	    no longer present, and record <code>marker</code>. Answer the number
+	    of documents added and deleted.
+	*/
+	public synchronized int update( Graph g, Set<String> properties, String marker ) {
+		Set<String> stale = keys();
+		IndexWriter w = writer( IndexWriterConfig.OpenMode.CREATE_OR_APPEND );
+		int changed = 0;
+		try {
+			for (String p: properties) {
+				for (Triple t: g.find( Node.ANY, Node.createURI( p ), Node.ANY ).toList()) {
+					if (indexable( t ) && !stale.remove( key( t ) )) { w.addDocument( document( t ) ); changed += 1; }
+				}
+			}
+			for (String k: stale) w.deleteDocuments( new Term( KEY, k ) );
+			changed += stale.size();
+			w.commit( userData( properties, marker ) );
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		} finally {
+			close( w );
+		}
+		reopen();
+		return changed;
+	}
+
+	/**
+	    Answer up to <code>limit</code> subjects with a literal matching
+	    the Lucene query <code>text</code>, restricted to the values of
+	    <code>property</code> unless that is null, best match first.
+	*/
+	public List<Hit> search( String property, String text, int limit ) {
+		List<Hit> result = new ArrayList<Hit>();
+		if (limit < 1) return result;
+		Query q = parse( text );
+		if (property != null) {
+			BooleanQuery b = new BooleanQuery();
+			b.add( q, BooleanClause.Occur.MUST );
+			b.add( new TermQuery( new Term( PROPERTY, property ) ), BooleanClause.Occur.MUST );
+			q = b;
+		}
+		Opened o = acquire();
+		if (o == null) return result;
+		try {
+			Set<String> seen = new HashSet<String>();
+			int wanted = limit * 2;
+			while (true) {
+				TopDocs found = o.searcher.search( q, wanted );
+				result.clear();
+				seen.clear();
+				for (ScoreDoc sd: found.scoreDocs) {
+					String uri = o.searcher.doc( sd.doc ).get( URI );
+					if (seen.add( uri )) {
+						result.add( new Hit( uri, sd.score ) );
+						if (result.size() == limit) return result;
+					}
+				}
+				if (found.totalHits <= wanted) return result;
+				wanted *= 2;
+			}
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		} finally {
+			o.release();
+		}
+	}
+
+	private Query parse( String text ) {
+		try {
+			return new QueryParser( VERSION, TEXT, analyzer ).parse( text );
+		} catch (ParseException e) {
+			EldaException.BadRequest( "text search '" + text + "' is not a legal query: " + e.getMessage() );
+			return /* never */ null;
+		}
+	}
+
+	public synchronized void close() {
+		Opened o = opened;
+		opened = null;
+		absent = false;
+		if (o != null) o.release();
+	}
+
+	private static boolean indexable( Triple t ) {
+		return t.getSubject().isURI() && t.getObject().isLiteral();
+	}
+
+	private Document document( Triple t ) {
+		Node o = t.getObject();
+		Document d = new Document();
+		d.add( new Field( URI, t.getSubject().getURI(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS ) );
+		d.add( new Field( PROPERTY, t.getPredicate().getURI(), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS ) );
+		String lang = o.getLiteralLanguage();
+		if (lang != null && lang.length() > 0) d.add( new Field( LANG, lang, Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS ) );
+		d.add( new Field( TEXT, o.getLiteralLexicalForm(), Field.Store.NO, Field.Index.ANALYZED ) );
+		d.add( new Field( KEY, key( t ), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS ) );
+		return d;
+	}
+
+	/**
+	    The key of a triple: the hex MD5 digest of its N-Triples-ish
+	    rendering, so that keys are short and fixed-length.
+	*/
+	static String key( Triple t ) {
+		try {
+			MessageDigest md = MessageDigest.getInstance( "MD5" );
+			byte [] digest = md.digest( (t.getSubject() + " " + t.getPredicate() + " " + t.getObject()).getBytes( "UTF-8" ) );
+			StringBuilder sb = new StringBuilder( 32 );
+			for (byte b: digest) sb.append( Character.forDigit( (b >> 4) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new WrappedException( e );
+		} catch (UnsupportedEncodingException e) {
+			throw new WrappedException( e );
+		}
+	}
+
+	private Set<String> keys() {
+		Set<String> result = new HashSet<String>();
+		Opened o = acquire();
+		if (o == null) return result;
+		try {
+			IndexReader r = o.reader;
+			for (int i = 0; i < r.maxDoc(); i += 1)
+				if (!r.isDeleted( i )) result.add( r.document( i ).get( KEY ) );
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		} finally {
+			o.release();
+		}
+		return result;
+	}
+
+	private static Map<String, String> userData( Set<String> properties, String marker ) {
+		Map<String, String> result = new HashMap<String, String>();
+		StringBuilder sb = new StringBuilder();
+		for (String p: new TreeSet<String>( properties )) sb.append( sb.length() == 0 ? "" : " " ).append( p );
+		result.put( PROPERTIES, sb.toString() );
+		if (marker != null) result.put( MARKER, marker );
+		return result;
+	}
+
+	private IndexWriter writer( IndexWriterConfig.OpenMode mode ) {
+		try {
+			return new IndexWriter( directory, new IndexWriterConfig( VERSION, analyzer ).setOpenMode( mode ) );
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		}
+	}
+
+	private static void close( IndexWriter w ) {
+		try { w.close(); } catch (IOException e) { throw new WrappedException( e ); }
+	}
+
+	/**
+	    Answer the latest commit, its reader's reference count incremented
+	    so that it stays open until released, or null if there is no index.
+	    The directory is looked at only until it is first opened.
+	*/
+	private Opened acquire() {
+		while (true) {
+			Opened o = opened;
+			if (o == null) {
+				if (absent) return null;
+				o = openExisting();
+				if (o == null) return null;
+			}
+			if (o.reader.tryIncRef()) return o;
+		}
+	}
+
+	private synchronized Opened openExisting() {
+		if (opened == null && !absent) {
+			try {
+				if (exists()) opened = new Opened( IndexReader.open( directory ) );
+				else absent = true;
+			} catch (IOException e) {
+				throw new WrappedException( e );
+			}
+		}
+		return opened;
+	}
+
+	/**
+	    Make the latest commit the one that searches use; the one it
+	    replaces is closed when the searches using it are done.
+	*/
+	private void reopen() {
+		Opened old = opened;
+		try {
+			IndexReader changed = old == null ? IndexReader.open( directory ) : IndexReader.openIfChanged( old.reader );
+			if (changed != null) {
+				opened = new Opened( changed );
+				absent = false;
+				if (old != null) old.release();
+			}
+		} catch (IOException e) {
+			throw new WrappedException( e );
+		}
+	}
+}
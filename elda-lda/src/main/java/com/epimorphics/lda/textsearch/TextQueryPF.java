@@ -0,0 +1,97 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.textsearch;
+
+import java.util.*;
+
+import com.epimorphics.lda.exceptions.EldaException;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import com.hp.hpl.jena.sparql.pfunction.PropFuncArg;
+import com.hp.hpl.jena.sparql.pfunction.PropertyFunctionBase;
+import com.hp.hpl.jena.sparql.pfunction.PropertyFunctionRegistry;
+import com.hp.hpl.jena.sparql.util.IterLib;
+import com.hp.hpl.jena.sparql.util.Symbol;
+
+/**
+    The text query property function, answering the triple patterns
+    that APIQuery generates for <code>_search</code> from the text index
+    attached to the query execution by its source. The subject is the
+    item, or a list of the item and a variable for its score; the object
+    is the search string or a list of an optional property, the search
+    string, and an optional limit. The items are bound best match first.
+    Without a property, every indexed property is searched. If no index
+    is attached, as when the query went to a remote endpoint which did
+    not recognise the property, there are no results.
+*/
+public class TextQueryPF extends PropertyFunctionBase {
+
+	/**
+	    The context symbol under which a source attaches its text index.
+	*/
+	public static final Symbol INDEX = Symbol.create( "http://www.epimorphics.com/vocabularies/lda#textIndex" );
+
+	public static final int DEFAULT_LIMIT = 10000;
+
+	/**
+	    Make <code>p</code> a text query property for every query executed
+	    locally.
+	*/
+	public static void register( Property p ) {
+		PropertyFunctionRegistry.get().put( p.getURI(), TextQueryPF.class );
+	}
+
+	@Override public QueryIterator exec( Binding binding, PropFuncArg subject, Node predicate, PropFuncArg object, ExecutionContext cxt ) {
+		SourceTextIndex source = (SourceTextIndex) cxt.getContext().get( INDEX );
+		if (source == null) return IterLib.noResults( cxt );
+	//
+		Node item = value( binding, subject.isList() ? subject.getArg( 0 ) : subject.getArg() );
+		Node score = subject.isList() && subject.getArgListSize() > 1 ? subject.getArg( 1 ) : null;
+	//
+		List<Node> args = object.isList() ? object.getArgList() : Arrays.asList( object.getArg() );
+		String property = null;
+		String text = null;
+		int limit = DEFAULT_LIMIT;
+		for (Node a: args) {
+			Node v = value( binding, a );
+			if (v.isURI() && property == null && text == null) property = v.getURI();
+			else if (v.isLiteral() && text == null) text = v.getLiteralLexicalForm();
+			else if (v.isLiteral() && v.getLiteralValue() instanceof Number) limit = ((Number) v.getLiteralValue()).intValue();
+			else EldaException.BadRequest( "unsuitable argument " + v + " to text query property " + predicate );
+		}
+		if (text == null) return IterLib.noResults( cxt );
+	//
+		List<Binding> result = new ArrayList<Binding>();
+		for (TextIndex.Hit h: source.current( property ).search( property, text, limit )) {
+			Node uri = Node.createURI( h.uri );
+			if (item.isVariable() || item.equals( uri )) {
+				BindingMap b = BindingFactory.create( binding );
+				if (item.isVariable()) b.add( Var.alloc( item ), uri );
+				if (score != null && score.isVariable()) b.add( Var.alloc( score ), Node.createLiteral( Float.toString( h.score ), null, XSDDatatype.XSDfloat ) );
+				result.add( b );
+			}
+		}
+		return new QueryIterPlainWrapper( result.iterator(), cxt );
+	}
+
+	private static Node value( Binding b, Node n ) {
+		if (n.isVariable()) {
+			Node v = b.get( Var.alloc( n ) );
+			if (v != null) return v;
+		}
+		return n;
+	}
+}
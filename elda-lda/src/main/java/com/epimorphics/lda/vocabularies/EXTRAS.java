@@ -38,6 +38,15 @@ public class EXTRAS {
     /** <p></p> */
     public static final Property construct = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#construct" );
     
+    /** <p>The most sets of counts that may be cached for the API's data source.</p> */
+    public static final Property countCacheEntries = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#countCacheEntries" );
+    
+    /** <p>How many seconds cached counts of an endpoint's selections remain current.</p> */
+    public static final Property countCacheSeconds = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#countCacheSeconds" );
+    
+    /** <p>Marks a page whose total and facet counts are still being computed.</p> */
+    public static final Property countsPending = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#countsPending" );
+    
     /** <p></p> */
     public static final Property describeAllLabel = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#describeAllLabel" );
     
@@ -47,12 +56,36 @@ public class EXTRAS {
     /** <p></p> */
     public static final Property element = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#element" );
     
+    /** <p>Whether list pages report the total number of items selected: true, false (the default), or optional (only with _count=yes).</p> */
+    public static final Property enableCounting = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#enableCounting" );
+    
     /** <p>If given the value true, then Elda generates an ETag for its results.</p> */
     public static final Property enableETags = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#enableETags" );
     
     /** <p></p> */
     public static final Property enhanceViewWith = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#enhanceViewWith" );
     
+    /** <p>The most exports of an API's list endpoints that may run at once.</p> */
+    public static final Property exportConcurrency = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#exportConcurrency" );
+    
+    /** <p>If given the value true, the list endpoints of an API may be exported in bulk with _export.</p> */
+    public static final Property exportEnabled = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#exportEnabled" );
+    
+    /** <p>The most items per second an export may write; 0 for no limit.</p> */
+    public static final Property exportItemsPerSecond = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#exportItemsPerSecond" );
+    
+    /** <p>The number of items an export describes at a time.</p> */
+    public static final Property exportWindowSize = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#exportWindowSize" );
+    
+    /** <p>Links a list page to the counts of the values of one facet property over all its items.</p> */
+    public static final Property facet = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#facet" );
+    
+    /** <p>A property whose values are counted over all the items a list endpoint selects when it counts.</p> */
+    public static final Property facetProperty = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#facetProperty" );
+    
+    /** <p>Links a facet of a list page to one of its values and the number of items having it.</p> */
+    public static final Property facetValue = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#facetValue" );
+    
     /** <p></p> */
     public static final Property feedAuthorProperties = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#feedAuthorProperties" );
     
@@ -80,12 +113,30 @@ public class EXTRAS {
     /** <p></p> */
     public static final Property ifStarts = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#ifStarts" );
     
+    /** <p>The most triples of single-item descriptions that may be cached for the API's data source; 0 for none.</p> */
+    public static final Property itemCacheTriples = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#itemCacheTriples" );
+    
+    /** <p>The number of runs the items of a JSON list page may be encoded in, in parallel.</p> */
+    public static final Property jsonParallelism = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#jsonParallelism" );
+    
+    /** <p>The fewest items a JSON list page must have to be encoded in parallel.</p> */
+    public static final Property jsonParallelThreshold = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#jsonParallelThreshold" );
+    
+    /** <p></p> */
+    public static final Property languageFilterMode = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#languageFilterMode" );
+    
+    /** <p>The property giving the latitude of items for near-lat queries (default geo:lat).</p> */
+    public static final Property latProperty = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#latProperty" );
+    
     /** <p></p> */
     public static final Property listURL = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#listURL" );
     
     /** <p></p> */
     public static final Property loadedFrom = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#loadedFrom" );
     
+    /** <p>The property giving the longitude of items for near-long queries (default geo:long).</p> */
+    public static final Property longProperty = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#longProperty" );
+    
     /** <p></p> */
     public static final Property match = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#match" );
     
@@ -95,6 +146,9 @@ public class EXTRAS {
     /** <p></p> */
     public static final Property metadataOptions = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#metadataOptions" );
     
+    /** <p>The layout, elda:prettyLayout or elda:fastLayout, of a Turtle or RDF/XML formatter.</p> */
+    public static final Property rdfLayout = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#rdfLayout" );
+    
     /** <p></p> */
     public static final Property replaceStartBy = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#replaceStartBy" );
     
@@ -107,6 +161,9 @@ public class EXTRAS {
     /** <p></p> */
     public static final Property sparqlQuery = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#sparqlQuery" );
     
+    /** <p>Whether near-lat/near-long queries may use the spatial index of an in-process data source (default true).</p> */
+    public static final Property spatialIndex = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#spatialIndex" );
+    
     /** <p></p> */
     public static final Property supportsNestedSelect = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#supportsNestedSelect" );
     
@@ -133,6 +190,9 @@ public class EXTRAS {
     /** <p></p> */
     public static final Property wantsContext = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#wantsContext" );
     
+    /** <p>The property function selecting the items whose coordinates lie within a box, answered from a source's spatial index.</p> */
+    public static final Property withinBox = m_model.createProperty( "http://www.epimorphics.com/vocabularies/lda#withinBox" );
+    
     /** <p></p> */
     public static final Resource Combiner = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#Combiner" );
     
@@ -142,12 +202,24 @@ public class EXTRAS {
     /** <p></p> */
     public static final Resource VelocityFormatter = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#VelocityFormatter" );
     
+    /** <p>RDF is written in a single pass, without prefixes or nesting.</p> */
+    public static final Resource fastLayout = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#fastLayout" );
+    
+    /** <p></p> */
+    public static final Resource filterInModel = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#filterInModel" );
+    
+    /** <p></p> */
+    public static final Resource filterInQuery = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#filterInQuery" );
+    
     /** <p></p> */
     public static final Resource preferLocalnames = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#preferLocalnames" );
     
     /** <p></p> */
     public static final Resource preferPrefixes = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#preferPrefixes" );
     
+    /** <p>RDF is written with prefixes, grouped properties, and nested blank nodes.</p> */
+    public static final Resource prettyLayout = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#prettyLayout" );
+    
     /** <p></p> */
     public static final Resource roundTrip = m_model.createResource( "http://www.epimorphics.com/vocabularies/lda#roundTrip" );
     
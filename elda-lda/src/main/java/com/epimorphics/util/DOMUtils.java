@@ -141,22 +141,37 @@ public class DOMUtils
 		{
 		try
 			{
-			TransformerFactory tf = TransformerFactory.newInstance();
 			if (transformFilePath == null) 
-				return tf.newTransformer();
+				return TransformerFactory.newInstance().newTransformer();
 			else 
-				synchronized (DOMUtils.class) {
-					URL u = rc.pathAsURL( Bindings.expandVariables( rc, transformFilePath ) );
-					Templates t = cache.get( u );
-					if (t == null) {
-						long origin = System.currentTimeMillis();
-						t = tf.newTemplates( new StreamSource( u.toExternalForm() ) );
-						long after = System.currentTimeMillis();
-						times.setStylesheetCompileTime( after - origin );
-						cache.put( u, t );
-					}
-					return t.newTransformer();
+				return getTemplates( times, rc, transformFilePath ).newTransformer();
+			}
+		catch (TransformerConfigurationException e) 
+			{ throw new WrappedException( e.getMessage() + " [" + transformFilePath + "]", e ); }
+		}
+	
+	/**
+	    Answer the compiled stylesheet at <code>transformFilePath</code>
+	    (after variable expansion using <code>rc</code>), compiling it and
+	    remembering the result if it has not been compiled already. Any
+	    compilation time is recorded in <code>times</code>.
+	*/
+	public static Templates getTemplates( Times times, Bindings rc, String transformFilePath ) 
+		{
+		try
+			{
+			synchronized (DOMUtils.class) {
+				URL u = rc.pathAsURL( Bindings.expandVariables( rc, transformFilePath ) );
+				Templates t = cache.get( u );
+				if (t == null) {
+					long origin = System.currentTimeMillis();
+					t = TransformerFactory.newInstance().newTemplates( new StreamSource( u.toExternalForm() ) );
+					long after = System.currentTimeMillis();
+					times.setStylesheetCompileTime( after - origin );
+					cache.put( u, t );
 				}
+				return t;
+			}
 			}
 		catch (TransformerConfigurationException e) 
 			{ throw new WrappedException( e.getMessage() + " [" + transformFilePath + "]", e ); }
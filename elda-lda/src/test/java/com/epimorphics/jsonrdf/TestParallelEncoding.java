@@ -0,0 +1,209 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.jsonrdf;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+import com.epimorphics.lda.shortnames.PropertyInfoView;
+import com.epimorphics.lda.support.CycleFinder;
+import com.epimorphics.lda.vocabularies.API;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    Encoding the items of a list page in parallel must give exactly the
+    text that encoding them in order does. The models are random list
+    pages, some of which have cycles, shared blank nodes, or properties
+    without settled names, which must make the encoder fall back.
+*/
+public class TestParallelEncoding {
+
+	static final String NS = "eh:/";
+
+	ThreadPoolExecutor pool;
+
+	@Before public void setUp() {
+		pool = ParallelEncoding.newPool( 4 );
+	}
+
+	@After public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test public void testParallelEncodingIsSequentialEncoding() {
+		int parallelRuns = 0;
+		for (int seed = 0; seed < 80; seed += 1) {
+			Random r = new Random( seed );
+			Page page = new Page( r );
+			ParallelEncoding pe = new ParallelEncoding( 2 + r.nextInt( 7 ), 1, pool );
+			String expected = encode( page, null ).text;
+			Encoded actual = encode( page, pe );
+			assertEquals( "seed " + seed, expected, actual.text );
+			if (actual.timing.chunks() > 1) parallelRuns += 1;
+			else assertNotNull( actual.timing.sequentialBecause() );
+		}
+		assertTrue( "only " + parallelRuns + " pages were encoded in parallel", parallelRuns > 30 );
+	}
+
+	@Test public void testFallsBackOnCycles() {
+		Page page = new Page( new Random( 7 ), false );
+		page.items.get(0).addProperty( page.next, page.shared.get(0) );
+		page.shared.get(0).addProperty( page.next, page.items.get(0) );
+		Encoded e = encode( page, new ParallelEncoding( 4, 1, pool ) );
+		assertEquals( "items reach a cycle", e.timing.sequentialBecause() );
+		assertEquals( encode( page, null ).text, e.text );
+	}
+
+	@Test public void testFallsBackWhenFewItems() {
+		Page page = new Page( new Random( 3 ) );
+		Encoded e = encode( page, new ParallelEncoding( 4, 100000, pool ) );
+		assertEquals( 0, e.timing.chunks() );
+		assertTrue( e.timing.sequentialBecause().startsWith( "fewer than" ) );
+	}
+
+	@Test public void testFallsBackWhenPoolIsBusy() throws Exception {
+		ThreadPoolExecutor one = new ThreadPoolExecutor( 1, 1, 1, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( 1 ) );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		Runnable wait = new Runnable() {
+			@Override public void run() {
+				try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+			}
+		};
+		try {
+			one.execute( wait );
+			one.execute( wait );
+			Page page = new Page( new Random( 11 ), false );
+			Encoded e = encode( page, new ParallelEncoding( 4, 1, one ) );
+			assertEquals( "encoder pool busy", e.timing.sequentialBecause() );
+			assertEquals( encode( page, null ).text, e.text );
+		} finally {
+			release.countDown();
+			one.shutdown();
+		}
+	}
+
+	static class Encoded {
+		final String text;
+		final ParallelEncoding.Timing timing;
+
+		Encoded( String text, ParallelEncoding.Timing timing ) {
+			this.text = text;
+			this.timing = timing;
+		}
+	}
+
+	static Encoded encode( Page page, ParallelEncoding pe ) {
+		StringWriter w = new StringWriter();
+		List<Resource> roots = new ArrayList<Resource>();
+		roots.add( page.root );
+		ReadContext c = new PropertyInfoView( new Context(), page.names );
+		ParallelEncoding.Timing t = Encoder.getForOneResult( c ).encodeRecursive( page.model, roots, CycleFinder.findCyclics( page.model ), w, true, pe );
+		return new Encoded( w.toString(), t );
+	}
+
+	/**
+	    A random list page: items that are mostly resources with literal,
+	    nested blank node, list, and shared resource values, some bare
+	    URIs and literals; and, unless they are excluded, perhaps a shared
+	    blank node, a cycle, or an unnamed property.
+	*/
+	static class Page {
+
+		final Model model = ModelFactory.createDefaultModel();
+		final Resource root = model.createResource( NS + "page" );
+		final List<Resource> items = new ArrayList<Resource>();
+		final List<Resource> shared = new ArrayList<Resource>();
+		final List<Property> properties = new ArrayList<Property>();
+		final Map<String, String> names = new HashMap<String, String>();
+		final Property next;
+
+		Page( Random r ) {
+			this( r, true );
+		}
+
+		Page( Random r, boolean awkward ) {
+			for (int i = 0; i < 6; i += 1) properties.add( property( "p" + i ) );
+			next = property( "next" );
+			for (int i = 0; i < 5; i += 1) {
+				Resource s = model.createResource( NS + "shared/" + i );
+				s.addProperty( properties.get(0), "shared " + i );
+				shared.add( s );
+			}
+			List<RDFNode> members = new ArrayList<RDFNode>();
+			int n = 10 + r.nextInt( 150 );
+			for (int i = 0; i < n; i += 1) {
+				int kind = r.nextInt( 20 );
+				if (kind == 0) {
+					members.add( model.createLiteral( "plain item " + i ) );
+				} else if (kind == 1) {
+					members.add( model.createResource( NS + "bare/" + i ) );
+				} else {
+					Resource item = kind == 2 ? model.createResource() : model.createResource( NS + "item/" + i );
+					fill( r, item, 2 );
+					items.add( item );
+					members.add( item );
+				}
+			}
+			root.addProperty( properties.get(1), "a list page" );
+			root.addProperty( API.items, model.createList( members.iterator() ) );
+			if (awkward && items.size() > 2) {
+				int trouble = r.nextInt( 8 );
+				if (trouble == 1) {
+					Resource b = model.createResource();
+					b.addProperty( properties.get(2), "shared blank" );
+					items.get(1).addProperty( next, b );
+					items.get( items.size() - 1 ).addProperty( next, b );
+				} else if (trouble == 2) {
+					items.get( items.size() - 1 ).addProperty( next, shared.get(1) );
+					shared.get(1).addProperty( next, items.get( items.size() - 1 ) );
+				} else if (trouble == 3) {
+					items.get( r.nextInt( items.size() ) ).addProperty( model.createProperty( NS + "other/p0" ), "unnamed" );
+				}
+			}
+			names.put( API.items.getURI(), "items" );
+		}
+
+		Property property( String local ) {
+			Property p = model.createProperty( NS + "vocab/" + local );
+			names.put( p.getURI(), local );
+			return p;
+		}
+
+		void fill( Random r, Resource x, int depth ) {
+			int count = 1 + r.nextInt( 5 );
+			for (int k = 0; k < count; k += 1) {
+				Property p = properties.get( r.nextInt( properties.size() ) );
+				switch (r.nextInt( depth > 0 ? 7 : 4 )) {
+					case 0: x.addProperty( p, "text " + r.nextInt( 30 ) ); break;
+					case 1: x.addProperty( p, "chaîne " + r.nextInt( 30 ), "fr" ); break;
+					case 2: x.addLiteral( p, model.createTypedLiteral( "" + r.nextInt( 1000 ), XSDDatatype.XSDinteger ) ); break;
+					case 3: x.addProperty( p, shared.get( r.nextInt( shared.size() ) ) ); break;
+					case 4:
+					case 5: {
+						Resource b = model.createResource();
+						fill( r, b, depth - 1 );
+						x.addProperty( p, b );
+						break;
+					}
+					case 6: {
+						List<RDFNode> elements = new ArrayList<RDFNode>();
+						for (int e = r.nextInt( 4 ); e > 0; e -= 1) elements.add( model.createLiteral( "element " + e ) );
+						x.addProperty( p, model.createList( elements.iterator() ) );
+						break;
+					}
+				}
+			}
+		}
+	}
+}
@@ -100,5 +100,13 @@ public class TestRecursiveEncoder {
                 "   {'q':'<r3>','_about':'<r2>'}" +
                 "]}]", "http://www.epimorphics.com/tools/example#" );
     }
+    
+    @Test
+    public void testOnlySharedBNodesAreIdentified() throws IOException {
+        testRecursiveEncoding(":r :p _:b. :r2 :p _:b. _:b :q 'foo'. :r :s _:c. _:c :q 'bar'.", new String[]{":r", ":r2"}, 
+                "[{'_about':'<r>','p':{'_about':'_:1','q':'foo'},'s':{'q':'bar'}}," +
+                " {'_about':'<r2>','p':{'_about':'_:1','q':'foo'}}" +
+                "]", "http://www.epimorphics.com/tools/example#" );
+    }
 }
 
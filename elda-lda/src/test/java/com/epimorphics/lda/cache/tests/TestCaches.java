@@ -1,6 +1,7 @@
 package com.epimorphics.lda.cache.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.List;
 
@@ -87,4 +88,16 @@ public class TestCaches
 		c.cacheDescription( resources, "view.string.third", rs );
 		assertEquals( 1, c.numEntries() );
 		}
+	
+	@Test public void testInvalidateClearsButRetainsCache() 
+		{
+		Source s = new FakeSource( "invalidated" );
+		Controller cm = new LimitEntriesController();
+		Cache c = cm.cacheFor( s, "10" );
+		c.cacheSelection( "SELECT ?item {}", resources );
+		assertEquals( 1, c.numEntries() );
+		cm.invalidate( s );
+		assertEquals( 0, c.numEntries() );
+		assertSame( c, cm.cacheFor( s, "10" ) );
+		}
 	}
@@ -0,0 +1,221 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.cache.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.cache.*;
+import com.epimorphics.lda.core.VarSupply;
+import com.epimorphics.lda.core.View;
+import com.epimorphics.lda.rdfq.RDFQ;
+import com.epimorphics.lda.rdfq.Variable;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.*;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    Pages described through the item cache must be isomorphic to the
+    same pages described without it, whatever the view; only the items
+    not already cached are described, and items whose descriptions
+    cannot be split apart are not cached.
+*/
+public class TestItemCache {
+
+	static final String EX = "http://example.com/";
+
+	static final int ITEMS = 14;
+
+	static File data;
+
+	static APISpec spec;
+
+	@BeforeClass public static void generate() throws IOException {
+		data = File.createTempFile( "item-cache", ".ttl" );
+		Writer w = new OutputStreamWriter( new FileOutputStream( data ), "UTF-8" );
+		try {
+			w.write( "@prefix rdfs: <" + RDFS.getURI() + "> .\n" );
+			for (int i = 0; i < ITEMS; i += 1) {
+				w.write( item( i ) + " a <" + EX + "Thing>; rdfs:label 'item " + i + "', 'objet " + i + "'@fr" );
+				w.write( "; <" + EX + "district> <" + EX + "district/" + (i % 3) + ">" );
+				w.write( "; <" + EX + "address> [<" + EX + "street> 'street " + i + "']" );
+				w.write( " .\n" );
+			}
+			for (int d = 0; d < 3; d += 1)
+				w.write( "<" + EX + "district/" + d + "> rdfs:label 'district " + d + "' .\n" );
+			w.write( item( 4 ) + " <" + EX + "owner> _:shared .\n" );
+			w.write( item( 5 ) + " <" + EX + "owner> _:shared .\n" );
+			w.write( "_:shared rdfs:label 'shared' .\n" );
+			w.write( item( 7 ) + " <" + EX + "next> " + item( 8 ) + " .\n" );
+		} finally {
+			w.close();
+		}
+		Model specModel = ModelIOUtils.modelFromTurtle
+			( ":root a api:API; api:sparqlEndpoint <local:" + data.getAbsolutePath() + ">." );
+		Resource root = specModel.createResource( specModel.expandPrefix( ":root" ) );
+		spec = new APISpec( EldaFileManager.get(), root, LoadsNothing.instance );
+	}
+
+	@AfterClass public static void tidy() {
+		data.delete();
+	}
+
+	static String item( int i ) {
+		return "<" + EX + "item/" + i + ">";
+	}
+
+	static View chains( String... dotted ) {
+		return new View( "chains", View.Type.T_CHAINS, chainList( dotted ) );
+	}
+
+	static List<PropertyChain> chainList( String... dotted ) {
+		List<PropertyChain> chains = new ArrayList<PropertyChain>();
+		for (String d: dotted) {
+			List<Property> properties = new ArrayList<Property>();
+			for (String p: d.split( "\\." ))
+				properties.add( p.equals( "label" ) ? RDFS.label : p.equals( "type" ) ? RDF.type : ResourceFactory.createProperty( EX + p ) );
+			chains.add( new PropertyChain( properties ) );
+		}
+		return chains;
+	}
+
+	static List<Resource> items( int from, int to ) {
+		List<Resource> result = new ArrayList<Resource>();
+		for (int i = from; i < to; i += 1) result.add( ResourceFactory.createResource( EX + "item/" + i ) );
+		return result;
+	}
+
+	@Test public void testSlidingPagesAreIsomorphicToUncached() {
+		View describeWithChains = new View( "described", View.Type.T_DESCRIBE, chainList( "district.label" ) );
+		View [] views = new View[]
+			{ View.DESCRIBE
+			, View.ALL
+			, View.BASIC
+			, describeWithChains
+			, chains( "type", "label", "district.label", "address.street", "owner.label", "next.label" )
+			};
+		for (View v: views) {
+			ItemCache cache = newItemCache();
+			for (int first = 0; first + 5 <= ITEMS; first += 1) {
+				List<Resource> page = items( first, first + 5 );
+				Model plain = describe( v, page, null, new Controls() );
+				Model cached = describe( v, page, cache, new Controls() );
+				if (!plain.isIsomorphicWith( cached ))
+					fail( "page " + first + " of view " + v + " differs when cached:\n" + plain.difference( cached ) + "\nv.\n" + cached.difference( plain ) );
+			}
+			assertTrue( "view " + v + " cached nothing", cache.size() > 0 );
+		}
+	}
+
+	@Test public void testOnlyMissingItemsAreDescribed() {
+		ItemCache cache = newItemCache();
+		describe( View.DESCRIBE, items( 0, 3 ), cache, new Controls() );
+		Controls c = new Controls();
+		Model m = ModelFactory.createDefaultModel();
+		String query = View.DESCRIBE.fetchDescriptionsFor( c, "", items( 1, 4 ), m, spec, new Vars(), null, cache );
+		assertTrue( query, query.contains( "item/3" ) );
+		assertFalse( query, query.contains( "item/1" ) );
+		assertEquals( 3, c.times.itemCacheLookups() );
+		assertEquals( 2, c.times.itemCacheHits() );
+		assertTrue( describe( View.DESCRIBE, items( 1, 4 ), null, new Controls() ).isIsomorphicWith( m ) );
+	}
+
+	@Test public void testSharedBlankNodesAreNotCached() {
+		ItemCache cache = newItemCache();
+		describe( View.DESCRIBE, items( 4, 7 ), cache, new Controls() );
+		assertEquals( 1, cache.size() );
+		Controls c = new Controls();
+		describe( View.DESCRIBE, items( 4, 7 ), cache, c );
+		assertEquals( 1, c.times.itemCacheHits() );
+	}
+
+	@Test public void testItemsDescribingOtherItemsAreNotCached() {
+		ItemCache cache = newItemCache();
+		describe( View.ALL, items( 7, 9 ), cache, new Controls() );
+		assertEquals( 1, cache.size() );
+	}
+
+	@Test public void testTemplateViewsDoNotUseTheCache() {
+		ItemCache cache = newItemCache();
+		View template = View.newTemplateView( "t", "?item <" + RDFS.label.getURI() + "> ?l ." );
+		describe( template, items( 0, 3 ), cache, new Controls() );
+		assertEquals( 0, cache.size() );
+		assertEquals( 0, cache.requests() );
+	}
+
+	@Test public void testLeastRecentlyUsedAreDroppedToKeepWithinBudget() {
+		ItemCache cache = new ItemCache();
+		cache.allowBudget( 5 );
+		cache.put( "v", "A", triples( 2 ) );
+		cache.put( "v", "B", triples( 2 ) );
+		assertNotNull( cache.get( "v", "A" ) );
+		cache.put( "v", "C", triples( 2 ) );
+		assertNull( cache.get( "v", "B" ) );
+		assertNotNull( cache.get( "v", "A" ) );
+		assertNotNull( cache.get( "v", "C" ) );
+		assertEquals( 4, cache.triples() );
+		cache.put( "v", "D", triples( 6 ) );
+		assertNull( cache.get( "v", "D" ) );
+		assertEquals( 2, cache.size() );
+	}
+
+	@Test public void testNothingIsKeptWithoutABudget() {
+		ItemCache cache = new ItemCache();
+		cache.put( "v", "A", triples( 1 ) );
+		assertEquals( 0, cache.size() );
+	}
+
+	@Test public void testClearingTheCachesClearsTheItemCache() {
+		Cache c = Cache.Registry.cacheFor( "perma-cache", spec.getDataSource() );
+		c.getItemCache().allowBudget( 10 );
+		c.getItemCache().put( "v", "A", triples( 1 ) );
+		assertEquals( 1, c.getItemCache().size() );
+		Cache.Registry.clearAll();
+		assertEquals( 0, c.getItemCache().size() );
+	}
+
+	static ItemCache newItemCache() {
+		ItemCache cache = new ItemCache();
+		cache.allowBudget( 100000 );
+		return cache;
+	}
+
+	static Triple [] triples( int n ) {
+		Triple [] result = new Triple[n];
+		for (int i = 0; i < n; i += 1)
+			result[i] = Triple.create( Node.createURI( EX + "S" ), RDFS.label.asNode(), Node.createLiteral( "" + i ) );
+		return result;
+	}
+
+	static Model describe( View v, List<Resource> page, ItemCache cache, Controls c ) {
+		Model m = ModelFactory.createDefaultModel();
+		v.fetchDescriptionsFor( c, "", page, m, spec, new Vars(), null, cache );
+		return m;
+	}
+
+	static class Vars implements VarSupply {
+
+		int count = 0;
+
+		@Override public Variable newVar() {
+			return RDFQ.var( "?v" + ++count );
+		}
+	}
+}
@@ -0,0 +1,343 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.counting.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.cache.CountCache;
+import com.epimorphics.lda.cache.PermaCache;
+import com.epimorphics.lda.core.*;
+import com.epimorphics.lda.counting.Counts;
+import com.epimorphics.lda.query.APIQuery;
+import com.epimorphics.lda.renderers.Renderer;
+import com.epimorphics.lda.specs.APIEndpointSpec;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.Controls;
+import com.epimorphics.lda.support.EldaFileManager;
+import com.epimorphics.lda.support.Times;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.epimorphics.lda.tests_support.MakeData;
+import com.epimorphics.lda.vocabularies.API;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.lda.vocabularies.OpenSearch;
+import com.epimorphics.util.Triad;
+import com.epimorphics.util.URIUtils;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+    Total and facet counts of list endpoints over local fixture data:
+    the first page of a selection is pending, and every page of it then
+    has the same counts from one computation; counting is per endpoint
+    and optional with _count; and the count cache runs one computation
+    however many ask at once, recomputing counts that are too old or
+    that failed.
+*/
+public class TestCounting {
+
+	static final String EX = "http://example.com/";
+
+	static final int THINGS = 37;
+
+	static File data;
+
+	static APISpec spec;
+
+	PermaCache cache;
+
+	Map<String, APIEndpoint> endpoints;
+
+	@BeforeClass public static void generate() throws IOException {
+		data = File.createTempFile( "counting", ".ttl" );
+		Writer w = new OutputStreamWriter( new FileOutputStream( data ), "UTF-8" );
+		String [] colours = { "red", "green", "blue" };
+		try {
+			for (int i = 0; i < THINGS; i += 1)
+				w.write( "<" + EX + "thing/" + i + "> a <" + EX + "Thing>; <" + EX + "colour> <" + EX + "colour/" + colours[i % 3] + ">; <" + EX + "size> " + i + " .\n" );
+			for (int i = 0; i < 5; i += 1)
+				w.write( "<" + EX + "other/" + i + "> a <" + EX + "Other>; <" + EX + "colour> <" + EX + "colour/purple> .\n" );
+		} finally {
+			w.close();
+		}
+		String selector = "api:selector [ api:where '?item a <" + EX + "Thing>' ]";
+		Model m = ModelIOUtils.modelFromTurtle
+			( ":root a api:API; api:sparqlEndpoint <local:" + data.getAbsolutePath() + ">"
+			+ "; api:endpoint :counted, :optional, :plain; elda:facetProperty <" + EX + "colour> ."
+			+ "\n:counted a api:ListEndpoint; api:uriTemplate '/counted'; " + selector + "; elda:enableCounting true ."
+			+ "\n:optional a api:ListEndpoint; api:uriTemplate '/optional'; " + selector + "; elda:enableCounting 'optional' ."
+			+ "\n:plain a api:ListEndpoint; api:uriTemplate '/plain'; " + selector + " ."
+			+ "\n<" + EX + "size> api:label 'size'; rdfs:range xsd:integer ."
+			);
+		spec = new APISpec( EldaFileManager.get(), m.createResource( m.expandPrefix( ":root" ) ), LoadsNothing.instance );
+	}
+
+	@AfterClass public static void tidy() {
+		data.delete();
+	}
+
+	@Before public void endpoints() {
+		cache = new PermaCache( "counting" );
+		endpoints = new HashMap<String, APIEndpoint>();
+		for (APIEndpointSpec eps: spec.getEndpoints())
+			endpoints.put( eps.getURITemplate(), new APIEndpointImpl( eps, cache ) );
+	}
+
+	@Test public void testPagesShareOneCount() throws InterruptedException {
+		assertPending( page( "/counted", "_pageSize=10" ) );
+		awaitCounts();
+		for (int p = 0; p < 4; p += 1) {
+			Resource page = page( "/counted", "_pageSize=10&_page=" + p );
+			assertEquals( THINGS, page.getProperty( OpenSearch.totalResults ).getLong() );
+			assertFalse( page.hasProperty( EXTRAS.countsPending ) );
+		}
+		assertEquals( 1, cache.getCountCache().computations() );
+	}
+
+	@Test public void testFacetCounts() throws InterruptedException {
+		page( "/counted", "" );
+		awaitCounts();
+		Map<String, Long> expected = new HashMap<String, Long>();
+		expected.put( EX + "colour/red", 13L );
+		expected.put( EX + "colour/green", 12L );
+		expected.put( EX + "colour/blue", 12L );
+		assertEquals( expected, facet( page( "/counted", "_page=2" ), EX + "colour" ) );
+	}
+
+	@Test public void testFilteredSelectionsAreCountedSeparately() throws InterruptedException {
+		page( "/counted", "" );
+		assertPending( page( "/counted", "min-size=30" ) );
+		awaitCounts();
+		Resource page = page( "/counted", "min-size=30&_pageSize=2&_page=1" );
+		assertEquals( 7, page.getProperty( OpenSearch.totalResults ).getLong() );
+		Map<String, Long> expected = new HashMap<String, Long>();
+		expected.put( EX + "colour/red", 3L );
+		expected.put( EX + "colour/green", 2L );
+		expected.put( EX + "colour/blue", 2L );
+		assertEquals( expected, facet( page, EX + "colour" ) );
+		assertEquals( THINGS, page( "/counted", "" ).getProperty( OpenSearch.totalResults ).getLong() );
+		assertEquals( 2, cache.getCountCache().computations() );
+	}
+
+	@Test public void testCountingIsPerEndpointAndOptional() throws InterruptedException {
+		assertNotCounted( page( "/plain", "" ) );
+		assertNotCounted( page( "/plain", "_count=yes" ) );
+		assertNotCounted( page( "/optional", "" ) );
+		assertNotCounted( page( "/counted", "_count=no" ) );
+		assertEquals( 0, cache.getCountCache().requests() );
+		assertPending( page( "/optional", "_count=yes" ) );
+		awaitCounts();
+		assertEquals( THINGS, page( "/optional", "_count=yes&_page=3" ).getProperty( OpenSearch.totalResults ).getLong() );
+	}
+
+	@Test public void testCountsAreRenderedInJSONAndXML() throws InterruptedException {
+		page( "/counted", "" );
+		awaitCounts();
+		String json = render( "/counted", "json" );
+		assertTrue( json, json.matches( "(?s).*\"totalResults\"\\s*:\\s*" + THINGS + "\\b.*" ) );
+		assertTrue( json, json.contains( "\"facet\"" ) );
+		String xml = render( "/counted", "xml" );
+		assertTrue( xml, xml.matches( "(?s).*<totalResults[^>]*>" + THINGS + "</totalResults>.*" ) );
+		assertTrue( xml, xml.contains( "<facet" ) );
+	}
+
+	@Test public void testCountQueriesIgnorePaging() {
+		APIEndpointSpec eps = spec.getEndpoints().get( 0 );
+		APIQuery q = eps.getBaseQuery();
+		q.setPageNumber( 3 );
+		Bindings b = new Bindings();
+		String count = q.assembleCountQuery( b, spec.getPrefixMap() );
+		String facet = q.assembleFacetQuery( b, spec.getPrefixMap(), ResourceFactory.createProperty( EX + "colour" ), 10 );
+		assertFalse( count, count.contains( "OFFSET" ) );
+		assertFalse( count, count.contains( "ORDER BY" ) );
+		assertTrue( facet, facet.contains( "GROUP BY" ) );
+		QueryFactory.create( count );
+		QueryFactory.create( facet );
+	}
+
+	@Test public void testConcurrentRequestsComputeOnce() throws Exception {
+		ExecutorService counting = Executors.newSingleThreadExecutor();
+		final CountCache counts = new CountCache( counting );
+		counts.allowBudget( 10 );
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final Callable<Counts> counter = new Callable<Counts>() {
+			@Override public Counts call() throws InterruptedException {
+				calls.incrementAndGet();
+				release.await();
+				return counts( 42 );
+			}
+		};
+		int threads = 16;
+		final CountDownLatch start = new CountDownLatch( 1 );
+		ExecutorService pages = Executors.newFixedThreadPool( threads );
+		List<Future<Counts>> results = new ArrayList<Future<Counts>>();
+		for (int i = 0; i < threads; i += 1) {
+			results.add( pages.submit( new Callable<Counts>() {
+				@Override public Counts call() throws InterruptedException {
+					start.await();
+					return counts.get( "key", 60000, counter );
+				}
+			} ) );
+		}
+		start.countDown();
+		for (Future<Counts> f: results) assertTrue( f.get().isPending() );
+		pages.shutdown();
+		release.countDown();
+		assertTrue( counts.await( 5000 ) );
+		assertEquals( 1, calls.get() );
+		assertEquals( 42, counts.get( "key", 60000, counter ).getTotal() );
+		assertEquals( 1, counts.computations() );
+		counting.shutdown();
+	}
+
+	@Test public void testStaleFailedAndEvictedCountsAreRecomputed() throws Exception {
+		final int [] calls = new int[1];
+		CountCache counts = new CountCache( new Executor() {
+			@Override public void execute( Runnable r ) { r.run(); }
+		} );
+		counts.allowBudget( 2 );
+		Callable<Counts> counter = new Callable<Counts>() {
+			@Override public Counts call() { return counts( ++calls[0] ); }
+		};
+		Callable<Counts> failing = new Callable<Counts>() {
+			@Override public Counts call() { throw new RuntimeException( "the source is down" ); }
+		};
+	//
+		assertTrue( counts.get( "a", 60000, counter ).isPending() );
+		assertEquals( 1, counts.get( "a", 60000, counter ).getTotal() );
+		assertEquals( 1, counts.get( "a", 0, counter ).getTotal() );
+		assertEquals( 2, counts.get( "a", 60000, counter ).getTotal() );
+	//
+		assertTrue( counts.get( "b", 60000, failing ).isPending() );
+		assertTrue( counts.get( "b", 60000, counter ).isPending() );
+		assertEquals( 3, counts.get( "b", 60000, counter ).getTotal() );
+	//
+		counts.get( "c", 60000, counter );
+		assertEquals( 2, counts.size() );
+		assertTrue( counts.get( "a", 60000, counter ).isPending() );
+	}
+
+	@Test public void testStaleCountsAreAnsweredWhileRecomputed() throws Exception {
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		CountCache counts = new CountCache( new Executor() {
+			@Override public void execute( Runnable r ) { queued.add( r ); }
+		} );
+		counts.allowBudget( 10 );
+		final int [] calls = new int[1];
+		Callable<Counts> counter = new Callable<Counts>() {
+			@Override public Counts call() { return counts( ++calls[0] ); }
+		};
+		assertTrue( counts.get( "a", 60000, counter ).isPending() );
+		queued.remove( 0 ).run();
+		assertEquals( 1, counts.get( "a", 0, counter ).getTotal() );
+		assertEquals( 1, counts.get( "a", 0, counter ).getTotal() );
+		assertEquals( 1, queued.size() );
+		queued.remove( 0 ).run();
+		assertEquals( 2, counts.get( "a", 60000, counter ).getTotal() );
+	}
+
+	@Test public void testDroppedCountsAreNotComputed() throws Exception {
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		CountCache counts = new CountCache( new Executor() {
+			@Override public void execute( Runnable r ) { queued.add( r ); }
+		} );
+		counts.allowBudget( 1 );
+		final int [] calls = new int[1];
+		Callable<Counts> counter = new Callable<Counts>() {
+			@Override public Counts call() { return counts( ++calls[0] ); }
+		};
+		counts.get( "a", 60000, counter );
+		counts.get( "b", 60000, counter );
+		counts.get( "c", 60000, counter );
+		counts.clear();
+		for (Runnable r: queued) r.run();
+		assertEquals( 0, calls[0] );
+		assertTrue( counts.await( 0 ) );
+	}
+
+	@Test public void testRejectedCountsArePending() throws Exception {
+		CountCache counts = new CountCache( new Executor() {
+			@Override public void execute( Runnable r ) { throw new RejectedExecutionException( "full" ); }
+		} );
+		counts.allowBudget( 10 );
+		Callable<Counts> counter = new Callable<Counts>() {
+			@Override public Counts call() { return counts( 1 ); }
+		};
+		assertTrue( counts.get( "a", 60000, counter ).isPending() );
+		assertEquals( 0, counts.size() );
+		assertTrue( counts.await( 0 ) );
+	}
+
+	static Counts counts( long total ) {
+		return new Counts( total, new LinkedHashMap<String, List<Counts.FacetValue>>() );
+	}
+
+	Resource page( String template, String params ) {
+		return call( template, params ).a.getRoot();
+	}
+
+	Triad<APIResultSet, Map<String, String>, Bindings> call( String template, String params ) {
+		Bindings b = Bindings.createContext( new Bindings(), MakeData.parseQueryString( params ) );
+		Controls c = new Controls( true, new Times() );
+		APIEndpoint.Request r = new APIEndpoint.Request( c, URIUtils.newURI( "http://localhost" + template + "?" + params ), b );
+		return endpoints.get( template ).call( r );
+	}
+
+	String render( String template, String format ) {
+		Triad<APIResultSet, Map<String, String>, Bindings> t = call( template, "" );
+		Renderer r = endpoints.get( template ).getRendererNamed( format );
+		Times times = new Times();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		r.render( times, t.c, t.b, t.a ).writeAll( times, bos );
+		try {
+			return bos.toString( "UTF-8" );
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	void awaitCounts() throws InterruptedException {
+		assertTrue( "counts took too long", cache.getCountCache().await( 10000 ) );
+	}
+
+	static void assertPending( Resource page ) {
+		assertTrue( page.hasLiteral( EXTRAS.countsPending, true ) );
+		assertFalse( page.hasProperty( OpenSearch.totalResults ) );
+	}
+
+	static void assertNotCounted( Resource page ) {
+		assertFalse( page.hasProperty( EXTRAS.countsPending ) );
+		assertFalse( page.hasProperty( OpenSearch.totalResults ) );
+	}
+
+	static Map<String, Long> facet( Resource page, String property ) {
+		Map<String, Long> result = new HashMap<String, Long>();
+		for (Statement f: page.listProperties( EXTRAS.facet ).toList()) {
+			Resource facet = f.getResource();
+			if (facet.getPropertyResourceValue( API.property ).getURI().equals( property )) {
+				for (Statement v: facet.listProperties( EXTRAS.facetValue ).toList()) {
+					Resource value = v.getResource();
+					Node n = value.getProperty( RDF.value ).getObject().asNode();
+					result.put( n.getURI(), value.getProperty( OpenSearch.totalResults ).getLong() );
+				}
+			}
+		}
+		return result;
+	}
+}
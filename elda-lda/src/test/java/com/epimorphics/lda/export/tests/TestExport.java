@@ -0,0 +1,315 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.export.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.core.APIEndpoint;
+import com.epimorphics.lda.core.APIEndpointImpl;
+import com.epimorphics.lda.exceptions.EldaException;
+import com.epimorphics.lda.export.ExportFormat;
+import com.epimorphics.lda.renderers.Renderer;
+import com.epimorphics.lda.sources.SourceBase;
+import com.epimorphics.lda.specs.APIEndpointSpec;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.*;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.epimorphics.util.URIUtils;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.tdb.TDB;
+
+/**
+    Exports of a LocalSource, or a TDB model, holding 100k generated items
+    must contain every item exactly once and must not grow the heap in
+    proportion to their size, and must not keep writers to the source out
+    while they write; exports are refused when the spec does not allow
+    them, for item endpoints, and when too many are running.
+*/
+public class TestExport {
+
+	static final int ITEMS = 100000;
+
+	static final String EX = "http://example.com/";
+
+	static final String LABEL = "<http://www.w3.org/2000/01/rdf-schema#label>";
+
+	static final String GRAPH = EX + "export-graph";
+
+	static File data;
+
+	static APISpec spec;
+
+	@BeforeClass public static void generate() throws IOException {
+		data = File.createTempFile( "export-items", ".nt" );
+		Writer w = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( data ), "UTF-8" ) );
+		try {
+			for (int i = 0; i < ITEMS; i += 1) {
+				String item = "<" + EX + "item/" + i + ">";
+				w.write( item + " <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <" + EX + "Thing> .\n" );
+				w.write( item + " " + LABEL + " \"item " + i + "\" .\n" );
+				w.write( item + " <" + EX + "value> \"" + i + "\"^^<http://www.w3.org/2001/XMLSchema#integer> .\n" );
+			}
+		} finally {
+			w.close();
+		}
+		spec = spec( "<local:" + data.getAbsolutePath() + ">", "elda:exportEnabled true; elda:exportWindowSize 500" );
+	}
+
+	@AfterClass public static void tidy() {
+		data.delete();
+	}
+
+	@Test public void testNTriplesExportIsCompleteAndDuplicateFree() {
+		LineCheckingStream os = new LineCheckingStream( 4 * 1024 * 1024 ) {
+
+			final String prefix = "<" + EX + "item/";
+
+			@Override void line( String line ) {
+				if (line.contains( LABEL )) item( line.substring( prefix.length(), line.indexOf( '>' ) ) );
+			}
+		};
+		export( spec, "/things", ExportFormat.NTriples, os );
+		os.assertAllItemsOnce();
+		assertEquals( "# export complete: " + ITEMS + " items in " + (ITEMS / 500) + " windows", os.last );
+		long growth = os.peak - os.baseline;
+		assertTrue( "export grew heap by " + growth + " for output of " + os.size, growth < os.size / 2 );
+	}
+
+	@Test public void testJSONLinesExportHasOneObjectPerItem() {
+		LineCheckingStream os = new LineCheckingStream( 4 * 1024 * 1024 ) {
+
+			@Override void line( String line ) {
+				JsonObject o = JSON.parse( line );
+				if (o.hasKey( "_export" )) return;
+				String about = o.get( "_about" ).getAsString().value();
+				String index = about.substring( (EX + "item/").length() );
+				assertEquals( "item " + index, o.get( "label" ).getAsString().value() );
+				item( index );
+			}
+		};
+		export( spec, "/things", ExportFormat.JSONLines, os );
+		os.assertAllItemsOnce();
+		JsonObject trailer = JSON.parse( os.last ).get( "_export" ).getAsObject();
+		assertTrue( trailer.get( "complete" ).getAsBoolean().value() );
+		assertEquals( ITEMS, trailer.get( "items" ).getAsNumber().value().intValue() );
+	}
+
+	@Test public void testSourceIsNotLockedWhileWriting() {
+		final Lock lock = ((SourceBase) spec.getDataSource()).getLock();
+		final ExecutorService writer = Executors.newSingleThreadExecutor();
+		OutputStream os = new OutputStream() {
+
+			boolean checked = false;
+
+			@Override public void write( int b ) {
+				if (checked) return;
+				checked = true;
+				Future<?> f = writer.submit( new Runnable() {
+					@Override public void run() {
+						lock.enterCriticalSection( Lock.WRITE );
+						lock.leaveCriticalSection();
+					}
+				} );
+				try {
+					f.get( 10, TimeUnit.SECONDS );
+				} catch (TimeoutException e) {
+					fail( "a writer to the source was kept out while the export wrote" );
+				} catch (Exception e) {
+					throw new RuntimeException( e );
+				}
+			}
+		};
+		export( spec, "/things", ExportFormat.NTriples, os );
+		writer.shutdown();
+	}
+
+	@Test public void testTDBExportIsCompleteAndDuplicateFree() throws IOException {
+		File tdb = File.createTempFile( "export-tdb", "" );
+		tdb.delete();
+		tdb.mkdirs();
+		TDBManager.setBaseTDBPath( tdb.getAbsolutePath() );
+		Model m = TDBManager.getTDBModelNamed( GRAPH );
+		InputStream in = new BufferedInputStream( new FileInputStream( data ) );
+		try {
+			m.read( in, null, "N-TRIPLE" );
+		} finally {
+			in.close();
+		}
+		TDB.sync( m );
+		APISpec tdbSpec = spec( "<tdb:" + GRAPH + ">", "elda:exportEnabled true; elda:exportWindowSize 500" );
+		LineCheckingStream os = new LineCheckingStream( 4 * 1024 * 1024 ) {
+
+			final String prefix = "<" + EX + "item/";
+
+			@Override void line( String line ) {
+				if (line.contains( LABEL )) item( line.substring( prefix.length(), line.indexOf( '>' ) ) );
+			}
+		};
+		export( tdbSpec, "/things", ExportFormat.NTriples, os );
+		os.assertAllItemsOnce();
+		assertEquals( "# export complete: " + ITEMS + " items in " + (ITEMS / 500) + " windows", os.last );
+	}
+
+	@Test public void testExportMustBeEnabled() {
+		APISpec disabled = spec( "<unused:endpoint>", "elda:exportWindowSize 500" );
+		assertRefused( EldaException.FORBIDDEN, disabled, "/things" );
+	}
+
+	@Test public void testOnlyListEndpointsExport() {
+		APISpec enabled = spec( "<unused:endpoint>", "elda:exportEnabled true" );
+		assertRefused( EldaException.BAD_REQUEST, enabled, "/thing/{n}" );
+	}
+
+	@Test public void testConcurrentExportsAreLimited() {
+		APISpec limited = spec( "<unused:endpoint>", "elda:exportEnabled true; elda:exportConcurrency 1" );
+		assertTrue( limited.getExportPolicy().tryAcquire() );
+		assertRefused( EldaException.SERVICE_UNAVAILABLE, limited, "/things" );
+		limited.getExportPolicy().release();
+		assertNotNull( endpoint( limited, "/things" ).export( request(), ExportFormat.NTriples ) );
+	}
+
+	@Test public void testUnwrittenExportsDoNotCountAsRunning() {
+		APISpec limited = spec( "<unused:endpoint>", "elda:exportEnabled true; elda:exportConcurrency 1" );
+		assertNotNull( endpoint( limited, "/things" ).export( request(), ExportFormat.NTriples ) );
+		assertNotNull( endpoint( limited, "/things" ).export( request(), ExportFormat.NTriples ) );
+		assertFalse( limited.getExportPolicy().isBusy() );
+	}
+
+	@Test public void testExportStartedWhenBusyWritesOnlyFailure() {
+		APISpec limited = spec( "<unused:endpoint>", "elda:exportEnabled true; elda:exportConcurrency 1" );
+		Renderer.BytesOut export = endpoint( limited, "/things" ).export( request(), ExportFormat.NTriples );
+		assertTrue( limited.getExportPolicy().tryAcquire() );
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		export.writeAll( new Times(), os );
+		assertTrue( os.toString().trim().startsWith( "# export failed after 0 items" ) );
+		limited.getExportPolicy().release();
+		assertFalse( limited.getExportPolicy().isBusy() );
+	}
+
+	static void assertRefused( int code, APISpec s, String template ) {
+		try {
+			endpoint( s, template ).export( request(), ExportFormat.NTriples );
+			fail( "export of " + template + " should have been refused" );
+		} catch (EldaException e) {
+			assertEquals( code, e.code );
+		}
+	}
+
+	static void export( APISpec s, String template, ExportFormat f, OutputStream os ) {
+		endpoint( s, template ).export( request(), f ).writeAll( new Times(), os );
+		try { os.close(); } catch (IOException e) { throw new RuntimeException( e ); }
+	}
+
+	static APIEndpoint.Request request() {
+		MultiMap<String, String> params = new MultiMap<String, String>();
+		params.add( "_export", "nt" );
+		Bindings b = Bindings.createContext( new Bindings(), params );
+		return new APIEndpoint.Request( new Controls(), URIUtils.newURI( "http://localhost/things" ), b );
+	}
+
+	static APIEndpoint endpoint( APISpec s, String template ) {
+		for (APIEndpointSpec eps: s.getEndpoints())
+			if (eps.getURITemplate().equals( template )) return new APIEndpointImpl( eps );
+		throw new RuntimeException( "no endpoint " + template );
+	}
+
+	static APISpec spec( String endpoint, String settings ) {
+		Model specModel = ModelIOUtils.modelFromTurtle
+			( ":root a api:API"
+			+ "\n  ; api:sparqlEndpoint " + endpoint
+			+ "\n  ; " + settings
+			+ "\n  ; api:endpoint :things, :thing"
+			+ "\n."
+			+ "\n:things a api:ListEndpoint"
+			+ "\n  ; api:uriTemplate '/things'"
+			+ "\n  ; api:selector [api:where '?item a <" + EX + "Thing>']"
+			+ "\n."
+			+ "\n:thing a api:ItemEndpoint"
+			+ "\n  ; api:uriTemplate '/thing/{n}'"
+			+ "\n  ; api:itemTemplate '" + EX + "item/{n}'"
+			+ "\n."
+			);
+		Resource root = specModel.createResource( specModel.expandPrefix( ":root" ) );
+		return new APISpec( EldaFileManager.get(), root, LoadsNothing.instance );
+	}
+
+	/**
+	    Splits what is written to it into lines as it arrives, recording
+	    the items that <code>line</code> reports and sampling the heap in
+	    use every <code>every</code> bytes; the last line is kept.
+	*/
+	static abstract class LineCheckingStream extends OutputStream {
+
+		final long every;
+		final long baseline = heapInUse();
+		final BitSet seen = new BitSet( ITEMS );
+		final ByteArrayOutputStream current = new ByteArrayOutputStream();
+
+		long peak = baseline, size = 0, next;
+		String last = null;
+		int count = 0;
+
+		LineCheckingStream( long every ) {
+			this.every = every;
+			this.next = every;
+		}
+
+		abstract void line( String line );
+
+		void item( String index ) {
+			int i = Integer.parseInt( index );
+			assertFalse( "item " + i + " exported twice", seen.get( i ) );
+			seen.set( i );
+			count += 1;
+		}
+
+		void assertAllItemsOnce() {
+			assertEquals( ITEMS, count );
+			assertEquals( ITEMS, seen.cardinality() );
+		}
+
+		@Override public void write( int b ) {
+			size += 1;
+			if (b == '\n') {
+				try { last = current.toString( "UTF-8" ); } catch (UnsupportedEncodingException e) { throw new RuntimeException( e ); }
+				current.reset();
+				if (last.length() > 0) line( last );
+			} else {
+				current.write( b );
+			}
+			if (size >= next) {
+				next += every;
+				peak = Math.max( peak, heapInUse() );
+			}
+		}
+
+		@Override public void write( byte[] b, int off, int len ) {
+			for (int i = 0; i < len; i += 1) write( b[off + i] );
+		}
+
+		static long heapInUse() {
+			System.gc();
+			return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+	}
+}
@@ -3,6 +3,8 @@ package com.epimorphics.lda.query.tests;
 import com.epimorphics.lda.query.QueryParameter;
 import com.epimorphics.lda.query.APIQuery.QueryBasis;
 import com.epimorphics.lda.shortnames.ShortnameService;
+import com.epimorphics.lda.spatial.SpatialConfig;
+import com.epimorphics.lda.support.LanguageFilter;
 import com.epimorphics.lda.textsearch.TextSearchConfig;
 
 public class StubQueryBasis implements QueryBasis {
@@ -11,6 +13,8 @@ public class StubQueryBasis implements QueryBasis {
 	
 	private final TextSearchConfig textSearchConfig = new TextSearchConfig();
 	
+	private final SpatialConfig spatialConfig = new SpatialConfig( false );
+	
 	StubQueryBasis(ShortnameService sns) {
 		this.sns = sns;
 	}
@@ -19,6 +23,8 @@ public class StubQueryBasis implements QueryBasis {
 	
 	@Override public final String getDefaultLanguage() { return null; }
 	
+	@Override public LanguageFilter.Mode getLanguageFilterMode() { return LanguageFilter.Mode.InModel; }
+	
 	@Override public String getItemTemplate() { return null; }
 	
 	@Override public final int getMaxPageSize() { return QueryParameter.MAX_PAGE_SIZE; }
@@ -30,4 +36,8 @@ public class StubQueryBasis implements QueryBasis {
 	@Override public TextSearchConfig getTextSearchConfig() { 
 		return textSearchConfig; 
 	}
+	
+	@Override public SpatialConfig getSpatialConfig() { 
+		return spatialConfig; 
+	}
 }
\ No newline at end of file
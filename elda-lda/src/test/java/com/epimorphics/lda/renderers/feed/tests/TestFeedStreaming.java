@@ -0,0 +1,202 @@
+package com.epimorphics.lda.renderers.feed.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+
+import org.junit.Test;
+import org.w3c.dom.*;
+import org.xml.sax.InputSource;
+
+import com.epimorphics.lda.core.APIResultSet.MergedModels;
+import com.epimorphics.lda.renderers.FeedRenderer;
+import com.epimorphics.lda.renderers.FeedRenderer.FeedResults;
+import com.epimorphics.lda.renderers.FeedRendererFactory;
+import com.epimorphics.lda.tests.SNS;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.util.DOMUtils;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.DCTerms;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    The streamed feed must be the same XML as the DOM-built one, apart
+    from whitespace and the order of attributes; the comparison is made
+    here rather than with XMLUnit so that it says what it ignores.
+*/
+public class TestFeedStreaming {
+
+	static final String P = "http://example.org/p/";
+
+	final Model configModel = ModelFactory.createDefaultModel();
+
+	final Resource config = configModel.createResource( "eh:/root" );
+
+	@Test public void testStreamedAtomMatchesDocument() throws Exception {
+		config.addProperty( EXTRAS.feedRights, "© copyright 1066" );
+		config.addProperty( EXTRAS.feedAuthors, configModel.createList( new RDFNode[] {configModel.createLiteral( "author_A" )} ) );
+		FeedResults results = results( 20 );
+		FeedRenderer fr = renderer( FeedRendererFactory.atom );
+	//
+		Document expected = DOMUtils.newDocument();
+		fr.renderFeedIntoDocument( expected, new HashMap<String, String>(), results );
+		Document actual = parse( stream( fr, results ) );
+		assertEquivalent( "/", expected.getDocumentElement(), actual.getDocumentElement() );
+	}
+
+	@Test public void testEmptyFeed() throws Exception {
+		FeedResults results = results( 0 );
+		FeedRenderer fr = renderer( FeedRendererFactory.atom );
+		Document expected = DOMUtils.newDocument();
+		fr.renderFeedIntoDocument( expected, new HashMap<String, String>(), results );
+		Document actual = parse( stream( fr, results ) );
+		assertEquivalent( "/", expected.getDocumentElement(), actual.getDocumentElement() );
+		assertEquals( 0, actual.getElementsByTagName( "entry" ).getLength() );
+	}
+
+	@Test public void testEntriesAreMostRecentFirst() throws Exception {
+		Document d = parse( stream( renderer( FeedRendererFactory.atom ), results( 12 ) ) );
+		NodeList entries = d.getElementsByTagName( "entry" );
+		assertEquals( 12, entries.getLength() );
+		String previous = null;
+		List<String> undated = new ArrayList<String>();
+		for (int i = 0; i < entries.getLength(); i += 1) {
+			Element e = (Element) entries.item( i );
+			String updated = childText( e, "updated" );
+			if (previous != null) assertTrue( previous.compareTo( updated ) >= 0 );
+			previous = updated;
+			if (!updated.startsWith( "2012" )) undated.add( childText( e, "id" ) );
+		}
+	// items with no date keep their order
+		assertEquals( Arrays.asList( "eh:/item/4", "eh:/item/9" ), undated );
+	}
+
+	@Test public void testRSSFromSamePlan() throws Exception {
+		Document d = parse( stream( renderer( FeedRendererFactory.rss ), results( 5 ) ) );
+		Element rss = d.getDocumentElement();
+		assertEquals( "rss", rss.getTagName() );
+		assertEquals( "2.0", rss.getAttribute( "version" ) );
+		Element channel = (Element) rss.getElementsByTagName( "channel" ).item( 0 );
+		assertEquals( "Elda feed", childText( channel, "title" ) );
+		assertEquals( "eh:/root", childText( channel, "link" ) );
+		NodeList items = d.getElementsByTagName( "item" );
+		assertEquals( 5, items.getLength() );
+		Element first = (Element) items.item( 0 );
+		assertEquals( "label 3", childText( first, "title" ) );
+		assertEquals( "eh:/item/3", childText( first, "guid" ) );
+		assertEquals( "2012-05-20", childText( first, "dc:date" ) );
+		assertEquals( 1, first.getElementsByTagName( "content" ).getLength() );
+	}
+
+	@Test public void testConcurrentRendersAgree() throws Exception {
+		final FeedRenderer fr = renderer( FeedRendererFactory.atom );
+		final FeedResults results = results( 50 );
+		final String expected = stream( fr, results );
+		ExecutorService pool = Executors.newFixedThreadPool( 4 );
+		try {
+			List<Future<String>> futures = new ArrayList<Future<String>>();
+			for (int i = 0; i < 16; i += 1) {
+				futures.add( pool.submit( new Callable<String>() {
+					@Override public String call() throws Exception {
+						return stream( fr, results );
+					}
+				} ) );
+			}
+			for (Future<String> f: futures) assertEquals( expected, f.get() );
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	FeedRenderer renderer( com.epimorphics.util.MediaType mt ) {
+		return new FeedRenderer( mt, config, new SNS( "" ) );
+	}
+
+	/**
+	    n items, dated in an order unrelated to their numbering except
+	    that items 4 and 9 have no date; they have labels, authors,
+	    rights, typed values, and a blank node each.
+	*/
+	static FeedResults results( int n ) {
+		Model m = ModelFactory.createDefaultModel();
+		List<Resource> items = new ArrayList<Resource>();
+		for (int i = 0; i < n; i += 1) {
+			Resource r = m.createResource( "eh:/item/" + i );
+			r.addProperty( RDFS.label, "label " + i );
+			if (i % 5 != 4) r.addProperty( DCTerms.modified, "2012-05-" + (10 + (i * 7) % 11) );
+			if (i % 3 == 0) r.addProperty( DCTerms.creator, "creator <" + i + "> & co" );
+			if (i % 4 == 1) r.addProperty( DCTerms.rights, "rights " + i );
+			r.addLiteral( m.createProperty( P + "value" ), m.createTypedLiteral( "" + i, XSDDatatype.XSDinteger ) );
+			Resource part = m.createResource();
+			part.addProperty( m.createProperty( P + "name" ), "part of " + i, "en" );
+			r.addProperty( m.createProperty( P + "part" ), part );
+			r.addProperty( m.createProperty( P + "next" ), m.createResource( "eh:/item/" + (i + 1) ) );
+			items.add( r );
+		}
+		return new FeedResults( m.createResource( "eh:/root" ), items, new MergedModels( m ) );
+	}
+
+	static String stream( FeedRenderer fr, FeedResults results ) throws Exception {
+		StringWriter sw = new StringWriter();
+		fr.writeFeed( XMLOutputFactory.newInstance().createXMLStreamWriter( sw ), new HashMap<String, String>(), results );
+		return sw.toString();
+	}
+
+	static Document parse( String xml ) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( new InputSource( new StringReader( xml ) ) );
+	}
+
+	static String childText( Element e, String tag ) {
+		for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling())
+			if (n instanceof Element && ((Element) n).getTagName().equals( tag )) return n.getTextContent();
+		fail( "no " + tag + " in " + e.getTagName() );
+		return null;
+	}
+
+	/**
+	    Assert that the elements have the same name, attributes, and
+	    children, ignoring whitespace-only text and attribute order.
+	*/
+	static void assertEquivalent( String path, Element expected, Element actual ) {
+		String here = path + expected.getTagName();
+		assertEquals( here, expected.getTagName(), actual.getTagName() );
+		assertEquals( here, attributes( expected ), attributes( actual ) );
+		List<Node> ec = children( expected ), ac = children( actual );
+		assertEquals( here + " children", ec.size(), ac.size() );
+		for (int i = 0; i < ec.size(); i += 1) {
+			Node e = ec.get( i ), a = ac.get( i );
+			if (e instanceof Element) {
+				assertTrue( here, a instanceof Element );
+				assertEquivalent( here + "/", (Element) e, (Element) a );
+			} else {
+				assertEquals( here, e.getNodeValue(), a.getNodeValue() );
+			}
+		}
+	}
+
+	static Map<String, String> attributes( Element e ) {
+		Map<String, String> result = new HashMap<String, String>();
+		NamedNodeMap attributes = e.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i += 1) {
+			Node a = attributes.item( i );
+			result.put( a.getNodeName(), a.getNodeValue() );
+		}
+		return result;
+	}
+
+	static List<Node> children( Element e ) {
+		List<Node> result = new ArrayList<Node>();
+		for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n instanceof Element) result.add( n );
+			else if (n instanceof Text && n.getNodeValue().trim().length() > 0) result.add( n );
+		}
+		return result;
+	}
+}
@@ -0,0 +1,294 @@
+package com.epimorphics.lda.renderers.streaming.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import org.junit.Test;
+
+import com.epimorphics.lda.renderers.streaming.*;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.util.iterator.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+public class TestStreamingWriters {
+
+	static final String EX = "http://example.org/ex/";
+	static final String VOCAB = "http://example.org/vocab#";
+	static final String OTHER = "http://example.org/other/";
+
+	@Test public void testRandomModelsRoundTrip() {
+		for (int seed = 0; seed < 25; seed += 1) {
+			Model m = randomModel( new Random( seed ) );
+			for (Layout layout: Layout.values()) {
+				assertIsomorphic( "Turtle, " + layout + ", seed " + seed, m, "TTL", turtle( m, layout ) );
+				assertIsomorphic( "RDF/XML, " + layout + ", seed " + seed, m, "RDF/XML", rdfxml( m, layout ) );
+			}
+		}
+	}
+
+	@Test public void testPrettyTurtleUsesOnlyPrefixesInUse() {
+		Model m = ModelFactory.createDefaultModel();
+		m.setNsPrefix( "ex", EX );
+		m.setNsPrefix( "unused", "http://example.org/unused#" );
+		m.add( m.createResource( EX + "a" ), m.createProperty( EX + "p" ), "value" );
+		String ttl = turtle( m, Layout.Pretty );
+		assertTrue( ttl, ttl.contains( "@prefix ex:" ) );
+		assertFalse( ttl, ttl.contains( "unused" ) );
+		assertTrue( ttl, ttl.contains( "ex:a ex:p \"value\" ." ) );
+	}
+
+	@Test public void testPrettyTurtleInlinesUnsharedBlankNodes() {
+		Model m = ModelFactory.createDefaultModel();
+		Property p = m.createProperty( EX + "p" ), q = m.createProperty( EX + "q" );
+		Resource a = m.createResource( EX + "a" ), b = m.createResource( EX + "b" );
+		Resource unshared = m.createResource(), shared = m.createResource();
+		a.addProperty( p, unshared );
+		unshared.addProperty( q, "inside" );
+		a.addProperty( q, shared );
+		b.addProperty( q, shared );
+		shared.addProperty( p, "labelled" );
+		String ttl = turtle( m, Layout.Pretty );
+		assertTrue( ttl, ttl.contains( "[ <" + EX + "q> \"inside\" ]" ) );
+		assertTrue( ttl, ttl.contains( "_:b" ) );
+		assertIsomorphic( "inlining", m, "TTL", ttl );
+	}
+
+	@Test public void testFastLayoutHasNoPrefixes() {
+		Model m = randomModel( new Random( 99 ) );
+		String ttl = turtle( m, Layout.Fast );
+		assertFalse( ttl.contains( "@prefix" ) );
+		assertFalse( ttl.contains( "[" ) );
+	}
+
+	/**
+	    Write a generated graph of a million triples, which occupies no
+	    memory of its own, and check that the heap in use while writing
+	    (sampled after a collection every few megabytes of output) grows by
+	    less than the size of the output: the old renderers held all of it,
+	    at least twice over. Fast layout should hold next to nothing.
+	*/
+	@Test public void testMillionTriplesAreWrittenInBoundedMemory() {
+		Graph g = new GeneratedGraph( 50000 );
+		for (Layout layout: Layout.values()) {
+			HeapSamplingStream os = new HeapSamplingStream( 4 * 1024 * 1024 );
+			Writer w = new BufferedWriter( new OutputStreamWriter( os ) );
+			new StreamingTurtleWriter( w, layout ).write( g );
+			long growth = os.peak - os.baseline;
+			assertTrue( "Turtle " + layout + " grew heap by " + growth + " for output of " + os.size, growth < os.size );
+			if (layout == Layout.Fast)
+				assertTrue( "fast Turtle grew heap by " + growth + " for output of " + os.size, growth < os.size / 10 );
+		}
+	}
+
+	static void assertIsomorphic( String title, Model expected, String lang, String text ) {
+		Model actual = ModelFactory.createDefaultModel();
+		try {
+			actual.read( new StringReader( text ), EX, lang );
+		} catch (RuntimeException e) {
+			throw new RuntimeException( title + ": cannot parse\n" + text, e );
+		}
+		assertTrue( title + ": not isomorphic:\n" + text, expected.isIsomorphicWith( actual ) );
+	}
+
+	static String turtle( Model m, Layout layout ) {
+		StringWriter sw = new StringWriter();
+		new StreamingTurtleWriter( sw, layout ).write( m.getGraph() );
+		return sw.toString();
+	}
+
+	static String rdfxml( Model m, Layout layout ) {
+		StringWriter sw = new StringWriter();
+		new StreamingRDFXMLWriter( sw, layout ).write( m.getGraph() );
+		return sw.toString();
+	}
+
+	static final String [] awkward = { "plain", "with \"quotes\"", "new\nline", "back\\slash", "tab\tand\rreturn", "<tag> & ampersand", "café Ͽ", "" };
+
+	/**
+	    A model with some of everything the writers must handle: prefixed
+	    and unprefixed properties, awkward literals, shared and unshared
+	    blank nodes, blank node cycles, deep chains, lists, and empty
+	    blank nodes.
+	*/
+	static Model randomModel( Random r ) {
+		Model m = ModelFactory.createDefaultModel();
+		m.setNsPrefix( "ex", EX );
+		m.setNsPrefix( "v", VOCAB );
+		m.setNsPrefix( "rdf", RDF.getURI() );
+		List<Property> properties = new ArrayList<Property>();
+		for (int i = 0; i < 4; i += 1) properties.add( m.createProperty( VOCAB + "p" + i ) );
+		properties.add( m.createProperty( OTHER + "q" ) );
+		properties.add( m.createProperty( OTHER + "1st" ) );
+		properties.add( RDF.type );
+		List<Resource> subjects = new ArrayList<Resource>();
+		for (int i = 0; i < 5 + r.nextInt( 10 ); i += 1) subjects.add( m.createResource( EX + "s" + i ) );
+		subjects.add( m.createResource( EX + "odd%20uri(x)" ) );
+		List<Resource> blanks = new ArrayList<Resource>();
+		for (Resource s: subjects) {
+			for (int k = r.nextInt( 6 ); k >= 0; k -= 1) {
+				Property p = properties.get( r.nextInt( properties.size() ) );
+				s.addProperty( p, value( r, m, subjects, blanks, 3 ) );
+			}
+		}
+	// shared blank nodes, and a cycle of blank nodes nothing else refers to
+		if (!blanks.isEmpty()) subjects.get(0).addProperty( properties.get(0), blanks.get( r.nextInt( blanks.size() ) ) );
+		Resource c1 = m.createResource(), c2 = m.createResource();
+		c1.addProperty( properties.get(1), c2 );
+		c2.addProperty( properties.get(1), c1 );
+		c2.addProperty( properties.get(2), "in a cycle" );
+		Resource self = m.createResource();
+		self.addProperty( properties.get(3), self );
+	// a chain of blank nodes deeper than the writers nest
+		Resource chain = subjects.get(1);
+		for (int d = 0; d < 40; d += 1) {
+			Resource next = m.createResource();
+			chain.addProperty( properties.get(1), next );
+			chain = next;
+		}
+		chain.addProperty( properties.get(2), "end of chain" );
+		return m;
+	}
+
+	static RDFNode value( Random r, Model m, List<Resource> subjects, List<Resource> blanks, int depth ) {
+		switch (r.nextInt( depth > 0 ? 10 : 6 )) {
+			case 0: return m.createLiteral( awkward[r.nextInt( awkward.length )] );
+			case 1: return m.createLiteral( awkward[r.nextInt( awkward.length )], r.nextBoolean() ? "en" : "fr-CA" );
+			case 2: return m.createTypedLiteral( "" + (r.nextInt( 2000 ) - 1000), XSDDatatype.XSDinteger );
+			case 3: return m.createTypedLiteral( r.nextBoolean() ? "3.25" : "true", r.nextBoolean() ? XSDDatatype.XSDdecimal : XSDDatatype.XSDstring );
+			case 4: return m.createTypedLiteral( "x-" + r.nextInt( 9 ), "http://example.org/types#custom" );
+			case 5: return subjects.get( r.nextInt( subjects.size() ) );
+			case 6: {
+				Resource b = m.createResource();
+				for (int k = r.nextInt( 3 ); k > 0; k -= 1) b.addProperty( m.createProperty( VOCAB + "n" + k ), value( r, m, subjects, blanks, depth - 1 ) );
+				blanks.add( b );
+				return b;
+			}
+			case 7: {
+				List<RDFNode> elements = new ArrayList<RDFNode>();
+				for (int k = r.nextInt( 5 ); k > 0; k -= 1) elements.add( value( r, m, subjects, blanks, depth - 1 ) );
+				return m.createList( elements.iterator() );
+			}
+			case 8: {
+				List<RDFNode> elements = new ArrayList<RDFNode>();
+				for (int k = 1 + r.nextInt( 4 ); k > 0; k -= 1) elements.add( subjects.get( r.nextInt( subjects.size() ) ) );
+				return m.createList( elements.iterator() );
+			}
+			default: return blanks.isEmpty() ? m.createResource() : blanks.get( r.nextInt( blanks.size() ) );
+		}
+	}
+
+	/**
+	    An OutputStream that discards what is written to it but counts it,
+	    and every <code>every</code> bytes collects garbage and records the
+	    heap in use, keeping the peak.
+	*/
+	static class HeapSamplingStream extends OutputStream {
+
+		final long every;
+		final long baseline = heapInUse();
+		long peak = baseline, size = 0, next;
+
+		HeapSamplingStream( long every ) {
+			this.every = every;
+			this.next = every;
+		}
+
+		@Override public void write( int b ) {
+			count( 1 );
+		}
+
+		@Override public void write( byte[] b, int off, int len ) {
+			count( len );
+		}
+
+		private void count( int n ) {
+			size += n;
+			if (size >= next) {
+				next += every;
+				peak = Math.max( peak, heapInUse() );
+			}
+		}
+
+		static long heapInUse() {
+			System.gc();
+			return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+	}
+
+	/**
+	    A graph whose triples are made as they are found, so that it
+	    takes no memory however large it is. Subject 2i is a URI with six
+	    properties, one a blank node (subject 2i+1) which has four.
+	*/
+	static class GeneratedGraph extends GraphBase {
+
+		final int n;
+
+		GeneratedGraph( int n ) {
+			this.n = n;
+		}
+
+		@Override protected ExtendedIterator<Triple> graphBaseFind( TripleMatch m ) {
+			final Triple pattern = m.asTriple();
+			Filter<Triple> matches = new Filter<Triple>() {
+				@Override public boolean accept( Triple t ) {
+					return pattern.matches( t );
+				}
+			};
+			Node S = pattern.getSubject();
+			if (S.isConcrete()) {
+				int k = indexOf( S );
+				return k < 0 ? NullIterator.<Triple>instance() : WrappedIterator.create( triplesOf( k ).iterator() ).filterKeep( matches );
+			}
+			return new NiceIterator<Triple>() {
+				int k = 0;
+				Iterator<Triple> current = triplesOf( 0 ).iterator();
+
+				@Override public boolean hasNext() {
+					while (!current.hasNext() && k + 1 < 2 * n) current = triplesOf( ++k ).iterator();
+					return current.hasNext();
+				}
+
+				@Override public Triple next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					return current.next();
+				}
+			}.filterKeep( matches );
+		}
+
+		int indexOf( Node S ) {
+			String label = S.isURI() ? S.getURI() : S.isBlank() ? S.getBlankNodeLabel() : "";
+			String prefix = S.isURI() ? EX + "item/" : "g";
+			if (!label.startsWith( prefix )) return -1;
+			int i = Integer.parseInt( label.substring( prefix.length() ) );
+			return i < n ? 2 * i + (S.isBlank() ? 1 : 0) : -1;
+		}
+
+		List<Triple> triplesOf( int k ) {
+			int i = k / 2;
+			Node blank = Node.createAnon( new AnonId( "g" + i ) );
+			List<Triple> result = new ArrayList<Triple>();
+			if (k % 2 == 0) {
+				Node S = Node.createURI( EX + "item/" + i );
+				result.add( Triple.create( S, RDF.Nodes.type, Node.createURI( VOCAB + "Item" ) ) );
+				result.add( Triple.create( S, Node.createURI( VOCAB + "label" ), Node.createLiteral( "item number " + i, "en", false ) ) );
+				result.add( Triple.create( S, Node.createURI( VOCAB + "code" ), Node.createLiteral( "" + i, XSDDatatype.XSDinteger ) ) );
+				result.add( Triple.create( S, Node.createURI( VOCAB + "next" ), Node.createURI( EX + "item/" + ((i + 1) % n) ) ) );
+				result.add( Triple.create( S, Node.createURI( VOCAB + "note" ), Node.createLiteral( "a note about item " + i + ", long enough that it is not dwarfed by the index of subjects" ) ) );
+				result.add( Triple.create( S, Node.createURI( VOCAB + "detail" ), blank ) );
+			} else {
+				result.add( Triple.create( blank, Node.createURI( VOCAB + "x" ), Node.createLiteral( "" + (i % 1000), XSDDatatype.XSDinteger ) ) );
+				result.add( Triple.create( blank, Node.createURI( VOCAB + "y" ), Node.createLiteral( "" + (i % 777), XSDDatatype.XSDinteger ) ) );
+				result.add( Triple.create( blank, Node.createURI( VOCAB + "z" ), Node.createLiteral( "detail " + i ) ) );
+				result.add( Triple.create( blank, Node.createURI( VOCAB + "w" ), Node.createLiteral( "w" + i, "cy", false ) ) );
+			}
+			return result;
+		}
+	}
+}
@@ -24,7 +24,8 @@ import com.hp.hpl.jena.rdf.model.Resource;
 /**
     Test that the JSON renderer doesn't corrupt the Context with
     newly required short names. (The JSON writer is still free to
-    do so, but the JSON renderer takes a copy of the context.)
+    do so, but the JSON renderer reads the context through a
+    PropertyInfoView, which keeps new names to itself.)
 */
 public class TestJsonRenderer {
 	
@@ -0,0 +1,37 @@
+package com.epimorphics.lda.renderers.velocity.tests;
+
+import static org.junit.Assert.*;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.junit.After;
+import org.junit.Test;
+
+import com.epimorphics.lda.bindings.Bindings;
+import com.epimorphics.lda.renderers.velocity.Help;
+
+public class TestSharedVelocityEngines {
+
+	@After public void forget() {
+		Help.forgetVelocityEngines();
+	}
+
+	@Test public void ensure_same_configuration_shares_engine() {
+		Bindings a = new Bindings().put( "_velocityRoot", "target/vm-a" );
+		Bindings b = new Bindings().put( "_velocityRoot", "target/vm-a" );
+		VelocityEngine ve = Help.velocityEngineFor( a, null );
+		assertSame( ve, Help.velocityEngineFor( b, null ) );
+	}
+
+	@Test public void ensure_different_template_roots_get_different_engines() {
+		Bindings a = new Bindings().put( "_velocityRoot", "target/vm-a" );
+		Bindings b = new Bindings().put( "_velocityRoot", "target/vm-b" );
+		assertNotSame( Help.velocityEngineFor( a, null ), Help.velocityEngineFor( b, null ) );
+	}
+
+	@Test public void ensure_forgetting_makes_fresh_engines() {
+		Bindings a = new Bindings().put( "_velocityRoot", "target/vm-a" );
+		VelocityEngine ve = Help.velocityEngineFor( a, null );
+		Help.forgetVelocityEngines();
+		assertNotSame( ve, Help.velocityEngineFor( a, null ) );
+	}
+}
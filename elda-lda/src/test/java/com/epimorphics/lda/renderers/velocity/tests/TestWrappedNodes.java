@@ -117,4 +117,30 @@ public class TestWrappedNodes {
 	
 	}
 	
+	@Test public void ensure_properties_sorted_literals_first() {
+		WrappedNode.Bundle b = new WrappedNode.Bundle( sn,  new IdMap() );
+		Model m = ModelFactory.createDefaultModel();
+		Resource r = m.createResource( NS + "S" );
+		r.addProperty( RDF.value, m.createResource( NS + "O" ) );
+		r.addProperty( RDF.first, "one" );
+		r.addProperty( RDFS.label, "S" );
+	//
+		List<WrappedNode> expected = CollectionUtils.list
+			( new WrappedNode( b, RDF.first.inModel( m ) )
+			, new WrappedNode( b, RDFS.label.inModel( m ) )
+			, new WrappedNode( b, RDF.value.inModel( m ) )
+			);
+		assertEquals( expected, new WrappedNode( b, r ).getProperties() );
+	}
+	
+	@Test public void ensure_bundle_shares_model_index() {
+		WrappedNode.Bundle b = new WrappedNode.Bundle( sn,  new IdMap() );
+		Model m = ModelFactory.createDefaultModel();
+		Resource r = m.createResource( NS + "S" );
+		r.addProperty( RDFS.label, "before" );
+		assertEquals( "before", new WrappedNode( b, r ).getLabel().raw() );
+		assertTrue( b.indexFor( m ) == b.indexFor( m ) );
+		assertTrue( new WrappedNode( b, r ).isJustALabel() );
+	}
+	
 }
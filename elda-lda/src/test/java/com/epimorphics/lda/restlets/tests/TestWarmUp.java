@@ -0,0 +1,115 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.restlets.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import org.junit.*;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.bindings.URLforResource;
+import com.epimorphics.lda.cache.PermaCache;
+import com.epimorphics.lda.core.APIEndpointImpl;
+import com.epimorphics.lda.restlets.RouterRestlet;
+import com.epimorphics.lda.restlets.WarmUp;
+import com.epimorphics.lda.routing.DefaultRouter;
+import com.epimorphics.lda.routing.Match;
+import com.epimorphics.lda.specs.APIEndpointSpec;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.*;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.epimorphics.util.Couple;
+import com.epimorphics.util.MediaType;
+import com.epimorphics.util.URIUtils;
+import com.hp.hpl.jena.rdf.model.Model;
+
+/**
+    A request replayed by WarmUp fills the selection and view cache
+    entries that the same request from a client then hits, and leaves
+    the spec's shared bindings alone.
+*/
+public class TestWarmUp {
+
+	static final String EX = "http://example.com/";
+
+	static File data;
+
+	static APISpec spec;
+
+	DefaultRouter router;
+
+	@BeforeClass public static void generate() throws IOException {
+		data = File.createTempFile( "warm-up", ".ttl" );
+		Writer w = new OutputStreamWriter( new FileOutputStream( data ), "UTF-8" );
+		try {
+			for (int i = 0; i < 25; i += 1)
+				w.write( "<" + EX + "thing/" + i + "> a <" + EX + "Thing>; <" + EX + "size> " + i + " .\n" );
+		} finally {
+			w.close();
+		}
+		Model m = ModelIOUtils.modelFromTurtle
+			( ":root a api:API; api:sparqlEndpoint <local:" + data.getAbsolutePath() + ">; api:endpoint :things ."
+			+ "\n:things a api:ListEndpoint; api:uriTemplate '/things'; api:selector [ api:where '?item a <" + EX + "Thing>' ] ."
+			);
+		spec = new APISpec( EldaFileManager.get(), m.createResource( m.expandPrefix( ":root" ) ), LoadsNothing.instance );
+	}
+
+	@AfterClass public static void tidy() {
+		data.delete();
+	}
+
+	@Before public void register() {
+		PermaCache cache = new PermaCache( "warm-up" );
+		router = new DefaultRouter();
+		for (APIEndpointSpec eps: spec.getEndpoints())
+			router.register( null, eps.getURITemplate(), new APIEndpointImpl( eps, cache ) );
+	}
+
+	@Test public void testReplayWarmsTheCachesARequestHits() {
+		assertTrue( WarmUp.replayOne( "/ctx", URLforResource.alwaysFails, router, "/things.json?_page=1&_view=basic" ) );
+		Times warm = request( "things.json", "_page=1&_view=basic" );
+		assertTrue( warm.usedSelectionCache );
+		assertTrue( warm.usedViewCache );
+		Times cold = request( "things.json", "_page=2&_view=basic" );
+		assertFalse( cold.usedSelectionCache );
+	}
+
+	@Test public void testReplayLeavesSpecBindingsAlone() {
+		assertTrue( WarmUp.replayOne( "/ctx", URLforResource.alwaysFails, router, "/things.json?_page=1" ) );
+		for (APIEndpointSpec eps: spec.getEndpoints()) {
+			assertNull( eps.getBindings().get( "_rootPath" ) );
+			assertNull( eps.getBindings().get( "_page" ) );
+		}
+	}
+
+	/**
+	    Run the request for <code>pathstub</code> the way RouterRestlet
+	    runs a client's request, answering its Times.
+	*/
+	Times request( String pathstub, String query ) {
+		MultiMap<String, String> params = new MultiMap<String, String>();
+		for (String pair: query.split( "&" )) {
+			String [] kv = pair.split( "=" );
+			params.add( kv[0], kv[1] );
+		}
+		Times t = new Times( pathstub );
+		Controls c = new Controls( true, t );
+		Couple<Match, String> routed = RouterRestlet.route( router, pathstub, params );
+		assertNotNull( routed.a );
+		RouterRestlet.Rendered r = RouterRestlet.render
+			( c, "/ctx", URLforResource.alwaysFails
+			, URIUtils.newURI( "http://localhost/ctx/" + pathstub + "?" + query )
+			, params, new ArrayList<MediaType>(), routed.b, routed.a
+			);
+		assertNotNull( r );
+		return t;
+	}
+}
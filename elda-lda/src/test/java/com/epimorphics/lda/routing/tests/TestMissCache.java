@@ -0,0 +1,96 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.routing.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.core.APIEndpoint;
+import com.epimorphics.lda.core.APIEndpointImpl;
+import com.epimorphics.lda.routing.DefaultRouter;
+import com.epimorphics.lda.routing.MissCache;
+import com.epimorphics.lda.specs.APIEndpointSpec;
+import com.epimorphics.lda.specs.APISpec;
+import com.epimorphics.lda.support.EldaFileManager;
+import com.epimorphics.lda.support.MultiMap;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+public class TestMissCache {
+
+	@Test public void testRecordsAndClearsMisses() {
+		MissCache mc = new MissCache();
+		assertFalse( mc.contains( "/nowhere" ) );
+		mc.add( "/nowhere" );
+		assertTrue( mc.contains( "/nowhere" ) );
+		assertEquals( 1, mc.hits() );
+		mc.clear();
+		assertFalse( mc.contains( "/nowhere" ) );
+	}
+
+	@Test public void testIsBounded() {
+		MissCache mc = new MissCache( 2 );
+		mc.add( "/a" );
+		mc.add( "/b" );
+		mc.add( "/c" );
+		assertEquals( 2, mc.size() );
+		assertFalse( mc.contains( "/a" ) );
+		assertTrue( mc.contains( "/c" ) );
+	}
+
+	/**
+	    Test that a miss found by a lookup which began before the cache
+	    was cleared (because the templates changed) is not recorded.
+	*/
+	@Test public void testIgnoresMissesFromEarlierGenerations() {
+		MissCache mc = new MissCache();
+		long before = mc.generation();
+		mc.clear();
+		mc.add( "/stale", before );
+		assertFalse( mc.contains( "/stale" ) );
+		mc.add( "/fresh", mc.generation() );
+		assertTrue( mc.contains( "/fresh" ) );
+	}
+
+	Model specModel = ModelIOUtils.modelFromTurtle
+		( ":root a api:API"
+		+ "\n  ; api:sparqlEndpoint <unused:endpoint>"
+		+ "\n  ; api:endpoint :A, :B"
+		+ "\n."
+		+ "\n:A a api:ListEndpoint"
+		+ "\n  ; api:uriTemplate '/things'"
+		+ "\n."
+		+ "\n:B a api:ListEndpoint"
+		+ "\n  ; api:uriTemplate '/other'"
+		+ "\n."
+		);
+
+	/**
+	    Test that a router remembers a path that failed to match, and forgets
+	    it when a template that would match it is registered.
+	*/
+	@Test public void testRegistrationForgetsMisses() {
+		Resource root = specModel.createResource( specModel.expandPrefix( ":root" ) );
+		APISpec spec = new APISpec( EldaFileManager.get(), root, LoadsNothing.instance );
+		DefaultRouter r = new DefaultRouter();
+		APIEndpoint other = null;
+		for (APIEndpointSpec eps: spec.getEndpoints()) {
+			APIEndpoint ep = new APIEndpointImpl( eps );
+			if (ep.getURITemplate().equals( "/other" )) other = ep;
+			else r.register( null, ep.getURITemplate(), ep );
+		}
+		assertNotNull( r.getMatch( "/things", new MultiMap<String, String>() ) );
+		assertNull( r.getMatch( "/other", new MultiMap<String, String>() ) );
+		assertNull( r.getMatch( "/other", new MultiMap<String, String>() ) );
+		r.register( null, other.getURITemplate(), other );
+		assertNotNull( r.getMatch( "/other", new MultiMap<String, String>() ) );
+	}
+}
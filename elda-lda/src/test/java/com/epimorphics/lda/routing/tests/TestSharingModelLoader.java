@@ -0,0 +1,55 @@
+package com.epimorphics.lda.routing.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.epimorphics.lda.core.ModelLoader;
+import com.epimorphics.lda.routing.SharingModelLoader;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+public class TestSharingModelLoader {
+
+	static class CountingLoader implements ModelLoader {
+		final AtomicInteger loads = new AtomicInteger();
+
+		@Override public Model loadModel( String uri ) {
+			loads.incrementAndGet();
+			try { Thread.sleep( 10 ); } catch (InterruptedException e) { throw new RuntimeException( e ); }
+			return ModelFactory.createDefaultModel();
+		}
+	}
+
+	@Test public void testLoadsEachURIOnce() {
+		CountingLoader base = new CountingLoader();
+		SharingModelLoader ml = new SharingModelLoader( base );
+		Model a = ml.loadModel( "eh:/A" );
+		assertSame( a, ml.loadModel( "eh:/A" ) );
+		assertNotSame( a, ml.loadModel( "eh:/B" ) );
+		assertEquals( 2, base.loads.get() );
+		assertEquals( 2, ml.size() );
+	}
+
+	@Test public void testConcurrentLoadsShareOneModel() throws Exception {
+		CountingLoader base = new CountingLoader();
+		final SharingModelLoader ml = new SharingModelLoader( base );
+		ExecutorService pool = Executors.newFixedThreadPool( 8 );
+		List<Future<Model>> results = new ArrayList<Future<Model>>();
+		for (int i = 0; i < 32; i += 1) {
+			results.add( pool.submit( new Callable<Model>() {
+				@Override public Model call() { return ml.loadModel( "eh:/shared" ); }
+			}));
+		}
+		Model first = results.get(0).get();
+		for (Future<Model> f: results) assertSame( first, f.get() );
+		pool.shutdown();
+		assertEquals( 1, base.loads.get() );
+	}
+}
@@ -0,0 +1,117 @@
+package com.epimorphics.lda.shortnames.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import com.epimorphics.jsonrdf.*;
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.shortnames.PropertyInfoView;
+import com.hp.hpl.jena.rdf.model.*;
+
+public class TestPropertyInfoView {
+
+	static final String NS = "http://www.epimorphics.com/tools/example#";
+
+	static Context frozenContext() {
+		Model vocab = ModelIOUtils.modelFromTurtle
+			( ":p a rdf:Property; api:label 'np'."
+			+ "\n:q a rdf:Property; api:label 'nq'; api:multiValued true."
+			);
+		Context c = new Context( vocab );
+		c.freeze();
+		return c;
+	}
+
+	@Test public void ensure_frozen_context_refuses_new_properties() {
+		Context c = frozenContext();
+		try {
+			c.findProperty( ResourceFactory.createProperty( NS + "unknown" ) );
+			fail( "frozen context should not create property records" );
+		} catch (IllegalStateException e) {
+			// as expected
+		}
+		assertEquals( "np", c.findProperty( ResourceFactory.createProperty( NS + "p" ) ).getName() );
+	}
+
+	@Test public void ensure_clone_of_frozen_context_is_not_frozen() {
+		Context c = frozenContext().clone();
+		assertFalse( c.isFrozen() );
+		assertNotNull( c.findProperty( ResourceFactory.createProperty( NS + "unknown" ) ) );
+		c.findProperty( ResourceFactory.createProperty( NS + "p" ) ).setMultivalued( true );
+	}
+
+	@Test public void ensure_view_keeps_discoveries_to_itself() {
+		Context c = frozenContext();
+		Set<String> before = c.preferredNames();
+		PropertyInfoView v = new PropertyInfoView( c );
+		ContextPropertyInfo p = v.findProperty( ResourceFactory.createProperty( NS + "p" ) );
+		ContextPropertyInfo u = v.findProperty( ResourceFactory.createProperty( NS + "unknown" ) );
+		assertSame( c.getPropertyByURI( NS + "p" ), p );
+		assertEquals( "unknown", u.getName() );
+		assertSame( u, v.findProperty( ResourceFactory.createProperty( NS + "unknown" ) ) );
+		assertEquals( setOf( NS + "unknown" ), v.discovered().keySet() );
+		assertEquals( before, c.preferredNames() );
+		assertNull( c.getPropertyByURI( NS + "unknown" ) );
+	}
+
+	@Test public void ensure_view_invents_names_that_do_not_clash() {
+		PropertyInfoView v = new PropertyInfoView( frozenContext() );
+		ContextPropertyInfo a = v.findProperty( ResourceFactory.createProperty( "eh:/other/np" ) );
+		ContextPropertyInfo b = v.findProperty( ResourceFactory.createProperty( "eh:/more/np" ) );
+		assertFalse( a.getName().equals( "np" ) );
+		assertFalse( b.getName().equals( "np" ) );
+		assertFalse( a.getName().equals( b.getName() ) );
+	}
+
+	@Test public void ensure_parallel_renderings_are_deterministic() throws Exception {
+		final Context c = frozenContext();
+		Set<String> before = c.preferredNames();
+		final int N = 64;
+		final List<Model> models = new ArrayList<Model>();
+		String [] expected = new String[N];
+		for (int i = 0; i < N; i += 1) {
+			models.add( ModelIOUtils.modelFromTurtle
+				( ":r" + i + " :p 'v" + i + "'; :q " + i + ", 'x', <eh:/o" + i + ">; <eh:/x/extra" + (i % 8) + "> 'e'; <eh:/y/extra" + (i % 8) + "> <eh:/z>, 17."
+				) );
+			expected[i] = render( c, models.get(i), i );
+		}
+	//
+		ExecutorService pool = Executors.newFixedThreadPool( 16 );
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int round = 0; round < 4; round += 1) {
+				for (int i = 0; i < N; i += 1) {
+					final int k = i;
+					results.add( pool.submit( new Callable<String>() {
+						@Override public String call() {
+							return render( c, models.get(k), k );
+						}
+					} ) );
+				}
+			}
+			for (int j = 0; j < results.size(); j += 1) {
+				assertEquals( expected[j % N], results.get(j).get() );
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals( before, c.preferredNames() );
+	}
+
+	static String render( Context c, Model m, int i ) {
+		StringWriter w = new StringWriter();
+		List<Resource> roots = new ArrayList<Resource>();
+		roots.add( m.createResource( NS + "r" + i ) );
+		Encoder.getForOneResult( new PropertyInfoView( c ) ).encodeRecursive( m, roots, w, true );
+		return w.toString();
+	}
+
+	static Set<String> setOf( String... elements ) {
+		return new HashSet<String>( Arrays.asList( elements ) );
+	}
+}
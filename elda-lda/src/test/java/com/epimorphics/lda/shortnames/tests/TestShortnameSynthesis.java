@@ -1,6 +1,7 @@
 package com.epimorphics.lda.shortnames.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.Map;
 
@@ -100,4 +101,34 @@ public class TestShortnameSynthesis {
 		assertEquals( "local_" + hashNS2, result.get(NS2 + "local" ) );
 		
 	}
+	
+	@Test public void testVocabularyChangesAreSeen() {
+		Model wild = ModelFactory.createDefaultModel()
+			.add( mA, P(NS1, "renamed"), "v" )
+			;
+		
+		assertEquals( "renamed", cc.Do( wild, prefixes ).get( NS1 + "renamed" ) );
+		
+		context.recordPreferredName( "newName", NS1 + "renamed" );
+		Map<String, String> result = new CompleteContext
+			( CompleteContext.Mode.PreferLocalnames, context, prefixes )
+			.Do( wild, prefixes )
+			;
+		
+		assertEquals( "newName", result.get( NS1 + "renamed" ) );
+	}
+	
+	@Test public void testIncludeTakesTermsAtThatTime() {
+		Model wild = ModelFactory.createDefaultModel()
+			.add( mA, P(NS1, "early"), "v" )
+			;
+		
+		cc.include( wild );
+		wild.add( mA, P(NS1, "late"), "v" );
+		Map<String, String> result = cc.Do();
+		
+		assertEquals( "early", result.get( NS1 + "early" ) );
+		assertNull( result.get( NS1 + "late" ) );
+		assertEquals( "type", result.get( RDF.type.getURI() ) );
+	}
 }
@@ -0,0 +1,212 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.spatial.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.core.APIResultSet;
+import com.epimorphics.lda.spatial.GridIndex;
+import com.epimorphics.lda.spatial.SourceSpatialIndex;
+import com.epimorphics.lda.support.EldaFileManager;
+import com.epimorphics.lda.tests.APITester;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.epimorphics.lda.vocabularies.EXTRAS;
+import com.epimorphics.lda.vocabularies.GEOStub;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.*;
+
+/**
+    near-lat/near-long queries answered from the spatial index of a
+    local source select exactly the items that the numeric FILTERs
+    select, for random points and queries, near the poles, and (with
+    boxes given directly, since near-long is limited to +/-99 degrees)
+    across the antimeridian, where neither wraps.
+*/
+public class TestSpatialIndex {
+
+	static final String EX = "http://example.com/";
+
+	static File data;
+
+	static APITester tester;
+
+	static Model model;
+
+	static SourceSpatialIndex index;
+
+	static final Random random = new Random( 20131017 );
+
+	@BeforeClass public static void generate() throws IOException {
+		data = File.createTempFile( "spatial-index", ".ttl" );
+		Writer w = new OutputStreamWriter( new FileOutputStream( data ), "UTF-8" );
+		try {
+			w.write( "@prefix geo: <http://www.w3.org/2003/01/geo/wgs84_pos#> .\n" );
+			w.write( "@prefix xsd: <http://www.w3.org/2001/XMLSchema#> .\n" );
+			for (int i = 0; i < 600; i += 1) {
+				double lat, lng;
+				if (i < 400) { lat = uniform( -90, 90 ); lng = uniform( -180, 180 ); }
+				else if (i < 500) { lat = uniform( -60, 60 ); lng = (i % 2 == 0 ? 1 : -1) * uniform( 178, 180 ); }
+				else { lat = (i % 2 == 0 ? 1 : -1) * uniform( 88, 90 ); lng = uniform( -180, 180 ); }
+				w.write( "<" + EX + "point/" + i + "> a <" + EX + "Point>; geo:lat " + literal( i, lat ) + "; geo:long " + literal( i + 1, lng ) + " .\n" );
+			}
+			w.write( "<" + EX + "point/stringy> a <" + EX + "Point>; geo:lat '0.5'; geo:long '0.5' .\n" );
+			w.write( "<" + EX + "point/twice> a <" + EX + "Point>; geo:lat 10.0, 40.0; geo:long 10.0, 40.0 .\n" );
+			w.write( "<" + EX + "point/latOnly> a <" + EX + "Point>; geo:lat 0.5 .\n" );
+		} finally {
+			w.close();
+		}
+		Model spec = ModelIOUtils.modelFromTurtle
+			( ":root a api:API; api:sparqlEndpoint <local:" + data.getAbsolutePath() + ">; api:endpoint :indexed, :filtered ."
+			+ "\n:indexed a api:ListEndpoint; api:uriTemplate '/indexed' ."
+			+ "\n:filtered a api:ListEndpoint; api:uriTemplate '/filtered'; elda:spatialIndex false ."
+			);
+		tester = new APITester( spec, LoadsNothing.instance );
+		model = EldaFileManager.get().loadModel( data.getAbsolutePath() );
+		index = SourceSpatialIndex.inMemory( "test", model.getGraph() );
+	}
+
+	@AfterClass public static void tidy() {
+		data.delete();
+	}
+
+	static double uniform( double low, double high ) {
+		return low + random.nextDouble() * (high - low);
+	}
+
+	/**
+	    Spell the coordinate as an xsd:decimal, an xsd:double, or (rounded)
+	    an xsd:integer, so that all the numeric types are exercised.
+	*/
+	static String literal( int i, double x ) {
+		switch (i % 3) {
+			case 0: return String.format( Locale.ROOT, "%.5f", x );
+			case 1: return "'" + x + "'^^xsd:double";
+			default: return Long.toString( Math.round( x ) );
+		}
+	}
+
+	@Test public void testIndexedQueriesMatchFilteredQueries() {
+		for (int i = 0; i < 40; i += 1)
+			assertSameItems( uniform( -90, 90 ), uniform( -99, 99 ), uniform( 10, 800 ) );
+	}
+
+	@Test public void testBoxesAcrossTheAntimeridianDoNotWrap() {
+		Set<String> east = assertSameItems( "", -20, 179, 20, 181 );
+		assertFalse( east.isEmpty() );
+		for (String uri: east) assertTrue( uri, model.getResource( uri ).getProperty( model.createProperty( GEOStub.LONG.getURI() ) ).getDouble() > 179 );
+		assertSameItems( "", -20, -181, 20, -179 );
+		assertSameItems( "", -60, 170, 60, 190 );
+	}
+
+	@Test public void testItemsAlreadyBoundAreCheckedDirectly() {
+		String typed = "?item a <" + EX + "Point> .";
+		for (int i = 0; i < 20; i += 1) {
+			double lat = uniform( -90, 90 ), lng = uniform( -180, 180 );
+			assertSameItems( typed, lat - 10, lng - 20, lat + 10, lng + 20 );
+		}
+	}
+
+	@Test public void testIndexedQueriesMatchFilteredQueriesAtThePoles() {
+		assertSameItems( 89.9, 0, 30 );
+		assertSameItems( -89.9, 100, 30 );
+		assertSameItems( 90, 0, 10 );
+		assertSameItems( -90, 0, 10 );
+		assertSameItems( 95, 0, 100 );
+		assertSameItems( -99, 0, 300 );
+	}
+
+	@Test public void testNonNumericAndIncompleteCoordinatesAreIgnored() {
+		Set<String> found = assertSameItems( 0.5, 0.5, 5 );
+		assertFalse( found.contains( EX + "point/stringy" ) );
+		assertFalse( found.contains( EX + "point/latOnly" ) );
+	}
+
+	@Test public void testAnyPairOfValuesMayMatch() {
+		Set<String> found = assertSameItems( 10, 40, 5 );
+		assertTrue( found.contains( EX + "point/twice" ) );
+	}
+
+	Set<String> assertSameItems( double lat, double lng, double miles ) {
+		String params = "near-lat=" + lat + "&near-long=" + lng + "&_distance=" + miles + "&_pageSize=250";
+		APIResultSet indexed = tester.runQuery( "/indexed", params );
+		APIResultSet filtered = tester.runQuery( "/filtered", params );
+		assertTrue( indexed.getSelectQuery(), indexed.getSelectQuery().contains( "withinBox" ) );
+		assertFalse( filtered.getSelectQuery(), filtered.getSelectQuery().contains( "withinBox" ) );
+		Set<String> expected = uris( filtered ), got = uris( indexed );
+		assertTrue( "too many results to compare at " + params, expected.size() < 250 );
+		assertEquals( params, expected, got );
+		return got;
+	}
+
+	/**
+	    Check that the items with a point strictly inside the box are the
+	    same whether found with elda:withinBox or with numeric FILTERs,
+	    after the patterns <code>before</code>, and answer them.
+	*/
+	static Set<String> assertSameItems( String before, double minLat, double minLong, double maxLat, double maxLong ) {
+		String box = "(geo:lat geo:long " + minLat + " " + minLong + " " + maxLat + " " + maxLong + ")";
+		String prefixes = "PREFIX geo: <http://www.w3.org/2003/01/geo/wgs84_pos#> PREFIX elda: <" + EXTRAS.getURI() + ">\n";
+		String withinBox = prefixes + "SELECT DISTINCT ?item WHERE { " + before + " ?item elda:withinBox " + box + " }";
+		String filtered = prefixes + "SELECT DISTINCT ?item WHERE { " + before + " ?item geo:lat ?lat; geo:long ?long"
+			+ " FILTER(" + minLat + " < ?lat && ?lat < " + maxLat + " && " + minLong + " < ?long && ?long < " + maxLong + ") }";
+		Set<String> expected = select( filtered ), got = select( withinBox );
+		assertEquals( box, expected, got );
+		return got;
+	}
+
+	static Set<String> select( String query ) {
+		QueryExecution qe = index.attach( QueryExecutionFactory.create( query, model ) );
+		try {
+			Set<String> result = new HashSet<String>();
+			for (ResultSet rs = qe.execSelect(); rs.hasNext();) result.add( rs.next().getResource( "item" ).getURI() );
+			return result;
+		} finally {
+			qe.close();
+		}
+	}
+
+	static Set<String> uris( APIResultSet rs ) {
+		Set<String> result = new HashSet<String>();
+		for (Resource r: rs.getResultList()) result.add( r.getURI() );
+		return result;
+	}
+
+	@Test public void testGridMatchesBruteForce() {
+		Model m = ModelFactory.createDefaultModel();
+		Property lat = m.createProperty( GEOStub.LAT.getURI() ), lng = m.createProperty( GEOStub.LONG.getURI() );
+		double [][] points = new double[2000][];
+		for (int i = 0; i < points.length; i += 1) {
+			points[i] = new double[] { uniform( -90, 90 ), uniform( -180, 180 ) };
+			Resource r = m.createResource( EX + "p/" + i );
+			r.addLiteral( lat, points[i][0] ).addLiteral( lng, points[i][1] );
+		}
+		GridIndex grid = new GridIndex( m.getGraph(), lat.asNode(), lng.asNode() );
+		assertEquals( points.length, grid.size() );
+		for (int q = 0; q < 200; q += 1) {
+			double a = uniform( -100, 100 ), b = uniform( -100, 100 ), c = uniform( -200, 200 ), d = uniform( -200, 200 );
+			if (q % 10 == 0) { c = -1e20; d = 1e20; }
+			Set<String> expected = new HashSet<String>();
+			for (int i = 0; i < points.length; i += 1) {
+				double y = points[i][0], x = points[i][1];
+				if (a < y && y < b && c < x && x < d) expected.add( EX + "p/" + i );
+			}
+			Set<String> got = new HashSet<String>();
+			for (Node n: grid.within( a, c, b, d )) assertTrue( got.add( n.getURI() ) );
+			assertEquals( expected, got );
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.statistics.tests;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.epimorphics.lda.support.Times;
+import com.epimorphics.lda.support.pageComposition.ComposeMetrics;
+import com.epimorphics.lda.support.statistics.StatsValues;
+
+public class TestComposeMetrics {
+
+	@Test public void testEndpointAndSourceSeries() {
+		Times t = new Times( "metrics/test" );
+		t.setEndpoint( "/metrics/\"quoted\"" );
+		t.setRenderDuration( 7, "metrics-test-format" );
+		t.done();
+		StatsValues.accumulate( t );
+		StatsValues.sourceQuery( "metrics:source", 30 );
+	//
+		String text = new ComposeMetrics().renderMetrics();
+		String endpoint = "endpoint=\"/metrics/\\\"quoted\\\"\"";
+		assertContains( text, "# TYPE elda_request_duration_seconds histogram\n" );
+		assertContains( text, "elda_requests_total{" + endpoint + "} 1\n" );
+		assertContains( text, "elda_request_duration_seconds_count{" + endpoint + ",phase=\"render\"} 1\n" );
+		assertContains( text, "elda_request_duration_seconds_bucket{" + endpoint + ",phase=\"render\",le=\"0.01\"} 1\n" );
+		assertContains( text, "elda_request_duration_seconds_bucket{" + endpoint + ",phase=\"render\",le=\"0.005\"} 0\n" );
+		assertContains( text, "elda_source_query_duration_seconds_bucket{source=\"metrics:source\",le=\"0.05\"} 1\n" );
+		assertContains( text, "elda_render_duration_seconds_count{format=\"metrics-test-format\"} 1\n" );
+	}
+
+	private void assertContains( String text, String expected ) {
+		assertTrue( "expected to find: " + expected, text.contains( expected ) );
+	}
+}
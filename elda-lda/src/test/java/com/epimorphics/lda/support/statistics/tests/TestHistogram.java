@@ -0,0 +1,112 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.statistics.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.epimorphics.lda.support.statistics.Histogram;
+import com.epimorphics.lda.support.statistics.StripedCounter;
+
+public class TestHistogram {
+
+	@Test public void testEmptyHistogram() {
+		Histogram h = new Histogram();
+		assertEquals( 0, h.count() );
+		assertEquals( -1, h.mean() );
+		assertEquals( -1, h.percentile( 50 ) );
+	}
+
+	@Test public void testSmallValuesAreExact() {
+		Histogram h = new Histogram();
+		for (int i = 1; i <= 50; i += 1) h.record( i );
+		assertEquals( 50, h.count() );
+		assertEquals( 1275, h.total() );
+		assertEquals( 1, h.min() );
+		assertEquals( 50, h.max() );
+		assertEquals( 25, h.percentile( 50 ) );
+		assertEquals( 48, h.percentile( 95 ) );
+		assertEquals( 50, h.percentile( 100 ) );
+	}
+
+	@Test public void testLargeValuesWithinBucketPrecision() {
+		Histogram h = new Histogram();
+		for (int i = 1; i <= 10000; i += 1) h.record( i );
+		assertWithin( 5000, h.percentile( 50 ) );
+		assertWithin( 9500, h.percentile( 95 ) );
+		assertWithin( 9900, h.percentile( 99 ) );
+		assertEquals( 10000, h.percentile( 100 ) );
+	}
+
+	@Test public void testSuppressedMinimum() {
+		Histogram h = new Histogram();
+		h.record( 0, true );
+		h.record( 7 );
+		assertEquals( 7, h.min() );
+		assertEquals( 2, h.count() );
+	}
+
+	@Test public void testMerge() {
+		Histogram a = new Histogram(), b = new Histogram();
+		for (int i = 0; i < 100; i += 1) a.record( 10 );
+		for (int i = 0; i < 100; i += 1) b.record( 1000 );
+		Histogram m = new Histogram().add( a ).add( b );
+		assertEquals( 200, m.count() );
+		assertEquals( 101000, m.total() );
+		assertEquals( 10, m.min() );
+		assertEquals( 1000, m.max() );
+		assertEquals( 10, m.percentile( 50 ) );
+		assertWithin( 1000, m.percentile( 99 ) );
+	}
+
+	@Test public void testCumulativeCounts() {
+		Histogram h = new Histogram();
+		h.record( 3 );
+		h.record( 8 );
+		h.record( 40 );
+		h.record( 5000 );
+		long [] counts = h.cumulativeCounts( new long[] { 5, 10, 100 } );
+		assertArrayEquals( new long[] { 1, 2, 3, 4 }, counts );
+	}
+
+	@Test public void testValuesAboveTheRangeOverflow() {
+		Histogram h = new Histogram( 1000 );
+		for (int i = 0; i < 90; i += 1) h.record( 10 );
+		for (int i = 0; i < 10; i += 1) h.record( 50000 + i );
+		assertEquals( 50009, h.max() );
+		assertEquals( 10, h.percentile( 50 ) );
+		assertEquals( 50009, h.percentile( 99 ) );
+		assertArrayEquals( new long[] { 90, 100 }, h.cumulativeCounts( new long[] { 1000 } ) );
+		Histogram merged = new Histogram().add( h );
+		assertEquals( 50009, merged.percentile( 99 ) );
+	}
+
+	@Test public void testConcurrentRecording() throws InterruptedException {
+		final Histogram h = new Histogram();
+		final StripedCounter c = new StripedCounter();
+		Thread [] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t += 1) {
+			threads[t] = new Thread() {
+				@Override public void run() {
+					for (int i = 0; i < 1000; i += 1) { h.record( i ); c.increment(); }
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t: threads) t.join();
+		assertEquals( 8000, h.count() );
+		assertEquals( 8000, c.sum() );
+		assertEquals( 8 * 499500, h.total() );
+	}
+
+	private void assertWithin( long expected, long actual ) {
+		long slack = expected / 32 + 1;
+		assertTrue( "expected about " + expected + " but got " + actual, Math.abs( expected - actual ) <= slack );
+	}
+}
@@ -10,6 +10,8 @@ import com.epimorphics.jsonrdf.utils.ModelIOUtils;
 import com.epimorphics.lda.support.CycleFinder;
 import com.epimorphics.util.CollectionUtils;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.Resource;
 
 public class TestCycleFinder {
@@ -82,6 +84,17 @@ public class TestCycleFinder {
 		assertEquals( CollectionUtils.set(x, y, w, z), loops );
 	}
 
+	@Test public void testLongChainsDoNotOverflow() {
+		Model m = ModelFactory.createDefaultModel();
+		Property P = m.createProperty( "eh:/P" );
+		int n = 100000;
+		for (int i = 0; i < n; i += 1) 
+			m.add( m.createResource( "eh:/r" + i ), P, m.createResource( "eh:/r" + (i + 1) ) );
+		assertEquals( CollectionUtils.set(), CycleFinder.findCyclics( m ) );
+		m.add( m.createResource( "eh:/r" + n ), P, m.createResource( "eh:/r0" ) );
+		assertEquals( n + 1, CycleFinder.findCyclics( m ).size() );
+	}
+
 	@Test  public void testHorribleExampleTime() {
 		StringBuilder sb = new StringBuilder();
 		for (String line: exampleLines) sb.append( line ).append( '\n' );
@@ -8,11 +8,14 @@
 
 package com.epimorphics.lda.support.tests;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
 import com.epimorphics.jsonrdf.utils.ModelIOUtils;
 import com.epimorphics.lda.support.LanguageFilter;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.test.ModelTestBase;
 
 public class TestFilterByLanguages {
@@ -59,6 +62,24 @@ public class TestFilterByLanguages {
 		ModelTestBase.assertIsoModels( expected, m );
 	}
 
+	@Test public void testFilteredViewMatchesFiltering() {
+		String ttl = ":s :p 'omit'; :p 'keep'@en; :q 'x'@it; :r 'plain'; :t 17 . :u :p 'y'@cy; :p 'z'@de .";
+		for (String langs: new String[] {"en,cy", "none,cy", "it"}) {
+			Model m = model( ttl ), expected = model( ttl );
+			LanguageFilter.filterByLanguages( expected, langs.split(",") );
+			Model view = ModelFactory.createModelForGraph( LanguageFilter.filteredView( m.getGraph(), langs.split(",") ) );
+			ModelTestBase.assertIsoModels( expected, view );
+			ModelTestBase.assertIsoModels( model( ttl ), m );
+		}
+	}
+	
+	@Test public void testSparqlFilter() {
+		assertEquals
+			( "FILTER(!isLiteral(?v) || lang(?v) = \"\" || langMatches(lang(?v), \"en\") || langMatches(lang(?v), \"en-GB\"))"
+			, LanguageFilter.asSparqlFilter( "?v", "en,none,en-GB,x\"y".split(",") )
+			);
+	}
+
 	private Model model( String ttl ) {
 		return ModelIOUtils.modelFromTurtle( ttl );
 	}
@@ -1,6 +1,6 @@
 package com.epimorphics.lda.support.tests;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 import org.junit.Test;
 
@@ -56,5 +56,43 @@ public class TestModelPrefixEditor {
 		assertEquals( blank, pe.rename( blank ) );
 		assertEquals( m.createResource( "http://localalpha/renamed" ), pe.rename( m.createResource( "http://alpha.com/renamed" ) ) );
 	}
+	
+	@Test public void testRenamedModelIsAView() {
+		ModelPrefixEditor pe = new ModelPrefixEditor().set( "http://alpha.com/", "http://localalpha/" );
+		Model x = ModelIOUtils.modelFromTurtle( "<http://alpha.com/path> :property <http://alpha.com/other>." );
+		Model y = pe.rename( x );
+		Property p = x.createProperty( x.expandPrefix( ":property" ) );
+		Resource renamed = y.createResource( "http://localalpha/path" );
+		assertTrue( y.contains( renamed, p, y.createResource( "http://localalpha/other" ) ) );
+		assertFalse( y.contains( y.createResource( "http://alpha.com/path" ), p ) );
+	//
+		x.add( x.createResource( "http://alpha.com/path" ), p, "added" );
+		assertTrue( y.contains( renamed, p, "added" ) );
+		y.add( renamed, p, "viaView" );
+		assertTrue( y.contains( renamed, p, "viaView" ) );
+		assertEquals( 3, x.size() );
+	}
+	
+	@Test public void testRenamingCollisionsShowOnce() {
+		ModelPrefixEditor pe = new ModelPrefixEditor().set( "http://alpha.com/", "http://localalpha/" );
+		Model x = ModelIOUtils.modelFromTurtle( "<http://alpha.com/path> :property 1 . <http://localalpha/path> :property 1 ." );
+		Model y = pe.rename( x );
+		Model expected = ModelIOUtils.modelFromTurtle( "<http://localalpha/path> :property 1 ." );
+		ModelTestBase.assertIsoModels( expected, y );
+		assertEquals( 1, y.listStatements( y.createResource( "http://localalpha/path" ), null, (RDFNode) null ).toList().size() );
+	}
+	
+	@Test public void testCollisionAddedThroughViewShowsOnce() {
+		ModelPrefixEditor pe = new ModelPrefixEditor().set( "http://alpha.com/", "http://localalpha/" );
+		Model x = ModelIOUtils.modelFromTurtle( "<http://alpha.com/path> :property 'v' ." );
+		Model y = pe.rename( x );
+		Resource renamed = y.createResource( "http://localalpha/path" );
+		assertEquals( 1, y.listStatements( renamed, null, (RDFNode) null ).toList().size() );
+	//
+		Property p = x.createProperty( x.expandPrefix( ":property" ) );
+		y.add( renamed, p, "v" );
+		assertEquals( 2, x.size() );
+		assertEquals( 1, y.listStatements( renamed, null, (RDFNode) null ).toList().size() );
+	}
 
 }
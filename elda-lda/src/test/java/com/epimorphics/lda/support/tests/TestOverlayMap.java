@@ -0,0 +1,51 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.epimorphics.lda.support.OverlayMap;
+
+public class TestOverlayMap {
+
+	@Test public void testOverlayLeavesBaseAlone() {
+		Map<String, String> base = new HashMap<String, String>();
+		base.put( "a", "A" );
+		base.put( "b", "B" );
+		OverlayMap<String, String> m = new OverlayMap<String, String>( base );
+		assertEquals( "A", m.get( "a" ) );
+		assertEquals( null, m.put( "c", "C" ) );
+		assertEquals( "B", m.put( "b", "BB" ) );
+		assertEquals( "BB", m.get( "b" ) );
+		assertEquals( "C", m.get( "c" ) );
+		assertEquals( 3, m.size() );
+		assertEquals( 2, base.size() );
+		assertEquals( "B", base.get( "b" ) );
+		assertFalse( base.containsKey( "c" ) );
+	}
+
+	@Test public void testEntriesMergeOverlayAndBase() {
+		Map<String, String> base = new HashMap<String, String>();
+		base.put( "a", "A" );
+		base.put( "b", "B" );
+		OverlayMap<String, String> m = new OverlayMap<String, String>( base );
+		m.put( "b", "BB" );
+		m.put( "c", "C" );
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put( "a", "A" );
+		expected.put( "b", "BB" );
+		expected.put( "c", "C" );
+		assertEquals( expected, new HashMap<String, String>( m ) );
+		assertEquals( 2, m.added().size() );
+		assertEquals( new HashSet<String>( Arrays.asList( "a", "b", "c" ) ), m.keySet() );
+	}
+}
@@ -0,0 +1,55 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.support.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.epimorphics.lda.support.SlowRequestLog;
+import com.epimorphics.lda.support.Times;
+
+public class TestTimes {
+
+	@Test public void testSpansNest() {
+		Times t = new Times( "path" );
+		Times.Span outer = t.begin( "outer" );
+		t.begin( "inner" ).note( "SELECT ?item WHERE {}" ).end();
+		outer.end();
+		t.begin( "after" ).end();
+		assertEquals( 2, t.root().children().size() );
+		assertEquals( "inner", outer.children().get(0).name );
+		String tree = t.spanTree();
+		assertTrue( tree, tree.contains( "\n  outer: " ) );
+		assertTrue( tree, tree.contains( "\n    inner: " ) );
+		assertTrue( tree, tree.contains( "| SELECT ?item WHERE {}" ) );
+	}
+
+	@Test public void testUnendedSpanIsClosedByItsParent() {
+		Times t = new Times();
+		Times.Span outer = t.begin( "outer" );
+		t.begin( "forgotten" );
+		outer.end();
+		t.begin( "next" ).end();
+		assertEquals( 2, t.root().children().size() );
+		assertTrue( t.spanTree().contains( "forgotten: " ) );
+	}
+
+	@Test public void testSlowRequestThreshold() {
+		try {
+			SlowRequestLog.setThreshold( -1 );
+			assertFalse( SlowRequestLog.check( new Times() ) );
+			SlowRequestLog.setThreshold( 0 );
+			Times t = new Times();
+			t.begin( "work" ).end();
+			assertTrue( SlowRequestLog.check( t ) );
+		} finally {
+			SlowRequestLog.setThreshold( -1 );
+		}
+	}
+}
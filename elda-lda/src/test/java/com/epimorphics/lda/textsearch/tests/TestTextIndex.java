@@ -0,0 +1,155 @@
+/*
+    See lda-top/LICENCE (or https://raw.github.com/epimorphics/elda/master/LICENCE)
+    for the licence for this software.
+
+    (c) Copyright 2011 Epimorphics Limited
+    $Id$
+*/
+package com.epimorphics.lda.textsearch.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import com.epimorphics.jsonrdf.utils.ModelIOUtils;
+import com.epimorphics.lda.core.APIResultSet;
+import com.epimorphics.lda.sources.SourceContent;
+import com.epimorphics.lda.tests.APITester;
+import com.epimorphics.lda.tests_support.LoadsNothing;
+import com.epimorphics.lda.textsearch.SourceTextIndex;
+import com.epimorphics.lda.textsearch.TextIndex;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+    Searches with <code>_search</code> over a local source are answered
+    from its text index, best match first, and the index follows changes
+    to the data it was built from.
+*/
+public class TestTextIndex {
+
+	static final String EX = "http://example.com/";
+
+	static final String DATA =
+		"\n<here:data> :item ex:A, ex:B, ex:C, ex:D ."
+		+ "\nex:A a ex:Thing; rdfs:label 'sandy beach' ."
+		+ "\nex:B a ex:Thing; rdfs:label 'rocky shore' ."
+		+ "\nex:C a ex:Thing; skos:prefLabel 'beach huts' ."
+		+ "\nex:D a ex:Thing; rdfs:label 'harbour'; ex:description 'a beach cafe by the harbour' ."
+		;
+
+	static Model spec( String extra ) {
+		return ModelIOUtils.modelFromTurtle
+			( "@prefix ex: <" + EX + "> ."
+			+ "\n@prefix skos: <http://www.w3.org/2004/02/skos/core#> ."
+			+ "\n:root a api:API; api:sparqlEndpoint <here:data>; api:endpoint :things ."
+			+ "\n:things a api:ListEndpoint; api:uriTemplate '/things'"
+			+ "\n; api:selector [api:where '?item a <" + EX + "Thing>']"
+			+ extra
+			+ "\n."
+			+ DATA
+			);
+	}
+
+	static Set<String> search( Model spec, String text ) {
+		APIResultSet rs = new APITester( spec, LoadsNothing.instance ).runQuery( "/things", "_search=" + text );
+		Set<String> result = new HashSet<String>();
+		for (Resource r: rs.getResultList()) result.add( r.getURI() );
+		return result;
+	}
+
+	static Set<String> uris( String... locals ) {
+		Set<String> result = new HashSet<String>();
+		for (String l: locals) result.add( EX + l );
+		return result;
+	}
+
+	@Test public void testSearchFindsItemsWithMatchingLabels() {
+		assertEquals( uris( "A", "C" ), search( spec( "" ), "beach" ) );
+		assertEquals( uris( "B" ), search( spec( "" ), "shore" ) );
+		assertEquals( uris(), search( spec( "" ), "cafe" ) );
+	}
+
+	@Test public void testSearchIsRestrictedToTheContentProperty() {
+		Model spec = spec( "; elda:textContentProperty ex:description" );
+		assertEquals( uris( "D" ), search( spec, "beach" ) );
+	}
+
+	@Test public void testResultsComeBestMatchFirstUpToTheLimit() {
+		Model m = ModelIOUtils.modelFromTurtle( "@prefix ex: <" + EX + "> ." + DATA );
+		SourceTextIndex index = SourceTextIndex.inMemory( "test", m.getGraph() );
+		String all = "SELECT ?item ?score WHERE { (?item ?score) <http://jena.apache.org/text#query> ('beach') }";
+		List<QuerySolution> found = select( index, m, all );
+		assertEquals( 2, found.size() );
+		assertTrue( found.get( 0 ).getLiteral( "score" ).getFloat() >= found.get( 1 ).getLiteral( "score" ).getFloat() );
+		String one = "SELECT ?item WHERE { ?item <http://jena.apache.org/text#query> ('beach' 1) }";
+		List<QuerySolution> first = select( index, m, one );
+		assertEquals( 1, first.size() );
+		assertEquals( found.get( 0 ).getResource( "item" ), first.get( 0 ).getResource( "item" ) );
+	}
+
+	static List<QuerySolution> select( SourceTextIndex index, Model m, String query ) {
+		QueryExecution qe = index.attach( QueryExecutionFactory.create( query, m ) );
+		try {
+			List<QuerySolution> result = new ArrayList<QuerySolution>();
+			ResultSet rs = qe.execSelect();
+			while (rs.hasNext()) result.add( rs.next() );
+			return result;
+		} finally {
+			qe.close();
+		}
+	}
+
+	@Test public void testUpdateAddsAndDeletesOnlyChangedLiterals() {
+		Model m = ModelIOUtils.modelFromTurtle( "@prefix ex: <" + EX + "> ." + DATA );
+		Set<String> properties = new HashSet<String>( Arrays.asList( RDFS.label.getURI() ) );
+		TextIndex index = new TextIndex( new RAMDirectory() );
+		assertEquals( 3, index.build( m.getGraph(), properties, "1" ) );
+		Resource A = m.createResource( EX + "A" ), B = m.createResource( EX + "B" );
+		m.removeAll( A, RDFS.label, null );
+		m.add( B, RDFS.label, "shingle beach" );
+		assertEquals( 2, index.update( m.getGraph(), properties, "2" ) );
+		assertEquals( "2", index.getMarker() );
+		assertEquals( Arrays.asList( EX + "B" ), uris( index.search( null, "beach", 10 ) ) );
+		assertEquals( Arrays.asList( EX + "B" ), uris( index.search( RDFS.label.getURI(), "shore", 10 ) ) );
+	}
+
+	@Test public void testIndexWithCurrentMarkerIsReusedAfterRestart() throws IOException {
+		File dir = File.createTempFile( "text-index", "" );
+		dir.delete();
+		try {
+			Model m = ModelIOUtils.modelFromTurtle( "@prefix ex: <" + EX + "> ." + DATA );
+			new SourceTextIndex( "first", content( m.getGraph(), "v1" ), dir ).current( null ).close();
+			Graph empty = ModelFactory.createDefaultModel().getGraph();
+			TextIndex same = new SourceTextIndex( "same", content( empty, "v1" ), dir ).current( null );
+			assertEquals( Arrays.asList( EX + "B" ), uris( same.search( null, "shore", 10 ) ) );
+			same.close();
+			TextIndex changed = new SourceTextIndex( "changed", content( empty, "v2" ), dir ).current( null );
+			assertEquals( 0, changed.search( null, "shore", 10 ).size() );
+			changed.close();
+		} finally {
+			for (File f: dir.listFiles()) f.delete();
+			dir.delete();
+		}
+	}
+
+	static SourceContent content( final Graph g, final String marker ) {
+		return new SourceContent() {
+			@Override public Graph getGraph() { return g; }
+			@Override public String getMarker() { return marker; }
+		};
+	}
+
+	static List<String> uris( List<TextIndex.Hit> hits ) {
+		List<String> result = new ArrayList<String>();
+		for (TextIndex.Hit h: hits) result.add( h.uri );
+		return result;
+	}
+}
@@ -82,6 +82,10 @@ public class TestJSONIssue {
 			return new ContextPropertyInfo(p.getURI(), p.getLocalName());
 		}
 
+		@Override public boolean hasSettledName(Property p) {
+			return true;
+		}
+
 		@Override public boolean isSortProperties() {
 			return true;
 		}
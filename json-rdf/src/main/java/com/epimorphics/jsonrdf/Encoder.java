@@ -22,6 +22,8 @@ import static com.epimorphics.jsonrdf.RDFUtil.getLexicalForm;
 
 import com.epimorphics.jsonrdf.impl.EncoderDefault;
 import com.epimorphics.vocabs.API;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.rdf.model.*;
 import com.hp.hpl.jena.util.OneToManyMap;
@@ -323,10 +325,16 @@ public class Encoder {
         protected static final boolean nestResources = true;     // Could be another config option
 		protected static final boolean deferSharedBNodes = false;  // Could be another another config option
         
-        // When nesting we need cycle detection
+        // When nesting we need cycle detection: the resources being encoded
+        // on the current path, and those known to be (or not be) on a cycle
         protected Set<Resource> cycles;
         protected Set<Resource> noCycles;
-        protected Map<Resource, Set<Resource>> visitedFrom;
+        protected Set<Resource> onPath;
+        
+        // The blank nodes that are the object of statements with more than
+        // one subject in indexedModel, found in one pass over it
+        protected Set<Node> multiplyReferenced;
+        protected Model indexedModel;
         
         protected ArrayList<RDFList> topItemLists=null;
         protected HashSet<Resource>  topItems=null;
@@ -359,7 +367,7 @@ public class Encoder {
                 if (nestResources) {
                     cycles = new HashSet<Resource>();
                     noCycles = new HashSet<Resource>();
-                    visitedFrom = new HashMap<Resource, Set<Resource>>();
+                    onPath = new HashSet<Resource>();
                 } else {
                     encoded = new HashSet<Resource>();
                 }
@@ -422,15 +430,11 @@ public class Encoder {
                             return true;
                         }
                         if (markAsEncoded) {
-                            if (visitedFrom.containsKey(r)) {
+                            if (!onPath.add(r)) {
+                                // r is already being encoded further up the path
                                 cycles.add(r);
-                                visitedFrom.remove(r);
+                                onPath.remove(r);
                                 return false;
-                            } else {
-                                // Update visit records for the cycles we are tracking
-                                for (Set<Resource> s : visitedFrom.values())
-                                    s.add(r);
-                                visitedFrom.put(r, new HashSet<Resource>());
                             }
                         }
                         return true;
@@ -450,7 +454,7 @@ public class Encoder {
         
         private void markVisitcompleted(Resource r) {
             if (recurseOverResources && nestResources) {
-                visitedFrom.remove(r);
+                onPath.remove(r);
                 noCycles.add(r);
             }
         }
@@ -575,16 +579,13 @@ public class Encoder {
 		}
 
 		private List<Property> getSortedProperties(OneToManyMap<Property, RDFNode> vals) {
-			List<Property> props = new ArrayList<Property>(vals.keySet());
             if (context.isSortProperties()) {
-                Collections.sort(props, new Comparator<Property>() {
-                    @Override
-                    public int compare(Property p1, Property p2) {
-                        return context.findProperty(p1).compareTo(context.findProperty(p2));
-                    }
-                });
+            	List<Keyed<Property>> keyed = new ArrayList<Keyed<Property>>(vals.keySet().size());
+            	for (Property p : vals.keySet()) 
+            		keyed.add(new Keyed<Property>(context.findProperty(p).getName(), p));
+            	return Keyed.sortedItems(keyed);
             }
-			return props;
+			return new ArrayList<Property>(vals.keySet());
 		}
 		
         private void writePropertyValues( OneToManyMap<Property, RDFNode> vals, Property p, ContextPropertyInfo prop ) {                
@@ -599,15 +600,13 @@ public class Encoder {
                 emitNode(first, isStructured);
             } else {
                 // Emit as array, do so with sorting
-                List<RDFNode> nvals = new ArrayList<RDFNode>();
-                nvals.add(first);
-                while (i.hasNext()) nvals.add(i.next());
-                Collections.sort(nvals, new Comparator<RDFNode>() {
-                    @Override
-                    public int compare(RDFNode arg0, RDFNode arg1) {
-                        return getLexicalForm(arg0).compareTo(getLexicalForm(arg1));
-                    }
-                });
+                List<Keyed<RDFNode>> keyed = new ArrayList<Keyed<RDFNode>>();
+                keyed.add(new Keyed<RDFNode>(getLexicalForm(first), first));
+                while (i.hasNext()) {
+                	RDFNode n = i.next();
+                	keyed.add(new Keyed<RDFNode>(getLexicalForm(n), n));
+                }
+                List<RDFNode> nvals = Keyed.sortedItems(keyed);
             	jw.key(prop.getSerialisationName());
                 jw.array();
                 for (RDFNode node : nvals) {
@@ -669,14 +668,61 @@ public class Encoder {
         }
 
         private boolean isMultiplyReferencedbNode(Resource r) {
-            ResIterator ri = model.listSubjectsWithProperty(null, r);
-            boolean multiRef = false;
-            if (ri.hasNext()) {
-                ri.next();
-                multiRef = ri.hasNext();
+            if (indexedModel != model) indexReferences();
+            return multiplyReferenced.contains(r.asNode());
+        }
+        
+        /**
+            Find the blank nodes of the current model that are the object
+            of statements with two or more different subjects.
+        */
+        private void indexReferences() {
+            Map<Node, Node> referrer = new HashMap<Node, Node>();
+            multiplyReferenced = new HashSet<Node>();
+            ExtendedIterator<Triple> it = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    Node o = t.getObject();
+                    if (o.isBlank()) {
+                        Node S = t.getSubject();
+                        Node previous = referrer.put(o, S);
+                        if (previous != null && !previous.equals(S)) multiplyReferenced.add(o);
+                    }
+                }
+            } finally {
+                it.close();
             }
-            ri.close();
-            return multiRef;
+            indexedModel = model;
+        }
+    }
+    
+    /**
+        An item paired with the string it sorts by, so that the string
+        is computed once per item rather than once per comparison.
+    */
+    static class Keyed<T> implements Comparable<Keyed<T>> {
+        final String key;
+        final T item;
+        
+        Keyed(String key, T item) {
+            this.key = key;
+            this.item = item;
+        }
+        
+        @Override public int compareTo(Keyed<T> other) {
+            return key.compareTo(other.key);
+        }
+        
+        /**
+            Answer the items of <code>keyed</code> in key order; items
+            with equal keys keep their relative order.
+        */
+        static <T> List<T> sortedItems(List<Keyed<T>> keyed) {
+            Collections.sort(keyed);
+            List<T> result = new ArrayList<T>(keyed.size());
+            for (Keyed<T> k : keyed) result.add(k.item);
+            return result;
         }
     }
 }